@@ -0,0 +1,90 @@
+package com.zhaoxin.tools.demo.benchmark;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zhaoxin.tools.demo.model.response.ApiResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 大响应 JSON 序列化与反序列化
+ *
+ * 比对结果（canvas-result）与任务列表经本服务透传时，RestTemplate 先反序列化为 ApiResponse/Map，
+ * Spring MVC 再序列化输出，差异数多的报告两次转换都在请求线程上进行。
+ * ObjectMapper 使用与 Spring Boot 相同的 Jackson2ObjectMapperBuilder 默认配置。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ApiResponseJsonBenchmark {
+
+    private static final TypeReference<ApiResponse<Map<String, Object>>> RESPONSE_TYPE =
+            new TypeReference<ApiResponse<Map<String, Object>>>() {};
+
+    /**
+     * 比对差异数
+     */
+    @Param({"200", "5000"})
+    public int differences;
+
+    private ObjectMapper objectMapper;
+    private ApiResponse<Map<String, Object>> response;
+    private byte[] json;
+
+    @Setup
+    public void setUp() throws Exception {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        List<Map<String, Object>> diffs = new ArrayList<>(differences);
+        for (int i = 0; i < differences; i++) {
+            Map<String, Object> diff = new LinkedHashMap<>();
+            diff.put("index", i);
+            diff.put("type", i % 3 == 0 ? "insert" : i % 3 == 1 ? "delete" : "modify");
+            diff.put("page", i / 20 + 1);
+            diff.put("oldText", "第" + i + "条 甲方应于合同签订后三十日内支付合同价款的百分之三十作为预付款。");
+            diff.put("newText", "第" + i + "条 甲方应于合同签订后十五日内支付合同价款的百分之四十作为预付款。");
+            diff.put("bbox", List.of(72.5, 120.25 + i, 523.0, 138.75 + i));
+            diffs.add(diff);
+        }
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("taskId", "compare-bench");
+        data.put("oldPages", differences / 20 + 1);
+        data.put("newPages", differences / 20 + 1);
+        data.put("differences", diffs);
+        response = ApiResponse.success(data);
+        json = objectMapper.writeValueAsBytes(response);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws Exception {
+        return objectMapper.writeValueAsBytes(response);
+    }
+
+    @Benchmark
+    public ApiResponse<Map<String, Object>> deserializeApiResponse() throws Exception {
+        return objectMapper.readValue(json, RESPONSE_TYPE);
+    }
+
+    @Benchmark
+    public Map<?, ?> deserializeMap() throws Exception {
+        return objectMapper.readValue(json, Map.class);
+    }
+}
@@ -0,0 +1,83 @@
+package com.zhaoxin.tools.demo.benchmark;
+
+import ch.qos.logback.classic.Level;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zhaoxin.tools.demo.model.TaskFileMapping;
+import com.zhaoxin.tools.demo.service.ZhaoxinApiClient;
+import com.zhaoxin.tools.demo.upstream.FakeZhaoxinServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 基准公共方法
+ */
+final class BenchmarkSupport {
+
+    private BenchmarkSupport() {
+    }
+
+    /**
+     * 基准进程不经过 Spring Boot 的日志初始化，logback 默认输出 DEBUG，这里统一调到 WARN
+     */
+    static void quietLogging() {
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+    }
+
+    /**
+     * 指向模拟服务的 ZhaoxinApiClient，RestTemplate 与生产一样使用 JDK HttpURLConnection
+     */
+    static ZhaoxinApiClient apiClient(FakeZhaoxinServer upstream) {
+        SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
+        factory.setBufferRequestBody(false);
+        ZhaoxinApiClient client = new ZhaoxinApiClient(new RestTemplate(factory));
+        ReflectionTestUtils.setField(client, "baseUrl", upstream.baseUrl());
+        return client;
+    }
+
+    /**
+     * 在工作目录写入 task-mappings.json，TaskFileMappingService 启动时加载
+     */
+    static void writeMappings(int count) throws IOException {
+        List<TaskFileMapping> mappings = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            mappings.add(new TaskFileMapping(taskId(i), "旧版合同-" + i + ".pdf", "新版合同-" + i + ".pdf",
+                    System.currentTimeMillis()));
+        }
+        Path file = Paths.get("task-mappings.json");
+        new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(file.toFile(), mappings);
+    }
+
+    static void deleteMappings() throws IOException {
+        Files.deleteIfExists(Paths.get("task-mappings.json"));
+    }
+
+    static String taskId(int index) {
+        return "compare-bench-" + index;
+    }
+
+    /**
+     * 肇新比对任务列表中的一项（文件名为肇新保存的 UUID 文件名）
+     */
+    static Map<String, Object> compareTask(int index) {
+        Map<String, Object> task = new LinkedHashMap<>();
+        task.put("taskId", taskId(index));
+        task.put("status", "COMPLETED");
+        task.put("progress", 100);
+        task.put("oldFileName", "3f2b9c1e-" + index + ".pdf");
+        task.put("newFileName", "8d7a4e20-" + index + ".pdf");
+        task.put("createTime", 1_700_000_000_000L + index);
+        return task;
+    }
+}
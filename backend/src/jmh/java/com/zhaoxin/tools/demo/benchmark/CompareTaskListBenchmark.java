@@ -0,0 +1,91 @@
+package com.zhaoxin.tools.demo.benchmark;
+
+import com.zhaoxin.tools.demo.service.TaskFileMappingService;
+import com.zhaoxin.tools.demo.service.TaskReadModelService;
+import com.zhaoxin.tools.demo.service.ZhaoxinApiClient;
+import com.zhaoxin.tools.demo.upstream.FakeZhaoxinServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 比对任务列表（CompareController.getAllTasks）
+ *
+ * 1. rewriteFileNames：未启用读模型时的路径，逐个任务查映射并替换为原始文件名（与 replaceFileNamesInTasks 相同）
+ * 2. readModelList：启用读模型时的路径，从本地读模型返回排好序的列表
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompareTaskListBenchmark {
+
+    @Param({"10000"})
+    public int tasks;
+
+    private TaskFileMappingService mappingService;
+    private TaskReadModelService readModel;
+    private FakeZhaoxinServer upstream;
+    private List<Map<String, Object>> upstreamTasks;
+
+    @Setup
+    public void setUp() throws Exception {
+        BenchmarkSupport.quietLogging();
+        BenchmarkSupport.writeMappings(tasks);
+        mappingService = new TaskFileMappingService(new SimpleMeterRegistry());
+
+        upstreamTasks = new ArrayList<>(tasks);
+        for (int i = 0; i < tasks; i++) {
+            upstreamTasks.add(BenchmarkSupport.compareTask(i));
+        }
+
+        // 抽取与比对各一半
+        upstream = FakeZhaoxinServer.builder().initialTasks(tasks * 2).start();
+        ZhaoxinApiClient apiClient = BenchmarkSupport.apiClient(upstream);
+        String storePath = Files.createTempDirectory("bench-read-model").resolve("tasks.json").toString();
+        readModel = new TaskReadModelService(apiClient, mappingService, true, TimeUnit.HOURS.toMillis(1), storePath);
+        readModel.init();
+        readModel.list(TaskReadModelService.TYPE_COMPARE).join();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        readModel.shutdown();
+        upstream.close();
+        BenchmarkSupport.deleteMappings();
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> rewriteFileNames() {
+        for (Map<String, Object> task : upstreamTasks) {
+            String taskId = (String) task.get("taskId");
+            if (taskId != null) {
+                mappingService.applyFileNames(task, taskId);
+            }
+        }
+        return upstreamTasks;
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> readModelList() {
+        return readModel.list(TaskReadModelService.TYPE_COMPARE).join();
+    }
+}
@@ -0,0 +1,65 @@
+package com.zhaoxin.tools.demo.benchmark;
+
+import com.zhaoxin.tools.demo.service.ZhaoxinApiClient;
+import com.zhaoxin.tools.demo.upstream.FakeZhaoxinServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 合同文件下载：整体读入 byte[] 与流式写出
+ *
+ * 对比 ZhaoxinApiClient.downloadComposeFile(fileId) 与 downloadComposeFile(fileId, out)，
+ * 配合 -prof gc 查看每次下载的分配量（gc.alloc.rate.norm）。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DownloadBenchmark {
+
+    /**
+     * 文件大小（字节）
+     */
+    @Param({"1048576", "16777216"})
+    public int fileSize;
+
+    private FakeZhaoxinServer upstream;
+    private ZhaoxinApiClient apiClient;
+
+    @Setup
+    public void setUp() {
+        BenchmarkSupport.quietLogging();
+        upstream = FakeZhaoxinServer.builder().downloadBytes(fileSize).start();
+        apiClient = BenchmarkSupport.apiClient(upstream);
+    }
+
+    @TearDown
+    public void tearDown() {
+        upstream.close();
+    }
+
+    @Benchmark
+    public byte[] byteArray() {
+        return apiClient.downloadComposeFile("bench-file");
+    }
+
+    @Benchmark
+    public long streaming() {
+        return apiClient.downloadComposeFile("bench-file", OutputStream.nullOutputStream());
+    }
+}
@@ -0,0 +1,142 @@
+package com.zhaoxin.tools.demo.benchmark;
+
+import com.zhaoxin.tools.demo.service.ZhaoxinApiClient;
+import com.zhaoxin.tools.demo.upstream.FakeZhaoxinServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.FormHttpMessageConverter;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 抽取任务提交（ZhaoxinApiClient.submitExtractTask）的 multipart 构造
+ *
+ * 1. submitViaClient：完整路径，上传文件先落临时文件，再以 FileSystemResource 构造 multipart 发往模拟服务
+ * 2. encodeTempFile / encodeInMemory：只编码 multipart 请求体（写入丢弃输出），比较临时文件与直接使用内存内容
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExtractSubmitBenchmark {
+
+    /**
+     * 上传文件大小（字节）
+     */
+    @Param({"1048576", "20971520"})
+    public int fileSize;
+
+    private FakeZhaoxinServer upstream;
+    private ZhaoxinApiClient apiClient;
+    private MockMultipartFile upload;
+    private final FormHttpMessageConverter converter = new FormHttpMessageConverter();
+
+    @Setup
+    public void setUp() {
+        BenchmarkSupport.quietLogging();
+        upstream = FakeZhaoxinServer.builder().start();
+        apiClient = BenchmarkSupport.apiClient(upstream);
+        byte[] content = new byte[fileSize];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) i;
+        }
+        upload = new MockMultipartFile("file", "contract.pdf", "application/pdf", content);
+    }
+
+    @TearDown
+    public void tearDown() {
+        upstream.close();
+    }
+
+    @Benchmark
+    public Map<String, Object> submitViaClient() {
+        return apiClient.submitExtractTask(upload, "extract-template-1");
+    }
+
+    @Benchmark
+    public long encodeTempFile() throws IOException {
+        File tempFile = File.createTempFile("upload-", upload.getOriginalFilename());
+        try {
+            try (FileOutputStream fos = new FileOutputStream(tempFile)) {
+                fos.write(upload.getBytes());
+            }
+            return encode(new FileSystemResource(tempFile));
+        } finally {
+            tempFile.delete();
+        }
+    }
+
+    @Benchmark
+    public long encodeInMemory() throws IOException {
+        return encode(new ByteArrayResource(upload.getBytes()) {
+            @Override
+            public String getFilename() {
+                return upload.getOriginalFilename();
+            }
+        });
+    }
+
+    private long encode(Object file) throws IOException {
+        MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
+        body.add("file", file);
+        body.add("templateId", "extract-template-1");
+        body.add("ignoreHeaderFooter", "true");
+        DiscardingOutputMessage message = new DiscardingOutputMessage();
+        converter.write(body, MediaType.MULTIPART_FORM_DATA, message);
+        return message.bytes;
+    }
+
+    /**
+     * 只计数、不保存的输出
+     */
+    private static class DiscardingOutputMessage implements HttpOutputMessage {
+
+        private final HttpHeaders headers = new HttpHeaders();
+        private long bytes;
+
+        @Override
+        public OutputStream getBody() {
+            return new OutputStream() {
+                @Override
+                public void write(int b) {
+                    bytes++;
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) {
+                    bytes += len;
+                }
+            };
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.zhaoxin.tools.demo.benchmark;
+
+import com.zhaoxin.tools.demo.service.TaskFileMappingService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 任务文件名映射保存（TaskFileMappingService.saveMapping）
+ *
+ * 每次保存都会重写整个映射文件，且写文件互斥；8 个线程同时提交比对任务时比较单线程与并发下的耗时。
+ * 任务ID在已有映射范围内循环，映射数保持为 mappings。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TaskMappingSaveBenchmark {
+
+    @Param({"100", "5000"})
+    public int mappings;
+
+    private TaskFileMappingService mappingService;
+    private final AtomicInteger counter = new AtomicInteger();
+
+    @Setup
+    public void setUp() throws Exception {
+        BenchmarkSupport.quietLogging();
+        BenchmarkSupport.writeMappings(mappings);
+        mappingService = new TaskFileMappingService(new SimpleMeterRegistry());
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        BenchmarkSupport.deleteMappings();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void saveSingleThread() {
+        save();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void saveContended() {
+        save();
+    }
+
+    private void save() {
+        int index = Math.floorMod(counter.getAndIncrement(), mappings);
+        mappingService.saveMapping(BenchmarkSupport.taskId(index), "旧版合同.pdf", "新版合同.pdf");
+    }
+}
@@ -0,0 +1,181 @@
+package com.zhaoxin.tools.demo.benchmark;
+
+import com.zhaoxin.tools.demo.DemoApplication;
+import com.zhaoxin.tools.demo.config.VirtualThreads;
+import com.zhaoxin.tools.demo.upstream.FakeZhaoxinServer;
+import com.zhaoxin.tools.demo.upstream.Latency;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 平台线程 / 虚拟线程模式对比
+ *
+ * 肇新模拟服务按固定延迟响应，后端分别以平台线程（Tomcat 200 线程）和虚拟线程模式启动，
+ * 每次操作以 concurrency 个在途请求发出 requests 个抽取任务状态查询，得分为一批请求的耗时；
+ * 附加计数器 requests / failures 为每次迭代完成与失败（非 200，含并发隔离拒绝）的请求数。
+ * 虚拟线程模式需要 JDK 21 及以上，低版本 JDK 运行时加 -Djmh.args="ThreadMode -p mode=platform"。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ThreadModeBenchmark {
+
+    @Param({"platform", "virtual"})
+    public String mode;
+
+    /**
+     * 同时在途的请求数
+     */
+    @Param({"2000"})
+    public int concurrency;
+
+    /**
+     * 每次操作发出的请求数
+     */
+    @Param({"5000"})
+    public int requests;
+
+    /**
+     * 肇新响应延迟（毫秒）
+     */
+    @Param({"200"})
+    public int upstreamDelay;
+
+    private FakeZhaoxinServer upstream;
+    private ConfigurableApplicationContext context;
+    private ExecutorService clientExecutor;
+    private HttpClient client;
+    private String url;
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * 每次迭代完成与失败的请求数
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters {
+        public long requests;
+        public long failures;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            requests = 0;
+            failures = 0;
+        }
+    }
+
+    @Setup
+    public void setUp() throws IOException {
+        BenchmarkSupport.quietLogging();
+        if ("virtual".equals(mode) && !VirtualThreads.isSupported()) {
+            throw new IllegalStateException("当前 JDK 不支持虚拟线程（需要 JDK 21 及以上），请加 -p mode=platform");
+        }
+        upstream = FakeZhaoxinServer.builder()
+                .defaultLatency(Latency.fixed(upstreamDelay))
+                .handlerThreads(concurrency)
+                .start();
+
+        Map<String, String> properties = new HashMap<>();
+        if ("virtual".equals(mode)) {
+            properties.put("zhaoxin.virtual-threads.enabled", "true");
+            properties.put("zhaoxin.virtual-threads.max-concurrent-requests", String.valueOf(concurrency));
+        } else {
+            properties.put("server.tomcat.threads.max", "200");
+        }
+        properties.put("server.port", "0");
+        properties.put("zhaoxin.api.base-url", upstream.baseUrl());
+        properties.put("zhaoxin.warmup.enabled", "false");
+        properties.put("file.upload.path", Files.createTempDirectory("bench-uploads").toString());
+        properties.put("zhaoxin.compose.file-cache.path", Files.createTempDirectory("bench-cache").toString());
+        properties.put("logging.level.root", "WARN");
+        properties.put("logging.level.com.zhaoxin.tools.demo", "WARN");
+
+        // 以命令行参数传入，优先级高于 application.yml
+        String[] args = properties.entrySet().stream()
+                .map(e -> "--" + e.getKey() + "=" + e.getValue())
+                .toArray(String[]::new);
+        context = new SpringApplicationBuilder(DemoApplication.class).run(args);
+        url = "http://127.0.0.1:" + context.getEnvironment().getProperty("local.server.port")
+                + "/api/rule-extract/extract/status/";
+
+        clientExecutor = Executors.newFixedThreadPool(8);
+        client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .executor(clientExecutor)
+                .build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (context != null) {
+            context.close();
+        }
+        if (clientExecutor != null) {
+            clientExecutor.shutdownNow();
+        }
+        if (upstream != null) {
+            upstream.close();
+        }
+    }
+
+    @Benchmark
+    public int statusBurst(Counters counters) throws InterruptedException {
+        Semaphore inFlight = new Semaphore(concurrency);
+        AtomicInteger failures = new AtomicInteger();
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[requests];
+        for (int i = 0; i < requests; i++) {
+            inFlight.acquire();
+            // 每个请求使用新的任务ID，避免命中后端的状态缓存
+            HttpRequest request = HttpRequest.newBuilder(URI.create(url + "bench-" + sequence.incrementAndGet()))
+                    .timeout(Duration.ofMinutes(2))
+                    .GET()
+                    .build();
+            futures[i] = client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> {
+                        if (error != null || response.statusCode() != 200) {
+                            failures.incrementAndGet();
+                        }
+                        inFlight.release();
+                    });
+        }
+        CompletableFuture.allOf(futures).exceptionally(e -> null).join();
+        counters.requests += requests;
+        counters.failures += failures.get();
+        return failures.get();
+    }
+}
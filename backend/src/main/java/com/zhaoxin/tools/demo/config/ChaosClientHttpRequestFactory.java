@@ -0,0 +1,250 @@
+package com.zhaoxin.tools.demo.config;
+
+import com.zhaoxin.tools.demo.service.UpstreamChaos;
+import com.zhaoxin.tools.demo.service.UpstreamTimeoutPolicy;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 故障注入请求工厂
+ *
+ * 按 {@link UpstreamChaos} 的规则包装底层请求。放在请求工厂而不是拦截器中，是因为拦截器链只执行一次，
+ * 重试与对冲请求都直接由工厂创建；这样每次实际发出的请求都会独立抽取故障，熔断、重试与对冲看到的与真实上游异常一致。
+ * 未开启或没有匹配的规则时直接使用底层请求。
+ */
+public class ChaosClientHttpRequestFactory implements ClientHttpRequestFactory {
+
+    private final ClientHttpRequestFactory delegate;
+    private final UpstreamChaos chaos;
+    private final UpstreamTimeoutPolicy timeoutPolicy;
+
+    public ChaosClientHttpRequestFactory(ClientHttpRequestFactory delegate, UpstreamChaos chaos,
+                                         UpstreamTimeoutPolicy timeoutPolicy) {
+        this.delegate = delegate;
+        this.chaos = chaos;
+        this.timeoutPolicy = timeoutPolicy;
+    }
+
+    @Override
+    public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) throws IOException {
+        UpstreamChaos.Plan plan = chaos.plan(httpMethod.name(), uri.getPath());
+        ClientHttpRequest request = delegate.createRequest(uri, httpMethod);
+        return plan != null ? new ChaosRequest(request, plan) : request;
+    }
+
+    private static void sleep(long millis) throws InterruptedIOException {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("故障注入等待被中断");
+        }
+    }
+
+    private class ChaosRequest implements ClientHttpRequest {
+
+        private final ClientHttpRequest delegate;
+        private final UpstreamChaos.Plan plan;
+
+        ChaosRequest(ClientHttpRequest delegate, UpstreamChaos.Plan plan) {
+            this.delegate = delegate;
+            this.plan = plan;
+        }
+
+        @Override
+        public String getMethodValue() {
+            return delegate.getMethodValue();
+        }
+
+        @Override
+        public URI getURI() {
+            return delegate.getURI();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return delegate.getHeaders();
+        }
+
+        @Override
+        public OutputStream getBody() throws IOException {
+            return delegate.getBody();
+        }
+
+        @Override
+        public ClientHttpResponse execute() throws IOException {
+            if (plan.getLatencyMillis() > 0) {
+                chaos.recordInjected("latency");
+                sleep(plan.getLatencyMillis());
+            }
+            switch (plan.getFault()) {
+                case RESET:
+                    chaos.recordInjected("reset");
+                    throw new SocketException("Connection reset (chaos)");
+                case TIMEOUT:
+                    chaos.recordInjected("timeout");
+                    sleep(timeoutPolicy.timeoutFor(getMethodValue(), getURI().getPath()));
+                    throw new SocketTimeoutException("Read timed out (chaos)");
+                case ERROR:
+                    chaos.recordInjected("error");
+                    return new ErrorResponse(plan.getErrorStatus());
+                default:
+                    break;
+            }
+            ClientHttpResponse response = delegate.execute();
+            if (plan.getDripBytesPerSecond() > 0) {
+                chaos.recordInjected("drip");
+                return new DripResponse(response, plan.getDripBytesPerSecond());
+            }
+            return response;
+        }
+    }
+
+    /**
+     * 注入的 5xx 响应（不访问肇新）
+     */
+    private static class ErrorResponse implements ClientHttpResponse {
+
+        private final int status;
+        private final HttpHeaders headers = new HttpHeaders();
+        private final byte[] body;
+
+        ErrorResponse(int status) {
+            this.status = status;
+            this.body = ("{\"code\":" + status + ",\"message\":\"chaos: injected " + status + "\"}")
+                    .getBytes(StandardCharsets.UTF_8);
+            headers.setContentType(MediaType.APPLICATION_JSON);
+            headers.setContentLength(body.length);
+        }
+
+        @Override
+        public HttpStatus getStatusCode() {
+            return HttpStatus.valueOf(status);
+        }
+
+        @Override
+        public int getRawStatusCode() {
+            return status;
+        }
+
+        @Override
+        public String getStatusText() {
+            HttpStatus resolved = HttpStatus.resolve(status);
+            return resolved != null ? resolved.getReasonPhrase() : "";
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+
+        @Override
+        public InputStream getBody() {
+            return new ByteArrayInputStream(body);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * 响应体按固定速率慢速返回
+     */
+    private static class DripResponse implements ClientHttpResponse {
+
+        private final ClientHttpResponse delegate;
+        private final int bytesPerSecond;
+        private InputStream body;
+
+        DripResponse(ClientHttpResponse delegate, int bytesPerSecond) {
+            this.delegate = delegate;
+            this.bytesPerSecond = bytesPerSecond;
+        }
+
+        @Override
+        public HttpStatus getStatusCode() throws IOException {
+            return delegate.getStatusCode();
+        }
+
+        @Override
+        public int getRawStatusCode() throws IOException {
+            return delegate.getRawStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return delegate.getStatusText();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return delegate.getHeaders();
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            if (body == null) {
+                body = new DripBody(delegate.getBody(), bytesPerSecond);
+            }
+            return body;
+        }
+
+        @Override
+        public void close() {
+            delegate.close();
+        }
+    }
+
+    /**
+     * 每次最多读出 1/10 秒的字节数，读完后等待相应时间
+     */
+    private static class DripBody extends FilterInputStream {
+
+        private final int bytesPerSecond;
+        private final int chunk;
+
+        DripBody(InputStream in, int bytesPerSecond) {
+            super(in);
+            this.bytesPerSecond = bytesPerSecond;
+            this.chunk = Math.max(1, bytesPerSecond / 10);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                sleep(1000L / bytesPerSecond);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int off, int len) throws IOException {
+            int n = super.read(buffer, off, Math.min(len, chunk));
+            if (n > 0) {
+                sleep(n * 1000L / bytesPerSecond);
+            }
+            return n;
+        }
+    }
+}
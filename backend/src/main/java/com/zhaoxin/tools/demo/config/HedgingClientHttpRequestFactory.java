@@ -0,0 +1,177 @@
+package com.zhaoxin.tools.demo.config;
+
+import com.zhaoxin.tools.demo.service.UpstreamRetryPolicy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.AbstractClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 对冲请求工厂
+ *
+ * GET 请求在该超时等级最近的 p95 延迟内未收到响应头时，再发出一个相同请求，取先返回者，
+ * 后返回的响应直接关闭。未开启对冲、样本不足或对冲线程已满时与底层工厂行为一致。
+ */
+@Slf4j
+public class HedgingClientHttpRequestFactory implements ClientHttpRequestFactory {
+
+    private final ClientHttpRequestFactory delegate;
+    private final UpstreamRetryPolicy retryPolicy;
+
+    public HedgingClientHttpRequestFactory(ClientHttpRequestFactory delegate, UpstreamRetryPolicy retryPolicy) {
+        this.delegate = delegate;
+        this.retryPolicy = retryPolicy;
+    }
+
+    @Override
+    public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) throws IOException {
+        long delay = retryPolicy.hedgeDelayMillis(httpMethod.name(), uri.getPath());
+        if (delay < 0) {
+            return delegate.createRequest(uri, httpMethod);
+        }
+        return new HedgedRequest(uri, httpMethod, delay);
+    }
+
+    private class HedgedRequest extends AbstractClientHttpRequest {
+
+        private final URI uri;
+        private final HttpMethod method;
+        private final long delayMillis;
+
+        HedgedRequest(URI uri, HttpMethod method, long delayMillis) {
+            this.uri = uri;
+            this.method = method;
+            this.delayMillis = delayMillis;
+        }
+
+        @Override
+        public String getMethodValue() {
+            return method.name();
+        }
+
+        @Override
+        public URI getURI() {
+            return uri;
+        }
+
+        @Override
+        protected OutputStream getBodyInternal(HttpHeaders headers) {
+            // GET 无请求体
+            return new ByteArrayOutputStream(0);
+        }
+
+        @Override
+        protected ClientHttpResponse executeInternal(HttpHeaders headers) throws IOException {
+            CompletableFuture<ClientHttpResponse> primary;
+            try {
+                primary = CompletableFuture.supplyAsync(() -> send(headers), retryPolicy.getHedgeExecutor());
+            } catch (RejectedExecutionException e) {
+                return sendOrThrow(headers);
+            }
+            try {
+                return primary.get(delayMillis, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                // 主请求超过对冲延迟仍未返回
+            } catch (InterruptedException e) {
+                closeWhenDone(primary);
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("等待肇新响应被中断");
+            } catch (ExecutionException e) {
+                throw rethrow(e.getCause());
+            }
+
+            if (!retryPolicy.tryHedge()) {
+                return await(primary);
+            }
+            CompletableFuture<ClientHttpResponse> hedge;
+            try {
+                hedge = CompletableFuture.supplyAsync(() -> send(headers), retryPolicy.getHedgeExecutor());
+            } catch (RejectedExecutionException e) {
+                return await(primary);
+            }
+            log.debug("肇新请求超过 {}ms 未返回，发出对冲请求: {}", delayMillis, uri);
+
+            CompletableFuture<ClientHttpResponse> winner = new CompletableFuture<>();
+            AtomicInteger failures = new AtomicInteger();
+            primary.whenComplete((response, error) -> settle(winner, failures, response, error, false));
+            hedge.whenComplete((response, error) -> settle(winner, failures, response, error, true));
+            return await(winner);
+        }
+
+        private void settle(CompletableFuture<ClientHttpResponse> winner, AtomicInteger failures,
+                            ClientHttpResponse response, Throwable error, boolean fromHedge) {
+            if (error != null) {
+                if (failures.incrementAndGet() == 2) {
+                    winner.completeExceptionally(error);
+                }
+                return;
+            }
+            if (winner.complete(response)) {
+                if (fromHedge) {
+                    retryPolicy.recordHedgeWin();
+                }
+            } else {
+                response.close();
+            }
+        }
+
+        private ClientHttpResponse send(HttpHeaders headers) {
+            try {
+                return sendOrThrow(headers);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private ClientHttpResponse sendOrThrow(HttpHeaders headers) throws IOException {
+            ClientHttpRequest request = delegate.createRequest(uri, method);
+            request.getHeaders().putAll(headers);
+            return request.execute();
+        }
+
+        private ClientHttpResponse await(CompletableFuture<ClientHttpResponse> future) throws IOException {
+            try {
+                return future.get();
+            } catch (InterruptedException e) {
+                closeWhenDone(future);
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("等待肇新响应被中断");
+            } catch (ExecutionException e) {
+                throw rethrow(e.getCause());
+            }
+        }
+
+        private void closeWhenDone(CompletableFuture<ClientHttpResponse> future) {
+            future.thenAccept(ClientHttpResponse::close);
+        }
+
+        private IOException rethrow(Throwable cause) {
+            if (cause instanceof UncheckedIOException) {
+                return ((UncheckedIOException) cause).getCause();
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            return new IOException(cause);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.zhaoxin.tools.demo.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 接口请求指标过滤器
+ *
+ * 补充 Spring Boot 自带的 http.server.requests 计时：
+ * 1. zhaoxin.http.server.in-flight：正在处理的请求数，异步请求在异步处理结束后才减少
+ * 2. zhaoxin.http.server.upload.bytes：上传请求体字节数（multipart 与二进制请求）
+ * 3. zhaoxin.http.server.download.bytes：响应体字节数，包括 Tomcat sendfile 输出的文件
+ * 字节数按接口模板（uri）打标签。
+ */
+public class HttpMetricsFilter extends OncePerRequestFilter {
+
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private final MeterRegistry registry;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    public HttpMetricsFilter(MeterRegistry registry) {
+        this.registry = registry;
+        Gauge.builder("zhaoxin.http.server.in-flight", inFlight, AtomicInteger::get)
+                .description("正在处理的请求数")
+                .register(registry);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain chain) throws ServletException, IOException {
+        inFlight.incrementAndGet();
+        CountingResponse counting = new CountingResponse(response);
+        AtomicBoolean finished = new AtomicBoolean();
+        Runnable finish = () -> {
+            if (finished.compareAndSet(false, true)) {
+                inFlight.decrementAndGet();
+                recordBytes(request, counting);
+            }
+        };
+        try {
+            chain.doFilter(request, counting);
+        } finally {
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new AsyncListener() {
+                    @Override
+                    public void onComplete(AsyncEvent event) {
+                        finish.run();
+                    }
+
+                    @Override
+                    public void onTimeout(AsyncEvent event) {
+                        finish.run();
+                    }
+
+                    @Override
+                    public void onError(AsyncEvent event) {
+                        finish.run();
+                    }
+
+                    @Override
+                    public void onStartAsync(AsyncEvent event) {
+                    }
+                });
+            } else {
+                finish.run();
+            }
+        }
+    }
+
+    private void recordBytes(HttpServletRequest request, CountingResponse response) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String uri = pattern != null ? pattern.toString() : "UNKNOWN";
+
+        String contentType = request.getContentType();
+        long uploaded = request.getContentLengthLong();
+        if (uploaded > 0 && contentType != null
+                && (contentType.startsWith("multipart/") || contentType.startsWith("application/octet-stream"))) {
+            counter("zhaoxin.http.server.upload.bytes", "上传请求体字节数", uri).increment(uploaded);
+        }
+
+        long downloaded = response.getBytesWritten();
+        if (request.getAttribute(SENDFILE_FILENAME) != null) {
+            Object start = request.getAttribute(SENDFILE_START);
+            Object end = request.getAttribute(SENDFILE_END);
+            if (start instanceof Long && end instanceof Long) {
+                downloaded += (Long) end - (Long) start;
+            }
+        }
+        if (downloaded > 0) {
+            counter("zhaoxin.http.server.download.bytes", "响应体字节数", uri).increment(downloaded);
+        }
+    }
+
+    private Counter counter(String name, String description, String uri) {
+        return Counter.builder(name)
+                .description(description)
+                .baseUnit("bytes")
+                .tag("uri", uri)
+                .register(registry);
+    }
+
+    /**
+     * 统计通过 getOutputStream 写出的字节数
+     */
+    private static class CountingResponse extends HttpServletResponseWrapper {
+
+        private ServletOutputStream outputStream;
+        private volatile long bytesWritten;
+
+        CountingResponse(HttpServletResponse response) {
+            super(response);
+        }
+
+        long getBytesWritten() {
+            return bytesWritten;
+        }
+
+        @Override
+        public synchronized ServletOutputStream getOutputStream() throws IOException {
+            if (outputStream == null) {
+                ServletOutputStream delegate = super.getOutputStream();
+                outputStream = new ServletOutputStream() {
+                    @Override
+                    public void write(int b) throws IOException {
+                        delegate.write(b);
+                        bytesWritten++;
+                    }
+
+                    @Override
+                    public void write(byte[] b, int off, int len) throws IOException {
+                        delegate.write(b, off, len);
+                        bytesWritten += len;
+                    }
+
+                    @Override
+                    public void flush() throws IOException {
+                        delegate.flush();
+                    }
+
+                    @Override
+                    public void close() throws IOException {
+                        delegate.close();
+                    }
+
+                    @Override
+                    public boolean isReady() {
+                        return delegate.isReady();
+                    }
+
+                    @Override
+                    public void setWriteListener(WriteListener listener) {
+                        delegate.setWriteListener(listener);
+                    }
+                };
+            }
+            return outputStream;
+        }
+    }
+}
@@ -1,13 +1,14 @@
 package com.zhaoxin.tools.demo.config;
 
+import com.zhaoxin.tools.demo.service.LogSampler;
+import com.zhaoxin.tools.demo.service.UpstreamMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.client.ClientHttpRequestInterceptor;
-import org.springframework.web.client.RestTemplate;
-
-import java.util.List;
 
 /**
  * 日志配置类
@@ -19,25 +20,28 @@ public class LoggingConfig {
     private static final Logger log = LoggerFactory.getLogger(LoggingConfig.class);
     
     /**
-     * 配置RestTemplate，添加日志拦截器
+     * RestTemplate 日志拦截器（由 RestTemplateConfig 统一装配）
+     * 请求与响应合并为一行；GET 请求（状态轮询、页面图片等）按接口模板采样，其余请求与失败全部记录
      */
     @Bean
-    public RestTemplate restTemplate() {
-        RestTemplate restTemplate = new RestTemplate();
-        
-        // 添加请求拦截器，控制日志输出
-        List<ClientHttpRequestInterceptor> interceptors = restTemplate.getInterceptors();
-        interceptors.add((request, body, execution) -> {
+    @Order(100)
+    public ClientHttpRequestInterceptor loggingInterceptor(LogSampler logSampler) {
+        return (request, body, execution) -> {
+            long start = System.nanoTime();
             try {
-                // 记录请求信息（简化）
-                log.info("HTTP请求: {} {}", request.getMethod(), request.getURI());
-                
                 // 执行请求
                 var response = execution.execute(request, body);
                 
-                // 记录响应状态（简化）
-                log.info("HTTP响应: {} - {}", response.getStatusCode().value(), 
-                        response.getStatusCode().getReasonPhrase());
+                // 记录请求与响应状态（简化）
+                long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+                if (request.getMethod() == HttpMethod.GET) {
+                    logSampler.info(log, "upstream " + UpstreamMetrics.template(request.getURI().getPath()),
+                            "HTTP请求: {} {} -> {} {} ({}ms)", request.getMethod(), request.getURI(),
+                            response.getRawStatusCode(), response.getStatusText(), elapsedMs);
+                } else {
+                    log.info("HTTP请求: {} {} -> {} {} ({}ms)", request.getMethod(), request.getURI(),
+                            response.getRawStatusCode(), response.getStatusText(), elapsedMs);
+                }
                 
                 return response;
                 
@@ -56,8 +60,6 @@ public class LoggingConfig {
                 }
                 throw e;
             }
-        });
-        
-        return restTemplate;
+        };
     }
 }
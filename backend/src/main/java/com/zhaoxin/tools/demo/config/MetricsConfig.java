@@ -0,0 +1,32 @@
+package com.zhaoxin.tools.demo.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+/**
+ * 指标配置
+ *
+ * 指标通过 /actuator/prometheus 暴露：
+ * 1. http.server.requests：接口耗时（Spring Boot 自带，按接口模板、状态码与结果打标签）
+ * 2. zhaoxin.upstream.requests：肇新调用耗时，见 {@link UpstreamMetricsInterceptor}
+ * 3. zhaoxin.http.server.*：在途请求数与上传/下载字节数，见 {@link HttpMetricsFilter}
+ * 4. zhaoxin.task-mapping.persist：任务文件名映射持久化耗时
+ */
+@Configuration
+public class MetricsConfig {
+
+    /**
+     * 接口请求指标，排在并发限制之前，被限流拒绝的请求同样计入
+     */
+    @Bean
+    public FilterRegistrationBean<HttpMetricsFilter> httpMetricsFilter(MeterRegistry registry) {
+        FilterRegistrationBean<HttpMetricsFilter> registration = new FilterRegistrationBean<>(
+                new HttpMetricsFilter(registry));
+        registration.addUrlPatterns("/api/*");
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 5);
+        return registration;
+    }
+}
@@ -1,32 +1,56 @@
 package com.zhaoxin.tools.demo.config;
 
+import com.zhaoxin.tools.demo.service.UpstreamChaos;
+import com.zhaoxin.tools.demo.service.UpstreamRetryPolicy;
+import com.zhaoxin.tools.demo.service.UpstreamTimeoutPolicy;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
 import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
+import java.io.IOException;
+import java.net.HttpURLConnection;
+
 /**
  * RestTemplate 配置
+ *
+ * 读超时按 {@link UpstreamTimeoutPolicy} 的接口超时等级逐个请求设置，zhaoxin.api.timeout 仅作为未分级接口的超时。
+ * GET 请求可按 {@link UpstreamRetryPolicy} 对冲，见 {@link HedgingClientHttpRequestFactory}。
+ * 对冲之下是故障注入（{@link ChaosClientHttpRequestFactory}），未开启时不影响请求。
  */
 @Configuration
 public class RestTemplateConfig {
     
-    @Value("${zhaoxin.api.timeout:120000}")
-    private int timeout;
-    
     @Value("${zhaoxin.api.connect-timeout:10000}")
     private int connectTimeout;
     
+    /**
+     * 肇新调用使用的 RestTemplate，容器中所有 ClientHttpRequestInterceptor 按 @Order 顺序装配
+     */
     @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate(clientHttpRequestFactory());
+    public RestTemplate restTemplate(ObjectProvider<ClientHttpRequestInterceptor> interceptors,
+                                     UpstreamTimeoutPolicy timeoutPolicy,
+                                     UpstreamRetryPolicy retryPolicy,
+                                     UpstreamChaos chaos) {
+        ClientHttpRequestFactory requestFactory = new ChaosClientHttpRequestFactory(
+                clientHttpRequestFactory(timeoutPolicy), chaos, timeoutPolicy);
+        RestTemplate restTemplate = new RestTemplate(new HedgingClientHttpRequestFactory(requestFactory, retryPolicy));
+        interceptors.orderedStream().forEach(restTemplate.getInterceptors()::add);
+        return restTemplate;
     }
     
-    private ClientHttpRequestFactory clientHttpRequestFactory() {
-        SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
-        factory.setReadTimeout(timeout);
+    private ClientHttpRequestFactory clientHttpRequestFactory(UpstreamTimeoutPolicy timeoutPolicy) {
+        SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory() {
+            @Override
+            protected void prepareConnection(HttpURLConnection connection, String httpMethod) throws IOException {
+                super.prepareConnection(connection, httpMethod);
+                connection.setReadTimeout(timeoutPolicy.timeoutFor(httpMethod, connection.getURL().getPath()));
+            }
+        };
         factory.setConnectTimeout(connectTimeout);
         return factory;
     }
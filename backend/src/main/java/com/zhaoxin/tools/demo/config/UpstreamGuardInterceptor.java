@@ -0,0 +1,95 @@
+package com.zhaoxin.tools.demo.config;
+
+import com.zhaoxin.tools.demo.service.UpstreamCallPolicy;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 肇新调用保护拦截器
+ *
+ * 调用前按接口分组获取熔断与并发许可；响应状态确定后按 {@link UpstreamCallPolicy} 记录调用结果与延迟，
+ * 并发许可在响应关闭（响应体读取完毕）后才归还，流式下载同样计入并发。
+ */
+@Component
+@Order(200)
+public class UpstreamGuardInterceptor implements ClientHttpRequestInterceptor {
+
+    private final UpstreamCallPolicy callPolicy;
+
+    public UpstreamGuardInterceptor(UpstreamCallPolicy callPolicy) {
+        this.callPolicy = callPolicy;
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body,
+                                        ClientHttpRequestExecution execution) throws IOException {
+        UpstreamCallPolicy.Guarded guarded = callPolicy.guard(request.getMethodValue(), request.getURI());
+        ClientHttpResponse response;
+        try {
+            response = execution.execute(request, body);
+            guarded.record(response.getRawStatusCode());
+        } catch (IOException | RuntimeException e) {
+            guarded.record(null);
+            guarded.release();
+            throw e;
+        }
+        return new GuardedResponse(response, guarded);
+    }
+
+    /**
+     * 关闭时归还并发许可的响应包装
+     */
+    private static class GuardedResponse implements ClientHttpResponse {
+
+        private final ClientHttpResponse delegate;
+        private final UpstreamCallPolicy.Guarded guarded;
+
+        GuardedResponse(ClientHttpResponse delegate, UpstreamCallPolicy.Guarded guarded) {
+            this.delegate = delegate;
+            this.guarded = guarded;
+        }
+
+        @Override
+        public HttpStatus getStatusCode() throws IOException {
+            return delegate.getStatusCode();
+        }
+
+        @Override
+        public int getRawStatusCode() throws IOException {
+            return delegate.getRawStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return delegate.getStatusText();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return delegate.getHeaders();
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            return delegate.getBody();
+        }
+
+        @Override
+        public void close() {
+            try {
+                delegate.close();
+            } finally {
+                guarded.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.zhaoxin.tools.demo.config;
+
+import com.zhaoxin.tools.demo.jfr.UpstreamCallEvent;
+import com.zhaoxin.tools.demo.service.UpstreamCallPolicy;
+import com.zhaoxin.tools.demo.service.UpstreamMetrics;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * 肇新调用指标拦截器
+ *
+ * 位于日志拦截器之内、调用保护之外，一次逻辑调用（含熔断拒绝、重试与对冲）记录一次 {@link UpstreamMetrics}，
+ * 并提交一个 {@link UpstreamCallEvent}（开启 JFR 录制时）。
+ */
+@Component
+@Order(150)
+public class UpstreamMetricsInterceptor implements ClientHttpRequestInterceptor {
+
+    private final UpstreamCallPolicy callPolicy;
+
+    public UpstreamMetricsInterceptor(UpstreamCallPolicy callPolicy) {
+        this.callPolicy = callPolicy;
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body,
+                                        ClientHttpRequestExecution execution) throws IOException {
+        UpstreamCallPolicy.Call call = callPolicy.startCall(UpstreamMetrics.CLIENT_SYNC, request.getMethodValue(),
+                request.getURI(), body.length);
+        try {
+            ClientHttpResponse response = execution.execute(request, body);
+            call.finish(response.getRawStatusCode(), response.getHeaders().getContentLength(), null);
+            return response;
+        } catch (IOException | RuntimeException e) {
+            call.finish(null, -1, e);
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package com.zhaoxin.tools.demo.config;
+
+import com.zhaoxin.tools.demo.service.UpstreamRecorder;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 肇新调用录制/回放拦截器
+ *
+ * 位于调用保护（含延迟采集）之内、重试之外（拦截器链只能向下执行一次，重试之内的拦截器看不到重试请求），
+ * 按逻辑调用录制最终响应，耗时含重试；回放时不再调用下游，外层的日志、指标、熔断与延迟采集照常工作。
+ * 录制时响应体边读边复制，流式下载不会被整体缓存后才返回。
+ * 模式与归档文件见 {@link UpstreamRecorder}。
+ */
+@Component
+@Order(350)
+public class UpstreamRecordingInterceptor implements ClientHttpRequestInterceptor {
+
+    private final UpstreamRecorder recorder;
+
+    public UpstreamRecordingInterceptor(UpstreamRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body,
+                                        ClientHttpRequestExecution execution) throws IOException {
+        if (recorder.isReplaying()) {
+            return replay(request, body);
+        }
+        if (!recorder.isRecording()) {
+            return execution.execute(request, body);
+        }
+        long start = System.nanoTime();
+        ClientHttpResponse response = execution.execute(request, body);
+        return new RecordingResponse(response, request, body, start, System.nanoTime());
+    }
+
+    private ClientHttpResponse replay(HttpRequest request, byte[] body) throws IOException {
+        UpstreamRecorder.Exchange exchange = recorder.replay(request.getMethodValue(), request.getURI(), body);
+        if (exchange == null) {
+            throw new IOException("回放记录中没有匹配的请求: " + request.getMethodValue() + " " + request.getURI());
+        }
+        double speed = recorder.getReplaySpeed();
+        if (speed > 0) {
+            sleep((long) (exchange.getHeadersMillis() / speed));
+        }
+        return new ReplayResponse(exchange, speed);
+    }
+
+    private static void sleep(long millis) throws InterruptedIOException {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("回放等待被中断");
+        }
+    }
+
+    /**
+     * 录制中的响应：响应体读完或关闭时写入一条录制记录
+     */
+    private class RecordingResponse implements ClientHttpResponse {
+
+        private final ClientHttpResponse delegate;
+        private final HttpRequest request;
+        private final byte[] requestBody;
+        private final long start;
+        private final long headersAt;
+        private RecordingBody body;
+
+        RecordingResponse(ClientHttpResponse delegate, HttpRequest request, byte[] requestBody,
+                          long start, long headersAt) {
+            this.delegate = delegate;
+            this.request = request;
+            this.requestBody = requestBody;
+            this.start = start;
+            this.headersAt = headersAt;
+        }
+
+        @Override
+        public HttpStatus getStatusCode() throws IOException {
+            return delegate.getStatusCode();
+        }
+
+        @Override
+        public int getRawStatusCode() throws IOException {
+            return delegate.getRawStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return delegate.getStatusText();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return delegate.getHeaders();
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            if (body == null) {
+                body = new RecordingBody(delegate.getBody());
+            }
+            return body;
+        }
+
+        @Override
+        public void close() {
+            try {
+                // 调用方未读取或未读完响应体时补读剩余部分，保证记录完整
+                getBody().close();
+            } catch (IOException e) {
+                recorder.record(null);
+            } finally {
+                delegate.close();
+            }
+        }
+
+        /**
+         * 边读边复制的响应体，超过 max-body-bytes 后停止复制，该次调用不录制
+         */
+        private class RecordingBody extends InputStream {
+
+            private final InputStream in;
+            private ByteArrayOutputStream copy = new ByteArrayOutputStream();
+            private boolean finished;
+
+            RecordingBody(InputStream in) {
+                this.in = in;
+            }
+
+            @Override
+            public int read() throws IOException {
+                int b = in.read();
+                if (b < 0) {
+                    finish();
+                } else if (capture(1)) {
+                    copy.write(b);
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] buffer, int off, int len) throws IOException {
+                int n = in.read(buffer, off, len);
+                if (n < 0) {
+                    finish();
+                } else if (capture(n)) {
+                    copy.write(buffer, off, n);
+                }
+                return n;
+            }
+
+            @Override
+            public int available() throws IOException {
+                return in.available();
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (!finished && copy != null) {
+                    byte[] buffer = new byte[8192];
+                    while (copy != null && read(buffer, 0, buffer.length) >= 0) {
+                        // 读到末尾时 read 内部调用 finish
+                    }
+                }
+                finish();
+                in.close();
+            }
+
+            private boolean capture(int n) {
+                if (copy != null && copy.size() + n > recorder.getMaxBodyBytes()) {
+                    copy = null;
+                }
+                return copy != null;
+            }
+
+            private void finish() throws IOException {
+                if (finished) {
+                    return;
+                }
+                finished = true;
+                if (copy == null) {
+                    recorder.record(null);
+                    return;
+                }
+                long end = System.nanoTime();
+                recorder.record(new UpstreamRecorder.Exchange(request.getMethodValue(), request.getURI(),
+                        requestBody, delegate.getRawStatusCode(), delegate.getStatusText(), delegate.getHeaders(),
+                        TimeUnit.NANOSECONDS.toMillis(headersAt - start), TimeUnit.NANOSECONDS.toMillis(end - start),
+                        copy.toByteArray()));
+                copy = null;
+            }
+        }
+    }
+
+    /**
+     * 回放的响应：响应体按录制时的读取耗时匀速返回
+     */
+    private static class ReplayResponse implements ClientHttpResponse {
+
+        private final UpstreamRecorder.Exchange exchange;
+        private final double speed;
+
+        ReplayResponse(UpstreamRecorder.Exchange exchange, double speed) {
+            this.exchange = exchange;
+            this.speed = speed;
+        }
+
+        @Override
+        public HttpStatus getStatusCode() {
+            return HttpStatus.valueOf(exchange.getStatus());
+        }
+
+        @Override
+        public int getRawStatusCode() {
+            return exchange.getStatus();
+        }
+
+        @Override
+        public String getStatusText() {
+            return exchange.getStatusText();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return exchange.getHeaders();
+        }
+
+        @Override
+        public InputStream getBody() {
+            long bodyNanos = speed > 0 ? (long) (TimeUnit.MILLISECONDS.toNanos(exchange.getBodyMillis()) / speed) : 0;
+            return new PacedBody(exchange.getBody(), bodyNanos);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * 按比例放出字节的响应体：读到第 n 个字节时至少已过去 bodyNanos × n / length
+     */
+    private static class PacedBody extends InputStream {
+
+        private static final int CHUNK = 8192;
+
+        private final byte[] data;
+        private final long bodyNanos;
+        private int position;
+        private long start;
+
+        PacedBody(byte[] data, long bodyNanos) {
+            this.data = data;
+            this.bodyNanos = bodyNanos;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int off, int len) throws IOException {
+            if (position >= data.length) {
+                return -1;
+            }
+            if (len == 0) {
+                return 0;
+            }
+            if (start == 0) {
+                start = System.nanoTime();
+            }
+            int n = Math.min(Math.min(len, CHUNK), data.length - position);
+            System.arraycopy(data, position, buffer, off, n);
+            position += n;
+            if (bodyNanos > 0) {
+                long due = start + (long) ((double) bodyNanos * position / data.length);
+                sleep(TimeUnit.NANOSECONDS.toMillis(due - System.nanoTime()));
+            }
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return data.length - position;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.zhaoxin.tools.demo.config;
+
+import com.zhaoxin.tools.demo.service.UpstreamCallPolicy;
+import com.zhaoxin.tools.demo.service.UpstreamRetryPolicy;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+/**
+ * 肇新 GET 请求重试拦截器
+ *
+ * 位于拦截器链最内层：拦截器链只能向下执行一次，重试时由 RestTemplate 直接重新创建底层请求，
+ * 因此调用保护与延迟采集按整个逻辑调用（含重试）计一次。熔断打开、并发已满时请求根本不会到达这里。
+ * 重试只覆盖到收到响应头为止，流式下载读取响应体过程中的异常不重试。重试条件与退避见 {@link UpstreamCallPolicy}。
+ */
+@Component
+@Order(400)
+public class UpstreamRetryInterceptor implements ClientHttpRequestInterceptor {
+
+    private final UpstreamCallPolicy callPolicy;
+
+    public UpstreamRetryInterceptor(UpstreamCallPolicy callPolicy) {
+        this.callPolicy = callPolicy;
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body,
+                                        ClientHttpRequestExecution execution) throws IOException {
+        String method = request.getMethodValue();
+        if (!UpstreamRetryPolicy.isIdempotent(method)) {
+            return execution.execute(request, body);
+        }
+        callPolicy.recordRequest(method);
+        for (int attempt = 1; ; attempt++) {
+            ClientHttpResponse response;
+            try {
+                response = execution.execute(request, body);
+            } catch (IOException e) {
+                if (e instanceof InterruptedIOException && Thread.currentThread().isInterrupted()
+                        || !callPolicy.shouldRetry(method, request.getURI(), attempt, null, e)) {
+                    throw e;
+                }
+                backoff(attempt);
+                continue;
+            }
+            if (!callPolicy.shouldRetry(method, request.getURI(), attempt, response.getRawStatusCode(), null)) {
+                return response;
+            }
+            response.close();
+            backoff(attempt);
+        }
+    }
+
+    private void backoff(int attempt) throws InterruptedIOException {
+        try {
+            Thread.sleep(callPolicy.backoffMillis(attempt));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("重试等待被中断");
+        }
+    }
+}
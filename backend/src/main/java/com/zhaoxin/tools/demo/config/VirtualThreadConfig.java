@@ -0,0 +1,78 @@
+package com.zhaoxin.tools.demo.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * 虚拟线程执行模式（需要 JDK 21 及以上，通过 zhaoxin.virtual-threads.enabled 或 virtual-threads 配置文件开启）
+ *
+ * 1. Tomcat 请求处理改为每个请求一个虚拟线程，阻塞在 RestTemplate 上的肇新调用不再占用平台线程；
+ * 2. Spring MVC 异步任务（StreamingResponseBody 等）同样在虚拟线程上执行；
+ * 3. 以 {@link ConcurrencyLimitFilter} 的并发许可数代替 server.tomcat.threads.max 作为并发上限。
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(prefix = "zhaoxin.virtual-threads", name = "enabled", havingValue = "true")
+public class VirtualThreadConfig implements WebMvcConfigurer {
+
+    private final ExecutorService requestExecutor;
+    private final ExecutorService mvcAsyncExecutor;
+
+    public VirtualThreadConfig() {
+        if (!VirtualThreads.isSupported()) {
+            throw new IllegalStateException("已开启 zhaoxin.virtual-threads.enabled，但当前 JDK 不支持虚拟线程（需要 JDK 21 及以上）: "
+                    + System.getProperty("java.version"));
+        }
+        this.requestExecutor = VirtualThreads.newExecutor("http-vt-");
+        this.mvcAsyncExecutor = VirtualThreads.newExecutor("mvc-async-vt-");
+        log.info("虚拟线程模式已开启: java.version={}", System.getProperty("java.version"));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        requestExecutor.shutdown();
+        mvcAsyncExecutor.shutdown();
+    }
+
+    /**
+     * Tomcat 使用虚拟线程执行器处理请求
+     */
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() {
+        return protocolHandler -> protocolHandler.setExecutor(requestExecutor);
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(new TaskExecutorAdapter(mvcAsyncExecutor));
+    }
+
+    /**
+     * 请求并发限制
+     */
+    @Bean
+    public FilterRegistrationBean<ConcurrencyLimitFilter> concurrencyLimitFilter(
+            @Value("${zhaoxin.virtual-threads.max-concurrent-requests:2000}") int maxConcurrent,
+            @Value("${zhaoxin.virtual-threads.acquire-timeout:30000}") long acquireTimeoutMillis,
+            ObjectMapper objectMapper) {
+        FilterRegistrationBean<ConcurrencyLimitFilter> registration = new FilterRegistrationBean<>(
+                new ConcurrencyLimitFilter(maxConcurrent, acquireTimeoutMillis, objectMapper));
+        registration.addUrlPatterns("/api/*");
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 10);
+        log.info("请求并发上限: maxConcurrent={}, acquireTimeout={}ms", maxConcurrent, acquireTimeoutMillis);
+        return registration;
+    }
+}
@@ -0,0 +1,79 @@
+package com.zhaoxin.tools.demo.controller;
+
+import com.zhaoxin.tools.demo.model.ChaosRule;
+import com.zhaoxin.tools.demo.model.response.ApiResponse;
+import com.zhaoxin.tools.demo.service.UpstreamChaos;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 肇新调用故障注入控制器
+ *
+ * 功能：
+ * 1. 查看开关、规则与各类故障的注入次数
+ * 2. 替换或清空规则（按路径模式配置延迟分布、5xx、读超时、连接重置、慢速响应体）
+ * 3. 开启、关闭故障注入
+ */
+@RestController
+@RequestMapping("/api/admin/chaos")
+public class ChaosAdminController {
+
+    private final UpstreamChaos chaos;
+
+    public ChaosAdminController(UpstreamChaos chaos) {
+        this.chaos = chaos;
+    }
+
+    /**
+     * 获取故障注入状态
+     */
+    @GetMapping
+    public ApiResponse<Map<String, Object>> getStatus() {
+        return ApiResponse.success(chaos.snapshot());
+    }
+
+    /**
+     * 替换全部规则
+     */
+    @PutMapping("/rules")
+    public ApiResponse<Map<String, Object>> setRules(@RequestBody List<ChaosRule> rules) {
+        chaos.setRules(rules);
+        return ApiResponse.success(chaos.snapshot());
+    }
+
+    /**
+     * 清空规则
+     */
+    @DeleteMapping("/rules")
+    public ApiResponse<Map<String, Object>> clearRules() {
+        chaos.setRules(Collections.emptyList());
+        return ApiResponse.success(chaos.snapshot());
+    }
+
+    /**
+     * 开启故障注入
+     */
+    @PostMapping("/enable")
+    public ApiResponse<Map<String, Object>> enable() {
+        chaos.enable();
+        return ApiResponse.success(chaos.snapshot());
+    }
+
+    /**
+     * 关闭故障注入
+     */
+    @PostMapping("/disable")
+    public ApiResponse<Map<String, Object>> disable() {
+        chaos.disable();
+        return ApiResponse.success(chaos.snapshot());
+    }
+}
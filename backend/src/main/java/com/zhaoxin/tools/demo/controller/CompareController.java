@@ -1,83 +1,140 @@
 package com.zhaoxin.tools.demo.controller;
 
+import com.zhaoxin.tools.demo.model.CompareExportJob;
 import com.zhaoxin.tools.demo.model.request.CompareRequest;
+import com.zhaoxin.tools.demo.model.request.TaskStatusBatchRequest;
 import com.zhaoxin.tools.demo.model.response.ApiResponse;
-import com.zhaoxin.tools.demo.service.ZhaoxinApiClient;
+import com.zhaoxin.tools.demo.model.response.TaskStatusItem;
+import com.zhaoxin.tools.demo.service.CompareExportService;
+import com.zhaoxin.tools.demo.service.LogSampler;
+import com.zhaoxin.tools.demo.service.TaskCallbackService;
+import com.zhaoxin.tools.demo.service.TaskReadModelService;
+import com.zhaoxin.tools.demo.service.TaskStatusService;
+import com.zhaoxin.tools.demo.service.ZhaoxinAsyncApiClient;
 import com.zhaoxin.tools.demo.service.TaskFileMappingService;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * 智能文档比对控制器
  * 
- * 负责处理文档比对相关的API请求
+ * 负责处理文档比对相关的API请求，
+ * 转发到肇新的接口返回 CompletableFuture，启用异步客户端时等待肇新响应期间不占用 Tomcat 工作线程
  */
 @Slf4j
 @RestController
 @RequestMapping("/api/compare")
 public class CompareController {
     
-    private final ZhaoxinApiClient apiClient;
+    private final ZhaoxinAsyncApiClient apiClient;
     private final TaskFileMappingService mappingService;
+    private final CompareExportService exportService;
+    private final TaskStatusService statusService;
+    private final TaskReadModelService readModel;
+    private final TaskCallbackService callbackService;
+    private final LogSampler logSampler;
     
-    public CompareController(ZhaoxinApiClient apiClient, TaskFileMappingService mappingService) {
+    public CompareController(ZhaoxinAsyncApiClient apiClient, TaskFileMappingService mappingService,
+                             CompareExportService exportService, TaskStatusService statusService,
+                             TaskReadModelService readModel, TaskCallbackService callbackService,
+                             LogSampler logSampler) {
         this.apiClient = apiClient;
         this.mappingService = mappingService;
+        this.exportService = exportService;
+        this.statusService = statusService;
+        this.readModel = readModel;
+        this.callbackService = callbackService;
+        this.logSampler = logSampler;
     }
     
     /**
      * 提交比对任务
      */
     @PostMapping("/submit")
-    public ApiResponse submitCompare(@RequestBody CompareRequest request) {
+    public CompletableFuture<ApiResponse> submitCompare(@RequestBody CompareRequest request) {
         log.info("收到比对请求: {}", request);
         
         // 提交任务到肇新服务（不传文件名，避免SDK保存UUID文件名）
-        ApiResponse response = apiClient.submitCompareTask(
+        return apiClient.submitCompareTask(
             request.getOldFileUrl(), 
             request.getNewFileUrl(),
             request.getRemoveWatermark(),
             null,  // 不传给SDK
             null   // 不传给SDK
-        );
-        
-        // 如果提交成功，保存taskId和原始文件名的映射
-        if (response.getCode() == 200 && response.getData() != null) {
-            String taskId = response.getData().toString();
-            mappingService.saveMapping(
-                taskId, 
-                request.getOldFileName(), 
-                request.getNewFileName()
-            );
-            log.info("已保存任务文件名映射: taskId={}", taskId);
-        }
-        
-        return response;
+        ).thenApply(response -> {
+            // 如果提交成功，保存taskId和原始文件名的映射
+            if (response.getCode() == 200 && response.getData() != null) {
+                String taskId = response.getData().toString();
+                mappingService.saveMapping(
+                    taskId, 
+                    request.getOldFileName(), 
+                    request.getNewFileName()
+                );
+                readModel.recordCompareSubmitted(taskId, request.getOldFileName(), request.getNewFileName());
+                log.info("已保存任务文件名映射: taskId={}", taskId);
+            }
+            return response;
+        });
     }
     
     /**
      * 获取任务状态
+     * 传入 wait（秒）时先等待肇新回调推送状态变化，任务已结束立即返回，等待超时再查询肇新
      */
     @GetMapping("/task/{taskId}")
-    public ApiResponse getTaskStatus(@PathVariable String taskId) {
-        log.info("查询任务状态: taskId={}", taskId);
-        ApiResponse response = apiClient.getCompareTaskStatus(taskId);
-        
-        // 替换为原始文件名
-        replaceFileNamesInResponse(response, taskId);
-        
-        return response;
+    public CompletableFuture<ApiResponse> getTaskStatus(@PathVariable String taskId,
+                                                        @RequestParam(defaultValue = "0") int wait) {
+        logSampler.info(log, "compare.status", "查询任务状态: taskId={}, wait={}", taskId, wait);
+        return callbackService.awaitStatus(TaskReadModelService.TYPE_COMPARE, taskId, wait)
+                .thenCompose(data -> data != null
+                        ? CompletableFuture.completedFuture(ApiResponse.success(data))
+                        : queryTaskStatus(taskId));
+    }
+    
+    private CompletableFuture<ApiResponse> queryTaskStatus(String taskId) {
+        return apiClient.getCompareTaskStatus(taskId).thenApply(response -> {
+            // 替换为原始文件名
+            replaceFileNamesInResponse(response, taskId);
+            recordStatus(response, taskId);
+            return response;
+        });
+    }
+    
+    /**
+     * 批量获取任务状态
+     * 并行查询肇新并替换为原始文件名，结果按请求顺序返回，单个任务查询失败不影响其他任务
+     */
+    @PostMapping("/tasks/status")
+    public CompletableFuture<ApiResponse<List<TaskStatusItem>>> getTaskStatuses(
+            @RequestBody TaskStatusBatchRequest request) {
+        log.info("批量查询任务状态: count={}", request.getTaskIds() != null ? request.getTaskIds().size() : 0);
+        return statusService.getCompareStatuses(request.getTaskIds()).thenApply(ApiResponse::success);
     }
     
     /**
      * 获取比对结果
      */
     @GetMapping("/result/{taskId}")
-    public ApiResponse getResult(@PathVariable String taskId) {
-        log.info("获取比对结果: taskId={}", taskId);
+    public CompletableFuture<ApiResponse> getResult(@PathVariable String taskId) {
+        logSampler.info(log, "compare.result", "获取比对结果: taskId={}", taskId);
+        ApiResponse prefetched = callbackService.getPrefetchedCompareResult(taskId);
+        if (prefetched != null) {
+            return CompletableFuture.completedFuture(prefetched);
+        }
         return apiClient.getCompareResult(taskId);
     }
     
@@ -85,25 +142,36 @@ public class CompareController {
      * 删除任务
      */
     @DeleteMapping("/task/{taskId}")
-    public ApiResponse<Void> deleteTask(@PathVariable String taskId) {
+    public CompletableFuture<ApiResponse<Void>> deleteTask(@PathVariable String taskId) {
         log.info("删除任务: taskId={}", taskId);
-        apiClient.deleteCompareTask(taskId);
-        
-        // 同时删除本地映射
-        mappingService.deleteMapping(taskId);
-        
-        return new ApiResponse<>(200, "删除成功", null);
+        return apiClient.deleteCompareTask(taskId).thenApply(v -> {
+            // 同时删除本地映射
+            mappingService.deleteMapping(taskId);
+            statusService.evict(taskId);
+            readModel.recordDeleted(TaskReadModelService.TYPE_COMPARE, taskId);
+            callbackService.evict(taskId);
+            return new ApiResponse<Void>(200, "删除成功", null);
+        });
     }
     
     /**
      * 获取所有任务历史
+     * 从本地任务读模型返回，不访问肇新；未启用读模型时直接查询肇新
      */
     @GetMapping("/tasks")
+    public CompletableFuture<ApiResponse> getAllTasks() {
+        log.debug("获取任务历史列表");
+        if (readModel.isEnabled()) {
+            return readModel.list(TaskReadModelService.TYPE_COMPARE).thenApply(ApiResponse::success);
+        }
+        return apiClient.getAllCompareTasks().thenApply(this::replaceFileNamesInTasks);
+    }
+    
+    /**
+     * 替换任务列表中所有任务的文件名
+     */
     @SuppressWarnings("unchecked")
-    public ApiResponse getAllTasks() {
-        log.info("获取任务历史列表");
-        ApiResponse response = apiClient.getAllCompareTasks();
-        
+    private ApiResponse replaceFileNamesInTasks(ApiResponse response) {
         // 替换所有任务的文件名
         if (response.getCode() == 200 && response.getData() != null) {
             try {
@@ -135,26 +203,94 @@ public class CompareController {
         }
     }
     
+    /**
+     * 将查询到的任务状态写回本地任务读模型
+     */
+    @SuppressWarnings("unchecked")
+    private void recordStatus(ApiResponse response, String taskId) {
+        if (response.getCode() != null && response.getCode() == 200 && response.getData() instanceof Map) {
+            readModel.recordStatus(TaskReadModelService.TYPE_COMPARE, taskId, (Map<String, Object>) response.getData());
+        }
+    }
+    
     /**
      * 替换任务对象中的文件名
      */
     private void replaceFileNamesInTask(Map<String, Object> task, String taskId) {
-        var mapping = mappingService.getMapping(taskId);
-        if (mapping != null) {
-            task.put("oldFileName", mapping.getOldFileName());
-            task.put("newFileName", mapping.getNewFileName());
-            log.debug("已替换文件名: taskId={}, oldFileName={}, newFileName={}", 
-                    taskId, mapping.getOldFileName(), mapping.getNewFileName());
-        }
+        mappingService.applyFileNames(task, taskId);
     }
     
     /**
      * 导出比对报告
+     * 以导出任务执行并等待完成，报告从磁盘缓存输出；相同参数的重复导出直接命中缓存
      */
     @PostMapping("/export-report")
-    public ResponseEntity<byte[]> exportReport(@RequestBody Map<String, Object> exportData) {
-        log.info("导出比对报告: {}", exportData);
-        return apiClient.exportCompareReport(exportData);
+    public CompletableFuture<ResponseEntity<Resource>> exportReport(@RequestBody Map<String, Object> exportData) {
+        log.info("导出比对报告: {}", LogSampler.payload(exportData));
+        CompareExportJob job = exportService.submit(exportData);
+        return job.getCompletion().thenApply(file -> {
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+            headers.setContentDispositionFormData("attachment", "比对结果.docx");
+            return ResponseEntity.ok()
+                    .headers(headers)
+                    .body((Resource) new FileSystemResource(file));
+        });
+    }
+    
+    // ==================== 报告导出任务 ====================
+    
+    /**
+     * 提交报告导出任务
+     * 立即返回任务信息；命中缓存时任务状态直接为 completed
+     */
+    @PostMapping("/export-jobs")
+    public ApiResponse<CompareExportJob> submitExportJob(@RequestBody Map<String, Object> exportData) {
+        log.info("提交报告导出任务: taskId={}", exportData.get("taskId"));
+        return ApiResponse.success(exportService.submit(exportData));
+    }
+    
+    /**
+     * 查询导出任务进度
+     */
+    @GetMapping("/export-jobs/{jobId}")
+    public ApiResponse<CompareExportJob> getExportJob(@PathVariable String jobId) {
+        CompareExportJob job = exportService.getJob(jobId);
+        if (job == null) {
+            return new ApiResponse<>(404, "导出任务不存在", null);
+        }
+        return ApiResponse.success(job);
+    }
+    
+    /**
+     * 订阅导出任务进度（Server-Sent Events）
+     */
+    @GetMapping(value = "/export-jobs/{jobId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> subscribeExportJob(@PathVariable String jobId) {
+        CompareExportJob job = exportService.getJob(jobId);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(exportService.subscribe(job));
+    }
+    
+    /**
+     * 下载导出的报告
+     */
+    @GetMapping("/export-jobs/{jobId}/download")
+    public ResponseEntity<ApiResponse<Void>> downloadExportJob(@PathVariable String jobId,
+                                                               HttpServletRequest request,
+                                                               HttpServletResponse response) throws IOException {
+        CompareExportJob job = exportService.getJob(jobId);
+        if (job == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new ApiResponse<>(404, "导出任务不存在", null));
+        }
+        if (!CompareExportJob.STATUS_COMPLETED.equals(job.getStatus())) {
+            String message = CompareExportJob.STATUS_FAILED.equals(job.getStatus())
+                    ? job.getErrorMessage() : "报告尚未导出完成";
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(new ApiResponse<>(409, message, null));
+        }
+        exportService.serve(job, request, response);
+        return null;
     }
 }
-
@@ -1,18 +1,36 @@
 package com.zhaoxin.tools.demo.controller;
 
+import com.zhaoxin.tools.demo.model.exception.ApiException;
+import com.zhaoxin.tools.demo.model.request.ComposeArtifactRequest;
 import com.zhaoxin.tools.demo.model.response.ApiResponse;
+import com.zhaoxin.tools.demo.service.ComposeArtifactService;
+import com.zhaoxin.tools.demo.service.ComposeBulkService;
+import com.zhaoxin.tools.demo.service.ComposeFileCache;
+import com.zhaoxin.tools.demo.service.ComposeIdempotencyService;
+import com.zhaoxin.tools.demo.service.ComposePayloadValidator;
 import com.zhaoxin.tools.demo.service.ZhaoxinApiClient;
+import com.zhaoxin.tools.demo.service.ZhaoxinAsyncApiClient;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.ByteArrayResource;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * 合同合成控制器
@@ -21,6 +39,8 @@ import java.util.Map;
  * 1. 获取模板列表
  * 2. 创建合成任务
  * 3. 下载合成的合同
+ * 4. 批量合成（CSV / JSON Lines 数据，ZIP 流式输出）
+ * 5. 合成文件打包下载（Word、PDF、盖章版、骑缝章版一次下载）
  */
 @Slf4j
 @RestController
@@ -30,6 +50,24 @@ public class ComposeController {
     @Autowired
     private ZhaoxinApiClient apiClient;
     
+    @Autowired
+    private ZhaoxinAsyncApiClient asyncClient;
+    
+    @Autowired
+    private ComposeBulkService bulkService;
+    
+    @Autowired
+    private ComposePayloadValidator payloadValidator;
+    
+    @Autowired
+    private ComposeIdempotencyService idempotencyService;
+    
+    @Autowired
+    private ComposeArtifactService artifactService;
+    
+    @Autowired
+    private ComposeFileCache fileCache;
+    
     /**
      * 获取合成模板列表
      * 
@@ -37,27 +75,38 @@ public class ComposeController {
      * @return 模板列表
      */
     @GetMapping("/templates")
-    public ApiResponse<Map<String, Object>> getTemplates(
+    public CompletableFuture<ApiResponse<Map<String, Object>>> getTemplates(
             @RequestParam(required = false) String status) {
+        log.info("获取合成模板列表: status={}", status);
+        CompletableFuture<Map<String, Object>> result;
         try {
-            log.info("获取合成模板列表: status={}", status);
-            Map<String, Object> result = apiClient.getComposeTemplates(status);
-            return ApiResponse.success(result);
-        } catch (Exception e) { 
-            log.error("获取合成模板列表失败", e);
-            return ApiResponse.error("获取模板列表失败: " + e.getMessage());
+            result = asyncClient.getComposeTemplates(status);
+        } catch (Exception e) {
+            result = CompletableFuture.failedFuture(e);
         }
+        return result
+                .thenApply(ApiResponse::success)
+                .exceptionally(e -> {
+                    Throwable cause = unwrap(e);
+                    log.error("获取合成模板列表失败", cause);
+                    return ApiResponse.error("获取模板列表失败: " + cause.getMessage());
+                });
     }
     
     
     /**
      * 合成合同
+     * 支持 Idempotency-Key 请求头（仅在本接口内有效）；未提供时按请求内容去重，窗口期内的重复请求直接返回已有结果，
+     * 响应头 Idempotent-Replayed: true 表示本次为复用结果；同一幂等键用于不同的请求内容时返回 HTTP 409。
      * 
      * @param request 合成请求（包含模板编号templateCode或模板文件ID templateFileId和填充数据values）
+     * @param idempotencyKey 幂等键（可选）
      * @return 合成任务结果（包含fileId）
      */
     @PostMapping("/generate")
-    public ApiResponse<Map<String, Object>> generateContract(@RequestBody Map<String, Object> request) {
+    public CompletableFuture<ResponseEntity<ApiResponse<Map<String, Object>>>> generateContract(
+            @RequestBody Map<String, Object> request,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
         try {
             // 优先使用模板编号（推荐）
             String templateCode = (String) request.get("templateCode");
@@ -71,12 +120,64 @@ public class ComposeController {
                 log.warn("合成合同: 未提供templateCode或templateFileId");
             }
             
-            Map<String, Object> result = apiClient.generateContract(request);
-            return ApiResponse.success(result);
+            // 本地预校验（模板未缓存时在后台加载，不占用请求线程），字段错误直接返回，不再调用肇新合成
+            return payloadValidator.validateAsync(request)
+                    .thenCompose(errors -> {
+                        if (!errors.isEmpty()) {
+                            log.info("合成参数校验未通过: templateCode={}, errors={}", templateCode, errors);
+                            ApiResponse<Map<String, Object>> invalid =
+                                    new ApiResponse<>(400, "合成参数校验失败", Map.of("errors", errors));
+                            return CompletableFuture.completedFuture(ResponseEntity.ok(invalid));
+                        }
+                        return idempotencyService.executeAsync(ComposeIdempotencyService.SCOPE_GENERATE,
+                                idempotencyKey, request, () -> asyncClient.generateContract(request))
+                                .thenApply(result -> {
+                                    ResponseEntity.BodyBuilder ok = ResponseEntity.ok();
+                                    if (result.isReplayed()) {
+                                        ok.header("Idempotent-Replayed", "true");
+                                    }
+                                    return ok.body(ApiResponse.success(result.getResponse()));
+                                });
+                    })
+                    .exceptionally(this::generateFailed);
         } catch (Exception e) {
-            log.error("合成合同失败", e);
-            return ApiResponse.error("合成失败: " + e.getMessage());
+            return CompletableFuture.completedFuture(generateFailed(e));
+        }
+    }
+    
+    private ResponseEntity<ApiResponse<Map<String, Object>>> generateFailed(Throwable e) {
+        Throwable cause = unwrap(e);
+        if (cause instanceof ApiException) {
+            log.warn("合成合同失败: {}", cause.getMessage());
+            Integer code = ((ApiException) cause).getCode();
+            ApiResponse<Map<String, Object>> body = new ApiResponse<>(code, cause.getMessage(), null);
+            // 幂等键冲突返回真实的 409，客户端与网关无需解析响应体即可识别；其他业务错误保持 HTTP 200 + code
+            return Integer.valueOf(HttpStatus.CONFLICT.value()).equals(code)
+                    ? ResponseEntity.status(HttpStatus.CONFLICT).body(body)
+                    : ResponseEntity.ok(body);
         }
+        log.error("合成合同失败", cause);
+        return ResponseEntity.ok(ApiResponse.error("合成失败: " + cause.getMessage()));
+    }
+    
+    private static Throwable unwrap(Throwable e) {
+        return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+    }
+    
+    /**
+     * 校验合成参数（不调用合成）
+     * 
+     * @param request 合成请求
+     * @return 字段错误列表，为空表示通过
+     */
+    @PostMapping("/validate")
+    public CompletableFuture<ApiResponse<Map<String, Object>>> validateContract(@RequestBody Map<String, Object> request) {
+        return payloadValidator.validateAsync(request).thenApply(errors -> {
+            if (!errors.isEmpty()) {
+                return new ApiResponse<>(400, "合成参数校验失败", Map.of("errors", errors));
+            }
+            return ApiResponse.success(Map.of("errors", errors));
+        });
     }
     
     /**
@@ -89,13 +190,12 @@ public class ComposeController {
     @GetMapping("/download/{fileId}")
     public ResponseEntity<ByteArrayResource> downloadContract(
             @PathVariable String fileId,
-            @RequestParam(required = false) String fileName) {
+            @RequestParam(required = false) String fileName,
+            HttpServletRequest request,
+            HttpServletResponse response) {
         try {
             log.info("下载合同: fileId={}, fileName={}", fileId, fileName);
             
-            // 调用主系统下载文件
-            byte[] fileData = apiClient.downloadComposeFile(fileId);
-            
             // 如果没有提供文件名，使用默认名
             if (fileName == null || fileName.isEmpty()) {
                 fileName = "contract_" + fileId + ".docx";
@@ -105,6 +205,19 @@ public class ComposeController {
             String encodedFileName = URLEncoder.encode(fileName, StandardCharsets.UTF_8)
                     .replaceAll("\\+", "%20");
             
+            // 合成文件不可变，优先走本地缓存，由缓存直接输出响应；客户端已有该文件时直接 304
+            if (fileCache.isEnabled()) {
+                if (fileCache.notModifiedByFileId(fileId, request, response)) {
+                    return null;
+                }
+                fileCache.serve(fileCache.getByFileId(fileId), encodedFileName,
+                        MediaType.APPLICATION_OCTET_STREAM_VALUE, request, response);
+                return null;
+            }
+            
+            // 调用主系统下载文件
+            byte[] fileData = apiClient.downloadComposeFile(fileId);
+            
             ByteArrayResource resource = new ByteArrayResource(fileData);
             
             return ResponseEntity.ok()
@@ -129,13 +242,12 @@ public class ComposeController {
      */
     @GetMapping("/download-by-path")
     public ResponseEntity<ByteArrayResource> downloadContractByPath(
-            @RequestParam String path) {
+            @RequestParam String path,
+            HttpServletRequest request,
+            HttpServletResponse response) {
         try {
             log.info("通过路径下载文件: path={}", path);
             
-            // 调用主系统下载文件
-            byte[] fileData = apiClient.downloadFileByPath(path);
-            
             // 从路径中提取文件名
             String fileName = path.substring(path.lastIndexOf('/') + 1);
             
@@ -152,6 +264,18 @@ public class ComposeController {
                         "application/vnd.openxmlformats-officedocument.wordprocessingml.document");
             }
             
+            if (fileCache.isEnabled()) {
+                if (fileCache.notModifiedByPath(path, request, response)) {
+                    return null;
+                }
+                fileCache.serve(fileCache.getByPath(path), encodedFileName,
+                        contentType.toString(), request, response);
+                return null;
+            }
+            
+            // 调用主系统下载文件
+            byte[] fileData = apiClient.downloadFileByPath(path);
+            
             ByteArrayResource resource = new ByteArrayResource(fileData);
             
             return ResponseEntity.ok()
@@ -166,5 +290,98 @@ public class ComposeController {
             return ResponseEntity.internalServerError().build();
         }
     }
+    
+    /**
+     * 打包下载合成文件
+     * 请求体可直接使用合成结果（fileId、pdfPath、stampedPdfPath、ridingStampPdfPath），
+     * 也可传入 paths 路径列表。各文件并行下载，按下载完成顺序写入 ZIP。
+     * 
+     * @param request 待下载的文件
+     * @return ZIP 文件流
+     */
+    @PostMapping("/download-zip")
+    public ResponseEntity<StreamingResponseBody> downloadZip(@RequestBody ComposeArtifactRequest request) {
+        return zipResponse(request);
+    }
+    
+    /**
+     * 打包下载合成文件（查询参数形式，便于直接作为下载链接使用）
+     * 
+     * @param request 待下载的文件，paths 可重复传入
+     * @return ZIP 文件流
+     */
+    @GetMapping("/download-zip")
+    public ResponseEntity<StreamingResponseBody> downloadZipByQuery(ComposeArtifactRequest request) {
+        return zipResponse(request);
+    }
+    
+    private ResponseEntity<StreamingResponseBody> zipResponse(ComposeArtifactRequest request) {
+        List<ComposeArtifactService.Artifact> artifacts = artifactService.resolve(request);
+        log.info("打包下载合成文件: fileId={}, 文件数={}", request.getFileId(), artifacts.size());
+        
+        String zipName = request.getZipName();
+        if (zipName == null || zipName.trim().isEmpty()) {
+            zipName = request.getFileId() != null && !request.getFileId().trim().isEmpty()
+                    ? "contract_" + request.getFileId().trim() + ".zip" : "contracts.zip";
+        } else if (!zipName.toLowerCase().endsWith(".zip")) {
+            zipName = zipName + ".zip";
+        }
+        String encodedFileName = URLEncoder.encode(zipName, StandardCharsets.UTF_8)
+                .replaceAll("\\+", "%20");
+        
+        StreamingResponseBody body = out -> artifactService.writeZip(artifacts, out);
+        
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/zip"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename*=UTF-8''" + encodedFileName)
+                .header(HttpHeaders.ACCESS_CONTROL_EXPOSE_HEADERS, HttpHeaders.CONTENT_DISPOSITION)
+                .body(body);
+    }
+    
+    /**
+     * 批量合成合同
+     * 数据可通过 multipart 的 file 字段上传，也可直接作为请求体（text/csv 或 application/x-ndjson）发送，
+     * 数据在开始输出前全部读取。
+     * 合成结果按完成顺序写入 ZIP，末尾附 manifest.csv 记录每行的状态与错误信息。
+     * 
+     * @param templateCode 模板编号
+     * @param file CSV（首行为字段tag）或 JSON Lines 数据文件（可选）
+     * @param nameField 用于命名输出文件的字段tag（可选）
+     * @return ZIP 文件流
+     */
+    @PostMapping("/bulk")
+    public ResponseEntity<StreamingResponseBody> bulkGenerate(
+            @RequestParam String templateCode,
+            @RequestParam(required = false) MultipartFile file,
+            @RequestParam(required = false) String nameField,
+            HttpServletRequest request) throws IOException {
+        
+        String format;
+        InputStream data;
+        if (file != null && !file.isEmpty()) {
+            format = ComposeBulkService.detectFormat(file.getOriginalFilename(), file.getContentType());
+            data = file.getInputStream();
+        } else {
+            format = ComposeBulkService.detectFormat(null, request.getContentType());
+            data = request.getInputStream();
+        }
+        // 开始输出 ZIP 之前读完请求体
+        ComposeBulkService.BulkRows rows;
+        try (InputStream in = data) {
+            rows = bulkService.readRows(in, format);
+        }
+        log.info("批量合成合同: templateCode={}, format={}, nameField={}, rows={}",
+                templateCode, format, nameField, rows.size());
+        
+        StreamingResponseBody body = out -> bulkService.compose(templateCode, rows, nameField, out);
+        
+        String fileName = URLEncoder.encode("批量合成_" + templateCode + ".zip", StandardCharsets.UTF_8)
+                .replaceAll("\\+", "%20");
+        
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/zip"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename*=UTF-8''" + fileName)
+                .header(HttpHeaders.ACCESS_CONTROL_EXPOSE_HEADERS, HttpHeaders.CONTENT_DISPOSITION)
+                .body(body);
+    }
 }
-
@@ -1,33 +1,74 @@
 package com.zhaoxin.tools.demo.controller;
 
-import com.zhaoxin.tools.demo.service.ZhaoxinApiClient;
+import com.zhaoxin.tools.demo.model.ExtractBatchJob;
+import com.zhaoxin.tools.demo.model.exception.ApiException;
+import com.zhaoxin.tools.demo.model.request.ExtractExportRequest;
+import com.zhaoxin.tools.demo.model.request.TaskStatusBatchRequest;
+import com.zhaoxin.tools.demo.model.response.ApiResponse;
+import com.zhaoxin.tools.demo.model.response.TaskStatusItem;
+import com.zhaoxin.tools.demo.service.ExtractBatchService;
+import com.zhaoxin.tools.demo.service.ExtractExportService;
+import com.zhaoxin.tools.demo.service.LogSampler;
+import com.zhaoxin.tools.demo.service.TaskCallbackService;
+import com.zhaoxin.tools.demo.service.TaskReadModelService;
+import com.zhaoxin.tools.demo.service.TaskStatusService;
+import com.zhaoxin.tools.demo.service.ZhaoxinAsyncApiClient;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * 智能文档抽取控制器
+ * 
+ * 直接转发到肇新的接口返回 CompletableFuture，启用异步客户端时等待肇新响应期间不占用 Tomcat 工作线程
  */
 @Slf4j
 @RestController
 @RequestMapping("/api/rule-extract")
 public class ExtractController {
     
-    private final ZhaoxinApiClient apiClient;
+    private final ZhaoxinAsyncApiClient apiClient;
+    private final ExtractBatchService batchService;
+    private final ExtractExportService exportService;
+    private final TaskStatusService statusService;
+    private final TaskReadModelService readModel;
+    private final TaskCallbackService callbackService;
+    private final LogSampler logSampler;
+    private final int maxQueryTaskIds;
     
-    public ExtractController(ZhaoxinApiClient apiClient) {
+    public ExtractController(ZhaoxinAsyncApiClient apiClient, ExtractBatchService batchService,
+                             ExtractExportService exportService, TaskStatusService statusService,
+                             TaskReadModelService readModel, TaskCallbackService callbackService,
+                             LogSampler logSampler,
+                             @Value("${zhaoxin.extract.export.max-query-task-ids:100}") int maxQueryTaskIds) {
         this.apiClient = apiClient;
+        this.batchService = batchService;
+        this.exportService = exportService;
+        this.statusService = statusService;
+        this.readModel = readModel;
+        this.callbackService = callbackService;
+        this.logSampler = logSampler;
+        this.maxQueryTaskIds = maxQueryTaskIds;
     }
     
     /**
      * 获取模板列表
      */
     @GetMapping("/templates")
-    public Map<String, Object> getTemplates(@RequestParam(required = false) String status) {
+    public CompletableFuture<Map<String, Object>> getTemplates(@RequestParam(required = false) String status) {
         log.info("获取模板列表: status={}", status);
         return apiClient.getTemplates(status);
     }
@@ -36,29 +77,69 @@ public class ExtractController {
      * 上传文档并开始抽取
      */
     @PostMapping("/extract/upload")
-    public Map<String, Object> uploadAndExtract(
+    public CompletableFuture<Map<String, Object>> uploadAndExtract(
             @RequestParam("file") MultipartFile file,
             @RequestParam("templateId") String templateId) {
         
         log.info("收到文档抽取请求: templateId={}, fileName={}", templateId, file.getOriginalFilename());
-        return apiClient.submitExtractTask(file, templateId);
+        return apiClient.submitExtractTask(file, templateId).thenApply(response -> {
+            readModel.recordExtractSubmitted(response, file.getOriginalFilename(), templateId);
+            return response;
+        });
     }
     
     /**
      * 查询任务状态
+     * 传入 wait（秒）时先等待肇新回调推送状态变化，任务已结束立即返回，等待超时再查询肇新
      */
     @GetMapping("/extract/status/{taskId}")
-    public Map<String, Object> getStatus(@PathVariable String taskId) {
-        log.info("查询任务状态: taskId={}", taskId);
-        return apiClient.getExtractStatus(taskId);
+    public CompletableFuture<Map<String, Object>> getStatus(@PathVariable String taskId,
+                                                           @RequestParam(defaultValue = "0") int wait) {
+        logSampler.info(log, "extract.status", "查询任务状态: taskId={}, wait={}", taskId, wait);
+        return callbackService.awaitStatus(TaskReadModelService.TYPE_EXTRACT, taskId, wait)
+                .thenCompose(data -> {
+                    if (data == null) {
+                        return queryStatus(taskId);
+                    }
+                    Map<String, Object> response = new LinkedHashMap<>();
+                    response.put("code", 200);
+                    response.put("data", data);
+                    return CompletableFuture.completedFuture(response);
+                });
+    }
+    
+    @SuppressWarnings("unchecked")
+    private CompletableFuture<Map<String, Object>> queryStatus(String taskId) {
+        return apiClient.getExtractStatus(taskId).thenApply(response -> {
+            Object data = response != null ? response.get("data") : null;
+            if (data instanceof Map) {
+                readModel.recordStatus(TaskReadModelService.TYPE_EXTRACT, taskId, (Map<String, Object>) data);
+            }
+            return response;
+        });
+    }
+    
+    /**
+     * 批量查询任务状态
+     * 并行查询肇新，结果按请求顺序返回，单个任务查询失败不影响其他任务
+     */
+    @PostMapping("/extract/tasks/status")
+    public CompletableFuture<ApiResponse<List<TaskStatusItem>>> getStatuses(
+            @RequestBody TaskStatusBatchRequest request) {
+        log.info("批量查询任务状态: count={}", request.getTaskIds() != null ? request.getTaskIds().size() : 0);
+        return statusService.getExtractStatuses(request.getTaskIds()).thenApply(ApiResponse::success);
     }
     
     /**
      * 获取抽取结果
      */
     @GetMapping("/extract/result/{taskId}")
-    public Map<String, Object> getResult(@PathVariable String taskId) {
-        log.info("获取抽取结果: taskId={}", taskId);
+    public CompletableFuture<Map<String, Object>> getResult(@PathVariable String taskId) {
+        logSampler.info(log, "extract.result", "获取抽取结果: taskId={}", taskId);
+        Map<String, Object> prefetched = callbackService.getPrefetchedExtractResult(taskId);
+        if (prefetched != null) {
+            return CompletableFuture.completedFuture(prefetched);
+        }
         return apiClient.getExtractResult(taskId);
     }
     
@@ -66,35 +147,178 @@ public class ExtractController {
      * 取消任务
      */
     @PostMapping("/extract/cancel/{taskId}")
-    public ResponseEntity<Void> cancelTask(@PathVariable String taskId) {
+    public CompletableFuture<ResponseEntity<Void>> cancelTask(@PathVariable String taskId) {
         log.info("取消任务: taskId={}", taskId);
-        apiClient.cancelExtractTask(taskId);
-        return ResponseEntity.ok().build();
+        return apiClient.cancelExtractTask(taskId)
+                .thenApply(v -> {
+                    statusService.evict(taskId);
+                    callbackService.evict(taskId);
+                    readModel.recordStatus(TaskReadModelService.TYPE_EXTRACT, taskId,
+                            Collections.singletonMap("status", "cancelled"));
+                    return ResponseEntity.ok().<Void>build();
+                });
     }
     
     /**
      * 获取任务列表
+     * 从本地任务读模型返回，不访问肇新；未启用读模型时直接查询肇新
      */
     @GetMapping("/extract/tasks")
-    public Map<String, Object> getTasks() {
-        log.info("获取任务列表");
-        return apiClient.getExtractTasks();
+    public CompletableFuture<Map<String, Object>> getTasks() {
+        log.debug("获取任务列表");
+        if (!readModel.isEnabled()) {
+            return apiClient.getExtractTasks();
+        }
+        return readModel.list(TaskReadModelService.TYPE_EXTRACT).thenApply(tasks -> {
+            Map<String, Object> response = new LinkedHashMap<>();
+            response.put("code", 200);
+            response.put("data", tasks);
+            return response;
+        });
     }
     
     /**
      * 获取页面图片
      */
     @GetMapping("/extract/page-image/{taskId}/{pageNumber}")
-    public ResponseEntity<byte[]> getPageImage(
+    public CompletableFuture<ResponseEntity<byte[]>> getPageImage(
             @PathVariable String taskId,
             @PathVariable int pageNumber) {
         
-        log.info("获取页面图片: taskId={}, pageNumber={}", taskId, pageNumber);
-        byte[] imageData = apiClient.getPageImage(taskId, pageNumber);
+        logSampler.info(log, "extract.page-image", "获取页面图片: taskId={}, pageNumber={}", taskId, pageNumber);
+        return apiClient.getPageImage(taskId, pageNumber)
+                .thenApply(imageData -> ResponseEntity.ok()
+                        .contentType(MediaType.IMAGE_PNG)
+                        .body(imageData));
+    }
+    
+    // ==================== 批量抽取 ====================
+    
+    /**
+     * 上传ZIP压缩包批量抽取
+     * 压缩包保存后在后台逐个解压并提交，立即返回批次信息（status=submitting），通过批次查询接口跟踪进度
+     */
+    @PostMapping("/extract/batch/upload")
+    public ApiResponse<ExtractBatchJob> uploadBatch(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam("templateId") String templateId) {
+        
+        log.info("收到批量抽取请求: templateId={}, fileName={}, 大小: {}", 
+                templateId, file.getOriginalFilename(), file.getSize());
+        
+        if (file.isEmpty()) {
+            return new ApiResponse<>(400, "文件为空", null);
+        }
+        
+        ExtractBatchJob job = batchService.submitZip(file, templateId);
+        return ApiResponse.success(job);
+    }
+    
+    /**
+     * 按上传目录批量抽取
+     * 
+     * @param directory 相对于上传目录（file.upload.path）的子目录
+     */
+    @PostMapping("/extract/batch/directory")
+    public ApiResponse<ExtractBatchJob> submitBatchDirectory(
+            @RequestParam("directory") String directory,
+            @RequestParam("templateId") String templateId) {
+        
+        log.info("收到目录批量抽取请求: templateId={}, directory={}", templateId, directory);
+        ExtractBatchJob job = batchService.submitDirectory(directory, templateId);
+        return ApiResponse.success(job);
+    }
+    
+    /**
+     * 查询批次进度
+     */
+    @GetMapping("/extract/batch/{batchId}")
+    public ApiResponse<ExtractBatchJob> getBatch(@PathVariable String batchId) {
+        ExtractBatchJob job = batchService.getJob(batchId);
+        if (job == null) {
+            return new ApiResponse<>(404, "批次不存在", null);
+        }
+        return ApiResponse.success(job);
+    }
+    
+    /**
+     * 下载批次汇总结果（JSON，流式输出）
+     */
+    @GetMapping("/extract/batch/{batchId}/result")
+    public ResponseEntity<StreamingResponseBody> downloadBatchResult(@PathVariable String batchId) {
+        ExtractBatchJob job = batchService.getJob(batchId);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        
+        log.info("下载批量抽取结果: batchId={}, total={}", batchId, job.getTotal());
+        StreamingResponseBody body = out -> batchService.writeResults(job, out);
         
         return ResponseEntity.ok()
-                .contentType(MediaType.IMAGE_PNG)
-                .body(imageData);
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION, 
+                        "attachment; filename=\"extract-batch-" + batchId + ".json\"")
+                .header(HttpHeaders.ACCESS_CONTROL_EXPOSE_HEADERS, HttpHeaders.CONTENT_DISPOSITION)
+                .body(body);
+    }
+    
+    // ==================== 结果导出 ====================
+    
+    /**
+     * 导出抽取结果（CSV/XLSX，流式输出）
+     * 
+     * @param taskIds 任务ID，可重复传参或逗号分隔，最多 zhaoxin.extract.export.max-query-task-ids 个
+     * @param format csv（默认）或 xlsx
+     */
+    @GetMapping("/extract/export")
+    public ResponseEntity<StreamingResponseBody> exportResults(
+            @RequestParam("taskIds") List<String> taskIds,
+            @RequestParam(required = false) String format) {
+        
+        if (taskIds.size() > maxQueryTaskIds) {
+            throw new ApiException(400, "单次最多导出 " + maxQueryTaskIds + " 个任务，更多任务请使用 POST 请求体或批次ID");
+        }
+        ExtractExportRequest request = new ExtractExportRequest();
+        request.setTaskIds(taskIds);
+        request.setFormat(format);
+        return exportResults(request);
+    }
+    
+    /**
+     * 导出抽取结果（请求体传入任务ID列表或批次ID，适合大批量导出）
+     */
+    @PostMapping("/extract/export")
+    public ResponseEntity<StreamingResponseBody> exportResults(@RequestBody ExtractExportRequest request) {
+        String format = ExtractExportService.normalizeFormat(request.getFormat());
+        
+        List<ExtractBatchJob.Item> items = new ArrayList<>();
+        if (request.getBatchId() != null && !request.getBatchId().isEmpty()) {
+            ExtractBatchJob job = batchService.getJob(request.getBatchId());
+            if (job == null) {
+                return ResponseEntity.notFound().build();
+            }
+            items.addAll(job.getItems());
+        }
+        if (request.getTaskIds() != null) {
+            for (String taskId : request.getTaskIds()) {
+                ExtractBatchJob.Item item = new ExtractBatchJob.Item();
+                item.setTaskId(taskId);
+                items.add(item);
+            }
+        }
+        
+        log.info("导出抽取结果: 任务数={}, 格式={}", items.size(), format);
+        StreamingResponseBody body = out -> exportService.export(items, format, out);
+        
+        MediaType contentType = ExtractExportService.FORMAT_XLSX.equals(format)
+                ? MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet")
+                : new MediaType("text", "csv", StandardCharsets.UTF_8);
+        String fileName = "extract-export-" + System.currentTimeMillis() + "." + format;
+        
+        return ResponseEntity.ok()
+                .contentType(contentType)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
+                .header(HttpHeaders.ACCESS_CONTROL_EXPOSE_HEADERS, HttpHeaders.CONTENT_DISPOSITION)
+                .body(body);
     }
 }
-
@@ -1,5 +1,6 @@
 package com.zhaoxin.tools.demo.controller;
 
+import com.zhaoxin.tools.demo.jfr.FileTransferEvent;
 import com.zhaoxin.tools.demo.model.response.ApiResponse;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
@@ -14,6 +15,7 @@ import org.springframework.web.multipart.MultipartFile;
 import javax.annotation.PostConstruct;
 import javax.servlet.http.HttpServletRequest;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
@@ -95,7 +97,9 @@ public class FileUploadController {
             
             // 保存文件
             Path targetLocation = this.fileStorageLocation.resolve(fileName);
-            Files.copy(file.getInputStream(), targetLocation, StandardCopyOption.REPLACE_EXISTING);
+            try (InputStream in = FileTransferEvent.track(file.getInputStream(), FileTransferEvent.UPLOAD, fileName)) {
+                Files.copy(in, targetLocation, StandardCopyOption.REPLACE_EXISTING);
+            }
             
             // 生成文件访问URL（对文件名进行URL编码）
             String encodedFileName = URLEncoder.encode(fileName, StandardCharsets.UTF_8).replace("+", "%20");
@@ -126,9 +130,14 @@ public class FileUploadController {
         log.info("下载文件请求: {}", fileName);
         
         try {
-            // 加载文件资源
+            // 加载文件资源（读取过程记录为 JFR 文件传输事件）
             Path filePath = this.fileStorageLocation.resolve(fileName).normalize();
-            Resource resource = new UrlResource(filePath.toUri());
+            Resource resource = new UrlResource(filePath.toUri()) {
+                @Override
+                public InputStream getInputStream() throws IOException {
+                    return FileTransferEvent.track(super.getInputStream(), FileTransferEvent.DOWNLOAD, fileName);
+                }
+            };
             
             if (!resource.exists()) {
                 log.error("文件不存在: {}", fileName);
@@ -0,0 +1,85 @@
+package com.zhaoxin.tools.demo.controller;
+
+import com.zhaoxin.tools.demo.model.response.ApiResponse;
+import com.zhaoxin.tools.demo.service.JfrRecordingService;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.nio.file.Path;
+import java.util.Map;
+
+/**
+ * JFR 录制控制器
+ * 
+ * 功能：
+ * 1. 开始录制（锁竞争与分配调优的 profile 配置）
+ * 2. 导出快照、停止并导出
+ * 3. 下载导出的 .jfr 文件，用 JDK Mission Control 或 jfr 命令分析
+ */
+@RestController
+@RequestMapping("/api/admin/jfr")
+public class JfrAdminController {
+    
+    private final JfrRecordingService recordingService;
+    
+    public JfrAdminController(JfrRecordingService recordingService) {
+        this.recordingService = recordingService;
+    }
+    
+    /**
+     * 获取录制状态与导出文件列表
+     */
+    @GetMapping
+    public ApiResponse<Map<String, Object>> getStatus() {
+        return ApiResponse.success(recordingService.status());
+    }
+    
+    /**
+     * 开始录制
+     * @param maxAge 保留最近多少秒的数据（可选）
+     */
+    @PostMapping("/start")
+    public ApiResponse<Map<String, Object>> start(@RequestParam(required = false) Long maxAge) {
+        return ApiResponse.success(recordingService.start(maxAge));
+    }
+    
+    /**
+     * 导出当前录制的快照，录制继续
+     */
+    @PostMapping("/dump")
+    public ApiResponse<Map<String, Object>> dump() {
+        return ApiResponse.success(recordingService.dump());
+    }
+    
+    /**
+     * 停止录制并导出
+     */
+    @PostMapping("/stop")
+    public ApiResponse<Map<String, Object>> stop() {
+        return ApiResponse.success(recordingService.stop());
+    }
+    
+    /**
+     * 下载导出文件
+     */
+    @GetMapping("/files/{fileName:.+}")
+    public ResponseEntity<Resource> download(@PathVariable String fileName) {
+        Path file = recordingService.resolveFile(fileName);
+        if (file == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
+                .body(new FileSystemResource(file));
+    }
+}
@@ -0,0 +1,70 @@
+package com.zhaoxin.tools.demo.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zhaoxin.tools.demo.model.request.TaskCallbackRequest;
+import com.zhaoxin.tools.demo.model.response.ApiResponse;
+import com.zhaoxin.tools.demo.service.TaskCallbackService;
+import com.zhaoxin.tools.demo.service.TaskReadModelService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * 肇新任务回调控制器
+ *
+ * 接收肇新推送的比对/抽取任务状态变化，签名校验通过后更新本地状态并唤醒等待的请求
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/callback/zhaoxin")
+public class TaskCallbackController {
+
+    public static final String TIMESTAMP_HEADER = "X-Zhaoxin-Timestamp";
+    public static final String SIGNATURE_HEADER = "X-Zhaoxin-Signature";
+
+    private final TaskCallbackService callbackService;
+    private final ObjectMapper objectMapper;
+
+    public TaskCallbackController(TaskCallbackService callbackService, ObjectMapper objectMapper) {
+        this.callbackService = callbackService;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * 任务状态回调
+     * 签名基于原始请求体计算，因此以字符串接收后再解析
+     */
+    @PostMapping("/task")
+    public ResponseEntity<ApiResponse<Void>> onTaskCallback(
+            @RequestHeader(value = TIMESTAMP_HEADER, required = false) String timestamp,
+            @RequestHeader(value = SIGNATURE_HEADER, required = false) String signature,
+            @RequestBody String body) {
+
+        if (!callbackService.verify(timestamp, signature, body)) {
+            log.warn("肇新任务回调签名校验失败: timestamp={}", timestamp);
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(new ApiResponse<>(401, "签名校验失败", null));
+        }
+
+        TaskCallbackRequest callback;
+        try {
+            callback = objectMapper.readValue(body, TaskCallbackRequest.class);
+        } catch (JsonProcessingException e) {
+            return ResponseEntity.badRequest().body(new ApiResponse<>(400, "回调内容格式错误", null));
+        }
+        if (callback.getTaskId() == null
+                || !(TaskReadModelService.TYPE_COMPARE.equals(callback.getType())
+                || TaskReadModelService.TYPE_EXTRACT.equals(callback.getType()))) {
+            return ResponseEntity.badRequest().body(new ApiResponse<>(400, "缺少任务ID或任务类型无效", null));
+        }
+
+        callbackService.handle(callback);
+        return ResponseEntity.ok(new ApiResponse<>(200, "ok", null));
+    }
+}
@@ -1,12 +1,14 @@
 package com.zhaoxin.tools.demo.controller;
 
 import com.zhaoxin.tools.demo.model.response.ApiResponse;
-import com.zhaoxin.tools.demo.service.ZhaoxinApiClient;
+import com.zhaoxin.tools.demo.service.ZhaoxinAsyncApiClient;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * 模板管理控制器
@@ -20,7 +22,7 @@ import java.util.Map;
 public class TemplateController {
     
     @Autowired
-    private ZhaoxinApiClient apiClient;
+    private ZhaoxinAsyncApiClient apiClient;
     
     /**
      * 获取模板设计详情
@@ -29,16 +31,22 @@ public class TemplateController {
      * @return 模板详情（包含 elementsJson）
      */
     @GetMapping("/design/detail/{templateId}")
-    public ApiResponse<Map<String, Object>> getTemplateDetail(
+    public CompletableFuture<ApiResponse<Map<String, Object>>> getTemplateDetail(
             @PathVariable String templateId) {
+        log.info("获取模板详情: templateId={}", templateId);
+        CompletableFuture<Map<String, Object>> result;
         try {
-            log.info("获取模板详情: templateId={}", templateId);
-            Map<String, Object> result = apiClient.getTemplateDetail(templateId);
-            return ApiResponse.success(result);
+            result = apiClient.getTemplateDetail(templateId);
         } catch (Exception e) {
-            log.error("获取模板详情失败: templateId={}", templateId, e);
-            return ApiResponse.error("获取模板详情失败: " + e.getMessage());
+            result = CompletableFuture.failedFuture(e);
         }
+        return result
+                .thenApply(ApiResponse::success)
+                .exceptionally(e -> {
+                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                    log.error("获取模板详情失败: templateId={}", templateId, cause);
+                    return ApiResponse.error("获取模板详情失败: " + cause.getMessage());
+                });
     }
 }
 
@@ -0,0 +1,109 @@
+package com.zhaoxin.tools.demo.controller;
+
+import com.zhaoxin.tools.demo.model.response.ApiResponse;
+import com.zhaoxin.tools.demo.service.TaskCallbackService;
+import com.zhaoxin.tools.demo.service.TaskReadModelService;
+import com.zhaoxin.tools.demo.service.UpstreamGuard;
+import com.zhaoxin.tools.demo.service.UpstreamRecorder;
+import com.zhaoxin.tools.demo.service.UpstreamRetryPolicy;
+import com.zhaoxin.tools.demo.service.UpstreamTimeoutPolicy;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 肇新上游调用状态控制器
+ * 
+ * 功能：
+ * 1. 查看各接口分组的熔断器状态、在途请求数与拒绝次数
+ * 2. 查看各超时等级当前生效的超时与延迟分位数
+ * 3. 查看 GET 请求的重试、对冲次数与预算余额
+ * 4. 查看本地任务读模型的同步状态，立即触发同步
+ * 5. 查看肇新任务回调统计
+ * 6. 查看肇新调用录制/回放状态
+ */
+@RestController
+@RequestMapping("/api/admin/upstream")
+public class UpstreamAdminController {
+    
+    private final UpstreamGuard guard;
+    private final UpstreamTimeoutPolicy timeoutPolicy;
+    private final UpstreamRetryPolicy retryPolicy;
+    private final TaskReadModelService readModel;
+    private final TaskCallbackService callbackService;
+    private final UpstreamRecorder recorder;
+    
+    public UpstreamAdminController(UpstreamGuard guard, UpstreamTimeoutPolicy timeoutPolicy,
+                                   UpstreamRetryPolicy retryPolicy, TaskReadModelService readModel,
+                                   TaskCallbackService callbackService, UpstreamRecorder recorder) {
+        this.guard = guard;
+        this.timeoutPolicy = timeoutPolicy;
+        this.retryPolicy = retryPolicy;
+        this.readModel = readModel;
+        this.callbackService = callbackService;
+        this.recorder = recorder;
+    }
+    
+    /**
+     * 获取各分组的熔断与并发隔离状态
+     */
+    @GetMapping("/circuit-breakers")
+    public ApiResponse<List<Map<String, Object>>> getCircuitBreakers() {
+        return ApiResponse.success(guard.snapshot());
+    }
+    
+    /**
+     * 获取各超时等级的当前超时与延迟分布
+     */
+    @GetMapping("/timeouts")
+    public ApiResponse<List<Map<String, Object>>> getTimeouts() {
+        return ApiResponse.success(timeoutPolicy.snapshot());
+    }
+    
+    /**
+     * 获取重试与对冲统计
+     */
+    @GetMapping("/retries")
+    public ApiResponse<Map<String, Object>> getRetries() {
+        return ApiResponse.success(retryPolicy.snapshot());
+    }
+    
+    /**
+     * 获取本地任务读模型的同步状态
+     */
+    @GetMapping("/task-sync")
+    public ApiResponse<Map<String, Object>> getTaskSync() {
+        return ApiResponse.success(readModel.snapshot());
+    }
+    
+    /**
+     * 立即与肇新同步任务列表
+     */
+    @PostMapping("/task-sync")
+    public ApiResponse<Map<String, Object>> syncTasks() {
+        if (readModel.isEnabled()) {
+            readModel.sync();
+        }
+        return ApiResponse.success(readModel.snapshot());
+    }
+    
+    /**
+     * 获取肇新任务回调统计
+     */
+    @GetMapping("/callbacks")
+    public ApiResponse<Map<String, Object>> getCallbacks() {
+        return ApiResponse.success(callbackService.snapshot());
+    }
+    
+    /**
+     * 获取肇新调用录制/回放状态
+     */
+    @GetMapping("/recording")
+    public ApiResponse<Map<String, Object>> getRecording() {
+        return ApiResponse.success(recorder.snapshot());
+    }
+}
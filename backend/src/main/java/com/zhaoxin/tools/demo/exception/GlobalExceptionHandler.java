@@ -1,7 +1,11 @@
 package com.zhaoxin.tools.demo.exception;
 
+import com.zhaoxin.tools.demo.model.exception.ApiException;
+import com.zhaoxin.tools.demo.model.exception.UpstreamUnavailableException;
+import com.zhaoxin.tools.demo.model.response.ApiResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -22,6 +26,35 @@ public class GlobalExceptionHandler {
     
     private static final Logger log = LoggerFactory.getLogger(GlobalExceptionHandler.class);
     
+    /**
+     * 处理业务异常（参数错误、幂等冲突等）
+     */
+    @ExceptionHandler(ApiException.class)
+    public ResponseEntity<ApiResponse<Void>> handleApiException(ApiException e) {
+        log.warn("API调用异常: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(new ApiResponse<>(e.getCode(), e.getMessage(), null));
+    }
+    
+    /**
+     * 处理肇新接口熔断或并发已满（快速失败）
+     */
+    @ExceptionHandler(UpstreamUnavailableException.class)
+    public ResponseEntity<Map<String, Object>> handleUpstreamUnavailable(UpstreamUnavailableException e) {
+        log.warn("肇新接口快速失败: group={}, reason={}", e.getGroup(), e.getReason());
+        
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", false);
+        response.put("message", e.getMessage());
+        response.put("code", 503);
+        response.put("group", e.getGroup());
+        response.put("reason", e.getReason());
+        
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(response);
+    }
+    
     /**
      * 处理HTTP服务器错误（如502 Bad Gateway）
      */
@@ -80,6 +113,12 @@ public class GlobalExceptionHandler {
      */
     @ExceptionHandler(Exception.class)
     public ResponseEntity<Map<String, Object>> handleGenericException(Exception e) {
+        // 肇新客户端会包装调用异常，快速失败按 503 返回
+        UpstreamUnavailableException unavailable = UpstreamUnavailableException.find(e);
+        if (unavailable != null) {
+            return handleUpstreamUnavailable(unavailable);
+        }
+        
         log.error("系统异常: {}", e.getMessage(), e);
         
         Map<String, Object> response = new HashMap<>();
@@ -0,0 +1,90 @@
+package com.zhaoxin.tools.demo.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 文件传输 JFR 事件
+ * 从开始读取到关闭输入流为一次传输，下载时包括 Spring 写出响应的时间
+ */
+@Name("com.zhaoxin.FileTransfer")
+@Label("File Transfer")
+@Category({"Zhaoxin", "Files"})
+@Description("文件上传/下载")
+@StackTrace(false)
+public class FileTransferEvent extends jdk.jfr.Event {
+
+    public static final String UPLOAD = "upload";
+    public static final String DOWNLOAD = "download";
+
+    @Label("Direction")
+    String direction;
+
+    @Label("File Name")
+    String fileName;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+
+    /**
+     * 包装输入流：读取字节计数，关闭时提交事件
+     */
+    public static InputStream track(InputStream in, String direction, String fileName) {
+        FileTransferEvent event = new FileTransferEvent();
+        if (!event.isEnabled()) {
+            return in;
+        }
+        event.direction = direction;
+        event.fileName = fileName;
+        event.begin();
+        return new FilterInputStream(in) {
+            private boolean closed;
+
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b >= 0) {
+                    event.bytes++;
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int n = super.read(b, off, len);
+                if (n > 0) {
+                    event.bytes += n;
+                }
+                return n;
+            }
+
+            @Override
+            public long skip(long n) throws IOException {
+                long skipped = super.skip(n);
+                event.bytes += skipped;
+                return skipped;
+            }
+
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    if (!closed) {
+                        closed = true;
+                        event.commit();
+                    }
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,31 @@
+package com.zhaoxin.tools.demo.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * 任务文件名映射持久化 JFR 事件
+ * 持续时间包括等待其他持久化完成（锁竞争）
+ */
+@Name("com.zhaoxin.MappingPersist")
+@Label("Task Mapping Persist")
+@Category({"Zhaoxin", "Storage"})
+@Description("任务文件名映射写入文件")
+@StackTrace(false)
+public class MappingPersistEvent extends jdk.jfr.Event {
+
+    @Label("Task ID")
+    @Description("触发持久化的任务")
+    public String taskId;
+
+    @Label("Mappings")
+    public int mappings;
+
+    @Label("Bytes")
+    @DataAmount
+    public long bytes;
+}
@@ -0,0 +1,81 @@
+package com.zhaoxin.tools.demo.jfr;
+
+import com.zhaoxin.tools.demo.service.UpstreamMetrics;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * 肇新调用 JFR 事件
+ * 一次逻辑调用（含重试与对冲）一个事件，持续时间截止到收到响应头（异步客户端含读取响应体）
+ */
+@Name("com.zhaoxin.UpstreamCall")
+@Label("Zhaoxin Upstream Call")
+@Category({"Zhaoxin", "Upstream"})
+@Description("肇新接口调用")
+@StackTrace(false)
+public class UpstreamCallEvent extends jdk.jfr.Event {
+
+    @Label("Client")
+    String client;
+
+    @Label("Method")
+    String method;
+
+    @Label("Endpoint")
+    @Description("接口模板")
+    String endpoint;
+
+    @Label("Task ID")
+    String taskId;
+
+    @Label("Status")
+    int status;
+
+    @Label("Outcome")
+    String outcome;
+
+    @Label("Request Bytes")
+    @DataAmount
+    long requestBytes;
+
+    @Label("Response Bytes")
+    @DataAmount
+    @Description("响应体字节数，未知时为 -1")
+    long responseBytes;
+
+    /**
+     * 开始计时，调用结束后调用 {@link #finish}
+     */
+    public static UpstreamCallEvent start(String client, String method, String path, long requestBytes) {
+        UpstreamCallEvent event = new UpstreamCallEvent();
+        event.begin();
+        event.client = client;
+        event.method = method;
+        event.endpoint = path;
+        event.requestBytes = requestBytes;
+        return event;
+    }
+
+    /**
+     * 结束计时并提交（未开启录制或低于阈值时不提交）
+     *
+     * @param status 响应状态码，未收到响应时为 null
+     */
+    public void finish(Integer status, long responseBytes, Throwable error) {
+        end();
+        if (!shouldCommit()) {
+            return;
+        }
+        String path = endpoint;
+        this.endpoint = UpstreamMetrics.template(path);
+        this.taskId = UpstreamMetrics.taskId(path);
+        this.status = status != null ? status : -1;
+        this.outcome = UpstreamMetrics.outcome(status, error);
+        this.responseBytes = responseBytes;
+        commit();
+    }
+}
@@ -0,0 +1,64 @@
+package com.zhaoxin.tools.demo.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 肇新调用故障注入规则
+ * 按请求路径（Ant 风格，如 /api/compare/**）匹配，多条规则按顺序取第一条匹配的；
+ * 各比例为 0~1 的概率，对每次实际发出的请求（含重试与对冲）独立抽取
+ */
+@Data
+@NoArgsConstructor
+public class ChaosRule {
+
+    /**
+     * 路径模式，如 /api/rule-extract/extract/page-image/**
+     */
+    private String pattern;
+
+    /**
+     * 请求方法（为空匹配所有方法）
+     */
+    private String method;
+
+    /**
+     * 附加延迟分布：fixed:毫秒、uniform:最小:最大、lognormal:中位数:p99
+     */
+    private String latency;
+
+    /**
+     * 附加延迟的比例（默认每次都加）
+     */
+    private double latencyRate = 1.0;
+
+    /**
+     * 直接返回 5xx 的比例
+     */
+    private double errorRate;
+
+    /**
+     * 返回的状态码
+     */
+    private int errorStatus = 503;
+
+    /**
+     * 读超时的比例：等待该接口当前的读超时后抛出 SocketTimeoutException
+     */
+    private double timeoutRate;
+
+    /**
+     * 连接被重置的比例
+     */
+    private double resetRate;
+
+    /**
+     * 响应体慢速返回的比例
+     */
+    private double dripRate;
+
+    /**
+     * 慢速返回时每秒输出的字节数
+     */
+    private int dripBytesPerSecond = 16384;
+}
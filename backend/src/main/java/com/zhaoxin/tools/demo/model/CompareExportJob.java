@@ -0,0 +1,93 @@
+package com.zhaoxin.tools.demo.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 比对报告导出任务
+ * 相同导出参数的报告缓存在磁盘上，命中缓存的任务创建时即为 completed
+ */
+@Data
+@NoArgsConstructor
+public class CompareExportJob {
+
+    public static final String STATUS_PENDING = "pending";
+    public static final String STATUS_RUNNING = "running";
+    public static final String STATUS_COMPLETED = "completed";
+    public static final String STATUS_FAILED = "failed";
+
+    /**
+     * 导出任务ID
+     */
+    private String jobId;
+
+    /**
+     * 比对任务ID
+     */
+    private String taskId;
+
+    /**
+     * 任务状态：pending（排队中）、running（导出中）、completed（可下载）、failed（导出失败）
+     */
+    private volatile String status;
+
+    /**
+     * 导出进度（0-100），肇新未返回文件大小时导出完成前保持为 0
+     */
+    private volatile int progress;
+
+    /**
+     * 已接收字节数
+     */
+    private volatile long receivedBytes;
+
+    /**
+     * 报告文件大小（未知时为空）
+     */
+    private volatile Long fileSize;
+
+    /**
+     * 是否命中磁盘缓存
+     */
+    private boolean cached;
+
+    /**
+     * 错误信息
+     */
+    private volatile String errorMessage;
+
+    /**
+     * 创建时间
+     */
+    private Long createTime;
+
+    /**
+     * 完成时间
+     */
+    private volatile Long finishTime;
+
+    /**
+     * 导出参数摘要（缓存键）
+     */
+    @JsonIgnore
+    private String cacheKey;
+
+    /**
+     * 下载文件名
+     */
+    private String fileName;
+
+    /**
+     * 导出完成时得到缓存文件
+     */
+    @JsonIgnore
+    private final CompletableFuture<Path> completion = new CompletableFuture<>();
+
+    public boolean isFinished() {
+        return STATUS_COMPLETED.equals(status) || STATUS_FAILED.equals(status);
+    }
+}
@@ -0,0 +1,124 @@
+package com.zhaoxin.tools.demo.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 批量抽取任务
+ * 记录一次ZIP/目录批量抽取中每个文件对应的肇新任务ID
+ */
+@Data
+@NoArgsConstructor
+public class ExtractBatchJob {
+
+    public static final String STATUS_SUBMITTING = "submitting";
+    public static final String STATUS_SUBMITTED = "submitted";
+    public static final String STATUS_FAILED = "failed";
+
+    /**
+     * 批次ID
+     */
+    private String batchId;
+
+    /**
+     * 抽取模板ID
+     */
+    private String templateId;
+
+    /**
+     * 来源：zip、directory
+     */
+    private String source;
+
+    /**
+     * 批次状态：submitting（提交中）、submitted（全部已提交）、failed（批次异常中止）
+     */
+    private volatile String status;
+
+    /**
+     * 批次错误信息
+     */
+    private volatile String errorMessage;
+
+    /**
+     * 创建时间
+     */
+    private Long createTime;
+
+    /**
+     * 全部提交完成时间
+     */
+    private volatile Long finishTime;
+
+    /**
+     * 批次内的文件（按加入顺序，提交过程中可并发读取）
+     */
+    private final Queue<Item> items = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger total = new AtomicInteger();
+
+    /**
+     * 加入一个文件
+     */
+    public void addItem(Item item) {
+        items.add(item);
+        total.incrementAndGet();
+    }
+
+    /**
+     * 文件总数
+     */
+    public int getTotal() {
+        return total.get();
+    }
+
+    /**
+     * 已成功提交的文件数
+     */
+    public long getSubmittedCount() {
+        return items.stream().filter(item -> item.getTaskId() != null).count();
+    }
+
+    /**
+     * 提交失败的文件数
+     */
+    public long getFailedCount() {
+        return items.stream().filter(item -> item.getErrorMessage() != null).count();
+    }
+
+    /**
+     * 批次内的单个文件
+     */
+    @Data
+    @NoArgsConstructor
+    public static class Item {
+        /**
+         * 文件名（ZIP条目名或相对目录的路径）
+         */
+        private String fileName;
+
+        /**
+         * 文件大小
+         */
+        private Long fileSize;
+
+        /**
+         * 肇新任务ID
+         */
+        private volatile String taskId;
+
+        /**
+         * 提交失败原因
+         */
+        private volatile String errorMessage;
+
+        public Item(String fileName, Long fileSize) {
+            this.fileName = fileName;
+            this.fileSize = fileSize;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.zhaoxin.tools.demo.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 任务摘要（本地任务读模型的一行）
+ * 由本服务的提交/删除操作、状态查询结果以及后台与肇新的同步共同维护
+ */
+@Data
+@NoArgsConstructor
+public class TaskSummary {
+
+    /**
+     * 任务ID
+     */
+    private String taskId;
+
+    /**
+     * 任务类型：compare、extract
+     */
+    private String type;
+
+    /**
+     * 任务状态（肇新返回的原始值）
+     */
+    private String status;
+
+    /**
+     * 创建时间（本服务提交的任务为提交时间，否则为首次同步到的时间）
+     */
+    private Long createTime;
+
+    /**
+     * 最后更新时间
+     */
+    private Long updateTime;
+
+    /**
+     * 比对任务原文件名
+     */
+    private String oldFileName;
+
+    /**
+     * 比对任务新文件名
+     */
+    private String newFileName;
+
+    /**
+     * 抽取任务文件名
+     */
+    private String fileName;
+
+    /**
+     * 肇新任务列表中的原始字段
+     */
+    private Map<String, Object> attributes = new LinkedHashMap<>();
+
+    /**
+     * 转换为任务列表中的一项：肇新原始字段，叠加本地的状态与原始文件名
+     */
+    public Map<String, Object> toListItem() {
+        Map<String, Object> item = new LinkedHashMap<>(attributes);
+        item.put("taskId", taskId);
+        if (status != null) {
+            item.put("status", status);
+        }
+        item.putIfAbsent("createTime", createTime);
+        if (oldFileName != null) {
+            item.put("oldFileName", oldFileName);
+        }
+        if (newFileName != null) {
+            item.put("newFileName", newFileName);
+        }
+        if (fileName != null) {
+            item.put("fileName", fileName);
+        }
+        return item;
+    }
+}
@@ -0,0 +1,57 @@
+package com.zhaoxin.tools.demo.model.exception;
+
+/**
+ * 肇新上游接口暂不可用（熔断打开或并发已满），请求被快速拒绝
+ */
+public class UpstreamUnavailableException extends RuntimeException {
+    
+    public static final String REASON_CIRCUIT_OPEN = "CIRCUIT_OPEN";
+    public static final String REASON_BULKHEAD_FULL = "BULKHEAD_FULL";
+    
+    private final String group;
+    private final String reason;
+    private final long retryAfterSeconds;
+    
+    public UpstreamUnavailableException(String group, String reason, String message, long retryAfterSeconds) {
+        super(message);
+        this.group = group;
+        this.reason = reason;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+    
+    /**
+     * 接口分组：extract、compare、compose、files、templates
+     */
+    public String getGroup() {
+        return group;
+    }
+    
+    /**
+     * 拒绝原因：CIRCUIT_OPEN（熔断）、BULKHEAD_FULL（并发已满）
+     */
+    public String getReason() {
+        return reason;
+    }
+    
+    /**
+     * 建议的重试等待时间（秒）
+     */
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+    
+    /**
+     * 在异常链中查找（肇新客户端会将调用异常包装为 RuntimeException）
+     */
+    public static UpstreamUnavailableException find(Throwable e) {
+        for (Throwable current = e; current != null; current = current.getCause()) {
+            if (current instanceof UpstreamUnavailableException) {
+                return (UpstreamUnavailableException) current;
+            }
+            if (current.getCause() == current) {
+                break;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,50 @@
+package com.zhaoxin.tools.demo.model.request;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 合成文件打包下载请求
+ *
+ * 可直接传入合成结果中的 fileId、pdfPath、stampedPdfPath、ridingStampPdfPath，
+ * 也可通过 paths 传入任意文件相对路径，两者可同时使用。
+ */
+@Data
+public class ComposeArtifactRequest {
+
+    /**
+     * 合成文件ID（Word 原件）
+     */
+    private String fileId;
+
+    /**
+     * Word 原件在 ZIP 中的文件名（可选，默认 contract_{fileId}.docx）
+     */
+    private String fileName;
+
+    /**
+     * PDF 版相对路径
+     */
+    private String pdfPath;
+
+    /**
+     * 盖章版相对路径
+     */
+    private String stampedPdfPath;
+
+    /**
+     * 骑缝章版相对路径
+     */
+    private String ridingStampPdfPath;
+
+    /**
+     * 其他文件相对路径列表
+     */
+    private List<String> paths;
+
+    /**
+     * 下载的 ZIP 文件名（可选）
+     */
+    private String zipName;
+}
@@ -0,0 +1,27 @@
+package com.zhaoxin.tools.demo.model.request;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 抽取结果导出请求
+ */
+@Data
+public class ExtractExportRequest {
+
+    /**
+     * 抽取任务ID列表
+     */
+    private List<String> taskIds;
+
+    /**
+     * 批量抽取批次ID（与taskIds二选一，批次中的文件名会一并导出）
+     */
+    private String batchId;
+
+    /**
+     * 导出格式：csv、xlsx
+     */
+    private String format;
+}
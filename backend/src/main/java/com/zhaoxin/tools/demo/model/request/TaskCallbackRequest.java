@@ -0,0 +1,32 @@
+package com.zhaoxin.tools.demo.model.request;
+
+import lombok.Data;
+
+import java.util.Map;
+
+/**
+ * 肇新任务状态回调
+ */
+@Data
+public class TaskCallbackRequest {
+
+    /**
+     * 任务类型：compare、extract
+     */
+    private String type;
+
+    /**
+     * 任务ID
+     */
+    private String taskId;
+
+    /**
+     * 任务状态
+     */
+    private String status;
+
+    /**
+     * 任务状态详情（与状态查询接口的 data 相同）
+     */
+    private Map<String, Object> data;
+}
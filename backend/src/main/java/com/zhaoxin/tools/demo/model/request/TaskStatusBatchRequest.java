@@ -0,0 +1,17 @@
+package com.zhaoxin.tools.demo.model.request;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 批量查询任务状态请求
+ */
+@Data
+public class TaskStatusBatchRequest {
+    
+    /**
+     * 任务ID列表
+     */
+    private List<String> taskIds;
+}
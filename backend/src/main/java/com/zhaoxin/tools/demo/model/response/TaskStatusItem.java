@@ -0,0 +1,36 @@
+package com.zhaoxin.tools.demo.model.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * 批量状态查询中单个任务的结果
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TaskStatusItem {
+    
+    /**
+     * 任务ID
+     */
+    private String taskId;
+    
+    /**
+     * 是否查询成功
+     */
+    private boolean success;
+    
+    /**
+     * 任务状态数据（已替换为原始文件名）
+     */
+    private Map<String, Object> data;
+    
+    /**
+     * 查询失败原因
+     */
+    private String message;
+}
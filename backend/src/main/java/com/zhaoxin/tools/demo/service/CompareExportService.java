@@ -0,0 +1,410 @@
+package com.zhaoxin.tools.demo.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.zhaoxin.tools.demo.model.CompareExportJob;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+/**
+ * 比对报告导出服务
+ *
+ * 导出以后台任务执行：提交后立即返回任务ID，报告从肇新流式写入磁盘缓存，不在内存中缓冲整个文件。
+ * 缓存键为导出参数（按键排序后的 JSON）的 SHA-256，相同参数的导出直接命中缓存；
+ * 同一参数正在导出时，重复提交返回同一个任务。缓存总大小超过上限时按最近访问时间淘汰。
+ */
+@Slf4j
+@Service
+public class CompareExportService {
+
+    /**
+     * 已结束任务的保留时间
+     */
+    private static final long JOB_RETENTION_MILLIS = TimeUnit.HOURS.toMillis(24);
+
+    /**
+     * 最近被访问过的缓存文件在该时间内不淘汰，避免正在下载的文件被删除
+     */
+    private static final long EVICTION_GRACE_MILLIS = 60_000;
+
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final long EVENT_INTERVAL_MILLIS = 500;
+
+    private final ZhaoxinApiClient apiClient;
+    private final ComposeFileCache fileCache;
+    private final ObjectMapper canonicalMapper = new ObjectMapper()
+            .configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+    private final Map<String, CompareExportJob> jobs = new ConcurrentHashMap<>();
+    private final Map<String, CompareExportJob> running = new ConcurrentHashMap<>();
+    private final ExecutorService executor;
+    private final ScheduledExecutorService eventScheduler;
+    private final String directory;
+    private final long maxBytes;
+    private final Object evictionLock = new Object();
+    private Path root;
+
+    public CompareExportService(ZhaoxinApiClient apiClient,
+                                ComposeFileCache fileCache,
+                                @Value("${zhaoxin.compare.export.parallelism:2}") int parallelism,
+                                @Value("${zhaoxin.compare.export.cache-path:./cache/compare-reports}") String directory,
+                                @Value("${zhaoxin.compare.export.cache-max-bytes:536870912}") long maxBytes) {
+        this.apiClient = apiClient;
+        this.fileCache = fileCache;
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.executor = Executors.newFixedThreadPool(Math.max(1, parallelism),
+                new CustomizableThreadFactory("compare-export-"));
+        this.eventScheduler = Executors.newSingleThreadScheduledExecutor(
+                new CustomizableThreadFactory("compare-export-events-"));
+    }
+
+    @PostConstruct
+    public void init() {
+        root = Paths.get(directory).toAbsolutePath().normalize();
+        try {
+            Files.createDirectories(root);
+        } catch (IOException e) {
+            throw new IllegalStateException("无法创建比对报告缓存目录: " + root, e);
+        }
+        try (Stream<Path> files = Files.list(root)) {
+            files.filter(file -> file.getFileName().toString().endsWith(TEMP_SUFFIX))
+                    .forEach(CompareExportService::deleteQuietly);
+        } catch (IOException e) {
+            log.warn("扫描比对报告缓存目录失败: {}", root, e);
+        }
+        log.info("比对报告缓存目录: {}, 上限={} bytes", root, maxBytes);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        eventScheduler.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    /**
+     * 提交导出任务
+     * 命中缓存时返回已完成的任务；同一参数正在导出时返回进行中的任务
+     */
+    public CompareExportJob submit(Map<String, Object> exportData) {
+        evictExpiredJobs();
+
+        String cacheKey = cacheKey(exportData);
+        CompareExportJob job = createJob(exportData, cacheKey);
+        Path file = root.resolve(cacheKey);
+
+        if (Files.exists(file)) {
+            completeJob(job, file, true);
+            jobs.put(job.getJobId(), job);
+            return job;
+        }
+
+        CompareExportJob existing = running.putIfAbsent(cacheKey, job);
+        if (existing != null) {
+            log.info("相同参数的报告正在导出: jobId={}, taskId={}", existing.getJobId(), existing.getTaskId());
+            return existing;
+        }
+        jobs.put(job.getJobId(), job);
+
+        // 占位期间其他任务可能刚好导出完成
+        if (Files.exists(file)) {
+            running.remove(cacheKey, job);
+            completeJob(job, file, true);
+            return job;
+        }
+
+        try {
+            executor.execute(() -> runExport(job, exportData, file));
+        } catch (RejectedExecutionException e) {
+            running.remove(cacheKey, job);
+            failJob(job, new RuntimeException("导出比对报告失败: 服务正在关闭", e));
+        }
+        log.info("创建比对报告导出任务: jobId={}, taskId={}", job.getJobId(), job.getTaskId());
+        return job;
+    }
+
+    /**
+     * 获取导出任务
+     */
+    public CompareExportJob getJob(String jobId) {
+        return jobs.get(jobId);
+    }
+
+    /**
+     * 订阅导出进度（Server-Sent Events）
+     * 状态或进度变化时推送 progress 事件，任务结束后推送最后一次并关闭连接
+     */
+    public SseEmitter subscribe(CompareExportJob job) {
+        SseEmitter emitter = new SseEmitter(0L);
+        AtomicReference<String> lastSent = new AtomicReference<>();
+        AtomicReference<ScheduledFuture<?>> task = new AtomicReference<>();
+        Runnable push = () -> {
+            String state = job.getStatus() + ":" + job.getProgress() + ":" + job.getReceivedBytes();
+            try {
+                if (!state.equals(lastSent.getAndSet(state))) {
+                    emitter.send(SseEmitter.event().name("progress").data(job));
+                }
+                if (job.isFinished()) {
+                    emitter.complete();
+                    cancel(task.get());
+                }
+            } catch (IOException | IllegalStateException e) {
+                // 客户端已断开
+                cancel(task.get());
+            }
+        };
+        emitter.onCompletion(() -> cancel(task.get()));
+        emitter.onTimeout(() -> cancel(task.get()));
+        task.set(eventScheduler.scheduleWithFixedDelay(push, 0, EVENT_INTERVAL_MILLIS, TimeUnit.MILLISECONDS));
+        return emitter;
+    }
+
+    /**
+     * 输出已完成任务的报告文件（支持 sendfile 与 ETag）
+     */
+    public void serve(CompareExportJob job, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        Path file = job.getCompletion().join();
+        touch(file);
+        ComposeFileCache.Entry entry = new ComposeFileCache.Entry(job.getCacheKey(), file, Files.size(file),
+                System.currentTimeMillis());
+        String encodedName = URLEncoder.encode(job.getFileName(), StandardCharsets.UTF_8).replace("+", "%20");
+        fileCache.serve(entry, encodedName, "application/octet-stream", request, response);
+    }
+
+    private void runExport(CompareExportJob job, Map<String, Object> exportData, Path file) {
+        long start = System.currentTimeMillis();
+        job.setStatus(CompareExportJob.STATUS_RUNNING);
+        Path temp = null;
+        try {
+            temp = Files.createTempFile(root, job.getCacheKey() + "-", TEMP_SUFFIX);
+            try (OutputStream out = new ProgressOutputStream(Files.newOutputStream(temp), job)) {
+                apiClient.exportCompareReport(exportData, out, headers -> {
+                    long length = headers.getContentLength();
+                    job.setFileSize(length >= 0 ? length : null);
+                });
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            completeJob(job, file, false);
+            log.info("比对报告导出完成: jobId={}, taskId={}, 大小={} bytes, 耗时={}ms",
+                    job.getJobId(), job.getTaskId(), job.getFileSize(), System.currentTimeMillis() - start);
+            evictIfNecessary(file);
+        } catch (IOException e) {
+            log.error("比对报告写入缓存失败: jobId={}", job.getJobId(), e);
+            failJob(job, new RuntimeException("导出比对报告失败: " + e.getMessage(), e));
+        } catch (RuntimeException e) {
+            failJob(job, e);
+        } finally {
+            running.remove(job.getCacheKey(), job);
+            if (temp != null) {
+                deleteQuietly(temp);
+            }
+        }
+    }
+
+    private CompareExportJob createJob(Map<String, Object> exportData, String cacheKey) {
+        CompareExportJob job = new CompareExportJob();
+        job.setJobId(UUID.randomUUID().toString());
+        Object taskId = exportData.get("taskId");
+        job.setTaskId(taskId != null ? taskId.toString() : null);
+        job.setCacheKey(cacheKey);
+        job.setFileName(fileName(job.getTaskId(), exportData.get("formats")));
+        job.setStatus(CompareExportJob.STATUS_PENDING);
+        job.setCreateTime(System.currentTimeMillis());
+        return job;
+    }
+
+    private void completeJob(CompareExportJob job, Path file, boolean cached) {
+        try {
+            job.setFileSize(Files.size(file));
+        } catch (IOException e) {
+            log.warn("读取报告文件大小失败: {}", file);
+        }
+        if (cached) {
+            touch(file);
+        }
+        job.setCached(cached);
+        job.setReceivedBytes(job.getFileSize() != null ? job.getFileSize() : 0);
+        job.setProgress(100);
+        job.setFinishTime(System.currentTimeMillis());
+        job.setStatus(CompareExportJob.STATUS_COMPLETED);
+        job.getCompletion().complete(file);
+    }
+
+    private void failJob(CompareExportJob job, RuntimeException e) {
+        job.setErrorMessage(e.getMessage());
+        job.setFinishTime(System.currentTimeMillis());
+        job.setStatus(CompareExportJob.STATUS_FAILED);
+        job.getCompletion().completeExceptionally(e);
+    }
+
+    private void evictExpiredJobs() {
+        long expireBefore = System.currentTimeMillis() - JOB_RETENTION_MILLIS;
+        jobs.values().removeIf(job -> job.getFinishTime() != null && job.getFinishTime() < expireBefore);
+    }
+
+    /**
+     * 超过容量上限时按最近访问时间（文件修改时间）淘汰，刚写入及近期访问过的文件保留
+     */
+    private void evictIfNecessary(Path justAdded) {
+        synchronized (evictionLock) {
+            List<Path> files = new ArrayList<>();
+            long total = 0;
+            try (Stream<Path> stream = Files.list(root)) {
+                for (Path file : (Iterable<Path>) stream::iterator) {
+                    if (!file.getFileName().toString().endsWith(TEMP_SUFFIX)) {
+                        files.add(file);
+                        total += Files.size(file);
+                    }
+                }
+            } catch (IOException e) {
+                log.warn("扫描比对报告缓存目录失败: {}", root, e);
+                return;
+            }
+            if (total <= maxBytes) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            files.sort(Comparator.comparingLong(CompareExportService::lastModified));
+            for (Path file : files) {
+                if (total <= maxBytes) {
+                    break;
+                }
+                if (file.equals(justAdded) || now - lastModified(file) < EVICTION_GRACE_MILLIS) {
+                    continue;
+                }
+                try {
+                    long size = Files.size(file);
+                    Files.deleteIfExists(file);
+                    total -= size;
+                } catch (IOException e) {
+                    log.warn("删除比对报告缓存失败: {}", file);
+                }
+            }
+        }
+    }
+
+    /**
+     * 导出参数按键排序序列化后取 SHA-256，键顺序不同的相同参数得到同一缓存键
+     */
+    private String cacheKey(Map<String, Object> exportData) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(canonicalMapper.writeValueAsBytes(exportData));
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException | JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 多种格式时肇新返回 ZIP 压缩包，单一格式时返回对应文件
+     */
+    private static String fileName(String taskId, Object formats) {
+        String base = "比对结果" + (taskId != null ? "-" + taskId : "");
+        if (formats instanceof Collection && ((Collection<?>) formats).size() == 1) {
+            String format = String.valueOf(((Collection<?>) formats).iterator().next());
+            return base + ("doc".equalsIgnoreCase(format) ? ".docx" : "." + format);
+        }
+        return base + ".zip";
+    }
+
+    private static void touch(Path file) {
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            log.debug("更新缓存文件访问时间失败: {}", file);
+        }
+    }
+
+    private static long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static void cancel(ScheduledFuture<?> future) {
+        if (future != null) {
+            future.cancel(false);
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("删除临时文件失败: {}", file);
+        }
+    }
+
+    /**
+     * 写入时更新任务的已接收字节数与进度
+     */
+    private static class ProgressOutputStream extends FilterOutputStream {
+
+        private final CompareExportJob job;
+        private long written;
+
+        ProgressOutputStream(OutputStream out, CompareExportJob job) {
+            super(out);
+            this.job = job;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            written += len;
+            job.setReceivedBytes(written);
+            Long size = job.getFileSize();
+            if (size != null && size > 0) {
+                // 写入缓存完成前最多显示 99%
+                job.setProgress((int) Math.min(99, written * 100 / size));
+            }
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+    }
+}
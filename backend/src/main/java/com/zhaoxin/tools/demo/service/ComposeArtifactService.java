@@ -0,0 +1,287 @@
+package com.zhaoxin.tools.demo.service;
+
+import com.zhaoxin.tools.demo.model.exception.ApiException;
+import com.zhaoxin.tools.demo.model.request.ComposeArtifactRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * 合成文件打包下载服务
+ *
+ * 同一份合成结果的 Word、PDF、盖章版、骑缝章版（或任意路径列表）由本次打包独立的线程并行从肇新下载，
+ * 每个文件直接流式写入临时文件，谁先下载完成谁先写入 ZIP，写入后立即删除临时文件，
+ * 整个过程不在内存中缓冲文件内容。启用合成文件缓存时直接使用缓存文件（打包期间固定，不会被淘汰），不再产生临时文件。
+ * 单个文件下载或读取失败不中断打包，失败信息写入 ZIP 末尾的 errors.txt。
+ */
+@Slf4j
+@Service
+public class ComposeArtifactService {
+
+    private static final String ERRORS_NAME = "errors.txt";
+
+    private final ZhaoxinApiClient apiClient;
+    private final ComposeFileCache fileCache;
+    private final Set<ExecutorService> executors = ConcurrentHashMap.newKeySet();
+    private final int parallelism;
+    private final int maxArtifacts;
+
+    public ComposeArtifactService(ZhaoxinApiClient apiClient,
+                                  ComposeFileCache fileCache,
+                                  @Value("${zhaoxin.compose.artifact.parallelism:4}") int parallelism,
+                                  @Value("${zhaoxin.compose.artifact.max-files:50}") int maxArtifacts) {
+        this.apiClient = apiClient;
+        this.fileCache = fileCache;
+        this.parallelism = Math.max(1, parallelism);
+        this.maxArtifacts = maxArtifacts;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executors.forEach(ExecutorService::shutdownNow);
+    }
+
+    /**
+     * 解析请求中的待下载文件
+     *
+     * @throws ApiException 未指定任何文件或数量超过上限时
+     */
+    public List<Artifact> resolve(ComposeArtifactRequest request) {
+        List<Artifact> artifacts = new ArrayList<>();
+        Set<String> seenPaths = new HashSet<>();
+        if (notBlank(request.getFileId())) {
+            String name = notBlank(request.getFileName()) ? request.getFileName().trim()
+                    : "contract_" + request.getFileId().trim() + ".docx";
+            artifacts.add(new Artifact(request.getFileId().trim(), null, name));
+        }
+        addPath(artifacts, seenPaths, request.getPdfPath());
+        addPath(artifacts, seenPaths, request.getStampedPdfPath());
+        addPath(artifacts, seenPaths, request.getRidingStampPdfPath());
+        if (request.getPaths() != null) {
+            for (String path : request.getPaths()) {
+                addPath(artifacts, seenPaths, path);
+            }
+        }
+
+        if (artifacts.isEmpty()) {
+            throw new ApiException(400, "未指定需要下载的文件");
+        }
+        if (artifacts.size() > maxArtifacts) {
+            throw new ApiException(400, "单次最多打包 " + maxArtifacts + " 个文件");
+        }
+
+        // ZIP 内文件名去重
+        Set<String> names = new HashSet<>();
+        for (Artifact artifact : artifacts) {
+            artifact.entryName = uniqueName(names, artifact.entryName);
+        }
+        return artifacts;
+    }
+
+    /**
+     * 并行下载并按完成顺序写入 ZIP 输出流
+     * 每次打包使用独立的下载线程，慢速上游或慢速客户端只占用本次打包的线程
+     */
+    public void writeZip(List<Artifact> artifacts, OutputStream out) throws IOException {
+        long start = System.currentTimeMillis();
+        BlockingQueue<Artifact> completed = new LinkedBlockingQueue<>();
+        AtomicBoolean closed = new AtomicBoolean();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, Math.max(1, artifacts.size())),
+                new CustomizableThreadFactory("compose-artifact-"));
+        executors.add(executor);
+        List<Future<?>> futures = new ArrayList<>(artifacts.size());
+        for (Artifact artifact : artifacts) {
+            futures.add(executor.submit(() -> {
+                download(artifact, closed);
+                completed.add(artifact);
+            }));
+        }
+
+        List<Artifact> failed = new ArrayList<>();
+        long totalBytes = 0;
+        ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(out, 64 * 1024));
+        try {
+            for (int written = 0; written < artifacts.size(); written++) {
+                Artifact artifact = completed.take();
+                try {
+                    if (artifact.error != null) {
+                        failed.add(artifact);
+                        continue;
+                    }
+                    InputStream in;
+                    try {
+                        in = Files.newInputStream(artifact.content);
+                    } catch (IOException e) {
+                        // 打开失败时尚未写入 ZIP 条目，记为单个文件失败
+                        log.warn("读取合成文件失败: {}, error={}", artifact.source(), e.getMessage());
+                        artifact.error = "读取文件失败: " + e.getMessage();
+                        failed.add(artifact);
+                        continue;
+                    }
+                    try (InputStream content = in) {
+                        zip.putNextEntry(new ZipEntry(artifact.entryName));
+                        totalBytes += content.transferTo(zip);
+                        zip.closeEntry();
+                        zip.flush();
+                    }
+                } finally {
+                    releaseCached(artifact);
+                    deleteQuietly(artifact.tempFile);
+                }
+            }
+
+            if (!failed.isEmpty()) {
+                StringBuilder sb = new StringBuilder();
+                for (Artifact artifact : failed) {
+                    sb.append(artifact.source()).append('\t').append(artifact.error).append("\r\n");
+                }
+                zip.putNextEntry(new ZipEntry(ERRORS_NAME));
+                zip.write(sb.toString().getBytes(StandardCharsets.UTF_8));
+                zip.closeEntry();
+            }
+            zip.finish();
+            zip.flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("打包下载被中断", e);
+        } finally {
+            // 客户端断开等异常退出时，取消未完成的下载并清理已落盘的临时文件
+            closed.set(true);
+            futures.forEach(f -> f.cancel(true));
+            executor.shutdownNow();
+            executors.remove(executor);
+            artifacts.forEach(a -> {
+                releaseCached(a);
+                deleteQuietly(a.tempFile);
+            });
+        }
+
+        log.info("合成文件打包完成: 文件数={}, 失败={}, 字节数={}, 耗时={}ms",
+                artifacts.size(), failed.size(), totalBytes, System.currentTimeMillis() - start);
+    }
+
+    private void download(Artifact artifact, AtomicBoolean closed) {
+        try {
+            if (fileCache.isEnabled()) {
+                ComposeFileCache.Entry entry = artifact.fileId != null
+                        ? fileCache.acquireByFileId(artifact.fileId) : fileCache.acquireByPath(artifact.path);
+                artifact.cached.set(entry);
+                artifact.content = entry.getFile();
+                if (closed.get()) {
+                    // 打包已结束（客户端断开等），不再需要该文件
+                    releaseCached(artifact);
+                }
+                return;
+            }
+            artifact.tempFile = Files.createTempFile("compose-artifact-", ".tmp");
+            artifact.content = artifact.tempFile;
+            try (OutputStream fileOut = Files.newOutputStream(artifact.tempFile)) {
+                if (artifact.fileId != null) {
+                    apiClient.downloadComposeFile(artifact.fileId, fileOut);
+                } else {
+                    apiClient.downloadFileByPath(artifact.path, fileOut);
+                }
+            }
+        } catch (Exception e) {
+            log.warn("下载合成文件失败: {}, error={}", artifact.source(), e.getMessage());
+            artifact.error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+        }
+    }
+
+    private void releaseCached(Artifact artifact) {
+        ComposeFileCache.Entry entry = artifact.cached.getAndSet(null);
+        if (entry != null) {
+            fileCache.release(entry);
+        }
+    }
+
+    private static void addPath(List<Artifact> artifacts, Set<String> seenPaths, String path) {
+        if (!notBlank(path) || !seenPaths.add(path.trim())) {
+            return;
+        }
+        String trimmed = path.trim();
+        String name = trimmed.substring(trimmed.lastIndexOf('/') + 1);
+        artifacts.add(new Artifact(null, trimmed, name.isEmpty() ? "file" : name));
+    }
+
+    private static String uniqueName(Set<String> names, String name) {
+        String safeName = name.replaceAll("[\\\\/:*?\"<>|\\r\\n\\t]", "_");
+        if (names.add(safeName)) {
+            return safeName;
+        }
+        int dot = safeName.lastIndexOf('.');
+        String base = dot > 0 ? safeName.substring(0, dot) : safeName;
+        String ext = dot > 0 ? safeName.substring(dot) : "";
+        for (int i = 2; ; i++) {
+            String candidate = base + "(" + i + ")" + ext;
+            if (names.add(candidate)) {
+                return candidate;
+            }
+        }
+    }
+
+    private static boolean notBlank(String value) {
+        return value != null && !value.trim().isEmpty();
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("删除临时文件失败: {}", file);
+        }
+    }
+
+    /**
+     * 待下载的单个文件（fileId 与 path 二选一）
+     */
+    public static class Artifact {
+        final String fileId;
+        final String path;
+        String entryName;
+        volatile Path tempFile;
+        volatile Path content;
+        /**
+         * 固定中的缓存条目，释放后置空
+         */
+        final AtomicReference<ComposeFileCache.Entry> cached = new AtomicReference<>();
+        volatile String error;
+
+        Artifact(String fileId, String path, String entryName) {
+            this.fileId = fileId;
+            this.path = path;
+            this.entryName = entryName;
+        }
+
+        String source() {
+            return fileId != null ? "fileId=" + fileId : "path=" + path;
+        }
+    }
+}
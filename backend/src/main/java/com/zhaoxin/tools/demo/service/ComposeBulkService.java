@@ -0,0 +1,513 @@
+package com.zhaoxin.tools.demo.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * 批量合同合成服务（邮件合并）
+ *
+ * 先读取全部 CSV / JSON Lines 数据行，再逐行调用 generateContract 并下载结果，
+ * 按完成顺序写入 ZIP 输出流。每个批次使用 zhaoxin.compose.bulk.parallelism 个独立的合成线程，
+ * 同一请求在途的行数不超过并发数，因此内存中最多保留 parallelism 份合同文件。
+ * 每行合成前先经过本地预校验；单行失败只记录到 ZIP 末尾的 manifest.csv，不中断整个批次。
+ * 超过 max-rows 的行、以及单行结果等待超过 row-timeout 后批次中止时未处理的行，同样逐行记录在 manifest.csv 中。
+ */
+@Slf4j
+@Service
+public class ComposeBulkService {
+
+    public static final String FORMAT_CSV = "csv";
+    public static final String FORMAT_JSONL = "jsonl";
+
+    private static final String MANIFEST_NAME = "manifest.csv";
+
+    private final ZhaoxinApiClient apiClient;
+    private final ComposePayloadValidator payloadValidator;
+    private final ComposeIdempotencyService idempotencyService;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Set<ExecutorService> executors = ConcurrentHashMap.newKeySet();
+    private final int parallelism;
+    private final int maxRows;
+    private final long rowTimeoutMillis;
+
+    public ComposeBulkService(ZhaoxinApiClient apiClient,
+                              ComposePayloadValidator payloadValidator,
+                              ComposeIdempotencyService idempotencyService,
+                              @Value("${zhaoxin.compose.bulk.parallelism:4}") int parallelism,
+                              @Value("${zhaoxin.compose.bulk.max-rows:5000}") int maxRows,
+                              @Value("${zhaoxin.compose.bulk.row-timeout:600000}") long rowTimeoutMillis) {
+        this.apiClient = apiClient;
+        this.payloadValidator = payloadValidator;
+        this.idempotencyService = idempotencyService;
+        this.parallelism = Math.max(1, parallelism);
+        this.maxRows = maxRows;
+        this.rowTimeoutMillis = rowTimeoutMillis;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executors.forEach(ExecutorService::shutdownNow);
+    }
+
+    /**
+     * 根据文件名或 Content-Type 判断数据格式
+     */
+    public static String detectFormat(String fileName, String contentType) {
+        String name = fileName != null ? fileName.toLowerCase() : "";
+        String type = contentType != null ? contentType.toLowerCase() : "";
+        if (name.endsWith(".jsonl") || name.endsWith(".ndjson") || name.endsWith(".json")
+                || type.contains("ndjson") || type.contains("jsonl") || type.contains("application/json")) {
+            return FORMAT_JSONL;
+        }
+        return FORMAT_CSV;
+    }
+
+    /**
+     * 读取全部数据行
+     * 在开始输出响应之前调用，避免输出 ZIP 的同时仍在读取请求体；超过 max-rows 的行只保留行号
+     *
+     * @param data CSV（首行为字段tag）或 JSON Lines（每行一个values对象，或包含values的完整合成请求）
+     * @param format csv 或 jsonl
+     */
+    public BulkRows readRows(InputStream data, String format) throws IOException {
+        RowSource source = FORMAT_JSONL.equals(format) ? new JsonLineSource(data) : new CsvSource(data);
+        BulkRows rows = new BulkRows();
+        RowInput row;
+        while ((row = source.next()) != null) {
+            if (rows.rows.size() < maxRows) {
+                rows.rows.add(row);
+            } else {
+                rows.overflow.add(row.rowNumber);
+            }
+        }
+        if (!rows.overflow.isEmpty()) {
+            log.warn("批量合成超过行数上限，剩余数据记录为未处理: maxRows={}, overflow={}", maxRows, rows.overflow.size());
+        }
+        return rows;
+    }
+
+    /**
+     * 批量合成并以 ZIP 流式输出
+     *
+     * 每个批次使用独立的线程池，单行等待超时后取消该批次所有未完成的行并关闭线程池，
+     * 仍阻塞在上游调用中的线程只影响本批次，不占用其他批次的合成线程。
+     *
+     * @param templateCode 模板编号
+     * @param rows {@link #readRows} 读取的数据行
+     * @param nameField 用于生成输出文件名的字段（可选）
+     * @param out 输出流
+     */
+    public void compose(String templateCode, BulkRows rows, String nameField, OutputStream out) throws IOException {
+        long start = System.currentTimeMillis();
+        BlockingQueue<RowResult> completed = new LinkedBlockingQueue<>();
+        List<RowResult> manifest = new ArrayList<>();
+
+        ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(out, 64 * 1024));
+        Map<Integer, Future<?>> outstanding = new TreeMap<>();
+        // 不为空时剩余的行不再合成，只以此原因记录到 manifest
+        String skipReason = null;
+        Iterator<RowInput> it = rows.rows.iterator();
+        RowInput next = it.hasNext() ? it.next() : null;
+
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism,
+                new CustomizableThreadFactory("compose-bulk-"));
+        executors.add(executor);
+        try {
+            while (next != null || !outstanding.isEmpty()) {
+                if (next != null && skipReason != null) {
+                    manifest.add(RowResult.skipped(next.rowNumber, skipReason));
+                    next = it.hasNext() ? it.next() : null;
+                    continue;
+                }
+                if (next != null && outstanding.size() < parallelism) {
+                    RowInput row = next;
+                    outstanding.put(row.rowNumber,
+                            executor.submit(() -> completed.add(processSafely(templateCode, row, nameField))));
+                    next = it.hasNext() ? it.next() : null;
+                    continue;
+                }
+
+                RowResult result = completed.poll(rowTimeoutMillis, TimeUnit.MILLISECONDS);
+                if (result == null) {
+                    log.warn("批量合成等待单行结果超时，中止批次: templateCode={}, 未完成行={}",
+                            templateCode, outstanding.keySet());
+                    for (Map.Entry<Integer, Future<?>> pending : outstanding.entrySet()) {
+                        pending.getValue().cancel(true);
+                        RowResult timedOut = new RowResult(pending.getKey());
+                        timedOut.error = "等待合成结果超过 " + rowTimeoutMillis + "ms";
+                        manifest.add(timedOut);
+                    }
+                    outstanding.clear();
+                    skipReason = "批次因等待超时中止，未处理";
+                    continue;
+                }
+                if (outstanding.remove(result.rowNumber) == null) {
+                    // 已按超时记录的行
+                    continue;
+                }
+                writeResult(zip, result);
+                manifest.add(result);
+            }
+            for (Integer rowNumber : rows.overflow) {
+                manifest.add(RowResult.skipped(rowNumber, "超过行数上限 " + maxRows + "，未处理"));
+            }
+
+            writeManifest(zip, manifest);
+            zip.finish();
+            zip.flush();
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("批量合成被中断", e);
+        } finally {
+            executor.shutdownNow();
+            executors.remove(executor);
+        }
+
+        long failed = manifest.stream().filter(r -> r.error != null && !r.skipped).count();
+        long skipped = manifest.stream().filter(r -> r.skipped).count();
+        log.info("批量合成完成: templateCode={}, 行数={}, 失败={}, 未处理={}, 耗时={}ms",
+                templateCode, manifest.size(), failed, skipped, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 工作线程入口：任何异常（包括 Error）都转为失败行，保证每个已提交的行都有结果返回
+     */
+    private RowResult processSafely(String templateCode, RowInput row, String nameField) {
+        try {
+            return process(templateCode, row, nameField);
+        } catch (Throwable t) {
+            log.error("批量合成单行异常: row={}", row.rowNumber, t);
+            RowResult result = new RowResult(row.rowNumber);
+            result.error = "处理异常: " + t;
+            return result;
+        }
+    }
+
+    /**
+     * 处理单行：合成 -> 下载
+     */
+    @SuppressWarnings("unchecked")
+    private RowResult process(String templateCode, RowInput row, String nameField) {
+        RowResult result = new RowResult(row.rowNumber);
+        long start = System.currentTimeMillis();
+        try {
+            if (row.error != null) {
+                result.error = row.error;
+                return result;
+            }
+
+            Map<String, Object> request = new LinkedHashMap<>(row.payload);
+            request.putIfAbsent("templateCode", templateCode);
+            Map<String, Object> values = request.get("values") instanceof Map
+                    ? (Map<String, Object>) request.get("values") : Map.of();
+            result.entryName = entryName(row.rowNumber, nameField != null ? values.get(nameField) : null);
+
+            List<ComposePayloadValidator.FieldError> errors = payloadValidator.validate(request);
+            if (!errors.isEmpty()) {
+                StringBuilder message = new StringBuilder("参数校验失败:");
+                for (ComposePayloadValidator.FieldError error : errors) {
+                    message.append(' ').append(error.getField()).append(' ').append(error.getMessage()).append(';');
+                }
+                result.error = message.toString();
+                return result;
+            }
+
+            // 按请求内容去重，重试整个批次时已合成的行不再重复调用
+            Map<String, Object> response = idempotencyService
+                    .execute(ComposeIdempotencyService.SCOPE_BULK, null, request,
+                            () -> apiClient.generateContract(request))
+                    .getResponse();
+            Object fileId = findFileId(response);
+            if (fileId == null) {
+                Object message = response != null ? response.get("message") : null;
+                result.error = message != null ? message.toString() : "未返回文件ID";
+                return result;
+            }
+
+            result.fileId = fileId.toString();
+            result.content = apiClient.downloadComposeFile(result.fileId);
+        } catch (Exception e) {
+            log.warn("批量合成单行失败: row={}, error={}", row.rowNumber, e.getMessage());
+            result.error = e.getMessage();
+        } finally {
+            result.durationMillis = System.currentTimeMillis() - start;
+        }
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object findFileId(Map<String, Object> response) {
+        Map<String, Object> current = response;
+        // 兼容 {fileId} / {data:{fileId}} / {data:{data:{fileId}}}
+        for (int depth = 0; current != null && depth < 3; depth++) {
+            if (current.get("fileId") != null) {
+                return current.get("fileId");
+            }
+            current = current.get("data") instanceof Map ? (Map<String, Object>) current.get("data") : null;
+        }
+        return null;
+    }
+
+    private void writeResult(ZipOutputStream zip, RowResult result) throws IOException {
+        if (result.content == null) {
+            return;
+        }
+        zip.putNextEntry(new ZipEntry(result.entryName));
+        zip.write(result.content);
+        zip.closeEntry();
+        zip.flush();
+        // 写出后立即释放文件内容，manifest 只保留元数据
+        result.content = null;
+    }
+
+    private void writeManifest(ZipOutputStream zip, List<RowResult> manifest) throws IOException {
+        manifest.sort((a, b) -> Integer.compare(a.rowNumber, b.rowNumber));
+        StringBuilder sb = new StringBuilder("\uFEFF行号,状态,文件ID,文件名,耗时(ms),错误信息\r\n");
+        for (RowResult r : manifest) {
+            sb.append(r.rowNumber).append(',')
+              .append(r.skipped ? "未处理" : r.error == null ? "成功" : "失败").append(',')
+              .append(r.fileId != null ? r.fileId : "").append(',')
+              .append(r.error == null && r.entryName != null ? csvCell(r.entryName) : "").append(',')
+              .append(r.durationMillis).append(',')
+              .append(r.error != null ? csvCell(r.error) : "")
+              .append("\r\n");
+        }
+        zip.putNextEntry(new ZipEntry(MANIFEST_NAME));
+        zip.write(sb.toString().getBytes(StandardCharsets.UTF_8));
+        zip.closeEntry();
+    }
+
+    private static String entryName(int rowNumber, Object name) {
+        String prefix = String.format("%04d", rowNumber);
+        if (name == null || name.toString().trim().isEmpty()) {
+            return "contract_" + prefix + ".docx";
+        }
+        String safeName = name.toString().trim().replaceAll("[\\\\/:*?\"<>|\\r\\n\\t]", "_");
+        if (safeName.length() > 80) {
+            safeName = safeName.substring(0, 80);
+        }
+        return prefix + "_" + safeName + ".docx";
+    }
+
+    private static String csvCell(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    // ==================== 数据读取 ====================
+
+    /**
+     * 单行输入，解析失败时 error 不为空
+     */
+    private static class RowInput {
+        final int rowNumber;
+        final Map<String, Object> payload;
+        final String error;
+
+        RowInput(int rowNumber, Map<String, Object> payload, String error) {
+            this.rowNumber = rowNumber;
+            this.payload = payload;
+            this.error = error;
+        }
+    }
+
+    /**
+     * 一次批量合成的全部数据行
+     */
+    public static class BulkRows {
+        private final List<RowInput> rows = new ArrayList<>();
+        /**
+         * 超过 max-rows 的行号
+         */
+        private final List<Integer> overflow = new ArrayList<>();
+
+        public int size() {
+            return rows.size() + overflow.size();
+        }
+    }
+
+    /**
+     * 单行处理结果
+     */
+    private static class RowResult {
+        final int rowNumber;
+        String entryName;
+        String fileId;
+        byte[] content;
+        String error;
+        boolean skipped;
+        long durationMillis;
+
+        RowResult(int rowNumber) {
+            this.rowNumber = rowNumber;
+        }
+
+        static RowResult skipped(int rowNumber, String reason) {
+            RowResult result = new RowResult(rowNumber);
+            result.error = reason;
+            result.skipped = true;
+            return result;
+        }
+    }
+
+    private interface RowSource {
+        /**
+         * 读取下一行，没有更多数据时返回 null
+         */
+        RowInput next() throws IOException;
+    }
+
+    /**
+     * JSON Lines：每行一个 values 对象，或包含 values 字段的完整合成请求
+     */
+    private class JsonLineSource implements RowSource {
+        private final BufferedReader reader;
+        private int rowNumber;
+
+        JsonLineSource(InputStream in) {
+            this.reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public RowInput next() throws IOException {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = stripBom(line).trim();
+                if (line.isEmpty()) {
+                    continue;
+                }
+                rowNumber++;
+                try {
+                    Map<String, Object> object = objectMapper.readValue(line, new TypeReference<Map<String, Object>>() {});
+                    Map<String, Object> payload = object.containsKey("values") ? object : Map.of("values", object);
+                    return new RowInput(rowNumber, payload, null);
+                } catch (JsonProcessingException e) {
+                    return new RowInput(rowNumber, null, "JSON格式错误: " + e.getOriginalMessage());
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * CSV：首行为字段tag，其余每行对应一份合同的 values（支持引号包裹及字段内换行）
+     */
+    private static class CsvSource implements RowSource {
+        private final BufferedReader reader;
+        private List<String> header;
+        private int rowNumber;
+
+        CsvSource(InputStream in) {
+            this.reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public RowInput next() throws IOException {
+            if (header == null) {
+                header = readRecord();
+                if (header == null) {
+                    return null;
+                }
+                if (!header.isEmpty()) {
+                    header.set(0, stripBom(header.get(0)).trim());
+                }
+            }
+
+            List<String> record;
+            do {
+                record = readRecord();
+                if (record == null) {
+                    return null;
+                }
+            } while (record.size() == 1 && record.get(0).isEmpty());
+
+            rowNumber++;
+            if (record.size() > header.size()) {
+                return new RowInput(rowNumber, null, "列数(" + record.size() + ")多于表头(" + header.size() + ")");
+            }
+            Map<String, Object> values = new LinkedHashMap<>();
+            for (int i = 0; i < record.size(); i++) {
+                values.put(header.get(i).trim(), record.get(i));
+            }
+            Map<String, Object> payload = new LinkedHashMap<>();
+            payload.put("values", values);
+            return new RowInput(rowNumber, payload, null);
+        }
+
+        private List<String> readRecord() throws IOException {
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            int c = reader.read();
+            if (c == -1) {
+                return null;
+            }
+            while (c != -1) {
+                char ch = (char) c;
+                if (quoted) {
+                    if (ch == '"') {
+                        reader.mark(1);
+                        int peek = reader.read();
+                        if (peek == '"') {
+                            field.append('"');
+                        } else {
+                            quoted = false;
+                            reader.reset();
+                        }
+                    } else {
+                        field.append(ch);
+                    }
+                } else if (ch == '"' && field.length() == 0) {
+                    quoted = true;
+                } else if (ch == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else if (ch == '\n') {
+                    break;
+                } else if (ch != '\r') {
+                    field.append(ch);
+                }
+                c = reader.read();
+            }
+            fields.add(field.toString());
+            return fields;
+        }
+    }
+
+    private static String stripBom(String value) {
+        return value.startsWith("\uFEFF") ? value.substring(1) : value;
+    }
+}
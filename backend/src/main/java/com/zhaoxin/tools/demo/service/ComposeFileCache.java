@@ -0,0 +1,469 @@
+package com.zhaoxin.tools.demo.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.stream.Stream;
+
+/**
+ * 合成文件本地磁盘缓存
+ *
+ * 肇新生成的合同文件（按 fileId 或相对路径下载）生成后不再变化，因此缓存条目永不过期，
+ * 仅在总大小超过 zhaoxin.compose.file-cache.max-bytes 时按最近访问时间淘汰；上限是硬性的，
+ * 近期访问过的条目只是优先保留，只有被固定的条目和刚写入的条目不会被淘汰。
+ * 同一文件的并发未命中只向肇新下载一次；命中时通过 Tomcat sendfile 零拷贝输出，
+ * 并返回基于缓存键的强 ETag；客户端带 If-None-Match 重复请求时，控制器先调用 notModifiedBy* 直接返回 304，
+ * 不查缓存也不访问肇新。
+ * 需要较长时间持有文件的调用方（如打包下载）通过 acquireBy* 获取被固定的条目，固定期间不会被淘汰，用完后 release。
+ */
+@Slf4j
+@Service
+public class ComposeFileCache {
+
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private static final String CACHE_CONTROL = "private, max-age=31536000, immutable";
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private final ZhaoxinApiClient apiClient;
+    private final boolean enabled;
+    private final String directory;
+    private final long maxBytes;
+    /**
+     * 最近被访问过的条目在该时间内优先保留，减少慢速客户端正在 sendfile 输出的文件被删除的机会；
+     * 仅淘汰保护期外的条目仍超出上限时，保护期内的条目同样按最近访问时间淘汰
+     */
+    private final long evictionGraceMillis;
+    private final LongSupplier clock;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<Entry>> loading = new ConcurrentHashMap<>();
+    private final AtomicLong totalBytes = new AtomicLong();
+    private final Object evictionLock = new Object();
+    private Path root;
+
+    @Autowired
+    public ComposeFileCache(ZhaoxinApiClient apiClient,
+                            @Value("${zhaoxin.compose.file-cache.enabled:true}") boolean enabled,
+                            @Value("${zhaoxin.compose.file-cache.path:./cache/compose-files}") String directory,
+                            @Value("${zhaoxin.compose.file-cache.max-bytes:1073741824}") long maxBytes,
+                            @Value("${zhaoxin.compose.file-cache.eviction-grace:600000}") long evictionGraceMillis) {
+        this(apiClient, enabled, directory, maxBytes, evictionGraceMillis, System::currentTimeMillis);
+    }
+
+    ComposeFileCache(ZhaoxinApiClient apiClient, boolean enabled, String directory, long maxBytes,
+                     long evictionGraceMillis, LongSupplier clock) {
+        this.apiClient = apiClient;
+        this.enabled = enabled;
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.evictionGraceMillis = evictionGraceMillis;
+        this.clock = clock;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            log.info("合成文件缓存未启用");
+            return;
+        }
+        root = Paths.get(directory).toAbsolutePath().normalize();
+        try {
+            Files.createDirectories(root);
+        } catch (IOException e) {
+            throw new IllegalStateException("无法创建合成文件缓存目录: " + root, e);
+        }
+
+        // 重启后恢复已有缓存，清理上次未完成的临时文件
+        try (Stream<Path> files = Files.list(root)) {
+            files.forEach(file -> {
+                String name = file.getFileName().toString();
+                try {
+                    if (name.endsWith(TEMP_SUFFIX)) {
+                        Files.deleteIfExists(file);
+                        return;
+                    }
+                    long size = Files.size(file);
+                    Entry entry = new Entry(name, file, size, Files.getLastModifiedTime(file).toMillis());
+                    entries.put(name, entry);
+                    totalBytes.addAndGet(size);
+                } catch (IOException e) {
+                    log.warn("读取缓存文件失败: {}", file);
+                }
+            });
+        } catch (IOException e) {
+            log.warn("扫描合成文件缓存目录失败: {}", root, e);
+        }
+        evictIfNecessary(null);
+        log.info("合成文件缓存目录: {}, 已有文件数={}, 占用={} bytes, 上限={} bytes",
+                root, entries.size(), totalBytes.get(), maxBytes);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 获取按文件ID下载的合同文件，未命中时从肇新下载
+     */
+    public Entry getByFileId(String fileId) throws IOException {
+        return get("id:" + fileId, out -> apiClient.downloadComposeFile(fileId, out), false);
+    }
+
+    /**
+     * 获取按相对路径下载的文件，未命中时从肇新下载
+     */
+    public Entry getByPath(String path) throws IOException {
+        return get("path:" + path, out -> apiClient.downloadFileByPath(path, out), false);
+    }
+
+    /**
+     * 请求的 If-None-Match 与按文件ID缓存的文件 ETag 一致时直接返回 304（不查缓存、不访问肇新）
+     *
+     * @return 已输出 304 时返回 true
+     */
+    public boolean notModifiedByFileId(String fileId, HttpServletRequest request, HttpServletResponse response) {
+        return notModified(hash("id:" + fileId), request, response);
+    }
+
+    /**
+     * 同 {@link #notModifiedByFileId}，按相对路径
+     */
+    public boolean notModifiedByPath(String path, HttpServletRequest request, HttpServletResponse response) {
+        return notModified(hash("path:" + path), request, response);
+    }
+
+    private static boolean notModified(String name, HttpServletRequest request, HttpServletResponse response) {
+        String etag = etag(name);
+        if (!matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+            return false;
+        }
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL);
+        response.setHeader(HttpHeaders.ACCESS_CONTROL_EXPOSE_HEADERS, HttpHeaders.ETAG);
+        response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        return true;
+    }
+
+    /**
+     * 同 {@link #getByFileId}，返回的条目被固定直到调用 {@link #release}
+     */
+    public Entry acquireByFileId(String fileId) throws IOException {
+        return get("id:" + fileId, out -> apiClient.downloadComposeFile(fileId, out), true);
+    }
+
+    /**
+     * 同 {@link #getByPath}，返回的条目被固定直到调用 {@link #release}
+     */
+    public Entry acquireByPath(String path) throws IOException {
+        return get("path:" + path, out -> apiClient.downloadFileByPath(path, out), true);
+    }
+
+    /**
+     * 释放 acquireBy* 固定的条目
+     */
+    public void release(Entry entry) {
+        entry.unpin();
+        // 释放后重新计算淘汰保护期
+        entry.touch(clock.getAsLong());
+    }
+
+    private Entry get(String key, Downloader downloader, boolean pin) throws IOException {
+        String name = hash(key);
+        while (true) {
+            Entry entry = entries.get(name);
+            if (entry != null && Files.exists(entry.file)) {
+                if (!pin || entry.pin()) {
+                    entry.touch(clock.getAsLong());
+                    return entry;
+                }
+                // 条目正在被淘汰，等它移出后重新获取
+                Thread.yield();
+                continue;
+            }
+
+            Entry loaded = loadOnce(key, name, downloader);
+            if (!pin || loaded.pin()) {
+                return loaded;
+            }
+        }
+    }
+
+    /**
+     * 并发未命中合并为一次下载
+     */
+    private Entry loadOnce(String key, String name, Downloader downloader) throws IOException {
+        CompletableFuture<Entry> future = new CompletableFuture<>();
+        CompletableFuture<Entry> existing = loading.putIfAbsent(name, future);
+        if (existing != null) {
+            return join(existing);
+        }
+
+        try {
+            Entry loaded = load(key, name, downloader);
+            future.complete(loaded);
+            return loaded;
+        } catch (IOException | RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(name, future);
+        }
+    }
+
+    private Entry load(String key, String name, Downloader downloader) throws IOException {
+        long start = System.currentTimeMillis();
+        Path temp = Files.createTempFile(root, name + "-", TEMP_SUFFIX);
+        try {
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                downloader.download(out);
+            }
+            Path file = root.resolve(name);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            Entry entry = new Entry(name, file, Files.size(file), clock.getAsLong());
+            Entry previous = entries.put(name, entry);
+            totalBytes.addAndGet(entry.size - (previous != null ? previous.size : 0));
+            log.info("合成文件已缓存: {}, 大小={} bytes, 耗时={}ms", key, entry.size, System.currentTimeMillis() - start);
+
+            evictIfNecessary(entry);
+            return entry;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static Entry join(CompletableFuture<Entry> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * 超过容量上限时按最近访问时间淘汰：先淘汰保护期外的条目，仍超出时再淘汰保护期内的条目；
+     * 刚写入及被固定的条目保留
+     */
+    private void evictIfNecessary(Entry justAdded) {
+        if (totalBytes.get() <= maxBytes) {
+            return;
+        }
+        synchronized (evictionLock) {
+            long now = clock.getAsLong();
+            List<Entry> candidates = new ArrayList<>(entries.values());
+            candidates.sort(Comparator.comparingLong(e -> e.lastAccess));
+            for (Entry entry : candidates) {
+                if (totalBytes.get() <= maxBytes) {
+                    return;
+                }
+                if (now - entry.lastAccess >= evictionGraceMillis) {
+                    evict(entry, justAdded);
+                }
+            }
+            for (Entry entry : candidates) {
+                if (totalBytes.get() <= maxBytes) {
+                    return;
+                }
+                evict(entry, justAdded);
+            }
+            log.warn("合成文件缓存超出上限（剩余条目均被固定）: {} bytes", totalBytes.get());
+        }
+    }
+
+    private void evict(Entry entry, Entry justAdded) {
+        if (entry == justAdded || !entry.retire()) {
+            return;
+        }
+        if (entries.remove(entry.name, entry)) {
+            totalBytes.addAndGet(-entry.size);
+            try {
+                Files.deleteIfExists(entry.file);
+            } catch (IOException e) {
+                log.warn("删除缓存文件失败: {}", entry.file);
+            }
+        }
+    }
+
+    /**
+     * 输出缓存文件
+     * 支持 If-None-Match 条件请求；容器支持 sendfile 时由 Tomcat 零拷贝发送，否则通过 FileChannel.transferTo 输出。
+     */
+    public void serve(Entry entry, String fileName, String contentType,
+                      HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String etag = entry.etag();
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename*=UTF-8''" + fileName);
+        response.setHeader(HttpHeaders.ACCESS_CONTROL_EXPOSE_HEADERS,
+                HttpHeaders.CONTENT_DISPOSITION + ", " + HttpHeaders.ETAG);
+
+        if (matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        response.setContentType(contentType);
+        response.setContentLengthLong(entry.size);
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, entry.file.toString());
+            request.setAttribute(SENDFILE_START, 0L);
+            request.setAttribute(SENDFILE_END, entry.size);
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(entry.file, StandardOpenOption.READ)) {
+            OutputStream out = response.getOutputStream();
+            long position = 0;
+            while (position < entry.size) {
+                position += channel.transferTo(position, entry.size - position, Channels.newChannel(out));
+            }
+            out.flush();
+        }
+    }
+
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String value = candidate.trim();
+            if (value.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 缓存文件内容不可变，缓存键摘要即可作为强校验器；不依赖文件大小，未命中缓存时也能判断
+     */
+    private static String etag(String name) {
+        return "\"" + name.substring(0, 32) + "\"";
+    }
+
+    private static String hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Downloader {
+        void download(OutputStream out) throws IOException;
+    }
+
+    /**
+     * 缓存条目
+     */
+    public static class Entry {
+        final String name;
+        final Path file;
+        final long size;
+        volatile long lastAccess;
+
+        /**
+         * 固定计数，-1 表示已被淘汰、不能再固定
+         */
+        private final AtomicInteger pins = new AtomicInteger();
+
+        Entry(String name, Path file, long size, long lastAccess) {
+            this.name = name;
+            this.file = file;
+            this.size = size;
+            this.lastAccess = lastAccess;
+        }
+
+        void touch(long now) {
+            lastAccess = now;
+        }
+
+        boolean pin() {
+            while (true) {
+                int current = pins.get();
+                if (current < 0) {
+                    return false;
+                }
+                if (pins.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        void unpin() {
+            if (pins.decrementAndGet() < 0) {
+                throw new IllegalStateException("缓存条目释放次数多于固定次数: " + name);
+            }
+        }
+
+        boolean isPinned() {
+            return pins.get() > 0;
+        }
+
+        /**
+         * 未被固定时标记为已淘汰
+         */
+        boolean retire() {
+            return pins.compareAndSet(0, -1);
+        }
+
+        public Path getFile() {
+            return file;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public String etag() {
+            return ComposeFileCache.etag(name);
+        }
+    }
+}
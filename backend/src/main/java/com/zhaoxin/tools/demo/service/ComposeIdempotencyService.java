@@ -0,0 +1,309 @@
+package com.zhaoxin.tools.demo.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.zhaoxin.tools.demo.model.exception.ApiException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * 合成请求幂等服务
+ *
+ * 幂等键取自请求头 Idempotency-Key；未提供时使用规范化请求体（键排序后的JSON）的 SHA-256。
+ * 键按调用方的作用域（接口）隔离，同一 Idempotency-Key 在不同接口上互不影响；
+ * 同一作用域内幂等键用于不同的请求内容时抛出 code 为 409 的 ApiException。
+ * 成功结果（含 fileId）在 zhaoxin.compose.idempotency.window 秒内对重复请求直接返回；
+ * 并发的重复请求等待第一次调用完成并共享其结果；失败结果不缓存。
+ */
+@Slf4j
+@Service
+public class ComposeIdempotencyService {
+
+    /**
+     * 作用域：单个合成接口
+     */
+    public static final String SCOPE_GENERATE = "compose/generate";
+
+    /**
+     * 作用域：批量合成中的单行
+     */
+    public static final String SCOPE_BULK = "compose/bulk";
+
+    private final ObjectMapper canonicalMapper = JsonMapper.builder()
+            .enable(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY)
+            .enable(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS)
+            .build();
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final boolean enabled;
+    private final long windowMillis;
+    private final long waitMillis;
+    private final int maxEntries;
+
+    public ComposeIdempotencyService(@Value("${zhaoxin.compose.idempotency.enabled:true}") boolean enabled,
+                                     @Value("${zhaoxin.compose.idempotency.window:600}") long windowSeconds,
+                                     @Value("${zhaoxin.api.timeout:120000}") long waitMillis,
+                                     @Value("${zhaoxin.compose.idempotency.max-entries:10000}") int maxEntries) {
+        this.enabled = enabled;
+        this.windowMillis = TimeUnit.SECONDS.toMillis(windowSeconds);
+        this.waitMillis = waitMillis;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * 幂等执行结果
+     */
+    public static class Result {
+        private final Map<String, Object> response;
+        private final boolean replayed;
+
+        Result(Map<String, Object> response, boolean replayed) {
+            this.response = response;
+            this.replayed = replayed;
+        }
+
+        public Map<String, Object> getResponse() {
+            return response;
+        }
+
+        /**
+         * 是否为重复请求（返回的是已有结果）
+         */
+        public boolean isReplayed() {
+            return replayed;
+        }
+    }
+
+    /**
+     * 按幂等键执行合成调用
+     *
+     * @param scope 作用域（调用接口）
+     * @param idempotencyKey 请求头中的幂等键（可为空）
+     * @param request 合成请求
+     * @param call 实际的合成调用
+     */
+    public Result execute(String scope, String idempotencyKey, Map<String, Object> request,
+                          Supplier<Map<String, Object>> call) {
+        if (!enabled) {
+            return new Result(call.get(), false);
+        }
+
+        String fingerprint = fingerprint(request);
+        String key = cacheKey(scope, idempotencyKey, fingerprint);
+
+        while (true) {
+            Entry existing = entries.get(key);
+            if (existing != null && existing.isExpired(windowMillis)) {
+                entries.remove(key, existing);
+                continue;
+            }
+
+            if (existing != null) {
+                if (!existing.fingerprint.equals(fingerprint)) {
+                    throw new ApiException(409, "Idempotency-Key 已用于不同的合成请求");
+                }
+                log.info("重复的合成请求，复用已有结果: key={}", key);
+                return new Result(await(existing), true);
+            }
+
+            Entry created = new Entry(fingerprint);
+            if (entries.putIfAbsent(key, created) != null) {
+                // 并发插入，重新读取
+                continue;
+            }
+            evictIfNecessary();
+            return new Result(runAndComplete(key, created, call), false);
+        }
+    }
+
+    /**
+     * 按幂等键执行异步合成调用，语义与 {@link #execute} 相同，等待重复请求时不占用线程
+     *
+     * @param scope 作用域（调用接口）
+     * @param idempotencyKey 请求头中的幂等键（可为空）
+     * @param request 合成请求
+     * @param call 实际的异步合成调用
+     */
+    public CompletableFuture<Result> executeAsync(String scope, String idempotencyKey, Map<String, Object> request,
+                                                  Supplier<CompletableFuture<Map<String, Object>>> call) {
+        if (!enabled) {
+            return call.get().thenApply(response -> new Result(response, false));
+        }
+
+        String fingerprint = fingerprint(request);
+        String key = cacheKey(scope, idempotencyKey, fingerprint);
+
+        while (true) {
+            Entry existing = entries.get(key);
+            if (existing != null && existing.isExpired(windowMillis)) {
+                entries.remove(key, existing);
+                continue;
+            }
+
+            if (existing != null) {
+                if (!existing.fingerprint.equals(fingerprint)) {
+                    throw new ApiException(409, "Idempotency-Key 已用于不同的合成请求");
+                }
+                log.info("重复的合成请求，复用已有结果: key={}", key);
+                // 在依赖 Future 上计时，超时不影响共享的结果
+                return existing.future.thenApply(response -> new Result(response, true))
+                        .orTimeout(waitMillis, TimeUnit.MILLISECONDS)
+                        .exceptionally(e -> {
+                            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                            if (cause instanceof TimeoutException) {
+                                throw new ApiException("等待相同合成请求的结果超时");
+                            }
+                            throw cause instanceof RuntimeException ? (RuntimeException) cause
+                                    : new ApiException(cause.getMessage(), cause);
+                        });
+            }
+
+            Entry created = new Entry(fingerprint);
+            if (entries.putIfAbsent(key, created) != null) {
+                continue;
+            }
+            evictIfNecessary();
+
+            CompletableFuture<Map<String, Object>> pending;
+            try {
+                pending = call.get();
+            } catch (RuntimeException | Error e) {
+                entries.remove(key, created);
+                created.future.completeExceptionally(e);
+                throw e;
+            }
+            return pending.handle((response, error) -> {
+                if (error != null) {
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null
+                            ? error.getCause() : error;
+                    entries.remove(key, created);
+                    created.future.completeExceptionally(cause);
+                    throw cause instanceof RuntimeException ? (RuntimeException) cause : new CompletionException(cause);
+                }
+                complete(key, created, response);
+                return new Result(response, false);
+            });
+        }
+    }
+
+    private Map<String, Object> runAndComplete(String key, Entry entry, Supplier<Map<String, Object>> call) {
+        Map<String, Object> response;
+        try {
+            response = call.get();
+        } catch (RuntimeException | Error e) {
+            entries.remove(key, entry);
+            entry.future.completeExceptionally(e);
+            throw e;
+        }
+
+        complete(key, entry, response);
+        return response;
+    }
+
+    private void complete(String key, Entry entry, Map<String, Object> response) {
+        if (!isSuccess(response)) {
+            // 失败结果不缓存，等待中的重复请求共享本次结果，之后的请求重新调用
+            entries.remove(key, entry);
+        }
+        entry.completedAt = System.currentTimeMillis();
+        entry.future.complete(response);
+    }
+
+    private Map<String, Object> await(Entry entry) {
+        try {
+            return entry.future.get(waitMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ApiException("等待合成结果被中断");
+        } catch (TimeoutException e) {
+            throw new ApiException("等待相同合成请求的结果超时");
+        } catch (ExecutionException | CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            throw cause instanceof RuntimeException ? (RuntimeException) cause
+                    : new ApiException(cause.getMessage(), cause);
+        }
+    }
+
+    private static String cacheKey(String scope, String idempotencyKey, String fingerprint) {
+        return scope + (idempotencyKey != null && !idempotencyKey.trim().isEmpty()
+                ? " key:" + idempotencyKey.trim()
+                : " hash:" + fingerprint);
+    }
+
+    /**
+     * 规范化请求体的 SHA-256 摘要
+     */
+    private String fingerprint(Map<String, Object> request) {
+        try {
+            byte[] canonical = canonicalMapper.writeValueAsBytes(request);
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(canonical);
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return sb.toString();
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            // 无法序列化时退化为不可复用的随机指纹，即不做去重
+            log.warn("计算合成请求指纹失败: {}", e.getMessage());
+            return UUID.randomUUID().toString();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static boolean isSuccess(Map<String, Object> response) {
+        if (response == null) {
+            return false;
+        }
+        Object code = response.get("code");
+        if (code != null && !"200".equals(code.toString())) {
+            return false;
+        }
+        Object data = response.get("data");
+        Object fileId = response.get("fileId");
+        if (fileId == null && data instanceof Map) {
+            fileId = ((Map<String, Object>) data).get("fileId");
+        }
+        return fileId != null;
+    }
+
+    private void evictIfNecessary() {
+        if (entries.size() <= maxEntries) {
+            return;
+        }
+        entries.entrySet().removeIf(e -> e.getValue().isExpired(windowMillis));
+        if (entries.size() > maxEntries) {
+            log.warn("幂等缓存条目超过上限，清理已完成的条目: size={}", entries.size());
+            entries.entrySet().removeIf(e -> e.getValue().completedAt > 0);
+        }
+    }
+
+    private static class Entry {
+        final String fingerprint;
+        final CompletableFuture<Map<String, Object>> future = new CompletableFuture<>();
+        volatile long completedAt;
+
+        Entry(String fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+
+        boolean isExpired(long windowMillis) {
+            return completedAt > 0 && System.currentTimeMillis() - completedAt > windowMillis;
+        }
+    }
+}
@@ -0,0 +1,647 @@
+package com.zhaoxin.tools.demo.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.regex.Pattern;
+
+/**
+ * 合成参数本地预校验
+ *
+ * 将模板详情中的 elementsJson 预编译为按 tag 索引的字段规则，缓存于 templateId + 版本 维度；
+ * 合成前在本地校验 values，缺失必填、类型不符、误用 code 代替 tag 等问题直接返回字段级错误，
+ * 不再消耗一次肇新合成调用。
+ *
+ * 模板编号到当前发布版本的解析基于一份已发布模板目录（一次 getComposeTemplates("PUBLISHED")）：
+ * - 首次使用时同步加载；超过 zhaoxin.compose.validation.template-ttl 后继续使用旧目录，并在后台刷新
+ * - 目录中没有的编号、以及加载失败，都在 zhaoxin.compose.validation.negative-ttl 内不再触发刷新
+ * - 编译结果以 future 缓存，同一版本只编译一次且远程调用不在 Map 的锁内执行；目录刷新后移除已不再发布的版本
+ * - 目录加载与模板编译在后台线程执行，{@link #validateAsync} 不阻塞调用线程，供异步控制器使用
+ * 模板信息获取失败或目录中没有该编号时放行，由肇新端校验兜底。
+ */
+@Slf4j
+@Service
+public class ComposePayloadValidator {
+
+    private static final Pattern NUMBER_PATTERN = Pattern.compile("^-?\\d+(\\.\\d+)?$");
+
+    private final ZhaoxinApiClient apiClient;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final boolean enabled;
+    private final boolean rejectUnknownFields;
+    private final long templateTtlMillis;
+    private final long negativeTtlMillis;
+    private final ExecutorService loadExecutor;
+    private final LongSupplier clock;
+
+    /**
+     * 已发布模板目录（templateCode -> 当前发布版本），尚未加载时为 null
+     */
+    private volatile Catalog catalog;
+
+    /**
+     * 进行中的目录刷新，以及最近一次开始刷新的时间（受 this 保护）
+     */
+    private CompletableFuture<Catalog> refreshing;
+    private long lastRefreshAt;
+
+    /**
+     * templateId@版本 -> 预编译的校验规则
+     */
+    private final Map<String, CompletableFuture<CompiledTemplate>> compiledTemplates = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ComposePayloadValidator(ZhaoxinApiClient apiClient,
+                                   @Value("${zhaoxin.compose.validation.enabled:true}") boolean enabled,
+                                   @Value("${zhaoxin.compose.validation.reject-unknown-fields:false}") boolean rejectUnknownFields,
+                                   @Value("${zhaoxin.compose.validation.template-ttl:300}") long templateTtlSeconds,
+                                   @Value("${zhaoxin.compose.validation.negative-ttl:30}") long negativeTtlSeconds,
+                                   @Value("${zhaoxin.compose.validation.load-threads:2}") int loadThreads) {
+        this(apiClient, enabled, rejectUnknownFields, templateTtlSeconds, negativeTtlSeconds, loadThreads,
+                System::currentTimeMillis);
+    }
+
+    /**
+     * 指定时钟（毫秒），供测试控制目录的 TTL 与 negative-ttl
+     */
+    ComposePayloadValidator(ZhaoxinApiClient apiClient, boolean enabled, boolean rejectUnknownFields,
+                            long templateTtlSeconds, long negativeTtlSeconds, int loadThreads, LongSupplier clock) {
+        this.apiClient = apiClient;
+        this.clock = clock;
+        this.enabled = enabled;
+        this.rejectUnknownFields = rejectUnknownFields;
+        this.templateTtlMillis = TimeUnit.SECONDS.toMillis(templateTtlSeconds);
+        this.negativeTtlMillis = TimeUnit.SECONDS.toMillis(negativeTtlSeconds);
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("compose-template-load-");
+        threadFactory.setDaemon(true);
+        this.loadExecutor = Executors.newFixedThreadPool(loadThreads, threadFactory);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        loadExecutor.shutdownNow();
+    }
+
+    /**
+     * 校验合成请求（在调用线程上等待模板加载，只用于工作线程，请求线程请使用 {@link #validateAsync}）
+     *
+     * @return 字段错误列表，为空表示通过（或无法校验）
+     */
+    public List<FieldError> validate(Map<String, Object> request) {
+        return validateAsync(request).join();
+    }
+
+    /**
+     * 异步校验合成请求：目录与模板已缓存时立即完成，否则在模板加载完成后完成，不会异常结束
+     *
+     * @return 字段错误列表，为空表示通过（或无法校验）
+     */
+    public CompletableFuture<List<FieldError>> validateAsync(Map<String, Object> request) {
+        if (!enabled || request == null) {
+            return CompletableFuture.completedFuture(Collections.emptyList());
+        }
+
+        Object templateCode = request.get("templateCode");
+        if (templateCode == null || templateCode.toString().trim().isEmpty()) {
+            // 仅按模板文件ID合成时无法定位模板设计，交由肇新端校验
+            return CompletableFuture.completedFuture(Collections.emptyList());
+        }
+
+        return resolve(templateCode.toString().trim())
+                .thenApply(template -> template != null ? check(template, request) : Collections.emptyList());
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<FieldError> check(CompiledTemplate template, Map<String, Object> request) {
+        Object values = request.get("values");
+        if (values == null) {
+            values = Collections.emptyMap();
+        }
+        if (!(values instanceof Map)) {
+            return List.of(new FieldError("values", null, "values 必须是对象"));
+        }
+        return template.validate((Map<String, Object>) values);
+    }
+
+    /**
+     * 清除缓存（模板发布新版本后可主动调用）
+     * 指定模板编号时移除其已编译的规则并在后台刷新目录
+     */
+    public void evict(String templateCode) {
+        if (templateCode == null) {
+            synchronized (this) {
+                catalog = null;
+                lastRefreshAt = 0;
+            }
+            compiledTemplates.clear();
+            return;
+        }
+        Catalog current = catalog;
+        TemplateRef ref = current != null ? current.refs.get(templateCode) : null;
+        if (ref != null) {
+            compiledTemplates.remove(ref.getCacheKey());
+        }
+        refresh(true);
+    }
+
+    /**
+     * 解析模板编号的编译结果，无法校验时结果为 null
+     */
+    private CompletableFuture<CompiledTemplate> resolve(String templateCode) {
+        return currentCatalog()
+                .thenCompose(current -> {
+                    if (current == null) {
+                        return CompletableFuture.completedFuture(null);
+                    }
+                    TemplateRef ref = current.refs.get(templateCode);
+                    if (ref == null) {
+                        // 可能是目录加载后才发布的模板：后台刷新（受 negative-ttl 限制），本次交由肇新端校验
+                        log.debug("未找到已发布模板: templateCode={}", templateCode);
+                        refresh(false);
+                        return CompletableFuture.completedFuture(null);
+                    }
+                    return compiledAsync(ref);
+                })
+                .exceptionally(e -> {
+                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                    log.warn("获取模板校验规则失败，跳过本地校验: templateCode={}, error={}", templateCode, cause.getMessage());
+                    return null;
+                });
+    }
+
+    /**
+     * 当前目录：首次使用时等待加载；过期后返回旧目录并在后台刷新；加载失败后 negative-ttl 内为 null
+     */
+    private CompletableFuture<Catalog> currentCatalog() {
+        Catalog current = catalog;
+        if (current != null) {
+            if (clock.getAsLong() - current.loadedAt > templateTtlMillis) {
+                refresh(false);
+            }
+            return CompletableFuture.completedFuture(current);
+        }
+        CompletableFuture<Catalog> loading = refresh(false);
+        if (loading == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return loading.exceptionally(e -> null);
+    }
+
+    /**
+     * 在后台刷新目录，同一时刻只有一次刷新；非强制刷新距上次开始不足 negative-ttl 时返回 null
+     */
+    private synchronized CompletableFuture<Catalog> refresh(boolean force) {
+        if (refreshing != null) {
+            return refreshing;
+        }
+        long now = clock.getAsLong();
+        if (!force && now - lastRefreshAt < negativeTtlMillis) {
+            return null;
+        }
+        lastRefreshAt = now;
+        // 调用方拿到的 future 在目录安装、refreshing 清除之后才完成，不会再拿到已结束的刷新
+        CompletableFuture<Catalog> future = CompletableFuture
+                .supplyAsync(() -> toCatalog(apiClient.getComposeTemplates("PUBLISHED"), clock.getAsLong()), loadExecutor)
+                .whenComplete(this::onRefreshed);
+        if (!future.isDone()) {
+            refreshing = future;
+        }
+        return future;
+    }
+
+    private synchronized void onRefreshed(Catalog loaded, Throwable error) {
+        refreshing = null;
+        if (error != null) {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            log.warn("刷新已发布模板目录失败，{}s 内不再重试: {}", negativeTtlMillis / 1000, cause.getMessage());
+            return;
+        }
+        install(loaded);
+    }
+
+    /**
+     * 替换目录并移除已不再发布的版本的编译结果
+     */
+    private synchronized void install(Catalog loaded) {
+        catalog = loaded;
+        Set<String> live = new HashSet<>();
+        loaded.refs.values().forEach(ref -> live.add(ref.getCacheKey()));
+        compiledTemplates.keySet().retainAll(live);
+        log.info("已发布模板目录已更新: 模板数={}, 已编译={}", loaded.refs.size(), compiledTemplates.size());
+    }
+
+    /**
+     * 获取编译结果：同一版本只编译一次，编译（远程获取模板详情）在后台线程执行、不在 Map 的锁内，并发请求共用同一个 future
+     */
+    private CompletableFuture<CompiledTemplate> compiledAsync(TemplateRef ref) {
+        String key = ref.getCacheKey();
+        CompletableFuture<CompiledTemplate> future = compiledTemplates.get(key);
+        if (future != null) {
+            return future;
+        }
+        CompletableFuture<CompiledTemplate> created = new CompletableFuture<>();
+        future = compiledTemplates.putIfAbsent(key, created);
+        if (future != null) {
+            return future;
+        }
+        loadExecutor.execute(() -> {
+            try {
+                created.complete(compile(ref));
+            } catch (RuntimeException e) {
+                // 失败不缓存，下次请求重新编译
+                compiledTemplates.remove(key, created);
+                created.completeExceptionally(e);
+            }
+        });
+        return created;
+    }
+
+    /**
+     * 预热：以一次已发布模板列表作为目录，并在后台线程并行预编译其中前 maxCompiled 个模板的校验规则
+     *
+     * @param publishedTemplates getComposeTemplates("PUBLISHED") 的返回
+     * @return 预编译成功的模板数
+     */
+    public int prefetch(Map<String, Object> publishedTemplates, int maxCompiled) {
+        if (!enabled) {
+            return 0;
+        }
+        Catalog loaded = toCatalog(publishedTemplates, clock.getAsLong());
+        synchronized (this) {
+            lastRefreshAt = loaded.loadedAt;
+            install(loaded);
+        }
+        Map<String, CompletableFuture<CompiledTemplate>> compiling = new LinkedHashMap<>();
+        for (Map.Entry<String, TemplateRef> entry : loaded.refs.entrySet()) {
+            if (compiling.size() >= maxCompiled) {
+                break;
+            }
+            compiling.put(entry.getKey(), compiledAsync(entry.getValue()));
+        }
+        int compiled = 0;
+        for (Map.Entry<String, CompletableFuture<CompiledTemplate>> entry : compiling.entrySet()) {
+            try {
+                entry.getValue().join();
+                compiled++;
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                log.warn("预编译模板校验规则失败: templateCode={}, error={}", entry.getKey(), cause.getMessage());
+            }
+        }
+        return compiled;
+    }
+
+    private static Catalog toCatalog(Map<String, Object> publishedTemplates, long loadedAt) {
+        Map<String, TemplateRef> refs = new HashMap<>();
+        for (Map.Entry<String, Map<String, Object>> entry : latestByCode(findList(publishedTemplates)).entrySet()) {
+            TemplateRef ref = toRef(entry.getValue());
+            if (ref != null) {
+                refs.put(entry.getKey(), ref);
+            }
+        }
+        return new Catalog(refs, loadedAt);
+    }
+
+    /**
+     * 模板编号 -> 最近更新的版本
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<String, Map<String, Object>> latestByCode(List<Object> templates) {
+        Map<String, Map<String, Object>> latest = new LinkedHashMap<>();
+        for (Object element : templates) {
+            if (!(element instanceof Map)) {
+                continue;
+            }
+            Map<String, Object> template = (Map<String, Object>) element;
+            String code = String.valueOf(template.get("templateCode"));
+            Map<String, Object> current = latest.get(code);
+            if (current == null || String.valueOf(template.get("updatedAt"))
+                    .compareTo(String.valueOf(current.get("updatedAt"))) > 0) {
+                latest.put(code, template);
+            }
+        }
+        return latest;
+    }
+
+    private static TemplateRef toRef(Map<String, Object> template) {
+        if (template.get("id") == null) {
+            return null;
+        }
+        String version = String.valueOf(template.get("version") != null ? template.get("version") : template.get("updatedAt"));
+        return new TemplateRef(template.get("id").toString(), version);
+    }
+
+    /**
+     * 编译 elementsJson 为字段规则
+     */
+    @SuppressWarnings("unchecked")
+    private CompiledTemplate compile(TemplateRef ref) {
+        long start = System.nanoTime();
+        Map<String, Object> detail = findMapWithKey(apiClient.getTemplateDetail(ref.getTemplateId()), "elementsJson");
+        Object elementsJson = detail != null ? detail.get("elementsJson") : null;
+
+        List<Object> elements = Collections.emptyList();
+        try {
+            Object parsed = elementsJson instanceof String
+                    ? objectMapper.readValue((String) elementsJson, new TypeReference<Object>() {})
+                    : elementsJson;
+            if (parsed instanceof List) {
+                elements = (List<Object>) parsed;
+            } else if (parsed instanceof Map && ((Map<String, Object>) parsed).get("elements") instanceof List) {
+                elements = (List<Object>) ((Map<String, Object>) parsed).get("elements");
+            }
+        } catch (Exception e) {
+            log.warn("解析 elementsJson 失败: templateId={}, error={}", ref.getTemplateId(), e.getMessage());
+        }
+
+        Map<String, FieldRule> rules = new HashMap<>();
+        Map<String, String> codeToTag = new HashMap<>();
+        for (Object element : elements) {
+            if (!(element instanceof Map)) {
+                continue;
+            }
+            Map<String, Object> el = (Map<String, Object>) element;
+            Map<String, Object> meta = el.get("meta") instanceof Map ? (Map<String, Object>) el.get("meta") : Map.of();
+            Object tag = el.get("tag");
+            if (tag == null) {
+                continue;
+            }
+
+            Object code = meta.get("code") != null ? meta.get("code") : el.get("code");
+            Object type = firstNonNull(el.get("type"), meta.get("type"), meta.get("fieldType"), el.get("elementType"));
+            Object name = firstNonNull(meta.get("name"), el.get("name"), code);
+            boolean required = Boolean.TRUE.equals(el.get("required")) || Boolean.TRUE.equals(meta.get("required"));
+            Object maxLength = firstNonNull(meta.get("maxLength"), el.get("maxLength"));
+
+            FieldRule rule = new FieldRule(tag.toString(), name != null ? name.toString() : tag.toString(),
+                    FieldKind.of(type != null ? type.toString() : null), required,
+                    maxLength instanceof Number ? ((Number) maxLength).intValue() : -1);
+            rules.put(rule.tag, rule);
+            if (code != null && !code.toString().equals(rule.tag)) {
+                codeToTag.put(code.toString(), rule.tag);
+            }
+        }
+
+        log.info("编译模板校验规则: templateId={}, version={}, 字段数={}, 耗时={}μs",
+                ref.getTemplateId(), ref.getVersion(), rules.size(), (System.nanoTime() - start) / 1000);
+        return new CompiledTemplate(rules, codeToTag, rejectUnknownFields);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Object> findList(Map<String, Object> response) {
+        Object current = response;
+        // 兼容 {data:[...]} / {data:{data:[...]}} / {data:{records:[...]}}
+        for (int depth = 0; current instanceof Map && depth < 3; depth++) {
+            Map<String, Object> map = (Map<String, Object>) current;
+            for (String key : new String[]{"data", "records", "list"}) {
+                if (map.get(key) instanceof List) {
+                    return (List<Object>) map.get(key);
+                }
+            }
+            current = map.get("data");
+        }
+        return Collections.emptyList();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> findMapWithKey(Map<String, Object> response, String key) {
+        Map<String, Object> current = response;
+        for (int depth = 0; current != null && depth < 3; depth++) {
+            if (current.containsKey(key)) {
+                return current;
+            }
+            current = current.get("data") instanceof Map ? (Map<String, Object>) current.get("data") : null;
+        }
+        return null;
+    }
+
+    private static Object firstNonNull(Object... values) {
+        for (Object value : values) {
+            if (value != null) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    // ==================== 规则模型 ====================
+
+    /**
+     * 字段错误
+     */
+    @Data
+    @AllArgsConstructor
+    public static class FieldError {
+        /**
+         * 出错的字段（values 中的 key）
+         */
+        private String field;
+
+        /**
+         * 字段显示名称
+         */
+        private String name;
+
+        /**
+         * 错误描述
+         */
+        private String message;
+    }
+
+    /**
+     * 字段类别
+     */
+    enum FieldKind {
+        /**
+         * 文本、富文本、日期等，要求标量值
+         */
+        TEXT,
+        /**
+         * 数字、金额，要求数字或数字字符串
+         */
+        NUMBER,
+        /**
+         * 表格，接受HTML字符串或行数组
+         */
+        TABLE,
+        /**
+         * 印章占位，要求字符串（通常为空串）
+         */
+        SEAL,
+        /**
+         * 未知类型，不校验值
+         */
+        ANY;
+
+        static FieldKind of(String type) {
+            if (type == null) {
+                return ANY;
+            }
+            String t = type.toLowerCase();
+            if (t.contains("table")) {
+                return TABLE;
+            }
+            if (t.contains("seal") || t.contains("stamp")) {
+                return SEAL;
+            }
+            if (t.contains("number") || t.contains("amount") || t.contains("money") || t.contains("digit")) {
+                return NUMBER;
+            }
+            if (t.contains("text") || t.contains("date") || t.contains("input") || t.contains("string")) {
+                return TEXT;
+            }
+            return ANY;
+        }
+    }
+
+    @AllArgsConstructor
+    static class FieldRule {
+        final String tag;
+        final String name;
+        final FieldKind kind;
+        final boolean required;
+        final int maxLength;
+    }
+
+    @Data
+    @AllArgsConstructor
+    static class TemplateRef {
+        private String templateId;
+        private String version;
+
+        String getCacheKey() {
+            return templateId + "@" + version;
+        }
+    }
+
+    /**
+     * 已发布模板目录快照，只读
+     */
+    @AllArgsConstructor
+    static class Catalog {
+        final Map<String, TemplateRef> refs;
+        final long loadedAt;
+    }
+
+    /**
+     * 预编译的模板校验规则，只读，可被并发使用
+     */
+    static class CompiledTemplate {
+        private final Map<String, FieldRule> rules;
+        private final Map<String, String> codeToTag;
+        private final boolean rejectUnknownFields;
+        private final List<FieldRule> requiredRules = new ArrayList<>();
+
+        CompiledTemplate(Map<String, FieldRule> rules, Map<String, String> codeToTag, boolean rejectUnknownFields) {
+            this.rules = rules;
+            this.codeToTag = codeToTag;
+            this.rejectUnknownFields = rejectUnknownFields;
+            for (FieldRule rule : rules.values()) {
+                if (rule.required) {
+                    requiredRules.add(rule);
+                }
+            }
+        }
+
+        List<FieldError> validate(Map<String, Object> values) {
+            if (rules.isEmpty()) {
+                return Collections.emptyList();
+            }
+            List<FieldError> errors = null;
+
+            for (Map.Entry<String, Object> entry : values.entrySet()) {
+                String key = entry.getKey();
+                FieldRule rule = rules.get(key);
+                String message;
+                if (rule == null) {
+                    // 误用字段编码代替tag一定是错误；其他未知字段按配置决定是否拒绝
+                    String tag = codeToTag.get(key);
+                    if (tag != null) {
+                        errors = add(errors, new FieldError(key, null, "应使用字段tag \"" + tag + "\" 而不是字段编码"));
+                    } else if (rejectUnknownFields) {
+                        errors = add(errors, new FieldError(key, null, "模板中不存在该字段"));
+                    }
+                    continue;
+                }
+                message = checkValue(rule, entry.getValue());
+                if (message != null) {
+                    errors = add(errors, new FieldError(key, rule.name, message));
+                }
+            }
+
+            for (FieldRule rule : requiredRules) {
+                Object value = values.get(rule.tag);
+                if (value == null || (value instanceof String && ((String) value).trim().isEmpty())) {
+                    errors = add(errors, new FieldError(rule.tag, rule.name, "必填字段缺失"));
+                }
+            }
+
+            return errors != null ? errors : Collections.emptyList();
+        }
+
+        private static String checkValue(FieldRule rule, Object value) {
+            if (value == null) {
+                return null;
+            }
+            switch (rule.kind) {
+                case TEXT:
+                    if (value instanceof Map || value instanceof List) {
+                        return "应为文本";
+                    }
+                    break;
+                case NUMBER:
+                    if (!(value instanceof Number)
+                            && !(value instanceof String && (((String) value).isEmpty()
+                            || NUMBER_PATTERN.matcher(((String) value).replace(",", "").trim()).matches()))) {
+                        return "应为数字";
+                    }
+                    break;
+                case TABLE:
+                    if (!(value instanceof String) && !(value instanceof List)) {
+                        return "应为表格HTML或行数组";
+                    }
+                    break;
+                case SEAL:
+                    if (!(value instanceof String)) {
+                        return "印章字段应为字符串占位";
+                    }
+                    break;
+                default:
+                    break;
+            }
+            if (rule.maxLength > 0 && value instanceof String && ((String) value).length() > rule.maxLength) {
+                return "长度超过限制(" + rule.maxLength + ")";
+            }
+            return null;
+        }
+
+        private static List<FieldError> add(List<FieldError> errors, FieldError error) {
+            List<FieldError> list = errors != null ? errors : new ArrayList<>();
+            list.add(error);
+            return list;
+        }
+    }
+}
@@ -0,0 +1,459 @@
+package com.zhaoxin.tools.demo.service;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zhaoxin.tools.demo.model.ExtractBatchJob;
+import com.zhaoxin.tools.demo.model.exception.ApiException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * 批量抽取服务
+ *
+ * 将ZIP压缩包或上传目录中的PDF逐个提交为肇新抽取任务：
+ * 1. ZIP先落盘再在后台按条目流式解压到临时文件，同一时刻磁盘上最多保留 parallelism*2 个待提交文件
+ * 2. 提交使用固定大小的线程池，并发数由 zhaoxin.extract.batch.parallelism 控制；批次中止时取消尚未开始的提交
+ * 3. 结果汇总时使用独立的线程池按同样的并发度预取 getExtractResult，按原顺序流式写出JSON
+ */
+@Slf4j
+@Service
+public class ExtractBatchService {
+
+    /**
+     * 已结束批次的保留时间
+     */
+    private static final long JOB_RETENTION_MILLIS = TimeUnit.HOURS.toMillis(24);
+
+    private final ZhaoxinApiClient apiClient;
+    private final TaskReadModelService readModel;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, ExtractBatchJob> jobs = new ConcurrentHashMap<>();
+    private final ExecutorService submitExecutor;
+    private final ExecutorService dispatchExecutor;
+    private final ExecutorService resultExecutor;
+    private final int parallelism;
+    private final int maxEntries;
+    private final long maxEntrySize;
+    private final Path uploadRoot;
+
+    public ExtractBatchService(ZhaoxinApiClient apiClient,
+                               TaskReadModelService readModel,
+                               @Value("${zhaoxin.extract.batch.parallelism:4}") int parallelism,
+                               @Value("${zhaoxin.extract.batch.max-entries:5000}") int maxEntries,
+                               @Value("${spring.servlet.multipart.max-file-size:50MB}") DataSize maxEntrySize,
+                               @Value("${file.upload.path:/var/uploads}") String uploadPath) {
+        this.apiClient = apiClient;
+        this.readModel = readModel;
+        this.parallelism = Math.max(1, parallelism);
+        this.maxEntries = maxEntries;
+        this.maxEntrySize = maxEntrySize.toBytes();
+        this.uploadRoot = Paths.get(uploadPath).toAbsolutePath().normalize();
+        this.submitExecutor = Executors.newFixedThreadPool(this.parallelism,
+                new CustomizableThreadFactory("extract-batch-"));
+        this.dispatchExecutor = Executors.newCachedThreadPool(
+                new CustomizableThreadFactory("extract-batch-dispatch-"));
+        this.resultExecutor = Executors.newFixedThreadPool(this.parallelism,
+                new CustomizableThreadFactory("extract-batch-result-"));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        dispatchExecutor.shutdownNow();
+        submitExecutor.shutdownNow();
+        resultExecutor.shutdownNow();
+    }
+
+    /**
+     * 提交ZIP压缩包批量抽取
+     * 压缩包先保存到临时文件，解压与提交在后台执行，立即返回批次信息
+     */
+    public ExtractBatchJob submitZip(MultipartFile zipFile, String templateId) {
+        Path spooled = null;
+        try {
+            spooled = Files.createTempFile("extract-batch-", ".zip");
+            zipFile.transferTo(spooled);
+        } catch (IOException e) {
+            if (spooled != null) {
+                deleteQuietly(spooled);
+            }
+            log.error("保存批量抽取压缩包失败: fileName={}", zipFile.getOriginalFilename(), e);
+            throw new ApiException(500, "保存压缩包失败: " + e.getMessage());
+        }
+
+        ExtractBatchJob job = createJob(templateId, "zip");
+        Path zip = spooled;
+        dispatchExecutor.execute(() -> dispatchZip(job, zip));
+        return job;
+    }
+
+    /**
+     * 提交上传目录批量抽取
+     * 目录必须位于 file.upload.path 之下；遍历与提交在后台执行，立即返回批次信息
+     */
+    public ExtractBatchJob submitDirectory(String directory, String templateId) {
+        Path dir = uploadRoot.resolve(directory).normalize();
+        if (!dir.startsWith(uploadRoot)) {
+            throw new ApiException(400, "目录必须位于上传目录之下");
+        }
+        if (!Files.isDirectory(dir)) {
+            throw new ApiException(400, "目录不存在: " + directory);
+        }
+
+        ExtractBatchJob job = createJob(templateId, "directory");
+        dispatchExecutor.execute(() -> dispatchDirectory(job, dir));
+        return job;
+    }
+
+    /**
+     * 获取批次信息
+     */
+    public ExtractBatchJob getJob(String batchId) {
+        return jobs.get(batchId);
+    }
+
+    /**
+     * 流式写出批次汇总结果（JSON）
+     * 以 parallelism 为窗口并发预取抽取结果，按文件顺序写出，内存中最多保留窗口内的结果
+     */
+    public void writeResults(ExtractBatchJob job, OutputStream out) throws IOException {
+        try (JsonGenerator gen = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+            gen.writeStartObject();
+            gen.writeStringField("batchId", job.getBatchId());
+            gen.writeStringField("templateId", job.getTemplateId());
+            gen.writeStringField("status", job.getStatus());
+            gen.writeNumberField("total", job.getTotal());
+            gen.writeArrayFieldStart("items");
+
+            Deque<Map.Entry<ExtractBatchJob.Item, CompletableFuture<Object>>> window = new ArrayDeque<>();
+            // 队列迭代器是弱一致的，提交过程中下载只包含当时已加入的文件
+            Iterator<ExtractBatchJob.Item> it = job.getItems().iterator();
+            while (it.hasNext() || !window.isEmpty()) {
+                while (it.hasNext() && window.size() < parallelism) {
+                    ExtractBatchJob.Item item = it.next();
+                    window.add(Map.entry(item, fetchResult(item)));
+                }
+                Map.Entry<ExtractBatchJob.Item, CompletableFuture<Object>> head = window.poll();
+                writeItem(gen, head.getKey(), head.getValue().join());
+                gen.flush();
+            }
+
+            gen.writeEndArray();
+            gen.writeEndObject();
+        }
+    }
+
+    private CompletableFuture<Object> fetchResult(ExtractBatchJob.Item item) {
+        if (item.getTaskId() == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return (Object) apiClient.getExtractResult(item.getTaskId());
+            } catch (Exception e) {
+                Map<String, Object> error = new LinkedHashMap<>();
+                error.put("code", 500);
+                error.put("message", e.getMessage());
+                return error;
+            }
+        }, resultExecutor);
+    }
+
+    private void writeItem(JsonGenerator gen, ExtractBatchJob.Item item, Object result) throws IOException {
+        gen.writeStartObject();
+        gen.writeStringField("fileName", item.getFileName());
+        gen.writeStringField("taskId", item.getTaskId());
+        if (item.getErrorMessage() != null) {
+            gen.writeStringField("errorMessage", item.getErrorMessage());
+        }
+        gen.writeFieldName("result");
+        objectMapper.writeValue(gen, result);
+        gen.writeEndObject();
+    }
+
+    private void dispatchZip(ExtractBatchJob job, Path zip) {
+        Dispatcher dispatcher = new Dispatcher(job);
+        try (ZipInputStream zis = new ZipInputStream(openArchive(zip))) {
+            ZipEntry entry;
+            while ((entry = zis.getNextEntry()) != null) {
+                if (entry.isDirectory() || !isPdf(entry.getName()) || entry.getName().startsWith("__MACOSX/")) {
+                    continue;
+                }
+                ensureCapacity(job);
+
+                // 背压：待提交的临时文件数量达到上限时等待
+                dispatcher.acquire();
+                Path tempFile = Files.createTempFile("extract-batch-", ".pdf");
+                ExtractBatchJob.Item item;
+                try {
+                    long size = copyBounded(zis, tempFile);
+                    item = new ExtractBatchJob.Item(entry.getName(), size);
+                    job.addItem(item);
+                } catch (IOException | RuntimeException e) {
+                    deleteQuietly(tempFile);
+                    dispatcher.release();
+                    throw e;
+                }
+                dispatcher.submit(item, tempFile, true);
+            }
+
+            dispatcher.awaitAll();
+            finishJob(job);
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            dispatcher.cancelQueued();
+            failJob(job, "批量提交被中断");
+        } catch (IOException | RuntimeException e) {
+            log.error("批量抽取解压失败: batchId={}", job.getBatchId(), e);
+            dispatcher.cancelQueued();
+            failJob(job, e.getMessage());
+        } finally {
+            deleteQuietly(zip);
+        }
+    }
+
+    /**
+     * 打开暂存的压缩包，测试可覆盖以控制解压进度
+     */
+    InputStream openArchive(Path zip) throws IOException {
+        return Files.newInputStream(zip);
+    }
+
+    private void dispatchDirectory(ExtractBatchJob job, Path dir) {
+        Dispatcher dispatcher = new Dispatcher(job);
+        try (Stream<Path> files = Files.walk(dir)) {
+            Iterator<Path> it = files.filter(Files::isRegularFile)
+                    .filter(p -> isPdf(p.getFileName().toString()))
+                    .iterator();
+            while (it.hasNext()) {
+                Path file = it.next();
+                ensureCapacity(job);
+
+                ExtractBatchJob.Item item = new ExtractBatchJob.Item(
+                        dir.relativize(file).toString().replace('\\', '/'), Files.size(file));
+                job.addItem(item);
+
+                dispatcher.acquire();
+                dispatcher.submit(item, file, false);
+            }
+
+            dispatcher.awaitAll();
+            finishJob(job);
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            dispatcher.cancelQueued();
+            failJob(job, "批量提交被中断");
+        } catch (IOException | RuntimeException e) {
+            log.error("批量抽取目录遍历失败: batchId={}, dir={}", job.getBatchId(), dir, e);
+            dispatcher.cancelQueued();
+            failJob(job, e.getMessage());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void submitItem(ExtractBatchJob job, ExtractBatchJob.Item item, Path file) {
+        try {
+            Map<String, Object> response = apiClient.submitExtractTask(
+                    file.toFile(), item.getFileName(), job.getTemplateId());
+
+            String taskId = TaskReadModelService.extractTaskId(response);
+            if (taskId != null) {
+                item.setTaskId(taskId);
+                readModel.recordExtractSubmitted(response, item.getFileName(), job.getTemplateId());
+            } else {
+                Object message = response != null ? response.get("message") : null;
+                item.setErrorMessage(message != null ? message.toString() : "未返回任务ID");
+            }
+        } catch (Exception e) {
+            log.warn("批量抽取提交失败: batchId={}, fileName={}, error={}",
+                    job.getBatchId(), item.getFileName(), e.getMessage());
+            item.setErrorMessage(e.getMessage());
+        }
+    }
+
+    private ExtractBatchJob createJob(String templateId, String source) {
+        evictExpiredJobs();
+
+        ExtractBatchJob job = new ExtractBatchJob();
+        job.setBatchId(UUID.randomUUID().toString());
+        job.setTemplateId(templateId);
+        job.setSource(source);
+        job.setStatus(ExtractBatchJob.STATUS_SUBMITTING);
+        job.setCreateTime(System.currentTimeMillis());
+        jobs.put(job.getBatchId(), job);
+
+        log.info("创建批量抽取: batchId={}, source={}, templateId={}", job.getBatchId(), source, templateId);
+        return job;
+    }
+
+    private void finishJob(ExtractBatchJob job) {
+        job.setFinishTime(System.currentTimeMillis());
+        job.setStatus(ExtractBatchJob.STATUS_SUBMITTED);
+        log.info("批量抽取提交完成: batchId={}, total={}, submitted={}, failed={}, 耗时={}ms",
+                job.getBatchId(), job.getTotal(), job.getSubmittedCount(), job.getFailedCount(),
+                job.getFinishTime() - job.getCreateTime());
+    }
+
+    private void failJob(ExtractBatchJob job, String message) {
+        job.setFinishTime(System.currentTimeMillis());
+        job.setErrorMessage(message);
+        job.setStatus(ExtractBatchJob.STATUS_FAILED);
+    }
+
+    private void ensureCapacity(ExtractBatchJob job) {
+        if (job.getTotal() >= maxEntries) {
+            throw new ApiException(400, "批量抽取文件数超过上限: " + maxEntries);
+        }
+    }
+
+    private void evictExpiredJobs() {
+        long expireBefore = System.currentTimeMillis() - JOB_RETENTION_MILLIS;
+        jobs.values().removeIf(job -> job.getFinishTime() != null && job.getFinishTime() < expireBefore);
+    }
+
+    /**
+     * 将当前ZIP条目复制到临时文件，超过单文件上限时中止
+     */
+    private long copyBounded(InputStream in, Path target) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        long total = 0;
+        try (OutputStream out = Files.newOutputStream(target)) {
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                total += n;
+                if (total > maxEntrySize) {
+                    throw new ApiException(400, "压缩包内文件超过大小限制: " + maxEntrySize + " bytes");
+                }
+                out.write(buffer, 0, n);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * 单个批次的提交调度
+     * 限制已解压/已入队但尚未提交完成的文件数；批次中止时取消尚未开始的提交并清理其临时文件
+     */
+    private final class Dispatcher {
+
+        private final ExtractBatchJob job;
+        private final Semaphore pending = new Semaphore(parallelism * 2);
+        private final Deque<Submission> submissions = new ArrayDeque<>();
+
+        Dispatcher(ExtractBatchJob job) {
+            this.job = job;
+        }
+
+        void acquire() throws InterruptedException {
+            pending.acquire();
+        }
+
+        void release() {
+            pending.release();
+        }
+
+        /**
+         * 入队一个文件，调用前须已 acquire
+         */
+        void submit(ExtractBatchJob.Item item, Path file, boolean temporary) {
+            Future<?> future = submitExecutor.submit(() -> {
+                try {
+                    submitItem(job, item, file);
+                } finally {
+                    if (temporary) {
+                        deleteQuietly(file);
+                    }
+                    pending.release();
+                }
+            });
+            while (!submissions.isEmpty() && submissions.peek().future.isDone()) {
+                submissions.poll();
+            }
+            submissions.add(new Submission(item, file, temporary, future));
+        }
+
+        /**
+         * 等待所有已入队的文件提交完毕
+         */
+        void awaitAll() throws InterruptedException {
+            pending.acquire(parallelism * 2);
+        }
+
+        /**
+         * 取消尚未开始的提交，正在提交的文件继续完成
+         */
+        void cancelQueued() {
+            int cancelled = 0;
+            for (Submission submission : submissions) {
+                if (submission.future.cancel(false)) {
+                    submission.item.setErrorMessage("批次已中止，未提交");
+                    if (submission.temporary) {
+                        deleteQuietly(submission.file);
+                    }
+                    cancelled++;
+                }
+            }
+            submissions.clear();
+            if (cancelled > 0) {
+                log.warn("批量抽取中止，取消未开始的提交: batchId={}, cancelled={}", job.getBatchId(), cancelled);
+            }
+        }
+    }
+
+    private static class Submission {
+
+        private final ExtractBatchJob.Item item;
+        private final Path file;
+        private final boolean temporary;
+        private final Future<?> future;
+
+        Submission(ExtractBatchJob.Item item, Path file, boolean temporary, Future<?> future) {
+            this.item = item;
+            this.file = file;
+            this.temporary = temporary;
+            this.future = future;
+        }
+    }
+
+    private static boolean isPdf(String name) {
+        return name.toLowerCase().endsWith(".pdf");
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("删除临时文件失败: {}", file);
+        }
+    }
+}
@@ -0,0 +1,461 @@
+package com.zhaoxin.tools.demo.service;
+
+import com.zhaoxin.tools.demo.model.ExtractBatchJob;
+import com.zhaoxin.tools.demo.model.exception.ApiException;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Pattern;
+
+/**
+ * 抽取结果导出服务
+ *
+ * 将 getExtractResult 返回的嵌套结构展开为行，逐行写出为 CSV 或 XLSX：
+ * - 字段：任务ID、文件名、字段名称、提取值
+ * - 表格：任务ID、文件名、表格名称、行号、列名、值（长表格式，列固定，无需预先知道表头）
+ *
+ * 结果按 parallelism 为窗口预取，写出后即释放。
+ * CSV 逐行写入响应，是真正的流式输出；XLSX 使用 SXSSF 只在内存中保留最近的行，其余行先写入压缩的临时文件，
+ * 全部行生成后才组装工作簿并开始输出，因此 XLSX 的首字节延迟与临时磁盘占用随行数增长，
+ * 数据行数以 zhaoxin.extract.export.xlsx-max-rows 为上限，超出后截断并在工作表末尾注明，大批量导出应使用 CSV。
+ */
+@Slf4j
+@Service
+public class ExtractExportService {
+
+    public static final String FORMAT_CSV = "csv";
+    public static final String FORMAT_XLSX = "xlsx";
+
+    /**
+     * SXSSF 内存中保留的行数，超出部分写入临时文件
+     */
+    private static final int XLSX_ROW_WINDOW = 200;
+
+    /**
+     * Excel 单元格最大字符数
+     */
+    private static final int XLSX_MAX_CELL_LENGTH = SpreadsheetVersion.EXCEL2007.getMaxTextLength();
+
+    private final ZhaoxinApiClient apiClient;
+    private final ExecutorService fetchExecutor;
+    private final int parallelism;
+    private final int xlsxMaxRows;
+
+    public ExtractExportService(ZhaoxinApiClient apiClient,
+                                @Value("${zhaoxin.extract.batch.parallelism:4}") int parallelism,
+                                @Value("${zhaoxin.extract.export.xlsx-max-rows:200000}") int xlsxMaxRows) {
+        this.apiClient = apiClient;
+        this.parallelism = Math.max(1, parallelism);
+        this.xlsxMaxRows = Math.max(1, xlsxMaxRows);
+        this.fetchExecutor = Executors.newFixedThreadPool(this.parallelism,
+                new CustomizableThreadFactory("extract-export-"));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        fetchExecutor.shutdownNow();
+    }
+
+    /**
+     * 规范化导出格式
+     */
+    public static String normalizeFormat(String format) {
+        if (format == null || format.trim().isEmpty()) {
+            return FORMAT_CSV;
+        }
+        String normalized = format.trim().toLowerCase();
+        if (!FORMAT_CSV.equals(normalized) && !FORMAT_XLSX.equals(normalized)) {
+            throw new ApiException(400, "不支持的导出格式: " + format);
+        }
+        return normalized;
+    }
+
+    /**
+     * 导出抽取结果
+     *
+     * @param items 需要导出的任务（taskId 与可选的文件名）
+     * @param format csv 或 xlsx
+     * @param out 输出流
+     */
+    public void export(List<ExtractBatchJob.Item> items, String format, OutputStream out) throws IOException {
+        long start = System.currentTimeMillis();
+        RowSink sink = FORMAT_XLSX.equals(format) ? new XlsxRowSink(out, xlsxMaxRows) : new CsvRowSink(out);
+
+        try {
+            Deque<Map.Entry<ExtractBatchJob.Item, CompletableFuture<Map<String, Object>>>> window = new ArrayDeque<>();
+            Iterator<ExtractBatchJob.Item> it = items.iterator();
+            while ((it.hasNext() || !window.isEmpty()) && !sink.isFull()) {
+                while (it.hasNext() && window.size() < parallelism) {
+                    ExtractBatchJob.Item item = it.next();
+                    window.add(Map.entry(item, fetchResult(item)));
+                }
+                Map.Entry<ExtractBatchJob.Item, CompletableFuture<Map<String, Object>>> head = window.poll();
+                writeTask(head.getKey(), head.getValue().join(), sink);
+            }
+            if (sink.isFull()) {
+                window.forEach(entry -> entry.getValue().cancel(false));
+                log.warn("导出行数达到上限，结果已截断: 任务数={}, 格式={}, 上限={}", items.size(), format, xlsxMaxRows);
+            }
+            sink.finish();
+        } finally {
+            sink.close();
+        }
+
+        log.info("导出抽取结果完成: 任务数={}, 格式={}, 耗时={}ms",
+                items.size(), format, System.currentTimeMillis() - start);
+    }
+
+    private CompletableFuture<Map<String, Object>> fetchResult(ExtractBatchJob.Item item) {
+        if (item.getTaskId() == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return CompletableFuture.supplyAsync(() -> apiClient.getExtractResult(item.getTaskId()), fetchExecutor)
+                .exceptionally(e -> {
+                    log.warn("导出时获取抽取结果失败: taskId={}, error={}", item.getTaskId(), e.getMessage());
+                    return Map.of("code", 500, "message", String.valueOf(e.getCause() != null
+                            ? e.getCause().getMessage() : e.getMessage()));
+                });
+    }
+
+    /**
+     * 展开单个任务的抽取结果
+     */
+    @SuppressWarnings("unchecked")
+    private void writeTask(ExtractBatchJob.Item item, Map<String, Object> result, RowSink sink) throws IOException {
+        String taskId = item.getTaskId();
+        String fileName = item.getFileName();
+
+        if (taskId == null) {
+            sink.field(null, fileName, "错误", item.getErrorMessage());
+            return;
+        }
+        if (result == null) {
+            sink.field(taskId, fileName, "错误", "未获取到抽取结果");
+            return;
+        }
+
+        Object data = result.containsKey("data") ? result.get("data") : result;
+        Object code = result.get("code");
+        if (code != null && !"200".equals(code.toString())) {
+            sink.field(taskId, fileName, "错误", String.valueOf(result.get("message")));
+            return;
+        }
+        if (!(data instanceof Map)) {
+            return;
+        }
+
+        Map<String, Object> resultData = (Map<String, Object>) data;
+        if (resultData.get("extractResults") instanceof List) {
+            for (Object element : (List<Object>) resultData.get("extractResults")) {
+                if (!(element instanceof Map)) {
+                    continue;
+                }
+                Map<String, Object> field = (Map<String, Object>) element;
+                String name = firstString(field, "fieldName", "field_name");
+                Object value = firstNonNull(field, "extractedValue", "extracted_value", "value");
+                writeValue(taskId, fileName, name != null ? name : "未知字段", value, sink);
+            }
+        } else if (resultData.get("extractedData") instanceof Map) {
+            for (Map.Entry<String, Object> entry : ((Map<String, Object>) resultData.get("extractedData")).entrySet()) {
+                writeValue(taskId, fileName, entry.getKey(), entry.getValue(), sink);
+            }
+        }
+
+        if (resultData.get("tables") instanceof List) {
+            int index = 0;
+            for (Object element : (List<Object>) resultData.get("tables")) {
+                index++;
+                if (!(element instanceof Map)) {
+                    continue;
+                }
+                Map<String, Object> table = (Map<String, Object>) element;
+                String name = firstString(table, "tableName", "name");
+                Object rows = firstNonNull(table, "rows", "data");
+                writeValue(taskId, fileName, name != null ? name : "表格" + index, rows, sink);
+            }
+        }
+    }
+
+    /**
+     * 按值的类型写出：对象列表/二维数组作为表格，对象按 a.b 展开，其他作为字段
+     */
+    @SuppressWarnings("unchecked")
+    private void writeValue(String taskId, String fileName, String name, Object value, RowSink sink) throws IOException {
+        if (value instanceof List && !((List<Object>) value).isEmpty()
+                && (((List<Object>) value).get(0) instanceof Map || ((List<Object>) value).get(0) instanceof List)) {
+            int rowNumber = 0;
+            for (Object row : (List<Object>) value) {
+                rowNumber++;
+                if (row instanceof Map) {
+                    for (Map.Entry<String, Object> cell : ((Map<String, Object>) row).entrySet()) {
+                        sink.tableCell(taskId, fileName, name, rowNumber, cell.getKey(), stringify(cell.getValue()));
+                    }
+                } else if (row instanceof List) {
+                    int column = 0;
+                    for (Object cell : (List<Object>) row) {
+                        column++;
+                        sink.tableCell(taskId, fileName, name, rowNumber, "列" + column, stringify(cell));
+                    }
+                } else {
+                    sink.tableCell(taskId, fileName, name, rowNumber, "值", stringify(row));
+                }
+            }
+        } else if (value instanceof Map) {
+            for (Map.Entry<String, Object> entry : ((Map<String, Object>) value).entrySet()) {
+                writeValue(taskId, fileName, name + "." + entry.getKey(), entry.getValue(), sink);
+            }
+        } else {
+            sink.field(taskId, fileName, name, stringify(value));
+        }
+    }
+
+    private static String stringify(Object value) {
+        if (value == null) {
+            return "";
+        }
+        if (value instanceof List) {
+            StringBuilder sb = new StringBuilder();
+            for (Object element : (List<?>) value) {
+                if (sb.length() > 0) {
+                    sb.append("; ");
+                }
+                sb.append(element);
+            }
+            return sb.toString();
+        }
+        return value.toString();
+    }
+
+    private static String firstString(Map<String, Object> map, String... keys) {
+        Object value = firstNonNull(map, keys);
+        return value != null ? value.toString() : null;
+    }
+
+    private static Object firstNonNull(Map<String, Object> map, String... keys) {
+        for (String key : keys) {
+            Object value = map.get(key);
+            if (value != null) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    // ==================== 行写出器 ====================
+
+    private interface RowSink {
+
+        void field(String taskId, String fileName, String fieldName, String value) throws IOException;
+
+        void tableCell(String taskId, String fileName, String tableName, int rowNumber,
+                       String columnName, String value) throws IOException;
+
+        /**
+         * 是否已达到行数上限，达到后不再接收新行
+         */
+        default boolean isFull() {
+            return false;
+        }
+
+        void finish() throws IOException;
+
+        void close() throws IOException;
+    }
+
+    /**
+     * CSV 写出器：单一长表，UTF-8 带 BOM 以便 Excel 正确识别中文
+     * 以 = + - @ 制表符、回车开头的单元格（纯数字除外）加单引号前缀，防止在 Excel 中被当作公式执行
+     */
+    private static class CsvRowSink implements RowSink {
+
+        private static final Pattern NUMBER = Pattern.compile("[+-]?\\d+(\\.\\d+)?([eE][+-]?\\d+)?");
+
+        private final Writer writer;
+
+        CsvRowSink(OutputStream out) throws IOException {
+            this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+            writer.write('\uFEFF');
+            writeRow("任务ID", "文件名", "类型", "名称", "行号", "列名", "值");
+        }
+
+        @Override
+        public void field(String taskId, String fileName, String fieldName, String value) throws IOException {
+            writeRow(taskId, fileName, "字段", fieldName, "", "", value);
+        }
+
+        @Override
+        public void tableCell(String taskId, String fileName, String tableName, int rowNumber,
+                              String columnName, String value) throws IOException {
+            writeRow(taskId, fileName, "表格", tableName, String.valueOf(rowNumber), columnName, value);
+        }
+
+        private void writeRow(String... cells) throws IOException {
+            for (int i = 0; i < cells.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writeCell(cells[i]);
+            }
+            writer.write("\r\n");
+        }
+
+        private void writeCell(String cell) throws IOException {
+            if (cell == null || cell.isEmpty()) {
+                return;
+            }
+            if (isFormulaLike(cell)) {
+                cell = "'" + cell;
+            }
+            boolean quote = cell.indexOf(',') >= 0 || cell.indexOf('"') >= 0
+                    || cell.indexOf('\n') >= 0 || cell.indexOf('\r') >= 0;
+            if (!quote) {
+                writer.write(cell);
+                return;
+            }
+            writer.write('"');
+            writer.write(cell.replace("\"", "\"\""));
+            writer.write('"');
+        }
+
+        private static boolean isFormulaLike(String cell) {
+            char first = cell.charAt(0);
+            if (first != '=' && first != '+' && first != '-' && first != '@' && first != '\t' && first != '\r') {
+                return false;
+            }
+            return !NUMBER.matcher(cell).matches();
+        }
+
+        @Override
+        public void finish() throws IOException {
+            writer.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.flush();
+        }
+    }
+
+    /**
+     * XLSX 写出器：字段、表格各一个工作表，超过单表行数上限时自动续表；
+     * 数据行总数达到 maxRows 后不再接收新行，结束时在各工作表末尾注明已截断
+     */
+    private static class XlsxRowSink implements RowSink {
+
+        private static final int MAX_ROWS = SpreadsheetVersion.EXCEL2007.getMaxRows();
+
+        private final OutputStream out;
+        private final int maxRows;
+        private final SXSSFWorkbook workbook = new SXSSFWorkbook(XLSX_ROW_WINDOW);
+        private final SheetCursor fieldSheet;
+        private final SheetCursor tableSheet;
+        private int dataRows;
+
+        XlsxRowSink(OutputStream out, int maxRows) {
+            this.out = out;
+            this.maxRows = maxRows;
+            workbook.setCompressTempFiles(true);
+            this.fieldSheet = new SheetCursor("字段", "任务ID", "文件名", "字段名称", "提取值");
+            this.tableSheet = new SheetCursor("表格", "任务ID", "文件名", "表格名称", "行号", "列名", "值");
+        }
+
+        @Override
+        public void field(String taskId, String fileName, String fieldName, String value) {
+            if (!isFull()) {
+                dataRows++;
+                fieldSheet.append(taskId, fileName, fieldName, value);
+            }
+        }
+
+        @Override
+        public void tableCell(String taskId, String fileName, String tableName, int rowNumber,
+                              String columnName, String value) {
+            if (!isFull()) {
+                dataRows++;
+                tableSheet.append(taskId, fileName, tableName, rowNumber, columnName, value);
+            }
+        }
+
+        @Override
+        public boolean isFull() {
+            return dataRows >= maxRows;
+        }
+
+        @Override
+        public void finish() throws IOException {
+            if (isFull()) {
+                String note = "已达到 XLSX 导出行数上限 " + maxRows + "，其余结果未导出，请使用 CSV 格式导出全部数据";
+                fieldSheet.append(note);
+                tableSheet.append(note);
+            }
+            workbook.write(out);
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            // 删除 SXSSF 产生的临时文件
+            workbook.dispose();
+            workbook.close();
+        }
+
+        private class SheetCursor {
+            private final String baseName;
+            private final String[] header;
+            private Sheet sheet;
+            private int sheetCount;
+            private int rowIndex;
+
+            SheetCursor(String baseName, String... header) {
+                this.baseName = baseName;
+                this.header = header;
+                nextSheet();
+            }
+
+            void append(Object... cells) {
+                if (rowIndex >= MAX_ROWS) {
+                    nextSheet();
+                }
+                Row row = sheet.createRow(rowIndex++);
+                for (int i = 0; i < cells.length; i++) {
+                    Object cell = cells[i];
+                    if (cell instanceof Number) {
+                        row.createCell(i).setCellValue(((Number) cell).doubleValue());
+                    } else if (cell != null) {
+                        String text = cell.toString();
+                        row.createCell(i).setCellValue(text.length() > XLSX_MAX_CELL_LENGTH
+                                ? text.substring(0, XLSX_MAX_CELL_LENGTH) : text);
+                    }
+                }
+            }
+
+            private void nextSheet() {
+                sheetCount++;
+                sheet = workbook.createSheet(sheetCount == 1 ? baseName : baseName + "(" + sheetCount + ")");
+                rowIndex = 0;
+                append((Object[]) header);
+            }
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package com.zhaoxin.tools.demo.service;
+
+import com.zhaoxin.tools.demo.model.exception.ApiException;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JFR 录制服务
+ *
+ * 线上延迟抖动时按需开启 Java Flight Recorder，无需挂载外部工具：
+ * 1. 以 JDK 自带的 profile 配置为基础，调低锁竞争（JavaMonitorEnter/Wait、ThreadPark）阈值并开启分配采样
+ * 2. 同时记录本服务的肇新调用、文件传输与映射持久化事件，可与 GC、锁事件按线程和时间对照
+ * 3. 录制以环形缓冲保存最近 max-age 内的数据，可随时导出快照（dump）或停止并导出
+ * 同一时间只允许一个录制；导出文件保存在 zhaoxin.jfr.path 下，只保留最近 max-files 个。
+ * 录制中不包含环境变量、系统属性与 JVM 启动参数（可能含密钥）；zhaoxin.jfr.allowed 为 false 时（生产环境）
+ * 无法开始录制、导出或下载文件。
+ */
+@Slf4j
+@Service
+public class JfrRecordingService {
+
+    private static final String RECORDING_NAME = "zhaoxin-on-demand";
+    private static final String FILE_SUFFIX = ".jfr";
+    private static final DateTimeFormatter FILE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
+
+    /**
+     * 在 profile 配置上的调整：锁竞争与分配
+     */
+    private static final Map<String, String> TUNED_SETTINGS = new LinkedHashMap<>();
+
+    static {
+        TUNED_SETTINGS.put("jdk.JavaMonitorEnter#threshold", "1 ms");
+        TUNED_SETTINGS.put("jdk.JavaMonitorWait#threshold", "1 ms");
+        TUNED_SETTINGS.put("jdk.ThreadPark#threshold", "1 ms");
+        TUNED_SETTINGS.put("jdk.ObjectAllocationInNewTLAB#enabled", "true");
+        TUNED_SETTINGS.put("jdk.ObjectAllocationOutsideTLAB#enabled", "true");
+        // JDK 16 及以上的分配采样事件，低版本忽略
+        TUNED_SETTINGS.put("jdk.ObjectAllocationSample#enabled", "true");
+        TUNED_SETTINGS.put("jdk.ObjectAllocationSample#throttle", "300/s");
+        TUNED_SETTINGS.put("com.zhaoxin.UpstreamCall#enabled", "true");
+        TUNED_SETTINGS.put("com.zhaoxin.FileTransfer#enabled", "true");
+        TUNED_SETTINGS.put("com.zhaoxin.MappingPersist#enabled", "true");
+        // 环境变量、系统属性与启动参数中可能有密钥，导出的文件可被下载，不录制
+        TUNED_SETTINGS.put("jdk.InitialEnvironmentVariable#enabled", "false");
+        TUNED_SETTINGS.put("jdk.InitialSystemProperty#enabled", "false");
+        TUNED_SETTINGS.put("jdk.JVMInformation#enabled", "false");
+    }
+
+    private final boolean allowed;
+    private final Path dumpDirectory;
+    private final Duration defaultMaxAge;
+    private final long maxSizeBytes;
+    private final int maxFiles;
+
+    private Recording recording;
+
+    public JfrRecordingService(@Value("${zhaoxin.jfr.allowed:false}") boolean allowed,
+                               @Value("${zhaoxin.jfr.path:./jfr}") String dumpPath,
+                               @Value("${zhaoxin.jfr.max-age:600}") long maxAgeSeconds,
+                               @Value("${zhaoxin.jfr.max-size:268435456}") long maxSizeBytes,
+                               @Value("${zhaoxin.jfr.max-files:10}") int maxFiles) {
+        this.allowed = allowed;
+        this.dumpDirectory = Paths.get(dumpPath).toAbsolutePath().normalize();
+        this.defaultMaxAge = Duration.ofSeconds(maxAgeSeconds);
+        this.maxSizeBytes = maxSizeBytes;
+        this.maxFiles = Math.max(1, maxFiles);
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (recording != null) {
+            recording.close();
+            recording = null;
+        }
+    }
+
+    /**
+     * 开始录制
+     *
+     * @param maxAgeSeconds 保留最近多少秒的数据，为空时使用 zhaoxin.jfr.max-age
+     */
+    public synchronized Map<String, Object> start(Long maxAgeSeconds) {
+        checkAllowed();
+        if (recording != null && recording.getState() == RecordingState.RUNNING) {
+            throw new ApiException(409, "已有正在进行的 JFR 录制");
+        }
+        Map<String, String> settings;
+        try {
+            settings = new HashMap<>(Configuration.getConfiguration("profile").getSettings());
+        } catch (IOException | ParseException e) {
+            throw new ApiException("加载 JFR profile 配置失败: " + e.getMessage(), e);
+        }
+        settings.putAll(TUNED_SETTINGS);
+
+        Recording created = new Recording(settings);
+        created.setName(RECORDING_NAME);
+        created.setToDisk(true);
+        created.setMaxAge(maxAgeSeconds != null && maxAgeSeconds > 0 ? Duration.ofSeconds(maxAgeSeconds) : defaultMaxAge);
+        created.setMaxSize(maxSizeBytes);
+        created.start();
+        if (recording != null) {
+            recording.close();
+        }
+        recording = created;
+        log.warn("JFR 录制已开始: maxAge={}s, maxSize={}", created.getMaxAge().getSeconds(), maxSizeBytes);
+        return status();
+    }
+
+    /**
+     * 导出当前录制的快照，录制继续进行
+     */
+    public synchronized Map<String, Object> dump() {
+        checkAllowed();
+        Recording current = requireRunning();
+        Path file = dumpTo(current);
+        Map<String, Object> result = status();
+        result.put("file", describe(file));
+        return result;
+    }
+
+    /**
+     * 停止录制并导出
+     */
+    public synchronized Map<String, Object> stop() {
+        Recording current = requireRunning();
+        current.stop();
+        Path file = dumpTo(current);
+        current.close();
+        recording = null;
+        log.warn("JFR 录制已停止: {}", file);
+        Map<String, Object> result = status();
+        result.put("file", describe(file));
+        return result;
+    }
+
+    /**
+     * 录制状态
+     */
+    public synchronized Map<String, Object> status() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("allowed", allowed);
+        boolean running = recording != null && recording.getState() == RecordingState.RUNNING;
+        result.put("running", running);
+        if (running) {
+            result.put("startTime", recording.getStartTime() != null ? recording.getStartTime().toEpochMilli() : null);
+            result.put("maxAge", recording.getMaxAge() != null ? recording.getMaxAge().getSeconds() : null);
+            result.put("maxSize", recording.getMaxSize());
+        }
+        result.put("files", listFiles());
+        return result;
+    }
+
+    /**
+     * 获取导出文件，文件名不合法或不存在时返回 null
+     */
+    public Path resolveFile(String fileName) {
+        checkAllowed();
+        if (fileName == null || !fileName.endsWith(FILE_SUFFIX) || fileName.contains("/") || fileName.contains("\\")) {
+            return null;
+        }
+        Path file = dumpDirectory.resolve(fileName).normalize();
+        return file.startsWith(dumpDirectory) && Files.isRegularFile(file) ? file : null;
+    }
+
+    private void checkAllowed() {
+        if (!allowed) {
+            throw new ApiException(403, "当前环境不允许 JFR 录制（zhaoxin.jfr.allowed=false）");
+        }
+    }
+
+    private Recording requireRunning() {
+        if (recording == null || recording.getState() != RecordingState.RUNNING) {
+            throw new ApiException(409, "当前没有正在进行的 JFR 录制");
+        }
+        return recording;
+    }
+
+    private Path dumpTo(Recording current) {
+        try {
+            Files.createDirectories(dumpDirectory);
+            Path file = dumpDirectory.resolve("zhaoxin-" + LocalDateTime.now().format(FILE_TIME) + FILE_SUFFIX);
+            current.dump(file);
+            pruneFiles();
+            return file;
+        } catch (IOException e) {
+            throw new ApiException("导出 JFR 录制失败: " + e.getMessage(), e);
+        }
+    }
+
+    private void pruneFiles() throws IOException {
+        List<Path> files = jfrFiles();
+        for (int i = maxFiles; i < files.size(); i++) {
+            Files.deleteIfExists(files.get(i));
+        }
+    }
+
+    private List<Map<String, Object>> listFiles() {
+        List<Map<String, Object>> result = new ArrayList<>();
+        try {
+            for (Path file : jfrFiles()) {
+                result.add(describe(file));
+            }
+        } catch (IOException e) {
+            log.warn("读取 JFR 导出目录失败: {}", e.getMessage());
+        }
+        return result;
+    }
+
+    /**
+     * 导出文件，按修改时间倒序
+     */
+    private List<Path> jfrFiles() throws IOException {
+        List<Path> files = new ArrayList<>();
+        if (!Files.isDirectory(dumpDirectory)) {
+            return files;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dumpDirectory, "*" + FILE_SUFFIX)) {
+            stream.forEach(files::add);
+        }
+        files.sort(Comparator.comparing((Path file) -> file.toFile().lastModified()).reversed());
+        return files;
+    }
+
+    private static Map<String, Object> describe(Path file) {
+        Map<String, Object> info = new LinkedHashMap<>();
+        info.put("name", file.getFileName().toString());
+        info.put("size", file.toFile().length());
+        info.put("lastModified", file.toFile().lastModified());
+        return info;
+    }
+}
@@ -0,0 +1,118 @@
+package com.zhaoxin.tools.demo.service;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 滚动延迟直方图
+ *
+ * 按几何级数划分桶（相邻上界相差 20%，覆盖 1ms ~ 10min），分位数误差不超过一个桶宽。
+ * 维护当前与上一个两个时间窗口，查询时合并两者，因此统计的是最近 1~2 个窗口的延迟分布。
+ */
+public class LatencyHistogram {
+
+    private static final double GROWTH = 1.2;
+    private static final long MAX_MILLIS = 600_000;
+    private static final long[] BOUNDS = buildBounds();
+
+    private final long windowMillis;
+    private volatile AtomicLongArray current = new AtomicLongArray(BOUNDS.length);
+    private volatile AtomicLongArray previous = new AtomicLongArray(BOUNDS.length);
+    private volatile long windowStart = System.currentTimeMillis();
+
+    public LatencyHistogram(long windowMillis) {
+        this.windowMillis = windowMillis;
+    }
+
+    private static long[] buildBounds() {
+        int count = 1;
+        for (double bound = 1; bound < MAX_MILLIS; bound *= GROWTH) {
+            count++;
+        }
+        long[] bounds = new long[count];
+        double bound = 1;
+        for (int i = 0; i < count - 1; i++) {
+            bounds[i] = (long) Math.ceil(bound);
+            bound *= GROWTH;
+        }
+        bounds[count - 1] = Long.MAX_VALUE;
+        return bounds;
+    }
+
+    public void record(long millis) {
+        rotateIfNecessary();
+        current.incrementAndGet(bucket(millis));
+    }
+
+    /**
+     * 最近窗口内的样本数
+     */
+    public long count() {
+        rotateIfNecessary();
+        long total = 0;
+        AtomicLongArray cur = current;
+        AtomicLongArray prev = previous;
+        for (int i = 0; i < BOUNDS.length; i++) {
+            total += cur.get(i) + prev.get(i);
+        }
+        return total;
+    }
+
+    /**
+     * 分位数（毫秒，取所在桶的上界），无样本时返回 -1
+     *
+     * @param percentile 0 ~ 100
+     */
+    public long percentile(double percentile) {
+        rotateIfNecessary();
+        AtomicLongArray cur = current;
+        AtomicLongArray prev = previous;
+        long[] counts = new long[BOUNDS.length];
+        long total = 0;
+        for (int i = 0; i < BOUNDS.length; i++) {
+            counts[i] = cur.get(i) + prev.get(i);
+            total += counts[i];
+        }
+        if (total == 0) {
+            return -1;
+        }
+        long rank = (long) Math.ceil(total * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < BOUNDS.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(BOUNDS[i], MAX_MILLIS);
+            }
+        }
+        return MAX_MILLIS;
+    }
+
+    private static int bucket(long millis) {
+        int low = 0;
+        int high = BOUNDS.length - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (BOUNDS[mid] >= millis) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    private void rotateIfNecessary() {
+        long now = System.currentTimeMillis();
+        if (now - windowStart < windowMillis) {
+            return;
+        }
+        synchronized (this) {
+            if (now - windowStart < windowMillis) {
+                return;
+            }
+            // 超过两个窗口未更新时，上一个窗口也已过期
+            previous = now - windowStart < 2 * windowMillis ? current : new AtomicLongArray(BOUNDS.length);
+            current = new AtomicLongArray(BOUNDS.length);
+            windowStart = now;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.zhaoxin.tools.demo.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 热点日志采样
+ *
+ * 任务状态轮询、页面图片等高频接口的日志按接口（key）限流，避免日志开销随轮询量线性增长：
+ * 1. 每个 key 每秒最多输出 per-second 条
+ * 2. 超出后每 sample-every 条再输出 1 条（0 表示超出后全部省略）
+ * 3. 被省略的条数附在该 key 下一条输出的日志末尾，便于估算真实流量
+ * key 需为固定取值（接口名或接口模板），不要包含任务ID等变量。
+ * 另提供 {@link #payload(Object)}：请求体等大对象延迟到日志真正输出时才序列化，并截断到 payload-max-chars。
+ */
+@Service
+public class LogSampler {
+
+    private static final ObjectMapper PAYLOAD_MAPPER = new ObjectMapper();
+
+    private static volatile int payloadMaxChars = 512;
+
+    private final boolean enabled;
+    private final int perSecond;
+    private final int sampleEvery;
+    private final ConcurrentHashMap<String, Window> windows = new ConcurrentHashMap<>();
+
+    public LogSampler(@Value("${zhaoxin.logging.sampling.enabled:true}") boolean enabled,
+                      @Value("${zhaoxin.logging.sampling.per-second:5}") int perSecond,
+                      @Value("${zhaoxin.logging.sampling.sample-every:100}") int sampleEvery,
+                      @Value("${zhaoxin.logging.payload-max-chars:512}") int payloadMaxChars) {
+        this.enabled = enabled;
+        this.perSecond = Math.max(0, perSecond);
+        this.sampleEvery = Math.max(0, sampleEvery);
+        LogSampler.payloadMaxChars = Math.max(64, payloadMaxChars);
+    }
+
+    /**
+     * 按 key 采样输出 INFO 日志，未开启 INFO 时不做任何计数
+     */
+    public void info(Logger logger, String key, String format, Object... args) {
+        if (!logger.isInfoEnabled()) {
+            return;
+        }
+        long skipped = acquire(key);
+        if (skipped < 0) {
+            return;
+        }
+        if (skipped == 0) {
+            logger.info(format, args);
+        } else {
+            Object[] withSkipped = Arrays.copyOf(args, args.length + 1);
+            withSkipped[args.length] = skipped;
+            logger.info(format + " (此前已省略 {} 条)", withSkipped);
+        }
+    }
+
+    /**
+     * 申请输出一条日志
+     *
+     * @return -1 表示本条应省略；否则为此前省略的条数
+     */
+    public long acquire(String key) {
+        if (!enabled) {
+            return 0;
+        }
+        return windows.computeIfAbsent(key, k -> new Window()).acquire(perSecond, sampleEvery);
+    }
+
+    /**
+     * 日志参数：输出时才序列化为 JSON，超过 payload-max-chars 即停止序列化并截断
+     */
+    public static Object payload(Object value) {
+        return new Object() {
+            @Override
+            public String toString() {
+                return truncate(value, payloadMaxChars);
+            }
+        };
+    }
+
+    static String truncate(Object value, int maxChars) {
+        if (value == null || value instanceof CharSequence || value instanceof Number || value instanceof Boolean) {
+            String text = String.valueOf(value);
+            return text.length() > maxChars ? text.substring(0, maxChars) + "...(共" + text.length() + "字符)" : text;
+        }
+        BoundedWriter writer = new BoundedWriter(maxChars);
+        try {
+            PAYLOAD_MAPPER.writeValue(writer, value);
+        } catch (IOException | RuntimeException e) {
+            if (writer.isFull()) {
+                return writer.toString() + "...(已截断)";
+            }
+            return value.getClass().getSimpleName() + "(序列化失败: " + e.getMessage() + ")";
+        }
+        return writer.toString();
+    }
+
+    /**
+     * 单个 key 的秒级计数窗口
+     */
+    private static class Window {
+
+        private long second = -1;
+        private int count;
+        private long pendingSkipped;
+
+        synchronized long acquire(int perSecond, int sampleEvery) {
+            long now = System.currentTimeMillis() / 1000;
+            if (now != second) {
+                second = now;
+                count = 0;
+            }
+            count++;
+            boolean emit = count <= perSecond || (sampleEvery > 0 && (count - perSecond) % sampleEvery == 0);
+            if (!emit) {
+                pendingSkipped++;
+                return -1;
+            }
+            long skipped = pendingSkipped;
+            pendingSkipped = 0;
+            return skipped;
+        }
+    }
+
+    private static class LimitReachedException extends IOException {
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+
+    /**
+     * 写满上限后抛出异常中止序列化，避免大请求体被完整序列化
+     */
+    private static class BoundedWriter extends Writer {
+
+        private final StringBuilder buffer = new StringBuilder();
+        private final int limit;
+
+        BoundedWriter(int limit) {
+            this.limit = limit;
+        }
+
+        boolean isFull() {
+            return buffer.length() >= limit;
+        }
+
+        @Override
+        public void write(char[] chars, int off, int len) throws IOException {
+            int room = limit - buffer.length();
+            buffer.append(chars, off, Math.min(room, len));
+            if (len > room) {
+                throw new LimitReachedException();
+            }
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public String toString() {
+            return buffer.toString();
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package com.zhaoxin.tools.demo.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zhaoxin.tools.demo.model.TaskSummary;
+import com.zhaoxin.tools.demo.model.request.CompareRequest;
+import com.zhaoxin.tools.demo.model.request.TaskStatusBatchRequest;
+import com.zhaoxin.tools.demo.model.response.ApiResponse;
+import com.zhaoxin.tools.demo.model.response.TaskStatusItem;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+/**
+ * 启动预热
+ *
+ * 作为 ApplicationRunner 在就绪探针（/actuator/health/readiness）报告 UP 之前执行，避免滚动发布后首批请求变慢：
+ * 1. 预先建立肇新连接：并发请求模板列表，连接进入 keep-alive 池（异步客户端开启时同样预热）
+ * 2. 预取模板目录：getTemplates、getComposeTemplates("PUBLISHED")，并预编译合成校验规则
+ * 3. 用 MVC 使用的 ObjectMapper 反复序列化/反序列化代表性数据，触发 Jackson 序列化器创建与 JIT
+ * 4. 请求本服务的只读接口若干次，预热过滤器、DispatcherServlet 与控制器路径
+ *
+ * 各步骤失败只记录日志，总耗时不超过 zhaoxin.warmup.timeout；耗时记录在日志与 zhaoxin.warmup 指标中。
+ * 肇新首个请求失败时视为不可用，跳过后续访问肇新的步骤，避免预热请求触发熔断。
+ */
+@Slf4j
+@Service
+public class StartupWarmup implements ApplicationRunner {
+
+    private final ZhaoxinApiClient apiClient;
+    private final ZhaoxinAsyncApiClient asyncClient;
+    private final ComposePayloadValidator payloadValidator;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry registry;
+    private final Environment environment;
+    private final boolean enabled;
+    private final int connections;
+    private final int serializationIterations;
+    private final int localRequests;
+    private final List<String> localPaths;
+    private final int maxCompiledTemplates;
+    private final long timeoutMillis;
+
+    public StartupWarmup(ZhaoxinApiClient apiClient,
+                         ZhaoxinAsyncApiClient asyncClient,
+                         ComposePayloadValidator payloadValidator,
+                         ObjectMapper objectMapper,
+                         MeterRegistry registry,
+                         Environment environment,
+                         @Value("${zhaoxin.warmup.enabled:true}") boolean enabled,
+                         @Value("${zhaoxin.warmup.connections:4}") int connections,
+                         @Value("${zhaoxin.warmup.serialization-iterations:200}") int serializationIterations,
+                         @Value("${zhaoxin.warmup.local-requests:5}") int localRequests,
+                         @Value("${zhaoxin.warmup.local-paths:/api/rule-extract/templates,/api/compose/templates}") String localPaths,
+                         @Value("${zhaoxin.warmup.max-compiled-templates:20}") int maxCompiledTemplates,
+                         @Value("${zhaoxin.warmup.timeout:30000}") long timeoutMillis) {
+        this.apiClient = apiClient;
+        this.asyncClient = asyncClient;
+        this.payloadValidator = payloadValidator;
+        this.objectMapper = objectMapper;
+        this.registry = registry;
+        this.environment = environment;
+        this.enabled = enabled;
+        this.connections = Math.max(1, connections);
+        this.serializationIterations = serializationIterations;
+        this.localRequests = localRequests;
+        this.localPaths = Arrays.stream(localPaths.split(","))
+                .map(String::trim).filter(path -> !path.isEmpty())
+                .collect(Collectors.toList());
+        this.maxCompiledTemplates = maxCompiledTemplates;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            return;
+        }
+        long start = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(connections + 1, daemonThreadFactory());
+        Map<String, Object> result = new LinkedHashMap<>();
+        String outcome = "completed";
+        try {
+            CompletableFuture<Void> warmup = CompletableFuture.runAsync(() -> warmup(executor, result), executor);
+            warmup.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            outcome = "timeout";
+            log.warn("启动预热超过 {}ms，未完成的步骤在后台继续，服务先行就绪", timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            outcome = "interrupted";
+        } catch (Exception e) {
+            outcome = "failed";
+            log.warn("启动预热失败: {}", e.getMessage());
+        } finally {
+            executor.shutdown();
+        }
+        long elapsed = System.nanoTime() - start;
+        Timer.builder("zhaoxin.warmup")
+                .description("启动预热耗时")
+                .tag("outcome", outcome)
+                .register(registry)
+                .record(elapsed, TimeUnit.NANOSECONDS);
+        synchronized (result) {
+            result.put("outcome", outcome);
+            result.put("totalMillis", TimeUnit.NANOSECONDS.toMillis(elapsed));
+            log.info("启动预热完成: {}", result);
+        }
+    }
+
+    private void warmup(ExecutorService executor, Map<String, Object> result) {
+        if (step(result, "upstream", () -> warmUpstream(executor, result))) {
+            step(result, "localRequests", this::warmLocalPaths);
+        }
+        step(result, "serialization", this::warmSerialization);
+    }
+
+    /**
+     * 执行一个步骤并记录耗时，返回是否成功
+     */
+    private boolean step(Map<String, Object> result, String name, Step step) {
+        long start = System.nanoTime();
+        boolean success;
+        try {
+            success = step.run();
+        } catch (Exception e) {
+            success = false;
+            log.warn("预热步骤失败: step={}, error={}", name, e.getMessage());
+        }
+        synchronized (result) {
+            result.put(name + "Millis", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            result.put(name, success ? "ok" : "failed");
+        }
+        return success;
+    }
+
+    private boolean warmUpstream(ExecutorService executor, Map<String, Object> result) {
+        // 先发一个请求确认肇新可用，再并发打开其余连接
+        Map<String, Object> published = apiClient.getComposeTemplates("PUBLISHED");
+        List<CompletableFuture<?>> calls = new ArrayList<>();
+        calls.add(CompletableFuture.runAsync(() -> apiClient.getTemplates(null), executor));
+        for (int i = 1; i < connections; i++) {
+            calls.add(CompletableFuture.runAsync(() -> apiClient.getComposeTemplates("PUBLISHED"), executor));
+        }
+        if (asyncClient.isEnabled()) {
+            for (int i = 0; i < connections; i++) {
+                calls.add(i % 2 == 0 ? asyncClient.getTemplates(null) : asyncClient.getComposeTemplates("PUBLISHED"));
+            }
+        }
+        CompletableFuture.allOf(calls.toArray(new CompletableFuture[0])).join();
+        int compiled = payloadValidator.prefetch(published, maxCompiledTemplates);
+        synchronized (result) {
+            result.put("compiledTemplates", compiled);
+        }
+        return true;
+    }
+
+    private boolean warmLocalPaths() throws Exception {
+        String port = environment.getProperty("local.server.port");
+        if (port == null || localRequests <= 0) {
+            return true;
+        }
+        String contextPath = environment.getProperty("server.servlet.context-path", "");
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+        boolean success = true;
+        for (String path : localPaths) {
+            URI uri = URI.create("http://127.0.0.1:" + port + contextPath.replaceAll("/$", "") + path);
+            for (int i = 0; i < localRequests; i++) {
+                HttpResponse<byte[]> response = client.send(
+                        HttpRequest.newBuilder(uri).timeout(Duration.ofSeconds(30)).GET().build(),
+                        HttpResponse.BodyHandlers.ofByteArray());
+                if (response.statusCode() != 200) {
+                    log.warn("预热本地接口返回 {}，停止该接口的预热: {}", response.statusCode(), path);
+                    success = false;
+                    break;
+                }
+            }
+        }
+        return success;
+    }
+
+    private boolean warmSerialization() throws Exception {
+        Map<String, Object> template = new LinkedHashMap<>();
+        template.put("id", "warmup-template");
+        template.put("templateCode", "WARMUP");
+        template.put("name", "预热模板");
+        template.put("status", "PUBLISHED");
+        template.put("updatedAt", "2024-01-01 00:00:00");
+
+        List<TaskSummary> tasks = new ArrayList<>();
+        List<TaskStatusItem> items = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            TaskSummary task = new TaskSummary();
+            task.setTaskId("warmup-" + i);
+            task.setType(i % 2 == 0 ? "compare" : "extract");
+            task.setStatus("completed");
+            task.setCreateTime(System.currentTimeMillis());
+            task.setUpdateTime(System.currentTimeMillis());
+            tasks.add(task);
+
+            TaskStatusItem item = new TaskStatusItem();
+            item.setTaskId(task.getTaskId());
+            item.setSuccess(true);
+            item.setData(Map.of("taskId", task.getTaskId(), "status", "completed", "progress", 100));
+            items.add(item);
+        }
+        Map<String, Object> templates = Map.of("code", 200, "data", Collections.nCopies(20, template));
+
+        CompareRequest compareRequest = new CompareRequest();
+        compareRequest.setOldFileUrl("http://127.0.0.1/old.pdf");
+        compareRequest.setNewFileUrl("http://127.0.0.1/new.pdf");
+        TaskStatusBatchRequest batchRequest = new TaskStatusBatchRequest();
+        batchRequest.setTaskIds(List.of("warmup-1", "warmup-2"));
+
+        for (int i = 0; i < serializationIterations; i++) {
+            objectMapper.writeValueAsBytes(ApiResponse.success(tasks));
+            objectMapper.writeValueAsBytes(ApiResponse.success(items));
+            byte[] json = objectMapper.writeValueAsBytes(templates);
+            objectMapper.readValue(json, Map.class);
+            objectMapper.readValue(objectMapper.writeValueAsBytes(compareRequest), CompareRequest.class);
+            objectMapper.readValue(objectMapper.writeValueAsBytes(batchRequest), TaskStatusBatchRequest.class);
+        }
+        return true;
+    }
+
+    private static CustomizableThreadFactory daemonThreadFactory() {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("warmup-");
+        threadFactory.setDaemon(true);
+        return threadFactory;
+    }
+
+    @FunctionalInterface
+    private interface Step {
+        boolean run() throws Exception;
+    }
+}
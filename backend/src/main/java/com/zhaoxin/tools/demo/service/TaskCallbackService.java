@@ -0,0 +1,346 @@
+package com.zhaoxin.tools.demo.service;
+
+import com.zhaoxin.tools.demo.model.request.TaskCallbackRequest;
+import com.zhaoxin.tools.demo.model.response.ApiResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * 肇新任务回调服务
+ *
+ * 肇新在任务状态变化时回调本服务，代替前端反复轮询：
+ * 1. 校验签名：X-Zhaoxin-Signature = "sha256=" + HMAC-SHA256(secret, timestamp + "." + body)，时间戳超出容差的拒绝；
+ *    容差窗口内已接受过的 (timestamp, signature) 再次出现视为重放，同样拒绝
+ * 2. 更新本地任务读模型，唤醒等待该任务状态的请求（长轮询）
+ * 3. 任务完成时预取结果，随后的结果查询直接返回
+ * 未配置 secret 时回调一律拒绝，状态查询不等待，前端照常轮询
+ */
+@Slf4j
+@Service
+public class TaskCallbackService {
+
+    public static final String SIGNATURE_PREFIX = "sha256=";
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    private final ZhaoxinAsyncApiClient apiClient;
+    private final TaskReadModelService readModel;
+    private final TaskStatusService statusService;
+    private final TaskFileMappingService mappingService;
+    private final String secret;
+    private final long toleranceSeconds;
+    private final int maxWaitSeconds;
+    private final int prefetchMaxEntries;
+    private final long prefetchTtlMillis;
+    private final ExecutorService executor;
+
+    private final Map<String, Waiter> waiters = new ConcurrentHashMap<>();
+
+    /**
+     * 容差窗口内已接受的 timestamp:signature -> 时间戳（秒），超出窗口的在校验时顺带清理
+     */
+    private final Map<String, Long> seenSignatures = new ConcurrentHashMap<>();
+    private final AtomicLong lastPruneSeconds = new AtomicLong();
+    private final Map<String, Prefetched> prefetched;
+
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong replayed = new AtomicLong();
+    private final AtomicLong prefetchHits = new AtomicLong();
+
+    public TaskCallbackService(ZhaoxinAsyncApiClient apiClient,
+                               TaskReadModelService readModel,
+                               TaskStatusService statusService,
+                               TaskFileMappingService mappingService,
+                               @Value("${zhaoxin.callback.secret:}") String secret,
+                               @Value("${zhaoxin.callback.tolerance:300}") long toleranceSeconds,
+                               @Value("${zhaoxin.callback.max-wait:30}") int maxWaitSeconds,
+                               @Value("${zhaoxin.callback.prefetch-max-entries:200}") int prefetchMaxEntries,
+                               @Value("${zhaoxin.callback.prefetch-ttl:600}") long prefetchTtlSeconds) {
+        this.apiClient = apiClient;
+        this.readModel = readModel;
+        this.statusService = statusService;
+        this.mappingService = mappingService;
+        this.secret = secret;
+        this.toleranceSeconds = toleranceSeconds;
+        this.maxWaitSeconds = maxWaitSeconds;
+        this.prefetchMaxEntries = prefetchMaxEntries;
+        this.prefetchTtlMillis = TimeUnit.SECONDS.toMillis(prefetchTtlSeconds);
+        this.prefetched = new LinkedHashMap<String, Prefetched>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Prefetched> eldest) {
+                return size() > TaskCallbackService.this.prefetchMaxEntries;
+            }
+        };
+        this.executor = Executors.newFixedThreadPool(2, new CustomizableThreadFactory("task-callback-"));
+        if (!isEnabled()) {
+            log.info("未配置肇新回调密钥，任务状态依赖轮询");
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        waiters.values().forEach(waiter -> waiter.future.complete(null));
+    }
+
+    public boolean isEnabled() {
+        return secret != null && !secret.isEmpty();
+    }
+
+    // ==================== 回调 ====================
+
+    /**
+     * 校验回调签名与时间戳，并拒绝重放
+     */
+    public boolean verify(String timestamp, String signature, String body) {
+        if (!isEnabled() || timestamp == null || signature == null || body == null) {
+            rejected.incrementAndGet();
+            return false;
+        }
+        long epochSeconds;
+        try {
+            epochSeconds = Long.parseLong(timestamp.trim());
+        } catch (NumberFormatException e) {
+            rejected.incrementAndGet();
+            return false;
+        }
+        long now = System.currentTimeMillis() / 1000;
+        if (Math.abs(now - epochSeconds) > toleranceSeconds) {
+            rejected.incrementAndGet();
+            return false;
+        }
+        byte[] expected = sign(secret, timestamp.trim(), body).getBytes(StandardCharsets.UTF_8);
+        if (!MessageDigest.isEqual(expected, signature.trim().getBytes(StandardCharsets.UTF_8))) {
+            rejected.incrementAndGet();
+            return false;
+        }
+        pruneSeenSignatures(now);
+        if (seenSignatures.putIfAbsent(timestamp.trim() + ":" + signature.trim(), epochSeconds) != null) {
+            log.warn("拒绝重放的肇新回调: timestamp={}", timestamp);
+            replayed.incrementAndGet();
+            rejected.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 移除时间戳已超出容差的记录（这些请求会被时间戳检查拒绝），每秒最多清理一次
+     */
+    private void pruneSeenSignatures(long now) {
+        long last = lastPruneSeconds.get();
+        if (now != last && lastPruneSeconds.compareAndSet(last, now)) {
+            seenSignatures.values().removeIf(epochSeconds -> epochSeconds < now - toleranceSeconds);
+        }
+    }
+
+    /**
+     * 处理已通过校验的回调
+     */
+    public void handle(TaskCallbackRequest callback) {
+        String type = callback.getType();
+        String taskId = callback.getTaskId();
+        Map<String, Object> data = new LinkedHashMap<>();
+        if (callback.getData() != null) {
+            data.putAll(callback.getData());
+        }
+        data.put("taskId", taskId);
+        if (callback.getStatus() != null) {
+            data.put("status", callback.getStatus());
+        }
+        if (TaskReadModelService.TYPE_COMPARE.equals(type)) {
+            mappingService.applyFileNames(data, taskId);
+        }
+        accepted.incrementAndGet();
+        log.info("收到肇新任务回调: type={}, taskId={}, status={}", type, taskId, data.get("status"));
+
+        readModel.recordStatus(type, taskId, data);
+        statusService.evict(taskId);
+
+        Object status = data.get("status");
+        if (status != null && "completed".equalsIgnoreCase(status.toString())) {
+            prefetch(type, taskId);
+        }
+        Waiter waiter = waiters.remove(key(type, taskId));
+        if (waiter != null) {
+            waiter.future.complete(data);
+        }
+    }
+
+    // ==================== 等待状态 ====================
+
+    /**
+     * 等待任务状态变化（长轮询）
+     * 任务已结束时立即返回；否则等待回调，超时或未启用回调时返回 null，由调用方回落到查询肇新
+     */
+    public CompletableFuture<Map<String, Object>> awaitStatus(String type, String taskId, int waitSeconds) {
+        Map<String, Object> terminal = readModel.getTerminalStatus(type, taskId);
+        if (terminal != null) {
+            return CompletableFuture.completedFuture(terminal);
+        }
+        if (!isEnabled() || waitSeconds <= 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+        String key = key(type, taskId);
+        Waiter waiter = waiters.compute(key, (k, existing) -> {
+            Waiter target = existing != null ? existing : new Waiter();
+            target.count.incrementAndGet();
+            return target;
+        });
+        return waiter.future.copy()
+                .completeOnTimeout(null, Math.min(waitSeconds, maxWaitSeconds), TimeUnit.SECONDS)
+                .whenComplete((data, error) -> waiters.computeIfPresent(key,
+                        (k, current) -> current == waiter && current.count.decrementAndGet() == 0 ? null : current));
+    }
+
+    // ==================== 结果预取 ====================
+
+    /**
+     * 获取预取的比对结果，未预取或已过期时返回 null
+     */
+    public ApiResponse getPrefetchedCompareResult(String taskId) {
+        return (ApiResponse) getPrefetched(TaskReadModelService.TYPE_COMPARE, taskId);
+    }
+
+    /**
+     * 获取预取的抽取结果，未预取或已过期时返回 null
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> getPrefetchedExtractResult(String taskId) {
+        return (Map<String, Object>) getPrefetched(TaskReadModelService.TYPE_EXTRACT, taskId);
+    }
+
+    /**
+     * 任务删除或取消后清除预取的结果
+     */
+    public void evict(String taskId) {
+        synchronized (prefetched) {
+            prefetched.remove(key(TaskReadModelService.TYPE_COMPARE, taskId));
+            prefetched.remove(key(TaskReadModelService.TYPE_EXTRACT, taskId));
+        }
+    }
+
+    private Object getPrefetched(String type, String taskId) {
+        String key = key(type, taskId);
+        synchronized (prefetched) {
+            Prefetched entry = prefetched.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (System.currentTimeMillis() >= entry.expireAt) {
+                prefetched.remove(key);
+                return null;
+            }
+            prefetchHits.incrementAndGet();
+            return entry.result;
+        }
+    }
+
+    private void prefetch(String type, String taskId) {
+        // 未启用异步客户端时调用会阻塞，放到线程池中执行，不阻塞回调响应
+        CompletableFuture<Object> result = CompletableFuture.supplyAsync(
+                () -> TaskReadModelService.TYPE_COMPARE.equals(type)
+                        ? apiClient.getCompareResult(taskId).<Object>thenApply(Function.identity())
+                        : apiClient.getExtractResult(taskId).<Object>thenApply(Function.identity()), executor)
+                .thenCompose(Function.identity());
+        result.whenComplete((value, error) -> {
+            if (error != null || !isSuccess(value)) {
+                log.warn("预取任务结果失败: type={}, taskId={}, error={}", type, taskId,
+                        error != null ? error.getMessage() : "响应非成功");
+                return;
+            }
+            synchronized (prefetched) {
+                prefetched.put(key(type, taskId),
+                        new Prefetched(value, System.currentTimeMillis() + prefetchTtlMillis));
+            }
+            log.debug("已预取任务结果: type={}, taskId={}", type, taskId);
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static boolean isSuccess(Object value) {
+        if (value instanceof ApiResponse) {
+            Integer code = ((ApiResponse) value).getCode();
+            return code != null && code == 200;
+        }
+        if (value instanceof Map) {
+            Object code = ((Map<String, Object>) value).get("code");
+            return code == null || "200".equals(code.toString());
+        }
+        return false;
+    }
+
+    /**
+     * 回调统计
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", isEnabled());
+        result.put("accepted", accepted.get());
+        result.put("rejected", rejected.get());
+        result.put("replayed", replayed.get());
+        result.put("waitingTasks", waiters.size());
+        synchronized (prefetched) {
+            result.put("prefetchedResults", prefetched.size());
+        }
+        result.put("prefetchHits", prefetchHits.get());
+        return result;
+    }
+
+    /**
+     * 计算回调签名（肇新与测试桩使用同样的算法）
+     */
+    public static String sign(String secret, String timestamp, String body) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), HMAC_ALGORITHM));
+            byte[] digest = mac.doFinal((timestamp + "." + body).getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(SIGNATURE_PREFIX);
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("计算回调签名失败", e);
+        }
+    }
+
+    private static String key(String type, String taskId) {
+        return type + ":" + taskId;
+    }
+
+    private static class Waiter {
+        final CompletableFuture<Map<String, Object>> future = new CompletableFuture<>();
+        final AtomicInteger count = new AtomicInteger();
+    }
+
+    private static class Prefetched {
+        final Object result;
+        final long expireAt;
+
+        Prefetched(Object result, long expireAt) {
+            this.result = result;
+            this.expireAt = expireAt;
+        }
+    }
+}
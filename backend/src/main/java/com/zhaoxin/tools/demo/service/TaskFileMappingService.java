@@ -2,8 +2,12 @@ package com.zhaoxin.tools.demo.service;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zhaoxin.tools.demo.jfr.MappingPersistEvent;
 import com.zhaoxin.tools.demo.model.TaskFileMapping;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.io.File;
@@ -26,10 +30,16 @@ public class TaskFileMappingService {
     private final ObjectMapper objectMapper = new ObjectMapper();
     private final Path mappingFilePath;
     private final Map<String, TaskFileMapping> mappingCache = new ConcurrentHashMap<>();
+    private final Timer persistTimer;
     
-    public TaskFileMappingService() {
-        // 使用项目根目录下的 task-mappings.json 文件
-        this.mappingFilePath = Paths.get("task-mappings.json").toAbsolutePath().normalize();
+    public TaskFileMappingService(MeterRegistry meterRegistry,
+                                  @Value("${zhaoxin.task-mapping.path:./task-mappings.json}") String mappingFile) {
+        // 默认使用项目根目录下的 task-mappings.json 文件
+        this.mappingFilePath = Paths.get(mappingFile).toAbsolutePath().normalize();
+        this.persistTimer = Timer.builder("zhaoxin.task-mapping.persist")
+                .description("任务文件名映射持久化耗时（含等待其他持久化完成）")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
         loadMappings();
     }
     
@@ -45,7 +55,7 @@ public class TaskFileMappingService {
         );
         
         mappingCache.put(taskId, mapping);
-        persistMappings();
+        persistMappings(taskId);
         
         log.info("保存任务文件名映射: taskId={}, oldFileName={}, newFileName={}", 
                 taskId, oldFileName, newFileName);
@@ -58,12 +68,23 @@ public class TaskFileMappingService {
         return mappingCache.get(taskId);
     }
     
+    /**
+     * 将任务对象中的文件名替换为提交时保存的原始文件名（无映射时保持不变）
+     */
+    public void applyFileNames(Map<String, Object> task, String taskId) {
+        TaskFileMapping mapping = mappingCache.get(taskId);
+        if (mapping != null) {
+            task.put("oldFileName", mapping.getOldFileName());
+            task.put("newFileName", mapping.getNewFileName());
+        }
+    }
+    
     /**
      * 删除任务映射
      */
     public void deleteMapping(String taskId) {
         mappingCache.remove(taskId);
-        persistMappings();
+        persistMappings(taskId);
         log.info("删除任务文件名映射: taskId={}", taskId);
     }
     
@@ -102,9 +123,22 @@ public class TaskFileMappingService {
     /**
      * 持久化映射到文件
      */
-    private synchronized void persistMappings() {
+    private void persistMappings(String taskId) {
+        MappingPersistEvent event = new MappingPersistEvent();
+        event.begin();
+        persistTimer.record(() -> writeMappings(event));
+        event.end();
+        if (event.shouldCommit()) {
+            event.taskId = taskId;
+            event.bytes = mappingFilePath.toFile().length();
+            event.commit();
+        }
+    }
+    
+    private synchronized void writeMappings(MappingPersistEvent event) {
         try {
             List<TaskFileMapping> mappings = new ArrayList<>(mappingCache.values());
+            event.mappings = mappings.size();
             objectMapper.writerWithDefaultPrettyPrinter()
                 .writeValue(mappingFilePath.toFile(), mappings);
             
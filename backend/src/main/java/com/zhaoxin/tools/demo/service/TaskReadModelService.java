@@ -0,0 +1,497 @@
+package com.zhaoxin.tools.demo.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zhaoxin.tools.demo.model.TaskFileMapping;
+import com.zhaoxin.tools.demo.model.TaskSummary;
+import com.zhaoxin.tools.demo.model.response.ApiResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 本地任务读模型
+ *
+ * 在内存中维护比对/抽取任务摘要（ID、状态、时间、原始文件名），任务列表接口直接从这里返回，不再每次扫描肇新：
+ * 1. 通过本服务提交、删除、取消任务时立即更新
+ * 2. 状态查询得到的最新状态写回读模型
+ * 3. 后台按 sync-interval 拉取肇新任务列表做差量合并：只更新内容有变化的任务，删除肇新已不存在的任务
+ * 列表按创建时间倒序预先排好，读请求只返回不可变快照；读模型定期持久化到磁盘，重启后无需等待首次同步。
+ */
+@Slf4j
+@Service
+public class TaskReadModelService {
+
+    public static final String TYPE_COMPARE = "compare";
+    public static final String TYPE_EXTRACT = "extract";
+
+    private static final Set<String> TERMINAL_STATUSES = new HashSet<>(
+            Arrays.asList("completed", "failed", "cancelled", "canceled", "timeout"));
+
+    /**
+     * 本地提交后尚未出现在肇新列表中的任务，在该时间内不因同步而删除
+     */
+    private static final long SUBMIT_GRACE_MILLIS = TimeUnit.MINUTES.toMillis(2);
+
+    /**
+     * 首次同步完成前，列表请求最多等待的时间
+     */
+    private static final long INITIAL_SYNC_WAIT_MILLIS = 10_000;
+
+    private final ZhaoxinApiClient apiClient;
+    private final TaskFileMappingService mappingService;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final boolean enabled;
+    private final long syncIntervalMillis;
+    private final Path storePath;
+    private final Map<String, Table> tables = new LinkedHashMap<>();
+    private final CompletableFuture<Void> initialSync = new CompletableFuture<>();
+    private ScheduledExecutorService scheduler;
+
+    private volatile long lastSyncTime;
+    private volatile long lastSyncMillis;
+    private volatile String lastSyncError;
+    private final AtomicLong syncCount = new AtomicLong();
+
+    public TaskReadModelService(ZhaoxinApiClient apiClient,
+                                TaskFileMappingService mappingService,
+                                @Value("${zhaoxin.task-read-model.enabled:true}") boolean enabled,
+                                @Value("${zhaoxin.task-read-model.sync-interval:15000}") long syncIntervalMillis,
+                                @Value("${zhaoxin.task-read-model.path:./task-read-model.json}") String storePath) {
+        this.apiClient = apiClient;
+        this.mappingService = mappingService;
+        this.enabled = enabled;
+        this.syncIntervalMillis = syncIntervalMillis;
+        this.storePath = Paths.get(storePath).toAbsolutePath().normalize();
+        tables.put(TYPE_COMPARE, new Table());
+        tables.put(TYPE_EXTRACT, new Table());
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            log.info("本地任务读模型未启用，任务列表直接查询肇新");
+            return;
+        }
+        load();
+        scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("task-sync-"));
+        scheduler.scheduleWithFixedDelay(this::syncQuietly, 0, syncIntervalMillis, TimeUnit.MILLISECONDS);
+        log.info("本地任务读模型: 同步间隔={}ms, 存储={}", syncIntervalMillis, storePath);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            persist();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // ==================== 查询 ====================
+
+    /**
+     * 任务列表（按创建时间倒序）
+     * 读模型为空且首次同步尚未完成时等待同步，最多等待 10 秒
+     */
+    public CompletableFuture<List<Map<String, Object>>> list(String type) {
+        Table table = tables.get(type);
+        if (initialSync.isDone() || !table.rows.isEmpty()) {
+            return CompletableFuture.completedFuture(table.snapshot());
+        }
+        return initialSync
+                .orTimeout(INITIAL_SYNC_WAIT_MILLIS, TimeUnit.MILLISECONDS)
+                .handle((v, error) -> {
+                    if (error != null && !(error instanceof TimeoutException)) {
+                        log.warn("等待任务首次同步失败: {}", error.getMessage());
+                    }
+                    return table.snapshot();
+                });
+    }
+
+    /**
+     * 获取已结束任务的状态，未结束或不存在时返回 null
+     */
+    public Map<String, Object> getTerminalStatus(String type, String taskId) {
+        TaskSummary summary = tables.get(type).rows.get(taskId);
+        if (summary == null || summary.getStatus() == null
+                || !TERMINAL_STATUSES.contains(summary.getStatus().toLowerCase())) {
+            return null;
+        }
+        return summary.toListItem();
+    }
+
+    // ==================== 本地更新 ====================
+
+    /**
+     * 记录通过本服务提交的比对任务
+     */
+    public void recordCompareSubmitted(String taskId, String oldFileName, String newFileName) {
+        TaskSummary summary = newSummary(TYPE_COMPARE, taskId);
+        summary.setOldFileName(oldFileName);
+        summary.setNewFileName(newFileName);
+        upsert(summary);
+    }
+
+    /**
+     * 记录通过本服务提交的抽取任务
+     */
+    public void recordExtractSubmitted(Map<String, Object> response, String fileName, String templateId) {
+        String taskId = extractTaskId(response);
+        if (taskId == null) {
+            return;
+        }
+        TaskSummary summary = newSummary(TYPE_EXTRACT, taskId);
+        summary.setFileName(fileName);
+        summary.getAttributes().put("templateId", templateId);
+        upsert(summary);
+    }
+
+    /**
+     * 记录状态查询得到的最新状态
+     */
+    public void recordStatus(String type, String taskId, Map<String, Object> data) {
+        if (!enabled || taskId == null || data == null) {
+            return;
+        }
+        Table table = tables.get(type);
+        table.rows.compute(taskId, (id, existing) -> {
+            TaskSummary summary = existing != null ? copy(existing) : newSummary(type, id);
+            Map<String, Object> attributes = new LinkedHashMap<>(summary.getAttributes());
+            attributes.putAll(data);
+            Object status = data.get("status");
+            String newStatus = status != null ? status.toString() : summary.getStatus();
+            if (existing != null && attributes.equals(existing.getAttributes())
+                    && Objects.equals(newStatus, existing.getStatus())) {
+                return existing;
+            }
+            summary.setAttributes(attributes);
+            summary.setStatus(newStatus);
+            summary.setUpdateTime(System.currentTimeMillis());
+            table.version.incrementAndGet();
+            return summary;
+        });
+    }
+
+    /**
+     * 删除任务
+     */
+    public void recordDeleted(String type, String taskId) {
+        if (enabled && tables.get(type).rows.remove(taskId) != null) {
+            tables.get(type).version.incrementAndGet();
+        }
+    }
+
+    // ==================== 同步 ====================
+
+    /**
+     * 立即与肇新同步一次
+     */
+    public synchronized void sync() {
+        long start = System.currentTimeMillis();
+        int changed = 0;
+        List<String> errors = new ArrayList<>();
+
+        try {
+            ApiResponse response = apiClient.getAllCompareTasks();
+            if (response != null && response.getCode() != null && response.getCode() == 200) {
+                changed += merge(TYPE_COMPARE, asTaskList(response.getData()), start);
+            } else {
+                errors.add("比对任务: " + (response != null ? response.getMessage() : "无响应"));
+            }
+        } catch (Exception e) {
+            errors.add("比对任务: " + e.getMessage());
+        }
+
+        try {
+            Map<String, Object> response = apiClient.getExtractTasks();
+            Object data = response != null ? response.get("data") : null;
+            Object code = response != null ? response.get("code") : null;
+            if (response != null && (code == null || "200".equals(code.toString()))) {
+                changed += merge(TYPE_EXTRACT, asTaskList(data instanceof Map ? ((Map<?, ?>) data).get("tasks") : data), start);
+            } else {
+                errors.add("抽取任务: " + response.get("message"));
+            }
+        } catch (Exception e) {
+            errors.add("抽取任务: " + e.getMessage());
+        }
+
+        lastSyncTime = System.currentTimeMillis();
+        lastSyncMillis = lastSyncTime - start;
+        lastSyncError = errors.isEmpty() ? null : String.join("; ", errors);
+        syncCount.incrementAndGet();
+        if (errors.isEmpty()) {
+            initialSync.complete(null);
+        } else {
+            log.warn("任务同步失败（继续使用本地数据）: {}", lastSyncError);
+        }
+        if (changed > 0) {
+            persist();
+            log.info("任务同步完成: 变更={}, 耗时={}ms", changed, lastSyncMillis);
+        }
+    }
+
+    private void syncQuietly() {
+        try {
+            sync();
+        } catch (RuntimeException e) {
+            log.error("任务同步异常", e);
+        }
+    }
+
+    /**
+     * 差量合并：新增或内容变化的任务更新，肇新已不存在的任务删除（刚提交的任务除外）
+     */
+    private int merge(String type, List<Map<String, Object>> upstreamTasks, long syncStart) {
+        Table table = tables.get(type);
+        Set<String> seen = new HashSet<>();
+        int changed = 0;
+        for (Map<String, Object> task : upstreamTasks) {
+            Object id = task.get("taskId");
+            if (id == null) {
+                id = task.get("id");
+            }
+            if (id == null) {
+                continue;
+            }
+            String taskId = id.toString();
+            seen.add(taskId);
+            TaskSummary existing = table.rows.get(taskId);
+            Object status = task.get("status");
+            String newStatus = status != null ? status.toString() : null;
+            if (existing != null && existing.getAttributes().entrySet().containsAll(task.entrySet())
+                    && Objects.equals(newStatus, existing.getStatus())) {
+                continue;
+            }
+            TaskSummary summary = existing != null ? copy(existing) : newSummary(type, taskId);
+            summary.getAttributes().putAll(task);
+            summary.setStatus(newStatus);
+            summary.setUpdateTime(syncStart);
+            if (existing == null && type.equals(TYPE_COMPARE)) {
+                TaskFileMapping mapping = mappingService.getMapping(taskId);
+                if (mapping != null) {
+                    summary.setOldFileName(mapping.getOldFileName());
+                    summary.setNewFileName(mapping.getNewFileName());
+                    summary.setCreateTime(mapping.getCreateTime());
+                }
+            }
+            table.rows.put(taskId, summary);
+            changed++;
+        }
+
+        for (TaskSummary summary : new ArrayList<>(table.rows.values())) {
+            boolean recentlySubmitted = summary.getCreateTime() != null
+                    && syncStart - summary.getCreateTime() < SUBMIT_GRACE_MILLIS;
+            if (!seen.contains(summary.getTaskId()) && !recentlySubmitted
+                    && table.rows.remove(summary.getTaskId(), summary)) {
+                changed++;
+            }
+        }
+        if (changed > 0) {
+            table.version.incrementAndGet();
+        }
+        return changed;
+    }
+
+    /**
+     * 同步状态
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", enabled);
+        result.put("syncInterval", syncIntervalMillis);
+        result.put("syncCount", syncCount.get());
+        result.put("lastSyncTime", lastSyncTime);
+        result.put("lastSyncMillis", lastSyncMillis);
+        result.put("lastSyncError", lastSyncError);
+        tables.forEach((type, table) -> result.put(type + "Tasks", table.rows.size()));
+        return result;
+    }
+
+    // ==================== 持久化 ====================
+
+    private void load() {
+        if (!Files.exists(storePath)) {
+            return;
+        }
+        try {
+            List<TaskSummary> summaries = objectMapper.readValue(storePath.toFile(),
+                    new TypeReference<List<TaskSummary>>() {});
+            for (TaskSummary summary : summaries) {
+                Table table = tables.get(summary.getType());
+                if (table != null && summary.getTaskId() != null) {
+                    table.rows.put(summary.getTaskId(), summary);
+                }
+            }
+            tables.values().forEach(table -> table.version.incrementAndGet());
+            log.info("加载本地任务读模型: 共{}条记录", summaries.size());
+        } catch (IOException e) {
+            log.warn("加载本地任务读模型失败，等待首次同步: {}", e.getMessage());
+        }
+    }
+
+    private synchronized void persist() {
+        List<TaskSummary> all = new ArrayList<>();
+        tables.values().forEach(table -> all.addAll(table.rows.values()));
+        try {
+            Files.createDirectories(storePath.getParent());
+            Path temp = Files.createTempFile(storePath.getParent(), "task-read-model-", ".tmp");
+            try {
+                objectMapper.writeValue(temp.toFile(), all);
+                Files.move(temp, storePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            log.warn("持久化本地任务读模型失败: {}", e.getMessage());
+        }
+    }
+
+    // ==================== 内部 ====================
+
+    private void upsert(TaskSummary summary) {
+        if (!enabled) {
+            return;
+        }
+        Table table = tables.get(summary.getType());
+        table.rows.merge(summary.getTaskId(), summary, (existing, created) -> {
+            TaskSummary merged = copy(existing);
+            if (created.getOldFileName() != null) {
+                merged.setOldFileName(created.getOldFileName());
+                merged.setNewFileName(created.getNewFileName());
+            }
+            if (created.getFileName() != null) {
+                merged.setFileName(created.getFileName());
+            }
+            merged.getAttributes().putAll(created.getAttributes());
+            merged.setUpdateTime(created.getUpdateTime());
+            return merged;
+        });
+        table.version.incrementAndGet();
+    }
+
+    private static TaskSummary newSummary(String type, String taskId) {
+        long now = System.currentTimeMillis();
+        TaskSummary summary = new TaskSummary();
+        summary.setTaskId(taskId);
+        summary.setType(type);
+        summary.setCreateTime(now);
+        summary.setUpdateTime(now);
+        return summary;
+    }
+
+    private static TaskSummary copy(TaskSummary source) {
+        TaskSummary target = new TaskSummary();
+        target.setTaskId(source.getTaskId());
+        target.setType(source.getType());
+        target.setStatus(source.getStatus());
+        target.setCreateTime(source.getCreateTime());
+        target.setUpdateTime(source.getUpdateTime());
+        target.setOldFileName(source.getOldFileName());
+        target.setNewFileName(source.getNewFileName());
+        target.setFileName(source.getFileName());
+        target.setAttributes(new LinkedHashMap<>(source.getAttributes()));
+        return target;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> asTaskList(Object data) {
+        if (!(data instanceof List)) {
+            return Collections.emptyList();
+        }
+        List<Map<String, Object>> tasks = new ArrayList<>();
+        for (Object item : (List<Object>) data) {
+            if (item instanceof Map) {
+                tasks.add((Map<String, Object>) item);
+            }
+        }
+        return tasks;
+    }
+
+    /**
+     * 从肇新抽取提交响应中取任务ID（位于根节点或 data 节点）
+     */
+    @SuppressWarnings("unchecked")
+    public static String extractTaskId(Map<String, Object> response) {
+        if (response == null) {
+            return null;
+        }
+        Object taskId = response.get("taskId");
+        if (taskId == null && response.get("data") instanceof Map) {
+            taskId = ((Map<String, Object>) response.get("data")).get("taskId");
+        }
+        return taskId != null ? taskId.toString() : null;
+    }
+
+    /**
+     * 单类任务的数据与按版本缓存的列表快照
+     */
+    private static class Table {
+        final Map<String, TaskSummary> rows = new ConcurrentHashMap<>();
+        final AtomicLong version = new AtomicLong();
+        volatile Snapshot snapshot = new Snapshot(-1, Collections.emptyList());
+
+        List<Map<String, Object>> snapshot() {
+            Snapshot current = snapshot;
+            long v = version.get();
+            if (current.version == v) {
+                return current.items;
+            }
+            synchronized (this) {
+                current = snapshot;
+                v = version.get();
+                if (current.version != v) {
+                    List<TaskSummary> sorted = new ArrayList<>(rows.values());
+                    sorted.sort(Comparator.comparing(TaskSummary::getCreateTime,
+                            Comparator.nullsLast(Comparator.reverseOrder())));
+                    List<Map<String, Object>> items = new ArrayList<>(sorted.size());
+                    for (TaskSummary summary : sorted) {
+                        items.add(Collections.unmodifiableMap(summary.toListItem()));
+                    }
+                    current = new Snapshot(v, Collections.unmodifiableList(items));
+                    snapshot = current;
+                }
+                return current.items;
+            }
+        }
+    }
+
+    private static class Snapshot {
+        final long version;
+        final List<Map<String, Object>> items;
+
+        Snapshot(long version, List<Map<String, Object>> items) {
+            this.version = version;
+            this.items = items;
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package com.zhaoxin.tools.demo.service;
+
+import com.zhaoxin.tools.demo.model.exception.ApiException;
+import com.zhaoxin.tools.demo.model.response.ApiResponse;
+import com.zhaoxin.tools.demo.model.response.TaskStatusItem;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * 任务状态批量查询服务
+ *
+ * 一次请求查询多个比对/抽取任务的状态：
+ * 1. 每个批次最多同时向肇新发出 parallelism 个查询，阻塞调用在固定大小的线程池中执行
+ * 2. 同一任务的并发查询（包括来自不同批次的）合并为一次肇新调用
+ * 3. 已结束（完成、失败、取消）的任务状态不再变化，在 terminal-ttl 内直接返回缓存
+ * 4. 比对任务按 {@link TaskFileMappingService} 替换为原始文件名
+ * 5. 本地任务读模型中已结束的任务直接返回，查询到的状态写回读模型
+ */
+@Slf4j
+@Service
+public class TaskStatusService {
+
+    private static final Set<String> TERMINAL_STATUSES = new HashSet<>(
+            Arrays.asList("completed", "failed", "cancelled", "canceled"));
+
+    private static final int MAX_CACHED_STATUSES = 10000;
+
+    private final ZhaoxinAsyncApiClient apiClient;
+    private final TaskFileMappingService mappingService;
+    private final TaskReadModelService readModel;
+    private final int parallelism;
+    private final int maxTaskIds;
+    private final long terminalTtlMillis;
+    private final ExecutorService executor;
+
+    private final Map<String, CompletableFuture<Map<String, Object>>> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, CachedStatus> terminalStatuses = new ConcurrentHashMap<>();
+
+    public TaskStatusService(ZhaoxinAsyncApiClient apiClient,
+                             TaskFileMappingService mappingService,
+                             TaskReadModelService readModel,
+                             @Value("${zhaoxin.task-status.parallelism:8}") int parallelism,
+                             @Value("${zhaoxin.task-status.threads:16}") int threads,
+                             @Value("${zhaoxin.task-status.max-task-ids:200}") int maxTaskIds,
+                             @Value("${zhaoxin.task-status.terminal-ttl:600}") long terminalTtlSeconds) {
+        this.apiClient = apiClient;
+        this.mappingService = mappingService;
+        this.readModel = readModel;
+        this.parallelism = Math.max(1, parallelism);
+        this.maxTaskIds = maxTaskIds;
+        this.terminalTtlMillis = TimeUnit.SECONDS.toMillis(terminalTtlSeconds);
+        this.executor = Executors.newFixedThreadPool(Math.max(1, threads),
+                new CustomizableThreadFactory("task-status-"));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 批量查询比对任务状态
+     */
+    public CompletableFuture<List<TaskStatusItem>> getCompareStatuses(List<String> taskIds) {
+        return fanOut(TaskReadModelService.TYPE_COMPARE, normalize(taskIds), taskId -> apiClient.getCompareTaskStatus(taskId)
+                .thenApply(TaskStatusService::compareData))
+                .thenApply(items -> {
+                    items.stream()
+                            .filter(item -> item.getData() != null)
+                            .forEach(item -> mappingService.applyFileNames(item.getData(), item.getTaskId()));
+                    return items;
+                });
+    }
+
+    /**
+     * 批量查询抽取任务状态
+     */
+    public CompletableFuture<List<TaskStatusItem>> getExtractStatuses(List<String> taskIds) {
+        return fanOut(TaskReadModelService.TYPE_EXTRACT, normalize(taskIds), taskId -> apiClient.getExtractStatus(taskId)
+                .thenApply(TaskStatusService::extractData));
+    }
+
+    /**
+     * 任务被删除或取消后清除缓存的状态
+     */
+    public void evict(String taskId) {
+        terminalStatuses.remove(TaskReadModelService.TYPE_COMPARE + ":" + taskId);
+        terminalStatuses.remove(TaskReadModelService.TYPE_EXTRACT + ":" + taskId);
+    }
+
+    private List<String> normalize(List<String> taskIds) {
+        if (taskIds == null || taskIds.isEmpty()) {
+            throw new ApiException(400, "任务ID列表不能为空");
+        }
+        List<String> distinct = new ArrayList<>(taskIds.stream()
+                .filter(Objects::nonNull)
+                .map(String::trim)
+                .filter(id -> !id.isEmpty())
+                .collect(Collectors.toCollection(LinkedHashSet::new)));
+        if (distinct.size() > maxTaskIds) {
+            throw new ApiException(400, "单次最多查询 " + maxTaskIds + " 个任务");
+        }
+        return distinct;
+    }
+
+    /**
+     * 以 parallelism 个并发槽位依次查询，结果按请求顺序返回，单个任务失败不影响其他任务
+     */
+    private CompletableFuture<List<TaskStatusItem>> fanOut(String type, List<String> taskIds,
+                                                           Function<String, CompletableFuture<Map<String, Object>>> query) {
+        long start = System.currentTimeMillis();
+        TaskStatusItem[] items = new TaskStatusItem[taskIds.size()];
+        AtomicInteger next = new AtomicInteger();
+        int workers = Math.min(parallelism, taskIds.size());
+        CompletableFuture<?>[] slots = new CompletableFuture<?>[workers];
+        for (int i = 0; i < workers; i++) {
+            slots[i] = drain(type, taskIds, items, next, query);
+        }
+        return CompletableFuture.allOf(slots).thenApply(v -> {
+            log.debug("批量查询任务状态: type={}, count={}, 耗时={}ms",
+                    type, taskIds.size(), System.currentTimeMillis() - start);
+            List<TaskStatusItem> result = new ArrayList<>(items.length);
+            Collections.addAll(result, items);
+            return result;
+        });
+    }
+
+    private CompletableFuture<Void> drain(String type, List<String> taskIds, TaskStatusItem[] items,
+                                          AtomicInteger next,
+                                          Function<String, CompletableFuture<Map<String, Object>>> query) {
+        int index = next.getAndIncrement();
+        if (index >= taskIds.size()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        String taskId = taskIds.get(index);
+        return lookup(type, taskId, () -> query.apply(taskId))
+                .handle((data, error) -> {
+                    items[index] = error == null
+                            ? new TaskStatusItem(taskId, true, new LinkedHashMap<>(data), null)
+                            : new TaskStatusItem(taskId, false, null, unwrap(error).getMessage());
+                    return null;
+                })
+                .thenCompose(v -> drain(type, taskIds, items, next, query));
+    }
+
+    /**
+     * 优先返回已结束任务的缓存状态，否则合并同一任务的并发查询
+     */
+    private CompletableFuture<Map<String, Object>> lookup(String type, String taskId,
+                                                         Supplier<CompletableFuture<Map<String, Object>>> query) {
+        Map<String, Object> terminal = readModel.getTerminalStatus(type, taskId);
+        if (terminal != null) {
+            return CompletableFuture.completedFuture(terminal);
+        }
+        String key = type + ":" + taskId;
+        CachedStatus cached = terminalStatuses.get(key);
+        if (cached != null) {
+            if (System.currentTimeMillis() < cached.expireAt) {
+                return CompletableFuture.completedFuture(cached.data);
+            }
+            terminalStatuses.remove(key, cached);
+        }
+
+        CompletableFuture<Map<String, Object>> created = new CompletableFuture<>();
+        CompletableFuture<Map<String, Object>> existing = inFlight.putIfAbsent(key, created);
+        if (existing != null) {
+            return existing;
+        }
+        // 未启用异步客户端时调用会阻塞，放到线程池中执行
+        CompletableFuture.supplyAsync(query, executor)
+                .thenCompose(Function.identity())
+                .whenComplete((data, error) -> {
+                    inFlight.remove(key, created);
+                    if (error == null) {
+                        cacheIfTerminal(key, data);
+                        readModel.recordStatus(type, taskId, data);
+                        created.complete(data);
+                    } else {
+                        created.completeExceptionally(unwrap(error));
+                    }
+                });
+        return created;
+    }
+
+    private void cacheIfTerminal(String key, Map<String, Object> data) {
+        Object status = data.get("status");
+        if (status == null || !TERMINAL_STATUSES.contains(status.toString().toLowerCase())) {
+            return;
+        }
+        if (terminalStatuses.size() >= MAX_CACHED_STATUSES) {
+            long now = System.currentTimeMillis();
+            terminalStatuses.values().removeIf(entry -> entry.expireAt <= now);
+            if (terminalStatuses.size() >= MAX_CACHED_STATUSES) {
+                return;
+            }
+        }
+        terminalStatuses.put(key, new CachedStatus(Collections.unmodifiableMap(data),
+                System.currentTimeMillis() + terminalTtlMillis));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> compareData(ApiResponse response) {
+        if (response == null) {
+            throw new IllegalStateException("肇新未返回任务状态");
+        }
+        if (response.getCode() == null || response.getCode() != 200 || !(response.getData() instanceof Map)) {
+            throw new IllegalStateException(response.getMessage() != null ? response.getMessage() : "任务状态查询失败");
+        }
+        return (Map<String, Object>) response.getData();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> extractData(Map<String, Object> response) {
+        if (response == null) {
+            throw new IllegalStateException("肇新未返回任务状态");
+        }
+        Object code = response.get("code");
+        if (code != null && !"200".equals(code.toString())) {
+            Object message = response.get("message");
+            throw new IllegalStateException(message != null ? message.toString() : "任务状态查询失败");
+        }
+        Object data = response.get("data");
+        return data instanceof Map ? (Map<String, Object>) data : response;
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    private static class CachedStatus {
+        final Map<String, Object> data;
+        final long expireAt;
+
+        CachedStatus(Map<String, Object> data, long expireAt) {
+            this.data = data;
+            this.expireAt = expireAt;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.zhaoxin.tools.demo.service;
+
+import com.zhaoxin.tools.demo.jfr.UpstreamCallEvent;
+import com.zhaoxin.tools.demo.model.exception.UpstreamUnavailableException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 肇新调用策略
+ *
+ * 同步客户端（RestTemplate 拦截器链）与异步客户端 {@link ZhaoxinAsyncApiClient} 共用的调用规则，
+ * 两个客户端只负责各自的执行方式（阻塞调用 / CompletableFuture）：
+ * 1. 一次逻辑调用（含熔断拒绝、重试与对冲）记录一次 {@link UpstreamMetrics} 与 {@link UpstreamCallEvent}；
+ * 2. 一次逻辑调用整体经过一次 {@link UpstreamGuard}，异常及 5xx 响应计为失败，其余响应的耗时计入 {@link UpstreamTimeoutPolicy}；
+ * 3. GET 请求遇到可重试的异常或状态码时按 {@link UpstreamRetryPolicy} 的预算与退避重试。
+ */
+@Slf4j
+@Service
+public class UpstreamCallPolicy {
+
+    private final UpstreamGuard guard;
+    private final UpstreamTimeoutPolicy timeoutPolicy;
+    private final UpstreamRetryPolicy retryPolicy;
+    private final UpstreamMetrics metrics;
+
+    public UpstreamCallPolicy(UpstreamGuard guard,
+                              UpstreamTimeoutPolicy timeoutPolicy,
+                              UpstreamRetryPolicy retryPolicy,
+                              UpstreamMetrics metrics) {
+        this.guard = guard;
+        this.timeoutPolicy = timeoutPolicy;
+        this.retryPolicy = retryPolicy;
+        this.metrics = metrics;
+    }
+
+    /**
+     * 开始一次逻辑调用
+     *
+     * @param client {@link UpstreamMetrics#CLIENT_SYNC} 或 {@link UpstreamMetrics#CLIENT_ASYNC}
+     */
+    public Call startCall(String client, String method, URI uri, long requestBytes) {
+        return new Call(client, method, uri.getPath(), requestBytes);
+    }
+
+    /**
+     * 获取调用许可，调用结束后须调用 {@link Guarded#record} 与 {@link Guarded#release}
+     *
+     * @throws UpstreamUnavailableException 熔断打开或并发已满时
+     */
+    public Guarded guard(String method, URI uri) {
+        return new Guarded(guard.acquire(uri), method, uri.getPath());
+    }
+
+    /**
+     * 记录一次原始请求，GET 请求为重试与对冲预算存入令牌
+     */
+    public void recordRequest(String method) {
+        retryPolicy.recordRequest(method);
+    }
+
+    /**
+     * 第 attempt 次尝试失败后是否重试，允许时消耗一个重试令牌
+     *
+     * @param status 收到的响应状态码，请求异常时为 null
+     * @param error  请求异常，收到响应时为 null
+     */
+    public boolean shouldRetry(String method, URI uri, int attempt, Integer status, Throwable error) {
+        boolean retryable = error != null
+                ? UpstreamRetryPolicy.isRetryableError(error)
+                : UpstreamRetryPolicy.isRetryableStatus(status);
+        if (!retryable || !retryPolicy.tryRetry(method, attempt)) {
+            return false;
+        }
+        log.warn("肇新请求失败，准备第{}次重试: {} {} - {}", attempt, method, uri,
+                error != null ? error.getMessage() : "HTTP " + status);
+        return true;
+    }
+
+    /**
+     * 第 attempt 次失败后的退避时间（毫秒）
+     */
+    public long backoffMillis(int attempt) {
+        return retryPolicy.backoffMillis(attempt);
+    }
+
+    /**
+     * 一次逻辑调用的指标与 JFR 事件
+     */
+    public class Call {
+
+        private final String client;
+        private final String method;
+        private final String path;
+        private final long start = System.nanoTime();
+        private final UpstreamCallEvent event;
+
+        private Call(String client, String method, String path, long requestBytes) {
+            this.client = client;
+            this.method = method;
+            this.path = path;
+            this.event = UpstreamCallEvent.start(client, method, path, requestBytes);
+        }
+
+        /**
+         * @param status        响应状态码，请求异常时为 null
+         * @param responseBytes 响应体大小，未知时为 -1
+         * @param error         请求异常，收到响应时为 null
+         */
+        public void finish(Integer status, long responseBytes, Throwable error) {
+            metrics.record(client, method, path, status, error, System.nanoTime() - start);
+            event.finish(status, responseBytes, error);
+        }
+    }
+
+    /**
+     * 已获得调用许可的逻辑调用
+     */
+    public class Guarded {
+
+        private final UpstreamGuard.Permit permit;
+        private final String method;
+        private final String path;
+        private final long start = System.nanoTime();
+
+        private Guarded(UpstreamGuard.Permit permit, String method, String path) {
+            this.permit = permit;
+            this.method = method;
+            this.path = path;
+        }
+
+        /**
+         * 记录调用结果：异常及 5xx 计为失败；其余响应的耗时（到收到响应头为止）计入自适应超时
+         *
+         * @param status 响应状态码，请求异常时为 null
+         */
+        public void record(Integer status) {
+            boolean success = status != null && status < 500;
+            permit.record(success);
+            if (success) {
+                timeoutPolicy.record(method, path, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            }
+        }
+
+        /**
+         * 归还并发许可
+         */
+        public void release() {
+            permit.release();
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package com.zhaoxin.tools.demo.service;
+
+import com.zhaoxin.tools.demo.model.ChaosRule;
+import com.zhaoxin.tools.demo.model.exception.ApiException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 肇新调用故障注入
+ *
+ * 按 {@link ChaosRule} 对同步客户端实际发出的请求注入附加延迟、5xx、读超时、连接重置与响应体慢速返回，
+ * 用于验证熔断、重试、对冲与自适应超时在上游异常时的表现。规则与开关通过 /api/admin/chaos 在运行时修改，
+ * 重启后恢复为关闭。zhaoxin.api.chaos.allowed 默认为 false（各环境配置均不开启），此时无法开启也无法配置规则，
+ * 只能查看状态、关闭与清空规则；需要演练时在启动参数中显式指定 --zhaoxin.api.chaos.allowed=true。
+ */
+@Slf4j
+@Service
+public class UpstreamChaos {
+
+    /**
+     * 注入的故障类型
+     */
+    public enum Fault {
+        NONE, ERROR, TIMEOUT, RESET
+    }
+
+    private final boolean allowed;
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+    private volatile boolean enabled;
+    private volatile List<CompiledRule> rules = Collections.emptyList();
+    private final Map<String, AtomicLong> injected = new ConcurrentHashMap<>();
+
+    public UpstreamChaos(@Value("${zhaoxin.api.chaos.allowed:false}") boolean allowed,
+                         @Value("${zhaoxin.api.async.enabled:false}") boolean asyncEnabled) {
+        this.allowed = allowed;
+        if (allowed && asyncEnabled) {
+            log.warn("异步客户端的肇新调用不会被注入故障，验证故障注入时建议关闭 zhaoxin.api.async.enabled");
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void enable() {
+        if (!allowed) {
+            throw new ApiException(403, "当前环境不允许故障注入（zhaoxin.api.chaos.allowed=false）");
+        }
+        enabled = true;
+        log.warn("肇新调用故障注入已开启: rules={}", rules.size());
+    }
+
+    public void disable() {
+        if (enabled) {
+            log.warn("肇新调用故障注入已关闭");
+        }
+        enabled = false;
+    }
+
+    /**
+     * 替换全部规则，校验失败时保持原规则不变
+     */
+    public void setRules(List<ChaosRule> newRules) {
+        if (!allowed && newRules != null && !newRules.isEmpty()) {
+            throw new ApiException(403, "当前环境不允许故障注入（zhaoxin.api.chaos.allowed=false）");
+        }
+        List<CompiledRule> compiled = new ArrayList<>();
+        for (ChaosRule rule : newRules != null ? newRules : Collections.<ChaosRule>emptyList()) {
+            compiled.add(compile(rule));
+        }
+        rules = Collections.unmodifiableList(compiled);
+        log.info("肇新调用故障注入规则已更新: {}", compiled.size());
+    }
+
+    /**
+     * 为一次请求抽取要注入的故障；未开启或没有匹配的规则时返回 null
+     */
+    public Plan plan(String method, String path) {
+        if (!enabled) {
+            return null;
+        }
+        for (CompiledRule compiled : rules) {
+            ChaosRule rule = compiled.rule;
+            if ((rule.getMethod() == null || rule.getMethod().equalsIgnoreCase(method))
+                    && pathMatcher.match(rule.getPattern(), path)) {
+                return compiled.sample(ThreadLocalRandom.current());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 记录一次实际注入
+     */
+    public void recordInjected(String type) {
+        injected.computeIfAbsent(type, k -> new AtomicLong()).incrementAndGet();
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("allowed", allowed);
+        result.put("enabled", enabled);
+        List<ChaosRule> current = new ArrayList<>();
+        rules.forEach(compiled -> current.add(compiled.rule));
+        result.put("rules", current);
+        Map<String, Long> counts = new LinkedHashMap<>();
+        injected.forEach((type, count) -> counts.put(type, count.get()));
+        result.put("injected", counts);
+        return result;
+    }
+
+    private CompiledRule compile(ChaosRule rule) {
+        if (!StringUtils.hasText(rule.getPattern())) {
+            throw new ApiException(400, "故障注入规则缺少 pattern");
+        }
+        checkRate("latencyRate", rule.getLatencyRate());
+        checkRate("errorRate", rule.getErrorRate());
+        checkRate("timeoutRate", rule.getTimeoutRate());
+        checkRate("resetRate", rule.getResetRate());
+        checkRate("dripRate", rule.getDripRate());
+        if (rule.getErrorRate() + rule.getTimeoutRate() + rule.getResetRate() > 1) {
+            throw new ApiException(400, "errorRate、timeoutRate、resetRate 之和不能超过 1: " + rule.getPattern());
+        }
+        if (rule.getErrorStatus() < 500 || rule.getErrorStatus() > 599) {
+            throw new ApiException(400, "errorStatus 必须是 5xx: " + rule.getErrorStatus());
+        }
+        if (rule.getDripRate() > 0 && rule.getDripBytesPerSecond() <= 0) {
+            throw new ApiException(400, "dripBytesPerSecond 必须大于 0");
+        }
+        return new CompiledRule(rule, StringUtils.hasText(rule.getLatency()) ? Delay.parse(rule.getLatency()) : null);
+    }
+
+    private static void checkRate(String name, double rate) {
+        if (rate < 0 || rate > 1) {
+            throw new ApiException(400, name + " 必须在 0~1 之间: " + rate);
+        }
+    }
+
+    /**
+     * 一次请求的注入计划
+     */
+    public static class Plan {
+
+        private final long latencyMillis;
+        private final Fault fault;
+        private final int errorStatus;
+        private final int dripBytesPerSecond;
+
+        Plan(long latencyMillis, Fault fault, int errorStatus, int dripBytesPerSecond) {
+            this.latencyMillis = latencyMillis;
+            this.fault = fault;
+            this.errorStatus = errorStatus;
+            this.dripBytesPerSecond = dripBytesPerSecond;
+        }
+
+        public long getLatencyMillis() {
+            return latencyMillis;
+        }
+
+        public Fault getFault() {
+            return fault;
+        }
+
+        public int getErrorStatus() {
+            return errorStatus;
+        }
+
+        /**
+         * 响应体慢速返回的速率，0 表示正常返回
+         */
+        public int getDripBytesPerSecond() {
+            return dripBytesPerSecond;
+        }
+    }
+
+    private static class CompiledRule {
+
+        private final ChaosRule rule;
+        private final Delay latency;
+
+        CompiledRule(ChaosRule rule, Delay latency) {
+            this.rule = rule;
+            this.latency = latency;
+        }
+
+        Plan sample(ThreadLocalRandom random) {
+            long latencyMillis = latency != null && random.nextDouble() < rule.getLatencyRate()
+                    ? latency.sample(random) : 0;
+            double roll = random.nextDouble();
+            Fault fault;
+            if (roll < rule.getResetRate()) {
+                fault = Fault.RESET;
+            } else if (roll < rule.getResetRate() + rule.getTimeoutRate()) {
+                fault = Fault.TIMEOUT;
+            } else if (roll < rule.getResetRate() + rule.getTimeoutRate() + rule.getErrorRate()) {
+                fault = Fault.ERROR;
+            } else {
+                fault = Fault.NONE;
+            }
+            int drip = fault == Fault.NONE && random.nextDouble() < rule.getDripRate()
+                    ? rule.getDripBytesPerSecond() : 0;
+            if (latencyMillis == 0 && fault == Fault.NONE && drip == 0) {
+                return null;
+            }
+            return new Plan(latencyMillis, fault, rule.getErrorStatus(), drip);
+        }
+    }
+
+    /**
+     * 延迟分布：fixed:毫秒、uniform:最小:最大、lognormal:中位数:p99
+     */
+    private static class Delay {
+
+        /**
+         * 标准正态分布的 99 分位数
+         */
+        private static final double Z99 = 2.3263;
+
+        private final String type;
+        private final double a;
+        private final double b;
+
+        private Delay(String type, double a, double b) {
+            this.type = type;
+            this.a = a;
+            this.b = b;
+        }
+
+        static Delay parse(String spec) {
+            String[] parts = spec.trim().split(":");
+            try {
+                switch (parts[0].toLowerCase()) {
+                    case "fixed":
+                        return new Delay("fixed", Double.parseDouble(parts[1]), 0);
+                    case "uniform":
+                        return new Delay("uniform", Double.parseDouble(parts[1]), Double.parseDouble(parts[2]));
+                    case "lognormal":
+                        double median = Double.parseDouble(parts[1]);
+                        double p99 = Double.parseDouble(parts[2]);
+                        if (median <= 0 || p99 < median) {
+                            break;
+                        }
+                        return new Delay("lognormal", Math.log(median), Math.log(p99 / median) / Z99);
+                    default:
+                        break;
+                }
+            } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+                // 落到下面统一报错
+            }
+            throw new ApiException(400, "无法解析延迟分布（fixed:毫秒、uniform:最小:最大、lognormal:中位数:p99）: " + spec);
+        }
+
+        long sample(ThreadLocalRandom random) {
+            switch (type) {
+                case "uniform":
+                    return (long) (a + random.nextDouble() * Math.max(0, b - a));
+                case "lognormal":
+                    return (long) Math.exp(a + b * random.nextGaussian());
+                default:
+                    return (long) a;
+            }
+        }
+    }
+}
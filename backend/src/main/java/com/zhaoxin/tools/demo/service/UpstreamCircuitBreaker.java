@@ -0,0 +1,176 @@
+package com.zhaoxin.tools.demo.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.function.LongSupplier;
+
+/**
+ * 基于调用次数滑动窗口的熔断器
+ *
+ * CLOSED：记录最近 windowSize 次调用结果，调用数达到 minimumCalls 且失败率达到阈值时打开；
+ * OPEN：openDuration 内直接拒绝，到期后进入 HALF_OPEN；
+ * HALF_OPEN：最多放行 halfOpenCalls 个试探请求，全部成功则关闭，任一失败则重新打开。
+ */
+@Slf4j
+public class UpstreamCircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final String name;
+    private final int minimumCalls;
+    private final int failureRateThreshold;
+    private final long openDurationMillis;
+    private final int halfOpenCalls;
+    private final LongSupplier clock;
+
+    /**
+     * 环形缓冲区，true 表示失败
+     */
+    private final boolean[] outcomes;
+    private int position;
+    private int bufferedCalls;
+    private int failedCalls;
+
+    private State state = State.CLOSED;
+    private long openUntil;
+    private long lastTransitionTime;
+    private int halfOpenInFlight;
+    private int halfOpenSucceeded;
+
+    public UpstreamCircuitBreaker(String name, int windowSize, int minimumCalls, int failureRateThreshold,
+                                  long openDurationMillis, int halfOpenCalls) {
+        this(name, windowSize, minimumCalls, failureRateThreshold, openDurationMillis, halfOpenCalls,
+                System::currentTimeMillis);
+    }
+
+    /**
+     * 指定时钟（毫秒），供测试控制熔断时长
+     */
+    UpstreamCircuitBreaker(String name, int windowSize, int minimumCalls, int failureRateThreshold,
+                           long openDurationMillis, int halfOpenCalls, LongSupplier clock) {
+        this.name = name;
+        this.outcomes = new boolean[Math.max(1, windowSize)];
+        this.minimumCalls = Math.max(1, Math.min(minimumCalls, outcomes.length));
+        this.failureRateThreshold = failureRateThreshold;
+        this.openDurationMillis = openDurationMillis;
+        this.halfOpenCalls = Math.max(1, halfOpenCalls);
+        this.clock = clock;
+        this.lastTransitionTime = clock.getAsLong();
+    }
+
+    /**
+     * 尝试获取调用许可
+     *
+     * @return false 表示熔断中，应快速失败
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (clock.getAsLong() < openUntil) {
+                return false;
+            }
+            transition(State.HALF_OPEN);
+        }
+        if (state == State.HALF_OPEN) {
+            if (halfOpenInFlight + halfOpenSucceeded >= halfOpenCalls) {
+                return false;
+            }
+            halfOpenInFlight++;
+        }
+        return true;
+    }
+
+    /**
+     * 记录调用结果
+     */
+    public synchronized void record(boolean success) {
+        if (state == State.HALF_OPEN) {
+            halfOpenInFlight = Math.max(0, halfOpenInFlight - 1);
+            if (!success) {
+                open();
+            } else if (++halfOpenSucceeded >= halfOpenCalls) {
+                transition(State.CLOSED);
+            }
+            return;
+        }
+        if (state == State.OPEN) {
+            // 打开前已发出的请求，结果不再计入
+            return;
+        }
+
+        if (bufferedCalls == outcomes.length) {
+            if (outcomes[position]) {
+                failedCalls--;
+            }
+        } else {
+            bufferedCalls++;
+        }
+        outcomes[position] = !success;
+        if (!success) {
+            failedCalls++;
+        }
+        position = (position + 1) % outcomes.length;
+
+        if (bufferedCalls >= minimumCalls && getFailureRate() >= failureRateThreshold) {
+            open();
+        }
+    }
+
+    /**
+     * 放弃已获取的许可（调用未实际发出时）
+     */
+    public synchronized void release() {
+        if (state == State.HALF_OPEN) {
+            halfOpenInFlight = Math.max(0, halfOpenInFlight - 1);
+        }
+    }
+
+    private void open() {
+        openUntil = clock.getAsLong() + openDurationMillis;
+        transition(State.OPEN);
+    }
+
+    private void transition(State next) {
+        if (state == next) {
+            return;
+        }
+        log.warn("肇新接口熔断器状态变化: group={}, {} -> {}, 失败率={}%", name, state, next, getFailureRate());
+        state = next;
+        lastTransitionTime = clock.getAsLong();
+        halfOpenInFlight = 0;
+        halfOpenSucceeded = 0;
+        if (next == State.CLOSED) {
+            position = 0;
+            bufferedCalls = 0;
+            failedCalls = 0;
+        }
+    }
+
+    public synchronized State getState() {
+        // 到期的 OPEN 在下次调用时才转换，这里按到期后的状态展示
+        if (state == State.OPEN && clock.getAsLong() >= openUntil) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    public synchronized int getFailureRate() {
+        return bufferedCalls == 0 ? 0 : failedCalls * 100 / bufferedCalls;
+    }
+
+    public synchronized int getBufferedCalls() {
+        return bufferedCalls;
+    }
+
+    public synchronized long getLastTransitionTime() {
+        return lastTransitionTime;
+    }
+
+    /**
+     * 距离熔断结束的剩余毫秒数（未熔断时为 0）
+     */
+    public synchronized long getRemainingOpenMillis() {
+        return state == State.OPEN ? Math.max(0, openUntil - clock.getAsLong()) : 0;
+    }
+}
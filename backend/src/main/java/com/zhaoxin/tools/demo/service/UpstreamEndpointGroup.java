@@ -0,0 +1,62 @@
+package com.zhaoxin.tools.demo.service;
+
+/**
+ * 肇新上游接口分组
+ *
+ * 每个分组拥有独立的熔断器与并发隔离，一个功能的上游异常不影响其他功能。
+ */
+public enum UpstreamEndpointGroup {
+
+    EXTRACT("extract", "智能抽取", 50),
+    COMPARE("compare", "智能比对", 30),
+    COMPOSE("compose", "合同合成", 30),
+    FILES("files", "文件下载", 50),
+    TEMPLATES("templates", "模板", 20);
+
+    private final String key;
+    private final String displayName;
+    private final int defaultMaxConcurrent;
+
+    UpstreamEndpointGroup(String key, String displayName, int defaultMaxConcurrent) {
+        this.key = key;
+        this.displayName = displayName;
+        this.defaultMaxConcurrent = defaultMaxConcurrent;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    public int getDefaultMaxConcurrent() {
+        return defaultMaxConcurrent;
+    }
+
+    /**
+     * 根据肇新接口路径判断分组，无法识别时返回 null
+     */
+    public static UpstreamEndpointGroup classify(String path) {
+        if (path == null) {
+            return null;
+        }
+        if (path.startsWith("/api/rule-extract/templates") || path.startsWith("/api/template/")) {
+            return TEMPLATES;
+        }
+        if (path.startsWith("/api/rule-extract/")) {
+            return EXTRACT;
+        }
+        if (path.startsWith("/api/compare-pro/")) {
+            return COMPARE;
+        }
+        if (path.startsWith("/api/compose/")) {
+            return COMPOSE;
+        }
+        if (path.startsWith("/api/file/")) {
+            return FILES;
+        }
+        return null;
+    }
+}
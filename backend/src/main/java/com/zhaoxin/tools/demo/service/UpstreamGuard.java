@@ -0,0 +1,164 @@
+package com.zhaoxin.tools.demo.service;
+
+import com.zhaoxin.tools.demo.model.exception.UpstreamUnavailableException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 肇新上游调用保护（熔断 + 并发隔离）
+ *
+ * 按 {@link UpstreamEndpointGroup} 分组，每组一个熔断器和一个信号量隔离舱：
+ * 熔断打开或并发已满时立即抛出 {@link UpstreamUnavailableException}，不再占用线程等待肇新。
+ * 同步（RestTemplate 拦截器）与异步客户端共用同一组状态。
+ * 连接异常、超时及 5xx 响应计为失败，4xx 视为正常调用。
+ */
+@Slf4j
+@Service
+public class UpstreamGuard {
+
+    private final boolean enabled;
+    private final long maxWaitMillis;
+    private final Map<UpstreamEndpointGroup, GroupState> groups = new EnumMap<>(UpstreamEndpointGroup.class);
+
+    public UpstreamGuard(Environment environment,
+                         @Value("${zhaoxin.upstream.resilience.enabled:true}") boolean enabled,
+                         @Value("${zhaoxin.upstream.resilience.window-size:20}") int windowSize,
+                         @Value("${zhaoxin.upstream.resilience.minimum-calls:10}") int minimumCalls,
+                         @Value("${zhaoxin.upstream.resilience.failure-rate-threshold:50}") int failureRateThreshold,
+                         @Value("${zhaoxin.upstream.resilience.open-duration:30000}") long openDurationMillis,
+                         @Value("${zhaoxin.upstream.resilience.half-open-calls:3}") int halfOpenCalls,
+                         @Value("${zhaoxin.upstream.resilience.bulkhead-max-wait:0}") long maxWaitMillis) {
+        this.enabled = enabled;
+        this.maxWaitMillis = maxWaitMillis;
+        for (UpstreamEndpointGroup group : UpstreamEndpointGroup.values()) {
+            int maxConcurrent = environment.getProperty(
+                    "zhaoxin.upstream.resilience.max-concurrent." + group.getKey(),
+                    Integer.class, group.getDefaultMaxConcurrent());
+            UpstreamCircuitBreaker breaker = new UpstreamCircuitBreaker(group.getKey(), windowSize, minimumCalls,
+                    failureRateThreshold, openDurationMillis, halfOpenCalls);
+            groups.put(group, new GroupState(breaker, maxConcurrent));
+        }
+        log.info("肇新调用保护: enabled={}, window={}, minimumCalls={}, failureRate={}%, openDuration={}ms",
+                enabled, windowSize, minimumCalls, failureRateThreshold, openDurationMillis);
+    }
+
+    /**
+     * 获取调用许可
+     *
+     * @param uri 肇新接口地址
+     * @throws UpstreamUnavailableException 熔断打开或并发已满时
+     */
+    public Permit acquire(URI uri) {
+        UpstreamEndpointGroup group = UpstreamEndpointGroup.classify(uri.getPath());
+        if (!enabled || group == null) {
+            return Permit.NOOP;
+        }
+        GroupState state = groups.get(group);
+
+        if (!state.breaker.tryAcquire()) {
+            state.rejectedByBreaker.incrementAndGet();
+            long retryAfter = Math.max(1, TimeUnit.MILLISECONDS.toSeconds(state.breaker.getRemainingOpenMillis()));
+            throw new UpstreamUnavailableException(group.getKey(), UpstreamUnavailableException.REASON_CIRCUIT_OPEN,
+                    "肇新" + group.getDisplayName() + "服务暂时不可用，请稍后重试", retryAfter);
+        }
+
+        boolean acquired;
+        try {
+            acquired = maxWaitMillis > 0
+                    ? state.bulkhead.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS)
+                    : state.bulkhead.tryAcquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            state.breaker.release();
+            state.rejectedByBulkhead.incrementAndGet();
+            throw new UpstreamUnavailableException(group.getKey(), UpstreamUnavailableException.REASON_BULKHEAD_FULL,
+                    "肇新" + group.getDisplayName() + "服务繁忙，请稍后重试", 1);
+        }
+        return new Permit(state);
+    }
+
+    /**
+     * 各分组当前状态
+     */
+    public List<Map<String, Object>> snapshot() {
+        List<Map<String, Object>> result = new ArrayList<>();
+        groups.forEach((group, state) -> {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("group", group.getKey());
+            item.put("name", group.getDisplayName());
+            item.put("state", enabled ? state.breaker.getState().name() : "DISABLED");
+            item.put("failureRate", state.breaker.getFailureRate());
+            item.put("bufferedCalls", state.breaker.getBufferedCalls());
+            item.put("lastTransitionTime", state.breaker.getLastTransitionTime());
+            item.put("inFlight", state.maxConcurrent - state.bulkhead.availablePermits());
+            item.put("maxConcurrent", state.maxConcurrent);
+            item.put("rejectedByCircuitBreaker", state.rejectedByBreaker.get());
+            item.put("rejectedByBulkhead", state.rejectedByBulkhead.get());
+            result.add(item);
+        });
+        return result;
+    }
+
+    private static class GroupState {
+        final UpstreamCircuitBreaker breaker;
+        final Semaphore bulkhead;
+        final int maxConcurrent;
+        final AtomicLong rejectedByBreaker = new AtomicLong();
+        final AtomicLong rejectedByBulkhead = new AtomicLong();
+
+        GroupState(UpstreamCircuitBreaker breaker, int maxConcurrent) {
+            this.breaker = breaker;
+            this.maxConcurrent = maxConcurrent;
+            this.bulkhead = new Semaphore(maxConcurrent);
+        }
+    }
+
+    /**
+     * 调用许可
+     * 调用结果通过 {@link #record(boolean)} 记录到熔断器，{@link #release()} 归还并发许可，二者均只生效一次。
+     */
+    public static class Permit {
+
+        static final Permit NOOP = new Permit(null);
+
+        private final GroupState state;
+        private final AtomicBoolean recorded = new AtomicBoolean();
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        Permit(GroupState state) {
+            this.state = state;
+        }
+
+        public void record(boolean success) {
+            if (state != null && recorded.compareAndSet(false, true)) {
+                state.breaker.record(success);
+            }
+        }
+
+        public void release() {
+            if (state != null && released.compareAndSet(false, true)) {
+                if (recorded.compareAndSet(false, true)) {
+                    // 未记录结果（如调用被取消），仅归还熔断器的试探名额
+                    state.breaker.release();
+                }
+                state.bulkhead.release();
+            }
+        }
+    }
+}
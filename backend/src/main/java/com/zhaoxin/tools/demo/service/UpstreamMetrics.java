@@ -0,0 +1,133 @@
+package com.zhaoxin.tools.demo.service;
+
+import com.zhaoxin.tools.demo.model.exception.UpstreamUnavailableException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 肇新调用指标
+ *
+ * 每次逻辑调用（含重试与对冲）记录一次 zhaoxin.upstream.requests 计时，按接口模板、方法、结果与状态码打标签，
+ * 计时截止到收到响应头，与 http.server.requests 对比即可区分本服务与肇新（含网络）的耗时。
+ * 接口路径中的任务ID等变量替换为模板，避免标签基数膨胀。
+ */
+@Service
+public class UpstreamMetrics {
+
+    public static final String METRIC_NAME = "zhaoxin.upstream.requests";
+
+    public static final String CLIENT_SYNC = "rest-template";
+    public static final String CLIENT_ASYNC = "http-client";
+
+    /**
+     * 路径中带变量的接口：前缀 + 模板
+     */
+    private static final List<String[]> VARIABLE_TEMPLATES = Arrays.asList(
+            new String[]{"/api/rule-extract/extract/page-image/", "/api/rule-extract/extract/page-image/{taskId}/{page}"},
+            new String[]{"/api/rule-extract/extract/status/", "/api/rule-extract/extract/status/{taskId}"},
+            new String[]{"/api/rule-extract/extract/result/", "/api/rule-extract/extract/result/{taskId}"},
+            new String[]{"/api/rule-extract/extract/cancel/", "/api/rule-extract/extract/cancel/{taskId}"},
+            new String[]{"/api/compare-pro/task/", "/api/compare-pro/task/{taskId}"},
+            new String[]{"/api/compare-pro/canvas-result/", "/api/compare-pro/canvas-result/{taskId}"},
+            new String[]{"/api/template/design/detail/", "/api/template/design/detail/{templateId}"},
+            new String[]{"/api/file/download/", "/api/file/download/{fileId}"}
+    );
+
+    /**
+     * 路径固定的接口
+     */
+    private static final List<String> FIXED_TEMPLATES = Arrays.asList(
+            "/api/rule-extract/extract/upload",
+            "/api/rule-extract/extract/tasks",
+            "/api/rule-extract/templates",
+            "/api/compare-pro/submit-url",
+            "/api/compare-pro/tasks",
+            "/api/compare-pro/export-report",
+            "/api/template/design/list",
+            "/api/compose/sdt",
+            "/api/file/download-by-path"
+    );
+
+    private final MeterRegistry registry;
+
+    public UpstreamMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * 记录一次肇新调用
+     *
+     * @param status 响应状态码，未收到响应时为 null
+     * @param error  调用异常，收到响应时为 null
+     */
+    public void record(String client, String method, String path, Integer status, Throwable error, long nanos) {
+        Timer.builder(METRIC_NAME)
+                .description("肇新接口调用耗时（至收到响应头）")
+                .tag("client", client)
+                .tag("method", method)
+                .tag("uri", template(path))
+                .tag("outcome", outcome(status, error))
+                .tag("status", status != null ? String.valueOf(status) : "NONE")
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 将肇新接口路径归一为模板，无法识别的路径归为 other
+     */
+    public static String template(String path) {
+        if (path == null) {
+            return "other";
+        }
+        for (String[] template : VARIABLE_TEMPLATES) {
+            if (path.startsWith(template[0]) && path.length() > template[0].length()) {
+                return template[1];
+            }
+        }
+        return FIXED_TEMPLATES.contains(path) ? path : "other";
+    }
+
+    /**
+     * 取路径中的任务ID（仅模板以 {taskId} 开头的接口），无法识别时返回 null
+     */
+    public static String taskId(String path) {
+        if (path == null) {
+            return null;
+        }
+        for (String[] template : VARIABLE_TEMPLATES) {
+            if (path.startsWith(template[0]) && path.length() > template[0].length()) {
+                if (!template[1].startsWith(template[0] + "{taskId}")) {
+                    return null;
+                }
+                int end = path.indexOf('/', template[0].length());
+                return path.substring(template[0].length(), end < 0 ? path.length() : end);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 调用结果：SUCCESS、REDIRECTION、CLIENT_ERROR、SERVER_ERROR、IO_ERROR、REJECTED（熔断或并发已满）
+     */
+    public static String outcome(Integer status, Throwable error) {
+        if (error instanceof UpstreamUnavailableException) {
+            return "REJECTED";
+        }
+        if (status == null) {
+            return "IO_ERROR";
+        }
+        if (status < 300) {
+            return "SUCCESS";
+        }
+        if (status < 400) {
+            return "REDIRECTION";
+        }
+        return status < 500 ? "CLIENT_ERROR" : "SERVER_ERROR";
+    }
+}
@@ -0,0 +1,410 @@
+package com.zhaoxin.tools.demo.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 肇新调用录制与回放
+ *
+ * record：把 RestTemplate 发往肇新的每次调用的请求与最终响应（含页面图片、文件下载等二进制响应体）
+ * 及其耗时追加写入归档文件，每条记录是一个独立的 gzip 段，进程中断时已写入的记录仍可读取。
+ * replay：启动时读入归档，不再访问肇新，按原始的响应头耗时与响应体耗时返回录制的响应，
+ * 用于离线复现线上性能问题、对比缓存等改动的效果。
+ *
+ * 回放匹配依次尝试：方法 + 路径与查询参数 + 请求体校验和、方法 + 路径与查询参数、方法 + 接口模板；
+ * 同一请求录制了多次时（如状态轮询）按录制顺序依次返回，用完后重复最后一条。
+ * 只作用于同步客户端 {@link ZhaoxinApiClient}，异步客户端的调用不录制也不回放。
+ */
+@Slf4j
+@Service
+public class UpstreamRecorder {
+
+    public static final String MODE_DISABLED = "disabled";
+    public static final String MODE_RECORD = "record";
+    public static final String MODE_REPLAY = "replay";
+
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * 不录制的逐跳响应头
+     */
+    private static final Set<String> SKIPPED_HEADERS = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+
+    static {
+        SKIPPED_HEADERS.add(HttpHeaders.TRANSFER_ENCODING);
+        SKIPPED_HEADERS.add(HttpHeaders.CONNECTION);
+        SKIPPED_HEADERS.add("Keep-Alive");
+    }
+
+    private final String mode;
+    private final Path path;
+    private final int maxBodyBytes;
+    private final double replaySpeed;
+    private final OutputStream archive;
+    private final Map<String, Sequence> replayIndex = new HashMap<>();
+    private final int loaded;
+
+    private final AtomicLong recorded = new AtomicLong();
+    private final AtomicLong recordedBytes = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong replayed = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public UpstreamRecorder(@Value("${zhaoxin.api.recording.mode:disabled}") String mode,
+                            @Value("${zhaoxin.api.recording.path:./recordings/upstream.rec}") String path,
+                            @Value("${zhaoxin.api.recording.max-body-bytes:67108864}") int maxBodyBytes,
+                            @Value("${zhaoxin.api.recording.replay-speed:1.0}") double replaySpeed,
+                            @Value("${zhaoxin.api.async.enabled:false}") boolean asyncEnabled) throws IOException {
+        this.mode = mode.trim().toLowerCase();
+        this.path = Paths.get(path).toAbsolutePath().normalize();
+        this.maxBodyBytes = maxBodyBytes;
+        this.replaySpeed = replaySpeed;
+        if (MODE_RECORD.equals(this.mode)) {
+            Files.createDirectories(this.path.getParent());
+            this.archive = new BufferedOutputStream(Files.newOutputStream(this.path,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND), 64 * 1024);
+            this.loaded = 0;
+            log.info("肇新调用录制已开启: path={}, maxBodyBytes={}", this.path, maxBodyBytes);
+        } else if (MODE_REPLAY.equals(this.mode)) {
+            if (!Files.isRegularFile(this.path)) {
+                throw new IllegalStateException("回放记录文件不存在: " + this.path);
+            }
+            this.archive = null;
+            this.loaded = load();
+            log.info("肇新调用回放已开启，不再访问肇新: path={}, entries={}, speed={}",
+                    this.path, loaded, replaySpeed);
+        } else if (MODE_DISABLED.equals(this.mode)) {
+            this.archive = null;
+            this.loaded = 0;
+        } else {
+            throw new IllegalStateException("zhaoxin.api.recording.mode 只能是 disabled、record 或 replay: " + mode);
+        }
+        if (asyncEnabled && !MODE_DISABLED.equals(this.mode)) {
+            log.warn("异步客户端的肇新调用不会被录制或回放，录制/回放时建议关闭 zhaoxin.api.async.enabled");
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws IOException {
+        if (archive != null) {
+            synchronized (archive) {
+                archive.close();
+            }
+        }
+    }
+
+    public boolean isRecording() {
+        return archive != null;
+    }
+
+    public boolean isReplaying() {
+        return MODE_REPLAY.equals(mode);
+    }
+
+    public int getMaxBodyBytes() {
+        return maxBodyBytes;
+    }
+
+    /**
+     * 回放速度：1 为原始耗时，2 为耗时减半，0 表示不等待
+     */
+    public double getReplaySpeed() {
+        return replaySpeed;
+    }
+
+    /**
+     * 请求体校验和（回放匹配用，归档中不保存请求体）
+     */
+    public static long checksum(byte[] body) {
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        return crc.getValue();
+    }
+
+    /**
+     * 追加一条录制记录；响应体超过 max-body-bytes 或未读完时调用方传入 null，只计数不写入
+     */
+    public void record(Exchange exchange) {
+        if (exchange == null) {
+            skipped.incrementAndGet();
+            return;
+        }
+        try {
+            synchronized (archive) {
+                // 每条记录单独成一个 gzip 段，GZIPInputStream 可连续读取多个段
+                GZIPOutputStream gzip = new GZIPOutputStream(new FilterOutputStream(archive) {
+                    @Override
+                    public void write(byte[] b, int off, int len) throws IOException {
+                        out.write(b, off, len);
+                    }
+
+                    @Override
+                    public void close() throws IOException {
+                        flush();
+                    }
+                }, 8192);
+                DataOutputStream out = new DataOutputStream(gzip);
+                exchange.writeTo(out);
+                gzip.finish();
+                out.close();
+            }
+            recorded.incrementAndGet();
+            recordedBytes.addAndGet(exchange.body.length);
+        } catch (IOException e) {
+            skipped.incrementAndGet();
+            log.warn("写入录制记录失败: {} {}, error={}", exchange.method, exchange.uri, e.getMessage());
+        }
+    }
+
+    /**
+     * 查找回放响应，没有匹配的记录时返回 null
+     */
+    public Exchange replay(String method, URI uri, byte[] body) {
+        String target = target(uri);
+        Sequence sequence = replayIndex.get(exactKey(method, target, checksum(body)));
+        if (sequence == null) {
+            sequence = replayIndex.get(uriKey(method, target));
+        }
+        if (sequence == null) {
+            sequence = replayIndex.get(templateKey(method, uri.getPath()));
+        }
+        if (sequence == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        replayed.incrementAndGet();
+        return sequence.next();
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("mode", mode);
+        result.put("path", path.toString());
+        if (isRecording()) {
+            result.put("recorded", recorded.get());
+            result.put("recordedBodyBytes", recordedBytes.get());
+            result.put("skipped", skipped.get());
+            result.put("maxBodyBytes", maxBodyBytes);
+        } else if (isReplaying()) {
+            result.put("loaded", loaded);
+            result.put("replayed", replayed.get());
+            result.put("misses", misses.get());
+            result.put("replaySpeed", replaySpeed);
+        }
+        return result;
+    }
+
+    private int load() throws IOException {
+        Map<String, List<Exchange>> index = new HashMap<>();
+        int count = 0;
+        try (DataInputStream in = new DataInputStream(new GZIPInputStream(
+                new BufferedInputStream(Files.newInputStream(path), 64 * 1024), 8192))) {
+            while (true) {
+                Exchange exchange = Exchange.readFrom(in);
+                if (exchange == null) {
+                    break;
+                }
+                index.computeIfAbsent(exactKey(exchange.method, exchange.uri, exchange.requestChecksum),
+                        k -> new ArrayList<>()).add(exchange);
+                index.computeIfAbsent(uriKey(exchange.method, exchange.uri), k -> new ArrayList<>()).add(exchange);
+                index.computeIfAbsent(templateKey(exchange.method, URI.create(exchange.uri).getPath()),
+                        k -> new ArrayList<>()).add(exchange);
+                count++;
+            }
+        } catch (EOFException e) {
+            // 录制进程中断时最后一条记录可能不完整，忽略
+            log.warn("回放记录文件末尾不完整，已读取 {} 条: {}", count, path);
+        } catch (IOException e) {
+            throw new UncheckedIOException("读取回放记录失败: " + path, e);
+        }
+        index.forEach((key, exchanges) -> replayIndex.put(key, new Sequence(exchanges)));
+        return count;
+    }
+
+    private static String target(URI uri) {
+        return uri.getRawQuery() != null ? uri.getRawPath() + "?" + uri.getRawQuery() : uri.getRawPath();
+    }
+
+    private static String exactKey(String method, String target, long checksum) {
+        return method + " " + target + "#" + checksum;
+    }
+
+    private static String uriKey(String method, String target) {
+        return method + " " + target;
+    }
+
+    private static String templateKey(String method, String path) {
+        return method + " " + UpstreamMetrics.template(path);
+    }
+
+    /**
+     * 同一匹配键下按录制顺序排列的响应
+     */
+    private static class Sequence {
+
+        private final List<Exchange> exchanges;
+        private final AtomicInteger next = new AtomicInteger();
+
+        Sequence(List<Exchange> exchanges) {
+            this.exchanges = exchanges;
+        }
+
+        Exchange next() {
+            int index = next.getAndIncrement();
+            return exchanges.get(Math.min(index, exchanges.size() - 1));
+        }
+    }
+
+    /**
+     * 一次录制的请求与响应
+     */
+    public static class Exchange {
+
+        private final String method;
+        private final String uri;
+        private final long requestChecksum;
+        private final long recordedAt;
+        private final int status;
+        private final String statusText;
+        private final HttpHeaders headers;
+        private final int headersMillis;
+        private final int totalMillis;
+        private final byte[] body;
+
+        public Exchange(String method, URI uri, byte[] requestBody, int status, String statusText,
+                        HttpHeaders headers, long headersMillis, long totalMillis, byte[] body) {
+            this(method, target(uri), checksum(requestBody), System.currentTimeMillis(), status, statusText,
+                    headers, (int) Math.min(Integer.MAX_VALUE, headersMillis),
+                    (int) Math.min(Integer.MAX_VALUE, totalMillis), body);
+        }
+
+        private Exchange(String method, String uri, long requestChecksum, long recordedAt, int status,
+                         String statusText, HttpHeaders headers, int headersMillis, int totalMillis, byte[] body) {
+            this.method = method;
+            this.uri = uri;
+            this.requestChecksum = requestChecksum;
+            this.recordedAt = recordedAt;
+            this.status = status;
+            this.statusText = statusText;
+            this.headers = headers;
+            this.headersMillis = headersMillis;
+            this.totalMillis = totalMillis;
+            this.body = body;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        public String getStatusText() {
+            return statusText;
+        }
+
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+
+        /**
+         * 从发出请求到收到响应头的耗时
+         */
+        public int getHeadersMillis() {
+            return headersMillis;
+        }
+
+        /**
+         * 读取响应体的耗时
+         */
+        public int getBodyMillis() {
+            return Math.max(0, totalMillis - headersMillis);
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+
+        private void writeTo(DataOutputStream out) throws IOException {
+            out.writeByte(FORMAT_VERSION);
+            out.writeUTF(method);
+            out.writeUTF(uri);
+            out.writeLong(requestChecksum);
+            out.writeLong(recordedAt);
+            out.writeShort(status);
+            out.writeUTF(statusText != null ? statusText : "");
+            List<Map.Entry<String, String>> values = new ArrayList<>();
+            headers.forEach((name, list) -> {
+                if (!SKIPPED_HEADERS.contains(name)) {
+                    list.forEach(value -> values.add(Map.entry(name, value)));
+                }
+            });
+            out.writeShort(values.size());
+            for (Map.Entry<String, String> value : values) {
+                out.writeUTF(value.getKey());
+                out.writeUTF(value.getValue());
+            }
+            out.writeInt(headersMillis);
+            out.writeInt(totalMillis);
+            out.writeInt(body.length);
+            out.write(body);
+        }
+
+        /**
+         * 读取一条记录，已到文件末尾时返回 null
+         */
+        private static Exchange readFrom(DataInputStream in) throws IOException {
+            int version = in.read();
+            if (version < 0) {
+                return null;
+            }
+            if (version != FORMAT_VERSION) {
+                throw new IOException("不支持的录制格式版本: " + version);
+            }
+            String method = in.readUTF();
+            String uri = in.readUTF();
+            long requestChecksum = in.readLong();
+            long recordedAt = in.readLong();
+            int status = in.readUnsignedShort();
+            String statusText = in.readUTF();
+            HttpHeaders headers = new HttpHeaders();
+            int headerCount = in.readUnsignedShort();
+            for (int i = 0; i < headerCount; i++) {
+                headers.add(in.readUTF(), in.readUTF());
+            }
+            int headersMillis = in.readInt();
+            int totalMillis = in.readInt();
+            byte[] body = new byte[in.readInt()];
+            in.readFully(body);
+            return new Exchange(method, uri, requestChecksum, recordedAt, status, statusText,
+                    headers, headersMillis, totalMillis, body);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.zhaoxin.tools.demo.service;
+
+import java.util.function.LongSupplier;
+
+/**
+ * 重试预算（令牌桶）
+ *
+ * 每个原始请求存入 ratio 个令牌，每次重试（或对冲请求）消耗 1 个令牌；另外每秒固定补充 minPerSecond 个令牌，
+ * 保证低流量时也能少量重试。余额上限为 capacity，因此额外请求量长期不超过原始请求量的 ratio 倍加上固定配额，
+ * 上游大面积故障时不会因重试放大流量。
+ */
+public class UpstreamRetryBudget {
+
+    private final double ratio;
+    private final double minPerSecond;
+    private final double capacity;
+    private final LongSupplier clock;
+
+    private double balance;
+    private long lastRefill;
+    private long withdrawn;
+    private long rejected;
+
+    public UpstreamRetryBudget(double ratio, double minPerSecond) {
+        this(ratio, minPerSecond, System::currentTimeMillis);
+    }
+
+    /**
+     * 指定时钟（毫秒），供测试控制补充速度
+     */
+    UpstreamRetryBudget(double ratio, double minPerSecond, LongSupplier clock) {
+        this.ratio = Math.max(0, ratio);
+        this.minPerSecond = Math.max(0, minPerSecond);
+        this.capacity = Math.max(10, this.minPerSecond * 10);
+        this.balance = this.minPerSecond;
+        this.clock = clock;
+        this.lastRefill = clock.getAsLong();
+    }
+
+    /**
+     * 记录一次原始请求
+     */
+    public synchronized void deposit() {
+        balance = Math.min(capacity, balance + ratio);
+    }
+
+    /**
+     * 尝试消耗一个令牌
+     *
+     * @return false 表示预算已用尽，不应再发出额外请求
+     */
+    public synchronized boolean tryWithdraw() {
+        long now = clock.getAsLong();
+        balance = Math.min(capacity, balance + (now - lastRefill) / 1000.0 * minPerSecond);
+        lastRefill = now;
+        if (balance >= 1) {
+            balance -= 1;
+            withdrawn++;
+            return true;
+        }
+        rejected++;
+        return false;
+    }
+
+    public synchronized double getBalance() {
+        return balance;
+    }
+
+    public synchronized long getWithdrawn() {
+        return withdrawn;
+    }
+
+    public synchronized long getRejected() {
+        return rejected;
+    }
+}
@@ -0,0 +1,172 @@
+package com.zhaoxin.tools.demo.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 肇新幂等 GET 请求的重试与对冲策略
+ *
+ * 重试：连接异常、读超时及 502/503/504 响应时按指数退避（full jitter）重试，最多 max-attempts 次；
+ * 对冲：请求在该超时等级最近的 p95 延迟内未返回时，再发出一个相同请求，取先返回的结果。
+ * 两者各有一个 {@link UpstreamRetryBudget}，限制额外请求量。只作用于 GET，POST/DELETE 不会被重复发送。
+ */
+@Slf4j
+@Service
+public class UpstreamRetryPolicy {
+
+    private final UpstreamTimeoutPolicy timeoutPolicy;
+    private final boolean retryEnabled;
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final boolean hedgingEnabled;
+    private final double hedgePercentile;
+    private final long hedgeMinDelayMillis;
+    private final UpstreamRetryBudget retryBudget;
+    private final UpstreamRetryBudget hedgeBudget;
+    private final ThreadPoolExecutor hedgeExecutor;
+
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong hedges = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+
+    public UpstreamRetryPolicy(UpstreamTimeoutPolicy timeoutPolicy,
+                               @Value("${zhaoxin.api.retry.enabled:true}") boolean retryEnabled,
+                               @Value("${zhaoxin.api.retry.max-attempts:3}") int maxAttempts,
+                               @Value("${zhaoxin.api.retry.initial-backoff:100}") long initialBackoffMillis,
+                               @Value("${zhaoxin.api.retry.max-backoff:2000}") long maxBackoffMillis,
+                               @Value("${zhaoxin.api.retry.budget-ratio:0.1}") double retryBudgetRatio,
+                               @Value("${zhaoxin.api.retry.budget-min-per-second:1}") double retryBudgetMinPerSecond,
+                               @Value("${zhaoxin.api.hedging.enabled:false}") boolean hedgingEnabled,
+                               @Value("${zhaoxin.api.hedging.percentile:95}") double hedgePercentile,
+                               @Value("${zhaoxin.api.hedging.min-delay:50}") long hedgeMinDelayMillis,
+                               @Value("${zhaoxin.api.hedging.budget-ratio:0.05}") double hedgeBudgetRatio,
+                               @Value("${zhaoxin.api.hedging.threads:64}") int hedgeThreads) {
+        this.timeoutPolicy = timeoutPolicy;
+        this.retryEnabled = retryEnabled;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.hedgingEnabled = hedgingEnabled;
+        this.hedgePercentile = hedgePercentile;
+        this.hedgeMinDelayMillis = hedgeMinDelayMillis;
+        this.retryBudget = new UpstreamRetryBudget(retryBudgetRatio, retryBudgetMinPerSecond);
+        this.hedgeBudget = new UpstreamRetryBudget(hedgeBudgetRatio, 0);
+        // 同步客户端对冲时主请求与对冲请求都在该线程池中阻塞等待，线程满时退化为不对冲
+        this.hedgeExecutor = new ThreadPoolExecutor(0, Math.max(2, hedgeThreads), 60, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), new CustomizableThreadFactory("upstream-hedge-"));
+        log.info("肇新 GET 重试/对冲: retry={}, maxAttempts={}, backoff={}~{}ms, hedging={}, hedgePercentile={}",
+                retryEnabled, this.maxAttempts, initialBackoffMillis, maxBackoffMillis, hedgingEnabled, hedgePercentile);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        hedgeExecutor.shutdownNow();
+    }
+
+    /**
+     * 记录一次原始 GET 请求，为重试与对冲预算存入令牌
+     */
+    public void recordRequest(String method) {
+        if (isIdempotent(method)) {
+            retryBudget.deposit();
+            hedgeBudget.deposit();
+        }
+    }
+
+    public static boolean isIdempotent(String method) {
+        return "GET".equalsIgnoreCase(method);
+    }
+
+    public static boolean isRetryableStatus(int status) {
+        return status == 502 || status == 503 || status == 504;
+    }
+
+    public static boolean isRetryableError(Throwable error) {
+        return error instanceof IOException;
+    }
+
+    /**
+     * 判断第 attempt 次尝试失败后是否还能重试，允许时消耗一个重试令牌
+     */
+    public boolean tryRetry(String method, int attempt) {
+        if (!retryEnabled || !isIdempotent(method) || attempt >= maxAttempts) {
+            return false;
+        }
+        if (!retryBudget.tryWithdraw()) {
+            log.debug("重试预算已用尽，放弃重试: attempt={}", attempt);
+            return false;
+        }
+        retries.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * 第 attempt 次失败后的退避时间：[0, min(max-backoff, initial-backoff × 2^(attempt-1))) 内随机
+     */
+    public long backoffMillis(int attempt) {
+        long ceiling = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(attempt - 1, 20));
+        return ceiling <= 0 ? 0 : ThreadLocalRandom.current().nextLong(ceiling);
+    }
+
+    /**
+     * 对冲延迟（毫秒），不对冲时返回 -1（未开启、非 GET、或该等级样本不足）
+     */
+    public long hedgeDelayMillis(String method, String path) {
+        if (!hedgingEnabled || !isIdempotent(method)) {
+            return -1;
+        }
+        long observed = timeoutPolicy.observedPercentile(method, path, hedgePercentile);
+        return observed < 0 ? -1 : Math.max(hedgeMinDelayMillis, observed);
+    }
+
+    /**
+     * 尝试发出对冲请求，允许时消耗一个对冲令牌
+     */
+    public boolean tryHedge() {
+        if (!hedgeBudget.tryWithdraw()) {
+            return false;
+        }
+        hedges.incrementAndGet();
+        return true;
+    }
+
+    public void recordHedgeWin() {
+        hedgeWins.incrementAndGet();
+    }
+
+    public ExecutorService getHedgeExecutor() {
+        return hedgeExecutor;
+    }
+
+    /**
+     * 重试与对冲统计
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("retryEnabled", retryEnabled);
+        result.put("maxAttempts", maxAttempts);
+        result.put("retries", retries.get());
+        result.put("retriesRejectedByBudget", retryBudget.getRejected());
+        result.put("retryBudgetBalance", retryBudget.getBalance());
+        result.put("hedgingEnabled", hedgingEnabled);
+        result.put("hedges", hedges.get());
+        result.put("hedgeWins", hedgeWins.get());
+        result.put("hedgesRejectedByBudget", hedgeBudget.getRejected());
+        result.put("hedgeBudgetBalance", hedgeBudget.getBalance());
+        return result;
+    }
+}
@@ -0,0 +1,177 @@
+package com.zhaoxin.tools.demo.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 肇新接口分级超时策略
+ *
+ * 按接口特征分为若干超时等级（状态查询、结果查询、提交、文件下载、报告导出），每级配置下限与上限。
+ * 自适应模式下每级维护滚动延迟直方图，超时时间 = 指定分位数 × 系数，并限制在 [floor, ceiling] 之间；
+ * 样本不足 min-samples 时使用上限。只记录成功返回的调用（到收到响应头为止），超时的调用不计入，避免超时值自我强化。
+ */
+@Slf4j
+@Service
+public class UpstreamTimeoutPolicy {
+
+    /**
+     * 超时等级
+     */
+    public enum TimeoutClass {
+        STATUS("status", 2000, 15000),
+        QUERY("query", 5000, 60000),
+        SUBMIT("submit", 10000, 120000),
+        DOWNLOAD("download", 10000, 120000),
+        EXPORT("export", 120000, 300000),
+        DEFAULT("default", -1, -1);
+
+        private final String key;
+        private final long defaultFloor;
+        private final long defaultCeiling;
+
+        TimeoutClass(String key, long defaultFloor, long defaultCeiling) {
+            this.key = key;
+            this.defaultFloor = defaultFloor;
+            this.defaultCeiling = defaultCeiling;
+        }
+
+        public String getKey() {
+            return key;
+        }
+    }
+
+    private final boolean adaptive;
+    private final double percentile;
+    private final double multiplier;
+    private final long minSamples;
+    private final Map<TimeoutClass, ClassState> classes = new EnumMap<>(TimeoutClass.class);
+
+    public UpstreamTimeoutPolicy(Environment environment,
+                                 @Value("${zhaoxin.api.timeout:120000}") long defaultTimeout,
+                                 @Value("${zhaoxin.api.timeouts.adaptive:true}") boolean adaptive,
+                                 @Value("${zhaoxin.api.timeouts.percentile:99.5}") double percentile,
+                                 @Value("${zhaoxin.api.timeouts.multiplier:1.5}") double multiplier,
+                                 @Value("${zhaoxin.api.timeouts.min-samples:100}") long minSamples,
+                                 @Value("${zhaoxin.api.timeouts.window:300000}") long windowMillis) {
+        this.adaptive = adaptive;
+        this.percentile = percentile;
+        this.multiplier = multiplier;
+        this.minSamples = minSamples;
+        for (TimeoutClass timeoutClass : TimeoutClass.values()) {
+            String prefix = "zhaoxin.api.timeouts." + timeoutClass.key + ".";
+            long floor = timeoutClass == TimeoutClass.DEFAULT ? defaultTimeout
+                    : environment.getProperty(prefix + "floor", Long.class, timeoutClass.defaultFloor);
+            long ceiling = timeoutClass == TimeoutClass.DEFAULT ? defaultTimeout
+                    : environment.getProperty(prefix + "ceiling", Long.class, timeoutClass.defaultCeiling);
+            classes.put(timeoutClass, new ClassState(floor, Math.max(floor, ceiling), new LatencyHistogram(windowMillis)));
+        }
+        log.info("肇新接口超时策略: adaptive={}, percentile={}, multiplier={}, minSamples={}",
+                adaptive, percentile, multiplier, minSamples);
+    }
+
+    /**
+     * 根据请求方法与路径判断超时等级
+     */
+    public static TimeoutClass classify(String method, String path) {
+        if (path == null) {
+            return TimeoutClass.DEFAULT;
+        }
+        if (path.contains("/export-report")) {
+            return TimeoutClass.EXPORT;
+        }
+        if (path.startsWith("/api/file/")) {
+            return TimeoutClass.DOWNLOAD;
+        }
+        boolean get = "GET".equalsIgnoreCase(method);
+        // 只有单个任务的状态查询与取消属于 STATUS；任务列表（/tasks）是全量扫描，按 QUERY 处理
+        if (path.startsWith("/api/rule-extract/extract/status/") || path.startsWith("/api/rule-extract/extract/cancel/")
+                || path.startsWith("/api/compare-pro/task/")) {
+            return TimeoutClass.STATUS;
+        }
+        if (path.startsWith("/api/rule-extract/extract/upload") || path.startsWith("/api/compare-pro/submit")
+                || path.startsWith("/api/compose/")) {
+            return TimeoutClass.SUBMIT;
+        }
+        if (get) {
+            return TimeoutClass.QUERY;
+        }
+        return TimeoutClass.DEFAULT;
+    }
+
+    /**
+     * 请求的读超时（毫秒）
+     */
+    public int timeoutFor(String method, String path) {
+        ClassState state = classes.get(classify(method, path));
+        if (!adaptive) {
+            return (int) state.ceiling;
+        }
+        return (int) state.currentTimeout();
+    }
+
+    /**
+     * 该请求所属等级最近的延迟分位数（毫秒），样本不足 min-samples 时返回 -1
+     */
+    public long observedPercentile(String method, String path, double percentile) {
+        LatencyHistogram histogram = classes.get(classify(method, path)).histogram;
+        if (histogram.count() < minSamples) {
+            return -1;
+        }
+        return histogram.percentile(percentile);
+    }
+
+    /**
+     * 记录一次成功调用的耗时
+     */
+    public void record(String method, String path, long millis) {
+        classes.get(classify(method, path)).histogram.record(millis);
+    }
+
+    /**
+     * 各等级当前的超时与延迟分布
+     */
+    public List<Map<String, Object>> snapshot() {
+        List<Map<String, Object>> result = new ArrayList<>();
+        classes.forEach((timeoutClass, state) -> {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("class", timeoutClass.key);
+            item.put("floor", state.floor);
+            item.put("ceiling", state.ceiling);
+            item.put("timeout", adaptive ? state.currentTimeout() : state.ceiling);
+            item.put("samples", state.histogram.count());
+            item.put("p50", state.histogram.percentile(50));
+            item.put("p99", state.histogram.percentile(99));
+            item.put("p" + percentile, state.histogram.percentile(percentile));
+            result.add(item);
+        });
+        return result;
+    }
+
+    private class ClassState {
+        final long floor;
+        final long ceiling;
+        final LatencyHistogram histogram;
+
+        ClassState(long floor, long ceiling, LatencyHistogram histogram) {
+            this.floor = floor;
+            this.ceiling = ceiling;
+            this.histogram = histogram;
+        }
+
+        long currentTimeout() {
+            if (histogram.count() < minSamples) {
+                return ceiling;
+            }
+            long observed = (long) (histogram.percentile(percentile) * multiplier);
+            return Math.max(floor, Math.min(ceiling, observed));
+        }
+    }
+}
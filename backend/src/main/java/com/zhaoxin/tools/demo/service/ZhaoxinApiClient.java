@@ -8,14 +8,19 @@ import org.springframework.http.*;
 import org.springframework.stereotype.Service;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
+import org.springframework.util.StreamUtils;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.util.UriComponentsBuilder;
 
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * 肇新 SDK API 客户端
@@ -42,42 +47,58 @@ public class ZhaoxinApiClient {
      * @return 任务ID
      */
     public Map<String, Object> submitExtractTask(MultipartFile file, String templateId) {
-        String url = baseUrl + "/api/rule-extract/extract/upload";
-        
+        File tempFile = null;
         try {
             // 创建临时文件
-            File tempFile = File.createTempFile("upload-", file.getOriginalFilename());
+            tempFile = File.createTempFile("upload-", file.getOriginalFilename());
             try (FileOutputStream fos = new FileOutputStream(tempFile)) {
                 fos.write(file.getBytes());
             }
             
-            // 构建multipart请求
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.MULTIPART_FORM_DATA);
-            
-            MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
-            body.add("file", new FileSystemResource(tempFile));
-            body.add("templateId", templateId);
-            body.add("ignoreHeaderFooter", "true");
-            
-            HttpEntity<MultiValueMap<String, Object>> requestEntity = new HttpEntity<>(body, headers);
-            
-            log.info("提交文档抽取任务: templateId={}, fileName={}", templateId, file.getOriginalFilename());
-            
-            ResponseEntity<Map> response = restTemplate.postForEntity(url, requestEntity, Map.class);
-            
-            // 删除临时文件
-            tempFile.delete();
-            
-            log.info("任务提交成功: {}", response.getBody());
-            return response.getBody();
+            return submitExtractTask(tempFile, file.getOriginalFilename(), templateId);
             
         } catch (IOException e) {
             log.error("提交抽取任务失败", e);
             throw new RuntimeException("提交抽取任务失败: " + e.getMessage(), e);
+        } finally {
+            // 删除临时文件
+            if (tempFile != null) {
+                tempFile.delete();
+            }
         }
     }
     
+    /**
+     * 提交文档抽取任务（本地文件）
+     * 用于批量抽取时直接提交磁盘上的文件，避免再次读入内存
+     * 
+     * @param file 本地PDF文件
+     * @param fileName 原始文件名（用于日志）
+     * @param templateId 抽取模板ID
+     * @return 任务ID
+     */
+    public Map<String, Object> submitExtractTask(File file, String fileName, String templateId) {
+        URI url = uri("/api/rule-extract/extract/upload");
+        
+        // 构建multipart请求
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.MULTIPART_FORM_DATA);
+        
+        MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
+        body.add("file", new FileSystemResource(file));
+        body.add("templateId", templateId);
+        body.add("ignoreHeaderFooter", "true");
+        
+        HttpEntity<MultiValueMap<String, Object>> requestEntity = new HttpEntity<>(body, headers);
+        
+        log.info("提交文档抽取任务: templateId={}, fileName={}", templateId, fileName);
+        
+        ResponseEntity<Map> response = restTemplate.postForEntity(url, requestEntity, Map.class);
+        
+        log.info("任务提交成功: {}", response.getBody());
+        return response.getBody();
+    }
+    
     /**
      * 查询抽取任务状态
      * 
@@ -85,7 +106,7 @@ public class ZhaoxinApiClient {
      * @return 任务状态
      */
     public Map<String, Object> getExtractStatus(String taskId) {
-        String url = baseUrl + "/api/rule-extract/extract/status/" + taskId;
+        URI url = uri("/api/rule-extract/extract/status/{taskId}", taskId);
         
         try {
             log.debug("查询任务状态: taskId={}", taskId);
@@ -106,7 +127,7 @@ public class ZhaoxinApiClient {
      * @return 抽取结果
      */
     public Map<String, Object> getExtractResult(String taskId) {
-        String url = baseUrl + "/api/rule-extract/extract/result/" + taskId;
+        URI url = uri("/api/rule-extract/extract/result/{taskId}", taskId);
         
         try {
             log.info("获取抽取结果: taskId={}", taskId);
@@ -126,7 +147,7 @@ public class ZhaoxinApiClient {
      * @param taskId 任务ID
      */
     public void cancelExtractTask(String taskId) {
-        String url = baseUrl + "/api/rule-extract/extract/cancel/" + taskId;
+        URI url = uri("/api/rule-extract/extract/cancel/{taskId}", taskId);
         
         try {
             log.info("取消任务: taskId={}", taskId);
@@ -145,7 +166,7 @@ public class ZhaoxinApiClient {
      * @return 任务列表
      */
     public Map<String, Object> getExtractTasks() {
-        String url = baseUrl + "/api/rule-extract/extract/tasks";
+        URI url = uri("/api/rule-extract/extract/tasks");
         
         try {
             log.info("获取任务列表");
@@ -167,7 +188,7 @@ public class ZhaoxinApiClient {
      * @return 图片字节数组
      */
     public byte[] getPageImage(String taskId, int pageNumber) {
-        String url = baseUrl + "/api/rule-extract/extract/page-image/" + taskId + "/" + pageNumber;
+        URI url = uri("/api/rule-extract/extract/page-image/{taskId}/{pageNumber}", taskId, pageNumber);
         
         try {
             log.debug("获取页面图片: taskId={}, pageNumber={}", taskId, pageNumber);
@@ -187,12 +208,10 @@ public class ZhaoxinApiClient {
      * @return 模板列表
      */
     public Map<String, Object> getTemplates(String status) {
-        String url = baseUrl + "/api/rule-extract/templates";
-        
         // 添加status参数
-        if (status != null && !status.isEmpty()) {
-            url += "?status=" + status;
-        }
+        URI url = status != null && !status.isEmpty()
+                ? uri("/api/rule-extract/templates?status={status}", status)
+                : uri("/api/rule-extract/templates");
         
         try {
             log.info("获取模板列表: status={}, url={}", status, url);
@@ -220,7 +239,7 @@ public class ZhaoxinApiClient {
      */
     public ApiResponse submitCompareTask(String oldFileUrl, String newFileUrl, Boolean removeWatermark, 
                                          String oldFileName, String newFileName) {
-        String url = baseUrl + "/api/compare-pro/submit-url";
+        URI url = uri("/api/compare-pro/submit-url");
         
         Map<String, Object> request = new HashMap<>();
         request.put("oldFileUrl", oldFileUrl);
@@ -263,7 +282,7 @@ public class ZhaoxinApiClient {
      * @return 任务状态
      */
     public ApiResponse getCompareTaskStatus(String taskId) {
-        String url = baseUrl + "/api/compare-pro/task/" + taskId;
+        URI url = uri("/api/compare-pro/task/{taskId}", taskId);
         
         try {
             log.debug("获取比对任务状态: taskId={}", taskId);
@@ -288,7 +307,7 @@ public class ZhaoxinApiClient {
      * @return 比对结果
      */
     public ApiResponse getCompareResult(String taskId) {
-        String url = baseUrl + "/api/compare-pro/canvas-result/" + taskId;
+        URI url = uri("/api/compare-pro/canvas-result/{taskId}", taskId);
         
         try {
             log.info("获取比对结果: taskId={}", taskId);
@@ -312,7 +331,7 @@ public class ZhaoxinApiClient {
      * @param taskId 任务ID
      */
     public void deleteCompareTask(String taskId) {
-        String url = baseUrl + "/api/compare-pro/task/" + taskId;
+        URI url = uri("/api/compare-pro/task/{taskId}", taskId);
         
         try {
             log.info("删除比对任务: taskId={}", taskId);
@@ -331,7 +350,7 @@ public class ZhaoxinApiClient {
      * @return 任务列表
      */
     public ApiResponse getAllCompareTasks() {
-        String url = baseUrl + "/api/compare-pro/tasks";
+        URI url = uri("/api/compare-pro/tasks");
         
         try {
             log.info("获取比对任务历史列表");
@@ -356,7 +375,7 @@ public class ZhaoxinApiClient {
      * @return 文件二进制数据
      */
     public ResponseEntity<byte[]> exportCompareReport(Map<String, Object> exportData) {
-        String url = baseUrl + "/api/compare-pro/export-report";
+        URI url = uri("/api/compare-pro/export-report");
         
         try {
             log.info("导出比对报告: taskId={}", exportData.get("taskId"));
@@ -385,6 +404,36 @@ public class ZhaoxinApiClient {
         }
     }
     
+    /**
+     * 导出比对报告到输出流，不在内存中缓冲整个文件
+     * 
+     * @param onHeaders 收到响应头时回调，可从中取得 Content-Type 与 Content-Length
+     * @return 写出的字节数
+     */
+    public long exportCompareReport(Map<String, Object> exportData, OutputStream out,
+                                    Consumer<HttpHeaders> onHeaders) {
+        URI url = uri("/api/compare-pro/export-report");
+        
+        try {
+            log.info("导出比对报告(流式): taskId={}", exportData.get("taskId"));
+            Long bytes = restTemplate.execute(
+                url,
+                HttpMethod.POST,
+                restTemplate.httpEntityCallback(exportData),
+                response -> {
+                    onHeaders.accept(response.getHeaders());
+                    return (long) StreamUtils.copy(response.getBody(), out);
+                }
+            );
+            log.info("导出成功，文件大小: {} bytes", bytes);
+            return bytes != null ? bytes : 0L;
+            
+        } catch (Exception e) {
+            log.error("导出比对报告失败", e);
+            throw new RuntimeException("导出比对报告失败: " + e.getMessage(), e);
+        }
+    }
+    
     // ==================== 智能合同合成相关 API ====================
     
     /**
@@ -394,10 +443,9 @@ public class ZhaoxinApiClient {
      * @return 模板列表
      */
     public Map<String, Object> getComposeTemplates(String status) {
-        String url = baseUrl + "/api/template/design/list";
-        if (status != null && !status.trim().isEmpty()) {
-            url += "?status=" + status;
-        }
+        URI url = status != null && !status.trim().isEmpty()
+                ? uri("/api/template/design/list?status={status}", status)
+                : uri("/api/template/design/list");
         
         try {
             log.info("获取合成模板列表: {}", url);
@@ -422,7 +470,7 @@ public class ZhaoxinApiClient {
      * @return 模板详情
      */
     public Map<String, Object> getTemplateDetail(String templateId) {
-        String url = baseUrl + "/api/template/design/detail/" + templateId;
+        URI url = uri("/api/template/design/detail/{templateId}", templateId);
         
         try {
             log.info("获取模板详情: {}", url);
@@ -444,11 +492,11 @@ public class ZhaoxinApiClient {
      * 合成合同
      */
     public Map<String, Object> generateContract(Map<String, Object> request) {
-        String url = baseUrl + "/api/compose/sdt";
+        URI url = uri("/api/compose/sdt");
         
         try {
             log.info("合成合同: {}", url);
-            log.info("请求参数: {}", request);
+            log.debug("请求参数: {}", LogSampler.payload(request));
             
             HttpHeaders headers = createHeaders();
             headers.setContentType(MediaType.APPLICATION_JSON);
@@ -471,7 +519,7 @@ public class ZhaoxinApiClient {
      * 下载合成的合同文件（通过文件ID）
      */
     public byte[] downloadComposeFile(String fileId) {
-        String url = baseUrl + "/api/file/download/" + fileId;
+        URI url = uri("/api/file/download/{fileId}", fileId);
         
         try {
             log.info("下载合同文件: {}", url);
@@ -494,7 +542,7 @@ public class ZhaoxinApiClient {
      * 用于下载 PDF、盖章版、骑缝章版等文件
      */
     public byte[] downloadFileByPath(String path) {
-        String url = baseUrl + "/api/file/download-by-path?path=" + path;
+        URI url = uri("/api/file/download-by-path?path={path}", path);
         
         try {
             log.info("通过路径下载文件: {}", url);
@@ -512,6 +560,46 @@ public class ZhaoxinApiClient {
         }
     }
     
+    /**
+     * 下载合成的合同文件到输出流（通过文件ID），不在内存中缓冲整个文件
+     * 
+     * @return 写出的字节数
+     */
+    public long downloadComposeFile(String fileId, OutputStream out) {
+        URI url = uri("/api/file/download/{fileId}", fileId);
+        log.info("下载合同文件(流式): {}", url);
+        return streamTo(url, out);
+    }
+    
+    /**
+     * 下载文件到输出流（通过相对路径），不在内存中缓冲整个文件
+     * 
+     * @return 写出的字节数
+     */
+    public long downloadFileByPath(String path, OutputStream out) {
+        URI url = uri("/api/file/download-by-path?path={path}", path);
+        log.info("通过路径下载文件(流式): {}", url);
+        return streamTo(url, out);
+    }
+    
+    private long streamTo(URI url, OutputStream out) {
+        HttpHeaders headers = createHeaders();
+        Long bytes = restTemplate.execute(
+            url,
+            HttpMethod.GET,
+            request -> request.getHeaders().putAll(headers),
+            response -> (long) StreamUtils.copy(response.getBody(), out)
+        );
+        return bytes != null ? bytes : 0L;
+    }
+    
+    /**
+     * 拼接肇新接口地址，路径和查询参数中的变量按 URI 规则编码
+     */
+    private URI uri(String template, Object... variables) {
+        return UriComponentsBuilder.fromHttpUrl(baseUrl + template).encode().buildAndExpand(variables).toUri();
+    }
+    
     /**
      * 创建通用的HTTP请求头
      */
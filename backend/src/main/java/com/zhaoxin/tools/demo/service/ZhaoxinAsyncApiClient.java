@@ -0,0 +1,590 @@
+package com.zhaoxin.tools.demo.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zhaoxin.tools.demo.model.exception.UpstreamUnavailableException;
+import com.zhaoxin.tools.demo.model.response.ApiResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.UnknownHttpStatusCodeException;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 肇新 SDK 异步 API 客户端
+ *
+ * 基于 JDK HttpClient 的非阻塞调用，等待肇新响应期间不占用任何线程，
+ * 少量回调线程即可承载成千上万个在途请求；控制器返回 CompletableFuture，Tomcat 工作线程在提交后立即释放。
+ * 错误与 {@link ZhaoxinApiClient} 保持一致：非 2xx 响应转换为 HttpClientErrorException / HttpServerErrorException，
+ * 网络异常转换为 ResourceAccessException，再按同步客户端的方式包装。
+ * 指标、调用保护、延迟采集与 GET 重试由与同步拦截器链共用的 {@link UpstreamCallPolicy} 决定，对冲按 {@link UpstreamRetryPolicy}。
+ * 请求不经过 RestTemplate，日志拦截器、录制/回放（{@link UpstreamRecorder}）与故障注入（{@link UpstreamChaos}）对异步调用不生效，
+ * 开启录制、回放或允许故障注入时启动会给出警告。
+ *
+ * zhaoxin.api.async.enabled=false 时各方法直接在调用线程上执行同步客户端，返回已完成的 Future。
+ */
+@Slf4j
+@Service
+public class ZhaoxinAsyncApiClient {
+
+    private final ZhaoxinApiClient syncClient;
+    private final UpstreamCallPolicy callPolicy;
+    private final UpstreamTimeoutPolicy timeoutPolicy;
+    private final UpstreamRetryPolicy retryPolicy;
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final ExecutorService executor;
+    private final HttpClient httpClient;
+
+    @Value("${zhaoxin.api.base-url}")
+    private String baseUrl;
+
+    public ZhaoxinAsyncApiClient(ZhaoxinApiClient syncClient,
+                                 UpstreamCallPolicy callPolicy,
+                                 UpstreamTimeoutPolicy timeoutPolicy,
+                                 UpstreamRetryPolicy retryPolicy,
+                                 ObjectMapper objectMapper,
+                                 @Value("${zhaoxin.api.async.enabled:false}") boolean enabled,
+                                 @Value("${zhaoxin.api.async.threads:4}") int threads,
+                                 @Value("${zhaoxin.api.connect-timeout:10000}") long connectTimeoutMillis) {
+        this.syncClient = syncClient;
+        this.callPolicy = callPolicy;
+        this.timeoutPolicy = timeoutPolicy;
+        this.retryPolicy = retryPolicy;
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.executor = Executors.newFixedThreadPool(Math.max(1, threads),
+                new CustomizableThreadFactory("zhaoxin-async-"));
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMillis))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .executor(executor)
+                .build();
+        log.info("肇新异步客户端: enabled={}, threads={}", enabled, threads);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // ==================== 智能文档抽取 ====================
+
+    public CompletableFuture<Map<String, Object>> getTemplates(String status) {
+        if (!enabled) {
+            return completed(() -> syncClient.getTemplates(status));
+        }
+        URI url = status != null && !status.isEmpty()
+                ? uri("/api/rule-extract/templates?status={status}", status)
+                : uri("/api/rule-extract/templates");
+        log.info("获取模板列表: status={}, url={}", status, url);
+        return send(get(url), this::readMap, "获取模板列表");
+    }
+
+    /**
+     * 提交文档抽取任务
+     * 与同步客户端一致，HTTP 及网络异常不做包装直接抛出
+     */
+    public CompletableFuture<Map<String, Object>> submitExtractTask(MultipartFile file, String templateId) {
+        if (!enabled) {
+            return completed(() -> syncClient.submitExtractTask(file, templateId));
+        }
+        URI url = uri("/api/rule-extract/extract/upload");
+        String boundary = "----zhaoxin" + UUID.randomUUID().toString().replace("-", "");
+
+        // 上传文件边读边发（分块传输），不把整个文件读入内存
+        HttpRequest request = HttpRequest.newBuilder(url)
+                .timeout(timeout("POST", url))
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.MULTIPART_FORM_DATA_VALUE + "; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.ofInputStream(() -> multipartBody(boundary, file, templateId)))
+                .build();
+
+        log.info("提交文档抽取任务: templateId={}, fileName={}", templateId, file.getOriginalFilename());
+        return send(request, this::readMap, null)
+                .thenApply(body -> {
+                    log.info("任务提交成功: {}", body);
+                    return body;
+                });
+    }
+
+    public CompletableFuture<Map<String, Object>> getExtractStatus(String taskId) {
+        if (!enabled) {
+            return completed(() -> syncClient.getExtractStatus(taskId));
+        }
+        log.debug("查询任务状态: taskId={}", taskId);
+        return send(get(uri("/api/rule-extract/extract/status/{taskId}", taskId)), this::readMap, "查询任务状态");
+    }
+
+    public CompletableFuture<Map<String, Object>> getExtractResult(String taskId) {
+        if (!enabled) {
+            return completed(() -> syncClient.getExtractResult(taskId));
+        }
+        log.info("获取抽取结果: taskId={}", taskId);
+        return send(get(uri("/api/rule-extract/extract/result/{taskId}", taskId)), this::readMap, "获取抽取结果");
+    }
+
+    public CompletableFuture<Void> cancelExtractTask(String taskId) {
+        if (!enabled) {
+            return completed(() -> {
+                syncClient.cancelExtractTask(taskId);
+                return null;
+            });
+        }
+        log.info("取消任务: taskId={}", taskId);
+        URI url = uri("/api/rule-extract/extract/cancel/{taskId}", taskId);
+        HttpRequest request = HttpRequest.newBuilder(url)
+                .timeout(timeout("POST", url))
+                .header(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON_VALUE)
+                .POST(HttpRequest.BodyPublishers.noBody())
+                .build();
+        return send(request, body -> (Void) null, "取消任务")
+                .thenApply(v -> {
+                    log.info("任务取消成功: taskId={}", taskId);
+                    return v;
+                });
+    }
+
+    public CompletableFuture<Map<String, Object>> getExtractTasks() {
+        if (!enabled) {
+            return completed(syncClient::getExtractTasks);
+        }
+        log.info("获取任务列表");
+        return send(get(uri("/api/rule-extract/extract/tasks")), this::readMap, "获取任务列表");
+    }
+
+    public CompletableFuture<byte[]> getPageImage(String taskId, int pageNumber) {
+        if (!enabled) {
+            return completed(() -> syncClient.getPageImage(taskId, pageNumber));
+        }
+        log.debug("获取页面图片: taskId={}, pageNumber={}", taskId, pageNumber);
+        URI url = uri("/api/rule-extract/extract/page-image/{taskId}/{pageNumber}", taskId, pageNumber);
+        HttpRequest request = HttpRequest.newBuilder(url).timeout(timeout("GET", url)).GET().build();
+        return send(request, Function.identity(), "获取页面图片");
+    }
+
+    // ==================== 智能文档比对 ====================
+
+    public CompletableFuture<ApiResponse> submitCompareTask(String oldFileUrl, String newFileUrl, Boolean removeWatermark,
+                                                            String oldFileName, String newFileName) {
+        if (!enabled) {
+            return completed(() -> syncClient.submitCompareTask(oldFileUrl, newFileUrl, removeWatermark,
+                    oldFileName, newFileName));
+        }
+        Map<String, Object> body = new HashMap<>();
+        body.put("oldFileUrl", oldFileUrl);
+        body.put("newFileUrl", newFileUrl);
+        if (removeWatermark != null) {
+            body.put("removeWatermark", removeWatermark);
+        }
+        if (oldFileName != null && !oldFileName.isEmpty()) {
+            body.put("oldFileName", oldFileName);
+        }
+        if (newFileName != null && !newFileName.isEmpty()) {
+            body.put("newFileName", newFileName);
+        }
+        log.info("提交比对任务: oldFile={}, newFile={}, removeWatermark={}", oldFileUrl, newFileUrl, removeWatermark);
+        return send(postJson(uri("/api/compare-pro/submit-url"), body), this::readApiResponse, "提交比对任务")
+                .thenApply(result -> {
+                    log.info("任务提交成功: {}", result);
+                    return result;
+                });
+    }
+
+    public CompletableFuture<ApiResponse> getCompareTaskStatus(String taskId) {
+        if (!enabled) {
+            return completed(() -> syncClient.getCompareTaskStatus(taskId));
+        }
+        log.debug("获取比对任务状态: taskId={}", taskId);
+        return send(get(uri("/api/compare-pro/task/{taskId}", taskId)), this::readApiResponse, "获取比对任务状态");
+    }
+
+    public CompletableFuture<ApiResponse> getCompareResult(String taskId) {
+        if (!enabled) {
+            return completed(() -> syncClient.getCompareResult(taskId));
+        }
+        log.info("获取比对结果: taskId={}", taskId);
+        return send(get(uri("/api/compare-pro/canvas-result/{taskId}", taskId)), this::readApiResponse, "获取比对结果");
+    }
+
+    public CompletableFuture<Void> deleteCompareTask(String taskId) {
+        if (!enabled) {
+            return completed(() -> {
+                syncClient.deleteCompareTask(taskId);
+                return null;
+            });
+        }
+        log.info("删除比对任务: taskId={}", taskId);
+        URI url = uri("/api/compare-pro/task/{taskId}", taskId);
+        HttpRequest request = HttpRequest.newBuilder(url)
+                .timeout(timeout("DELETE", url))
+                .DELETE()
+                .build();
+        return send(request, body -> (Void) null, "删除比对任务")
+                .thenApply(v -> {
+                    log.info("任务删除成功: taskId={}", taskId);
+                    return v;
+                });
+    }
+
+    public CompletableFuture<ApiResponse> getAllCompareTasks() {
+        if (!enabled) {
+            return completed(syncClient::getAllCompareTasks);
+        }
+        log.info("获取比对任务历史列表");
+        return send(get(uri("/api/compare-pro/tasks")), this::readApiResponse, "获取比对任务历史");
+    }
+
+    // ==================== 智能合同合成 ====================
+
+    public CompletableFuture<Map<String, Object>> getComposeTemplates(String status) {
+        if (!enabled) {
+            return completed(() -> syncClient.getComposeTemplates(status));
+        }
+        URI url = status != null && !status.trim().isEmpty()
+                ? uri("/api/template/design/list?status={status}", status)
+                : uri("/api/template/design/list");
+        log.info("获取合成模板列表: {}", url);
+        return send(get(url), this::readMap, "获取模板列表");
+    }
+
+    public CompletableFuture<Map<String, Object>> getTemplateDetail(String templateId) {
+        if (!enabled) {
+            return completed(() -> syncClient.getTemplateDetail(templateId));
+        }
+        URI url = uri("/api/template/design/detail/{templateId}", templateId);
+        log.info("获取模板详情: {}", url);
+        return send(get(url), this::readMap, "获取模板详情");
+    }
+
+    public CompletableFuture<Map<String, Object>> generateContract(Map<String, Object> request) {
+        if (!enabled) {
+            return completed(() -> syncClient.generateContract(request));
+        }
+        URI url = uri("/api/compose/sdt");
+        log.info("合成合同: {}", url);
+        log.debug("请求参数: {}", LogSampler.payload(request));
+        return send(postJson(url, request), this::readMap, "合成合同");
+    }
+
+    // ==================== 内部方法 ====================
+
+    /**
+     * 同步模式：在调用线程上执行，异常直接抛出（与原同步接口行为一致）
+     */
+    private static <T> CompletableFuture<T> completed(Supplier<T> call) {
+        return CompletableFuture.completedFuture(call.get());
+    }
+
+    /**
+     * 发送请求并转换响应
+     * 整个逻辑调用（含重试与对冲）记录一次指标与 JFR 事件、经过一次调用保护，异步客户端的计时包含读取响应体
+     *
+     * @param action 失败时包装异常使用的操作名称，为 null 时不包装
+     */
+    private <T> CompletableFuture<T> send(HttpRequest request, Function<byte[], T> reader, String action) {
+        UpstreamCallPolicy.Call call = callPolicy.startCall(UpstreamMetrics.CLIENT_ASYNC, request.method(),
+                request.uri(), request.bodyPublisher().map(HttpRequest.BodyPublisher::contentLength).orElse(0L));
+        return guarded(request)
+                .whenComplete((response, error) -> call.finish(response != null ? response.statusCode() : null,
+                        response != null && response.body() != null ? response.body().length : -1,
+                        error != null ? unwrap(error) : null))
+                .handle((response, error) -> {
+                    RuntimeException failure;
+                    if (error == null) {
+                        try {
+                            return reader.apply(checkStatus(response));
+                        } catch (RuntimeException e) {
+                            failure = e;
+                        }
+                    } else {
+                        failure = toRestClientException(request, unwrap(error));
+                    }
+                    throw wrap(request, failure, action);
+                });
+    }
+
+    /**
+     * 获取调用许可后发送（含重试与对冲），结束时记录调用结果并归还许可
+     */
+    private CompletableFuture<HttpResponse<byte[]>> guarded(HttpRequest request) {
+        UpstreamCallPolicy.Guarded guarded;
+        try {
+            guarded = callPolicy.guard(request.method(), request.uri());
+        } catch (UpstreamUnavailableException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        callPolicy.recordRequest(request.method());
+        return exchange(request, 1).whenComplete((response, error) -> {
+            guarded.record(response != null ? response.statusCode() : null);
+            guarded.release();
+        });
+    }
+
+    /**
+     * 第 attempt 次尝试，GET 请求遇到可重试的异常或状态码时按退避时间重试
+     */
+    private CompletableFuture<HttpResponse<byte[]>> exchange(HttpRequest request, int attempt) {
+        return hedged(request)
+                .handle((response, error) -> {
+                    Throwable cause = error != null ? unwrap(error) : null;
+                    if (!callPolicy.shouldRetry(request.method(), request.uri(), attempt,
+                            response != null ? response.statusCode() : null, cause)) {
+                        return cause != null
+                                ? CompletableFuture.<HttpResponse<byte[]>>failedFuture(cause)
+                                : CompletableFuture.completedFuture(response);
+                    }
+                    Executor delayed = CompletableFuture.delayedExecutor(
+                            callPolicy.backoffMillis(attempt), TimeUnit.MILLISECONDS, executor);
+                    return CompletableFuture.supplyAsync(() -> null, delayed)
+                            .thenCompose(v -> exchange(request, attempt + 1));
+                })
+                .thenCompose(Function.identity());
+    }
+
+    /**
+     * 超过对冲延迟仍未返回时再发出一个相同请求，取先返回者，并取消另一个仍在进行的请求
+     */
+    private CompletableFuture<HttpResponse<byte[]>> hedged(HttpRequest request) {
+        CompletableFuture<HttpResponse<byte[]>> primary = sendOnce(request);
+        long delay = retryPolicy.hedgeDelayMillis(request.method(), request.uri().getPath());
+        if (delay < 0) {
+            return primary;
+        }
+        CompletableFuture<HttpResponse<byte[]>> winner = new CompletableFuture<>();
+        AtomicInteger pending = new AtomicInteger(1);
+        AtomicReference<CompletableFuture<HttpResponse<byte[]>>> hedge = new AtomicReference<>();
+        primary.whenComplete((response, error) -> settle(winner, pending, response, error, hedge.get(), false));
+        CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS, executor).execute(() -> {
+            if (primary.isDone() || !retryPolicy.tryHedge()) {
+                return;
+            }
+            pending.incrementAndGet();
+            log.debug("肇新请求超过 {}ms 未返回，发出对冲请求: {}", delay, request.uri());
+            CompletableFuture<HttpResponse<byte[]>> second = sendOnce(request);
+            hedge.set(second);
+            if (winner.isDone()) {
+                // 对冲发出前主请求已返回
+                second.cancel(true);
+            }
+            second.whenComplete((response, error) -> settle(winner, pending, response, error, primary, true));
+        });
+        return winner;
+    }
+
+    /**
+     * 先成功返回的请求完成 winner 并取消另一个请求；两个请求都失败时以最后一个异常结束
+     */
+    private void settle(CompletableFuture<HttpResponse<byte[]>> winner, AtomicInteger pending,
+                        HttpResponse<byte[]> response, Throwable error,
+                        CompletableFuture<HttpResponse<byte[]>> other, boolean fromHedge) {
+        if (error != null) {
+            if (pending.decrementAndGet() == 0) {
+                winner.completeExceptionally(error);
+            }
+            return;
+        }
+        if (winner.complete(response)) {
+            if (fromHedge) {
+                retryPolicy.recordHedgeWin();
+            }
+            if (other != null) {
+                other.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * 单次发送
+     * 返回 HttpClient 的原始 future，取消它会中止该次请求
+     */
+    private CompletableFuture<HttpResponse<byte[]>> sendOnce(HttpRequest request) {
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    /**
+     * 按同步客户端的方式包装异常，action 为 null 时原样返回
+     */
+    private static RuntimeException wrap(HttpRequest request, RuntimeException failure, String action) {
+        if (action == null) {
+            return failure;
+        }
+        if (failure instanceof UpstreamUnavailableException) {
+            log.warn("{}失败: {} {} - {}", action, request.method(), request.uri(), failure.getMessage());
+        } else {
+            log.error("{}失败: {} {}", action, request.method(), request.uri(), failure);
+        }
+        return new RuntimeException(action + "失败: " + failure.getMessage(), failure);
+    }
+
+    private static byte[] checkStatus(HttpResponse<byte[]> response) {
+        int code = response.statusCode();
+        if (code < 400) {
+            return response.body();
+        }
+        HttpHeaders headers = new HttpHeaders();
+        response.headers().map().forEach(headers::addAll);
+        HttpStatus status = HttpStatus.resolve(code);
+        if (status == null) {
+            throw new UnknownHttpStatusCodeException(code, "", headers, response.body(), StandardCharsets.UTF_8);
+        }
+        if (status.is4xxClientError()) {
+            throw HttpClientErrorException.create(status, status.getReasonPhrase(), headers,
+                    response.body(), StandardCharsets.UTF_8);
+        }
+        throw HttpServerErrorException.create(status, status.getReasonPhrase(), headers,
+                response.body(), StandardCharsets.UTF_8);
+    }
+
+    private static RuntimeException toRestClientException(HttpRequest request, Throwable error) {
+        if (error instanceof IOException) {
+            // 与 RestTemplate 的异常信息格式保持一致
+            String message = error.getMessage() != null ? error.getMessage() : error.getClass().getSimpleName();
+            return new ResourceAccessException("I/O error on " + request.method() + " request for \""
+                    + request.uri() + "\": " + message, (IOException) error);
+        }
+        if (error instanceof RuntimeException) {
+            return (RuntimeException) error;
+        }
+        return new RestClientException(error.getMessage(), error);
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> readMap(byte[] body) {
+        if (body == null || body.length == 0) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(body, Map.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException("解析肇新响应失败", e);
+        }
+    }
+
+    private ApiResponse readApiResponse(byte[] body) {
+        if (body == null || body.length == 0) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(body, ApiResponse.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException("解析肇新响应失败", e);
+        }
+    }
+
+    /**
+     * 按模板构造肇新接口地址，路径与查询参数变量按 URI 规则编码（taskId 等外部输入中的 / ? # 不会改变请求目标）
+     */
+    private URI uri(String template, Object... variables) {
+        return UriComponentsBuilder.fromHttpUrl(baseUrl + template).encode().buildAndExpand(variables).toUri();
+    }
+
+    private HttpRequest get(URI url) {
+        return HttpRequest.newBuilder(url)
+                .timeout(timeout("GET", url))
+                .header(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON_VALUE)
+                .GET()
+                .build();
+    }
+
+    private HttpRequest postJson(URI url, Object body) {
+        byte[] json;
+        try {
+            json = objectMapper.writeValueAsBytes(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException("序列化请求失败", e);
+        }
+        return HttpRequest.newBuilder(url)
+                .timeout(timeout("POST", url))
+                .header(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON_VALUE)
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(json))
+                .build();
+    }
+
+    /**
+     * 按接口超时等级取请求超时（异步客户端的超时包含读取响应体）
+     */
+    private Duration timeout(String method, URI url) {
+        return Duration.ofMillis(timeoutPolicy.timeoutFor(method, url.getPath()));
+    }
+
+    /**
+     * multipart 请求体：各部分头部在内存中，文件内容直接从上传文件读取
+     * 每次调用打开新的文件流，发送失败重新发送时可重复调用
+     */
+    private static InputStream multipartBody(String boundary, MultipartFile file, String templateId) {
+        InputStream content;
+        try {
+            content = file.getInputStream();
+        } catch (IOException e) {
+            throw new UncheckedIOException("读取上传文件失败: " + e.getMessage(), e);
+        }
+        List<InputStream> parts = new ArrayList<>();
+        parts.add(new ByteArrayInputStream(partHeader(boundary, "file", file.getOriginalFilename())));
+        parts.add(content);
+        parts.add(new ByteArrayInputStream(textPart(boundary, "templateId", templateId)));
+        parts.add(new ByteArrayInputStream(textPart(boundary, "ignoreHeaderFooter", "true")));
+        parts.add(new ByteArrayInputStream(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8)));
+        return new SequenceInputStream(Collections.enumeration(parts));
+    }
+
+    private static byte[] partHeader(String boundary, String name, String fileName) {
+        String safeName = fileName != null ? fileName.replace("\"", "%22") : "file";
+        return ("--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"" + name + "\"; filename=\"" + safeName + "\"\r\n"
+                + "Content-Type: application/octet-stream\r\n\r\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] textPart(String boundary, String name, String value) {
+        return ("\r\n--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"" + name + "\"\r\n"
+                + "Content-Type: text/plain;charset=UTF-8\r\n\r\n"
+                + (value != null ? value : "")).getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,146 @@
+package com.zhaoxin.tools.demo.config;
+
+import com.zhaoxin.tools.demo.service.UpstreamRetryPolicy;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 对冲请求工厂：先返回者胜出，后返回的响应被关闭
+ */
+class HedgingClientHttpRequestFactoryTest {
+
+    private static final URI URI_STATUS = URI.create("http://zhaoxin/api/rule-extract/extract/status/t1");
+
+    private final UpstreamRetryPolicy retryPolicy = mock(UpstreamRetryPolicy.class);
+    private final ExecutorService hedgeExecutor = Executors.newCachedThreadPool();
+    private final List<StubRequest> requests = new CopyOnWriteArrayList<>();
+    private final List<StubRequest> planned = new CopyOnWriteArrayList<>();
+    private HedgingClientHttpRequestFactory factory;
+
+    @BeforeEach
+    void setUp() {
+        when(retryPolicy.hedgeDelayMillis(anyString(), anyString())).thenReturn(20L);
+        when(retryPolicy.tryHedge()).thenReturn(true);
+        when(retryPolicy.getHedgeExecutor()).thenReturn(hedgeExecutor);
+        ClientHttpRequestFactory delegate = (uri, method) -> {
+            StubRequest request = planned.remove(0);
+            requests.add(request);
+            return request;
+        };
+        factory = new HedgingClientHttpRequestFactory(delegate, retryPolicy);
+    }
+
+    @AfterEach
+    void shutdown() {
+        planned.forEach(request -> request.release.countDown());
+        requests.forEach(request -> request.release.countDown());
+        hedgeExecutor.shutdownNow();
+    }
+
+    @Test
+    void fastPrimaryIsNotHedged() throws IOException {
+        StubRequest primary = plan(true);
+
+        assertSame(primary.response, factory.createRequest(URI_STATUS, HttpMethod.GET).execute());
+        assertEquals(1, requests.size());
+        verify(retryPolicy, never()).tryHedge();
+    }
+
+    @Test
+    void hedgeWinsAndSlowPrimaryIsClosedWhenItReturns() throws IOException {
+        StubRequest primary = plan(false);
+        StubRequest hedge = plan(true);
+
+        assertSame(hedge.response, factory.createRequest(URI_STATUS, HttpMethod.GET).execute());
+        verify(retryPolicy).recordHedgeWin();
+        verify(primary.response, never()).close();
+
+        primary.release.countDown();
+        verify(primary.response, timeout(5000)).close();
+        verify(hedge.response, never()).close();
+    }
+
+    @Test
+    void primaryWinsAfterHedgeIsSentAndHedgeIsClosed() throws Exception {
+        StubRequest primary = plan(false);
+        StubRequest hedge = plan(false);
+
+        CompletableFuture<ClientHttpResponse> result = CompletableFuture.supplyAsync(() -> {
+            try {
+                return factory.createRequest(URI_STATUS, HttpMethod.GET).execute();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertTrue(hedge.started.await(5, TimeUnit.SECONDS), "超过对冲延迟后应发出对冲请求");
+
+        primary.release.countDown();
+        assertSame(primary.response, result.get(5, TimeUnit.SECONDS));
+        verify(retryPolicy, never()).recordHedgeWin();
+
+        hedge.release.countDown();
+        verify(hedge.response, timeout(5000)).close();
+        verify(primary.response, never()).close();
+    }
+
+    private StubRequest plan(boolean immediate) {
+        StubRequest request = new StubRequest(mock(ClientHttpResponse.class));
+        if (immediate) {
+            request.release.countDown();
+        }
+        planned.add(request);
+        return request;
+    }
+
+    /**
+     * 放行后才返回响应的请求
+     */
+    private static class StubRequest extends MockClientHttpRequest {
+
+        final ClientHttpResponse response;
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        StubRequest(ClientHttpResponse response) {
+            super(HttpMethod.GET, URI_STATUS);
+            this.response = response;
+        }
+
+        @Override
+        protected ClientHttpResponse executeInternal() throws IOException {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("interrupted", e);
+            }
+            return response;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.zhaoxin.tools.demo.config;
+
+import com.zhaoxin.tools.demo.service.UpstreamCallPolicy;
+import com.zhaoxin.tools.demo.service.UpstreamGuard;
+import com.zhaoxin.tools.demo.service.UpstreamMetrics;
+import com.zhaoxin.tools.demo.service.UpstreamRetryPolicy;
+import com.zhaoxin.tools.demo.service.UpstreamTimeoutPolicy;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 重试拦截器：GET 遇到 502/503/504 与 IOException 重试，其他情况原样返回
+ */
+class UpstreamRetryInterceptorTest {
+
+    private static final URI URI_STATUS = URI.create("http://zhaoxin/api/rule-extract/extract/status/t1");
+
+    /**
+     * 最多 3 次尝试，退避为 0，预算充足
+     */
+    private final UpstreamRetryPolicy retryPolicy = new UpstreamRetryPolicy(mock(UpstreamTimeoutPolicy.class),
+            true, 3, 0, 0, 1.0, 100, false, 95, 50, 0.05, 2);
+    private final UpstreamRetryInterceptor interceptor = new UpstreamRetryInterceptor(
+            new UpstreamCallPolicy(mock(UpstreamGuard.class), mock(UpstreamTimeoutPolicy.class), retryPolicy,
+                    mock(UpstreamMetrics.class)));
+
+    @AfterEach
+    void shutdown() {
+        retryPolicy.shutdown();
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {502, 503, 504})
+    void retriesGatewayErrors(int status) throws IOException {
+        ClientHttpResponse failed = response(status);
+        ClientHttpResponse ok = response(200);
+        StubExecution execution = new StubExecution(failed, ok);
+
+        assertSame(ok, interceptor.intercept(request(HttpMethod.GET), new byte[0], execution));
+        assertEquals(2, execution.calls.get());
+        // 重试前关闭失败的响应
+        verify(failed).close();
+    }
+
+    @Test
+    void retriesIOException() throws IOException {
+        ClientHttpResponse ok = response(200);
+        StubExecution execution = new StubExecution(new SocketTimeoutException("Read timed out"), ok);
+
+        assertSame(ok, interceptor.intercept(request(HttpMethod.GET), new byte[0], execution));
+        assertEquals(2, execution.calls.get());
+    }
+
+    @Test
+    void returnsLastResponseAfterMaxAttempts() throws IOException {
+        ClientHttpResponse last = response(503);
+        StubExecution execution = new StubExecution(response(503), response(503), last);
+
+        assertSame(last, interceptor.intercept(request(HttpMethod.GET), new byte[0], execution));
+        assertEquals(3, execution.calls.get());
+        verify(last, never()).close();
+    }
+
+    @Test
+    void rethrowsIOExceptionAfterMaxAttempts() {
+        StubExecution execution = new StubExecution(new IOException("reset"), new IOException("reset"),
+                new IOException("last"));
+
+        IOException error = assertThrows(IOException.class,
+                () -> interceptor.intercept(request(HttpMethod.GET), new byte[0], execution));
+        assertEquals("last", error.getMessage());
+        assertEquals(3, execution.calls.get());
+    }
+
+    @Test
+    void doesNotRetryOtherStatusesOrNonGet() throws IOException {
+        ClientHttpResponse internalError = response(500);
+        StubExecution getExecution = new StubExecution(internalError, response(200));
+        assertSame(internalError, interceptor.intercept(request(HttpMethod.GET), new byte[0], getExecution));
+        assertEquals(1, getExecution.calls.get());
+
+        ClientHttpResponse unavailable = response(503);
+        StubExecution postExecution = new StubExecution(unavailable, response(200));
+        assertSame(unavailable, interceptor.intercept(request(HttpMethod.POST), new byte[0], postExecution));
+        assertEquals(1, postExecution.calls.get());
+    }
+
+    private static MockClientHttpRequest request(HttpMethod method) {
+        return new MockClientHttpRequest(method, URI_STATUS);
+    }
+
+    private static ClientHttpResponse response(int status) throws IOException {
+        ClientHttpResponse response = mock(ClientHttpResponse.class);
+        when(response.getRawStatusCode()).thenReturn(status);
+        return response;
+    }
+
+    /**
+     * 按顺序返回响应或抛出异常
+     */
+    private static class StubExecution implements ClientHttpRequestExecution {
+
+        private final Deque<Object> outcomes = new ArrayDeque<>();
+        private final AtomicInteger calls = new AtomicInteger();
+
+        StubExecution(Object... outcomes) {
+            for (Object outcome : outcomes) {
+                this.outcomes.add(outcome);
+            }
+        }
+
+        @Override
+        public ClientHttpResponse execute(org.springframework.http.HttpRequest request, byte[] body) throws IOException {
+            calls.incrementAndGet();
+            Object outcome = outcomes.removeFirst();
+            if (outcome instanceof IOException) {
+                throw (IOException) outcome;
+            }
+            return (ClientHttpResponse) outcome;
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.zhaoxin.tools.demo.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import com.zhaoxin.tools.demo.service.TaskCallbackService;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 肇新任务回调测试
+ * 由本地桩模拟肇新：提供结果接口，并按约定的签名算法回调本服务
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class TaskCallbackControllerTest {
+
+    private static final String SECRET = "test-secret";
+
+    private static final StubUpstream upstream = StubUpstream.start();
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private TaskCallbackService callbackService;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) throws IOException {
+        // 运行时文件全部写入临时目录，不在工作目录留下映射、读模型与缓存
+        Path dataDir = Files.createTempDirectory("task-callback-test");
+        registry.add("zhaoxin.api.base-url", upstream::baseUrl);
+        registry.add("zhaoxin.callback.secret", () -> SECRET);
+        registry.add("zhaoxin.warmup.enabled", () -> false);
+        registry.add("zhaoxin.task-mapping.path", () -> dataDir.resolve("task-mappings.json").toString());
+        registry.add("zhaoxin.task-read-model.path", () -> dataDir.resolve("tasks.json").toString());
+        registry.add("zhaoxin.compare.export.cache-path", () -> dataDir.resolve("compare-reports").toString());
+        registry.add("zhaoxin.compose.file-cache.path", () -> dataDir.resolve("compose-files").toString());
+        registry.add("file.upload.path", () -> dataDir.resolve("uploads").toString());
+    }
+
+    @AfterAll
+    static void stopUpstream() {
+        upstream.stop();
+    }
+
+    @Test
+    void callbackWakesWaitingStatusRequestAndPrefetchesResult() throws Exception {
+        String taskId = "extract-callback-1";
+        CompletableFuture<HttpResponse<String>> waiting = client.sendAsync(
+                get("/api/rule-extract/extract/status/" + taskId + "?wait=20"),
+                HttpResponse.BodyHandlers.ofString());
+
+        awaitSnapshot("waitingTasks", 1);
+        assertEquals(200, callback("extract", taskId, "completed", SECRET).statusCode());
+
+        HttpResponse<String> status = waiting.get(5, TimeUnit.SECONDS);
+        assertTrue(status.body().contains("\"completed\""), status.body());
+        assertEquals(0, upstream.statusCalls.get(), "收到回调后不应再查询肇新状态");
+
+        awaitSnapshot("prefetchedResults", 1);
+        HttpResponse<String> result = client.send(get("/api/rule-extract/extract/result/" + taskId),
+                HttpResponse.BodyHandlers.ofString());
+        assertTrue(result.body().contains(taskId), result.body());
+        assertEquals(1, upstream.resultCalls.get(), "结果应由回调预取，查询时不再访问肇新");
+    }
+
+    @Test
+    void callbackWithInvalidSignatureIsRejected() throws Exception {
+        assertEquals(401, callback("compare", "compare-callback-1", "COMPLETED", "wrong-secret").statusCode());
+    }
+
+    @Test
+    void replayedCallbackIsRejected() throws Exception {
+        HttpRequest request = callbackRequest("compare", "compare-callback-2", "PROCESSING", SECRET);
+        assertEquals(200, client.send(request, HttpResponse.BodyHandlers.ofString()).statusCode());
+        assertEquals(401, client.send(request, HttpResponse.BodyHandlers.ofString()).statusCode());
+    }
+
+    /**
+     * 等待回调统计中的某项达到期望值（最多 5 秒）
+     */
+    private void awaitSnapshot(String key, int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!Integer.valueOf(expected).equals(callbackService.snapshot().get(key))) {
+            assertTrue(System.nanoTime() < deadline, key + " 未达到 " + expected + ": " + callbackService.snapshot());
+            Thread.sleep(10);
+        }
+    }
+
+    private HttpResponse<String> callback(String type, String taskId, String status, String secret)
+            throws Exception {
+        return client.send(callbackRequest(type, taskId, status, secret), HttpResponse.BodyHandlers.ofString());
+    }
+
+    /**
+     * 按肇新的签名算法构造回调请求
+     */
+    private HttpRequest callbackRequest(String type, String taskId, String status, String secret) throws Exception {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("type", type);
+        payload.put("taskId", taskId);
+        payload.put("status", status);
+        String body = objectMapper.writeValueAsString(payload);
+        String timestamp = String.valueOf(System.currentTimeMillis() / 1000);
+        return HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + port + "/api/callback/zhaoxin/task"))
+                .header("Content-Type", "application/json")
+                .header(TaskCallbackController.TIMESTAMP_HEADER, timestamp)
+                .header(TaskCallbackController.SIGNATURE_HEADER, TaskCallbackService.sign(secret, timestamp, body))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + port + path))
+                .timeout(Duration.ofSeconds(30))
+                .GET()
+                .build();
+    }
+
+    /**
+     * 肇新桩：任务列表为空，状态与结果接口计数
+     */
+    static class StubUpstream {
+
+        final HttpServer server;
+        final AtomicInteger statusCalls = new AtomicInteger();
+        final AtomicInteger resultCalls = new AtomicInteger();
+
+        private StubUpstream(HttpServer server) {
+            this.server = server;
+        }
+
+        static StubUpstream start() {
+            try {
+                HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+                StubUpstream stub = new StubUpstream(server);
+                server.createContext("/", exchange -> {
+                    String path = exchange.getRequestURI().getPath();
+                    String body;
+                    if (path.contains("/status/")) {
+                        stub.statusCalls.incrementAndGet();
+                        body = "{\"code\":200,\"data\":{\"status\":\"processing\"}}";
+                    } else if (path.contains("/result/")) {
+                        stub.resultCalls.incrementAndGet();
+                        String taskId = path.substring(path.lastIndexOf('/') + 1);
+                        body = "{\"code\":200,\"data\":{\"taskId\":\"" + taskId + "\",\"extractResults\":[]}}";
+                    } else {
+                        body = "{\"code\":200,\"data\":[]}";
+                    }
+                    byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+                    exchange.getResponseHeaders().add("Content-Type", "application/json");
+                    exchange.sendResponseHeaders(200, bytes.length);
+                    try (OutputStream out = exchange.getResponseBody()) {
+                        out.write(bytes);
+                    }
+                });
+                server.start();
+                return stub;
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        String baseUrl() {
+            return "http://127.0.0.1:" + server.getAddress().getPort();
+        }
+
+        void stop() {
+            server.stop(0);
+        }
+    }
+}
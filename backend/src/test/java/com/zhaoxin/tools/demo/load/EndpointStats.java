@@ -0,0 +1,62 @@
+package com.zhaoxin.tools.demo.load;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 单个接口（或旅程）的请求统计：保存全部耗时样本，报告时排序求分位数
+ */
+class EndpointStats {
+
+    private final String name;
+    private long[] samples = new long[1024];
+    private int count;
+    private long errors;
+
+    EndpointStats(String name) {
+        this.name = name;
+    }
+
+    synchronized void record(long nanos, boolean error) {
+        if (count == samples.length) {
+            samples = Arrays.copyOf(samples, samples.length * 2);
+        }
+        samples[count++] = nanos;
+        if (error) {
+            errors++;
+        }
+    }
+
+    String getName() {
+        return name;
+    }
+
+    /**
+     * 汇总：次数、错误率、吞吐量与耗时分位数（毫秒）
+     */
+    synchronized Map<String, Object> summary(double elapsedSeconds) {
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("name", name);
+        result.put("count", count);
+        result.put("errors", errors);
+        result.put("errorRate", count > 0 ? (double) errors / count : 0);
+        result.put("throughput", elapsedSeconds > 0 ? count / elapsedSeconds : 0);
+        result.put("p50", percentileMillis(sorted, 0.50));
+        result.put("p90", percentileMillis(sorted, 0.90));
+        result.put("p95", percentileMillis(sorted, 0.95));
+        result.put("p99", percentileMillis(sorted, 0.99));
+        result.put("max", percentileMillis(sorted, 1.0));
+        return result;
+    }
+
+    private static double percentileMillis(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1_000_000.0;
+    }
+}
@@ -0,0 +1,249 @@
+package com.zhaoxin.tools.demo.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.zhaoxin.tools.demo.DemoApplication;
+import com.zhaoxin.tools.demo.upstream.FakeZhaoxinServer;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 端到端压测
+ *
+ * 启动肇新模拟服务与完整后端（或指定 target 压测已部署的后端），按开放模型（泊松到达）发起比对与抽取用户旅程，
+ * 结束后输出各接口的吞吐量、错误率与耗时分位数，并写入 JSON 报告。用于评估实例数量，
+ * 以及在上线前验证 RestTemplateConfig、Tomcat 等配置的调整。
+ *
+ * 运行方式：
+ *   mvn -Pload -DskipTests verify -Dload.args="duration=120 compare-rate=2 extract-rate=5"
+ * 参数（key=value，可带前缀 --）：
+ *   duration             压测时长（秒，默认 60）
+ *   ramp-up              到达率从 0 线性增长到目标值的时间（秒，默认 10）
+ *   compare-rate         每秒开始的比对旅程数（默认 1）
+ *   extract-rate         每秒开始的抽取旅程数（默认 2）
+ *   max-concurrent       同时进行的旅程上限，超出的到达记为 dropped（默认 2000）
+ *   file-bytes           上传文件大小（默认 524288）
+ *   poll-interval        状态轮询间隔（毫秒，默认 1000）
+ *   status-wait          状态接口 wait 参数（秒，默认 0）
+ *   max-polls            单个任务最多轮询次数（默认 300）
+ *   page-images          抽取旅程获取的页面图片数（默认 3）
+ *   drain-timeout        停止到达后等待进行中旅程结束的时间（秒，默认 120）
+ *   report               JSON 报告路径（默认 load-report.json）
+ *   target               已部署后端地址，指定后不再启动模拟服务与后端
+ *   fake.*               模拟服务参数，见 FakeZhaoxinServer.builder(Properties)，fake.port 默认随机
+ *   backend.*            传给后端的配置，如 backend.server.tomcat.threads.max=50
+ */
+public class LoadTest {
+
+    private final Properties config;
+    private final Random random = new Random();
+    private final AtomicLong started = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final EndpointStats compareJourneys = new EndpointStats("journey: compare");
+    private final EndpointStats extractJourneys = new EndpointStats("journey: extract");
+
+    private LoadTest(Properties config) {
+        this.config = config;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Properties config = new Properties();
+        config.setProperty("fake.port", "0");
+        for (String arg : args) {
+            String option = arg.startsWith("--") ? arg.substring(2) : arg;
+            if (option.contains("=")) {
+                config.setProperty(option.substring(0, option.indexOf('=')), option.substring(option.indexOf('=') + 1));
+            }
+        }
+        new LoadTest(config).run();
+    }
+
+    private void run() throws Exception {
+        String target = config.getProperty("target");
+        if (target != null) {
+            run(target);
+            return;
+        }
+        try (FakeZhaoxinServer upstream = FakeZhaoxinServer.builder(config).start();
+             ConfigurableApplicationContext backend = startBackend(upstream)) {
+            run("http://127.0.0.1:" + backend.getEnvironment().getProperty("local.server.port"));
+        }
+    }
+
+    private ConfigurableApplicationContext startBackend(FakeZhaoxinServer upstream) throws Exception {
+        Path work = Files.createTempDirectory("load-backend");
+        Map<String, String> properties = new LinkedHashMap<>();
+        properties.put("server.port", "0");
+        properties.put("zhaoxin.api.base-url", upstream.baseUrl());
+        properties.put("file.upload.path", work.resolve("uploads").toString());
+        properties.put("zhaoxin.compose.file-cache.path", work.resolve("compose-cache").toString());
+        properties.put("zhaoxin.compare.export.cache-path", work.resolve("compare-reports").toString());
+        properties.put("zhaoxin.task-read-model.path", work.resolve("task-read-model.json").toString());
+        properties.put("logging.level.root", "WARN");
+        properties.put("logging.level.com.zhaoxin.tools.demo", "WARN");
+        config.stringPropertyNames().stream()
+                .filter(name -> name.startsWith("backend."))
+                .forEach(name -> properties.put(name.substring("backend.".length()), config.getProperty(name)));
+
+        // 以命令行参数传入，优先级高于 application.yml
+        String[] args = properties.entrySet().stream()
+                .map(e -> "--" + e.getKey() + "=" + e.getValue())
+                .toArray(String[]::new);
+        return new SpringApplicationBuilder(DemoApplication.class).run(args);
+    }
+
+    private void run(String baseUrl) throws Exception {
+        long durationMillis = TimeUnit.SECONDS.toMillis(longValue("duration", 60));
+        long rampUpMillis = TimeUnit.SECONDS.toMillis(longValue("ramp-up", 10));
+        double compareRate = doubleValue("compare-rate", 1);
+        double extractRate = doubleValue("extract-rate", 2);
+        int maxConcurrent = (int) longValue("max-concurrent", 2000);
+
+        ExecutorService clientExecutor = Executors.newFixedThreadPool(8);
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .executor(clientExecutor)
+                .build();
+        UserJourneys journeys = new UserJourneys(baseUrl, client,
+                (int) longValue("file-bytes", 512 * 1024),
+                longValue("poll-interval", 1000),
+                (int) longValue("status-wait", 0),
+                (int) longValue("max-polls", 300),
+                (int) longValue("page-images", 3));
+
+        System.out.printf("%n压测开始: target=%s, 时长=%ds, 比对=%.2f/s, 抽取=%.2f/s, 爬坡=%ds%n",
+                baseUrl, durationMillis / 1000, compareRate, extractRate, rampUpMillis / 1000);
+
+        ExecutorService journeyExecutor = Executors.newCachedThreadPool();
+        ScheduledExecutorService arrivals = Executors.newScheduledThreadPool(2);
+        Semaphore concurrency = new Semaphore(maxConcurrent);
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+        scheduleArrival(arrivals, journeyExecutor, concurrency, compareRate, start, deadline, rampUpMillis,
+                compareJourneys, journeys::compare);
+        scheduleArrival(arrivals, journeyExecutor, concurrency, extractRate, start, deadline, rampUpMillis,
+                extractJourneys, journeys::extract);
+
+        Thread.sleep(durationMillis);
+        arrivals.shutdown();
+        arrivals.awaitTermination(5, TimeUnit.SECONDS);
+        journeyExecutor.shutdown();
+        if (!journeyExecutor.awaitTermination(longValue("drain-timeout", 120), TimeUnit.SECONDS)) {
+            System.out.println("等待进行中的旅程超时，未完成的旅程不计入统计");
+            journeyExecutor.shutdownNow();
+        }
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+        clientExecutor.shutdownNow();
+
+        report(journeys, elapsedSeconds);
+    }
+
+    /**
+     * 泊松到达：间隔服从指数分布；爬坡期间按已用时间比例降低到达率
+     */
+    private void scheduleArrival(ScheduledExecutorService arrivals, ExecutorService journeyExecutor,
+                                 Semaphore concurrency, double rate, long start, long deadline, long rampUpMillis,
+                                 EndpointStats stats, Journey journey) {
+        if (rate <= 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        double elapsedMillis = (now - start) / 1e6;
+        double currentRate = rampUpMillis > 0 ? rate * Math.min(1.0, Math.max(0.05, elapsedMillis / rampUpMillis)) : rate;
+        long delayNanos = (long) (-Math.log(1 - random.nextDouble()) / currentRate * 1e9);
+        if (now + delayNanos >= deadline) {
+            return;
+        }
+        arrivals.schedule(() -> {
+            if (!concurrency.tryAcquire()) {
+                dropped.incrementAndGet();
+            } else {
+                started.incrementAndGet();
+                journeyExecutor.execute(() -> {
+                    long journeyStart = System.nanoTime();
+                    boolean failed = false;
+                    try {
+                        journey.run();
+                    } catch (UserJourneys.JourneyException e) {
+                        failed = true;
+                    } catch (Exception e) {
+                        failed = true;
+                        System.out.println(stats.getName() + " 异常: " + e);
+                    } finally {
+                        stats.record(System.nanoTime() - journeyStart, failed);
+                        concurrency.release();
+                    }
+                });
+            }
+            scheduleArrival(arrivals, journeyExecutor, concurrency, rate, start, deadline, rampUpMillis, stats, journey);
+        }, delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void report(UserJourneys journeys, double elapsedSeconds) throws Exception {
+        List<Map<String, Object>> endpoints = new ArrayList<>();
+        journeys.getEndpoints().values().stream()
+                .sorted(Comparator.comparing(EndpointStats::getName))
+                .forEach(stats -> endpoints.add(stats.summary(elapsedSeconds)));
+        List<Map<String, Object>> journeySummaries = List.of(
+                compareJourneys.summary(elapsedSeconds), extractJourneys.summary(elapsedSeconds));
+
+        System.out.printf("%n压测结束: 用时 %.1fs, 开始旅程 %d, 因并发上限丢弃 %d%n",
+                elapsedSeconds, started.get(), dropped.get());
+        System.out.printf("%n%-58s %8s %7s %9s %9s %9s %9s %9s %9s%n",
+                "接口", "次数", "错误率", "吞吐/s", "p50(ms)", "p90(ms)", "p95(ms)", "p99(ms)", "max(ms)");
+        endpoints.forEach(LoadTest::printRow);
+        journeySummaries.forEach(LoadTest::printRow);
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("elapsedSeconds", elapsedSeconds);
+        report.put("config", new LinkedHashMap<>(config));
+        report.put("journeysStarted", started.get());
+        report.put("journeysDropped", dropped.get());
+        report.put("journeys", journeySummaries);
+        report.put("endpoints", endpoints);
+        Path reportPath = Paths.get(config.getProperty("report", "load-report.json")).toAbsolutePath();
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(reportPath.toFile(), report);
+        System.out.println("\n报告已写入: " + reportPath);
+    }
+
+    private static void printRow(Map<String, Object> row) {
+        System.out.printf("%-58s %8d %6.2f%% %9.2f %9.1f %9.1f %9.1f %9.1f %9.1f%n",
+                row.get("name"), row.get("count"), (double) row.get("errorRate") * 100, row.get("throughput"),
+                row.get("p50"), row.get("p90"), row.get("p95"), row.get("p99"), row.get("max"));
+    }
+
+    private long longValue(String key, long defaultValue) {
+        String value = config.getProperty(key);
+        return value != null ? Long.parseLong(value) : defaultValue;
+    }
+
+    private double doubleValue(String key, double defaultValue) {
+        String value = config.getProperty(key);
+        return value != null ? Double.parseDouble(value) : defaultValue;
+    }
+
+    @FunctionalInterface
+    private interface Journey {
+        void run() throws Exception;
+    }
+}
@@ -0,0 +1,223 @@
+package com.zhaoxin.tools.demo.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * 压测用户旅程
+ *
+ * 与前端的调用顺序一致：
+ * 1. 比对：上传新旧文件 → 提交比对 → 轮询状态 → 获取结果 → 导出报告
+ * 2. 抽取：上传文档并提交抽取 → 轮询状态 → 获取前几页页面图片 → 获取结果
+ * 每个请求按接口模板记录耗时；HTTP 非 2xx 或响应体 code 不为 200 记为错误，任一步出错即结束该旅程。
+ */
+class UserJourneys {
+
+    private static final Set<String> TERMINAL_STATUSES = new HashSet<>(
+            Arrays.asList("completed", "failed", "cancelled", "canceled", "timeout"));
+
+    private final String baseUrl;
+    private final HttpClient client;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, EndpointStats> endpoints = new ConcurrentHashMap<>();
+    private final byte[] pdf;
+    private final long pollIntervalMillis;
+    private final int statusWaitSeconds;
+    private final int maxPolls;
+    private final int pageImages;
+
+    UserJourneys(String baseUrl, HttpClient client, int fileBytes, long pollIntervalMillis,
+                 int statusWaitSeconds, int maxPolls, int pageImages) {
+        this.baseUrl = baseUrl;
+        this.client = client;
+        this.pollIntervalMillis = pollIntervalMillis;
+        this.statusWaitSeconds = statusWaitSeconds;
+        this.maxPolls = maxPolls;
+        this.pageImages = pageImages;
+        byte[] header = "%PDF-1.7\n".getBytes(StandardCharsets.US_ASCII);
+        this.pdf = Arrays.copyOf(header, Math.max(fileBytes, header.length));
+    }
+
+    Map<String, EndpointStats> getEndpoints() {
+        return endpoints;
+    }
+
+    /**
+     * 比对旅程
+     */
+    @SuppressWarnings("unchecked")
+    void compare() throws Exception {
+        Map<String, Object> oldFile = data(upload("old.pdf"));
+        Map<String, Object> newFile = data(upload("new.pdf"));
+
+        Map<String, Object> request = new LinkedHashMap<>();
+        request.put("oldFileUrl", oldFile.get("fileUrl"));
+        request.put("newFileUrl", newFile.get("fileUrl"));
+        request.put("oldFileName", "旧版合同.pdf");
+        request.put("newFileName", "新版合同.pdf");
+        request.put("removeWatermark", false);
+        Object taskId = json("POST /api/compare/submit", post("/api/compare/submit", request)).get("data");
+
+        poll("GET /api/compare/task/{taskId}", "/api/compare/task/" + taskId);
+        json("GET /api/compare/result/{taskId}", get("/api/compare/result/" + taskId));
+
+        Map<String, Object> export = new LinkedHashMap<>();
+        export.put("taskId", taskId);
+        export.put("formats", List.of("doc", "html"));
+        export.put("includeIgnored", false);
+        export.put("includeRemarks", true);
+        bytes("POST /api/compare/export-report", post("/api/compare/export-report", export));
+    }
+
+    /**
+     * 抽取旅程
+     */
+    void extract() throws Exception {
+        String boundary = "load-" + UUID.randomUUID();
+        HttpRequest upload = HttpRequest.newBuilder(uri("/api/rule-extract/extract/upload"))
+                .timeout(Duration.ofMinutes(2))
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(multipart(boundary, "contract.pdf",
+                        Map.of("templateId", "extract-template-1"))))
+                .build();
+        Object taskId = data(json("POST /api/rule-extract/extract/upload", upload)).get("taskId");
+
+        poll("GET /api/rule-extract/extract/status/{taskId}", "/api/rule-extract/extract/status/" + taskId);
+        for (int page = 1; page <= pageImages; page++) {
+            bytes("GET /api/rule-extract/extract/page-image/{taskId}/{page}",
+                    get("/api/rule-extract/extract/page-image/" + taskId + "/" + page));
+        }
+        json("GET /api/rule-extract/extract/result/{taskId}", get("/api/rule-extract/extract/result/" + taskId));
+    }
+
+    private Map<String, Object> upload(String fileName) throws Exception {
+        String boundary = "load-" + UUID.randomUUID();
+        HttpRequest request = HttpRequest.newBuilder(uri("/api/files/upload"))
+                .timeout(Duration.ofMinutes(2))
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(multipart(boundary, fileName, Map.of())))
+                .build();
+        return json("POST /api/files/upload", request);
+    }
+
+    /**
+     * 轮询任务状态直到结束；任务失败也算旅程完成（与肇新行为一致），超过 maxPolls 记为错误
+     */
+    @SuppressWarnings("unchecked")
+    private void poll(String endpoint, String path) throws Exception {
+        String query = statusWaitSeconds > 0 ? "?wait=" + statusWaitSeconds : "";
+        for (int i = 0; i < maxPolls; i++) {
+            Map<String, Object> data = data(json(endpoint, get(path + query)));
+            Object status = data.get("status");
+            if (status != null && TERMINAL_STATUSES.contains(status.toString().toLowerCase())) {
+                return;
+            }
+            Thread.sleep(pollIntervalMillis);
+        }
+        throw new JourneyException("任务在 " + maxPolls + " 次轮询后仍未结束: " + path);
+    }
+
+    // ==================== HTTP ====================
+
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(uri(path)).timeout(Duration.ofMinutes(2)).GET().build();
+    }
+
+    private HttpRequest post(String path, Object body) throws IOException {
+        return HttpRequest.newBuilder(uri(path))
+                .timeout(Duration.ofMinutes(2))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)))
+                .build();
+    }
+
+    private URI uri(String path) {
+        return URI.create(baseUrl + path);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> json(String endpoint, HttpRequest request) throws Exception {
+        return send(endpoint, request, body -> {
+            try {
+                Map<String, Object> map = objectMapper.readValue(body, Map.class);
+                Object code = map.get("code");
+                return code == null || Integer.valueOf(200).equals(code) ? map : null;
+            } catch (IOException e) {
+                return null;
+            }
+        });
+    }
+
+    private byte[] bytes(String endpoint, HttpRequest request) throws Exception {
+        return send(endpoint, request, Function.identity());
+    }
+
+    /**
+     * 发送请求并记录耗时；parser 返回 null 表示响应体表示失败
+     */
+    private <T> T send(String endpoint, HttpRequest request, Function<byte[], T> parser) throws Exception {
+        EndpointStats stats = endpoints.computeIfAbsent(endpoint, EndpointStats::new);
+        long start = System.nanoTime();
+        HttpResponse<byte[]> response;
+        try {
+            response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        } catch (IOException e) {
+            stats.record(System.nanoTime() - start, true);
+            throw new JourneyException(endpoint + " 请求失败: " + e);
+        }
+        T result = response.statusCode() / 100 == 2 ? parser.apply(response.body()) : null;
+        stats.record(System.nanoTime() - start, result == null);
+        if (result == null) {
+            throw new JourneyException(endpoint + " 返回错误: HTTP " + response.statusCode());
+        }
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> data(Map<String, Object> response) throws JourneyException {
+        Object data = response.get("data");
+        if (!(data instanceof Map)) {
+            throw new JourneyException("响应缺少 data: " + response);
+        }
+        return (Map<String, Object>) data;
+    }
+
+    private byte[] multipart(String boundary, String fileName, Map<String, String> fields) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(pdf.length + 512);
+        for (Map.Entry<String, String> field : fields.entrySet()) {
+            out.write(("--" + boundary + "\r\nContent-Disposition: form-data; name=\"" + field.getKey()
+                    + "\"\r\n\r\n" + field.getValue() + "\r\n").getBytes(StandardCharsets.UTF_8));
+        }
+        out.write(("--" + boundary + "\r\nContent-Disposition: form-data; name=\"file\"; filename=\"" + fileName
+                + "\"\r\nContent-Type: application/pdf\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+        out.write(pdf);
+        out.write(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8));
+        return out.toByteArray();
+    }
+
+    /**
+     * 旅程中的业务失败（已计入接口错误）
+     */
+    static class JourneyException extends Exception {
+        JourneyException(String message) {
+            super(message);
+        }
+    }
+}
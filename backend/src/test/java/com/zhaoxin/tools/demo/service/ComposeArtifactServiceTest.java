@@ -0,0 +1,155 @@
+package com.zhaoxin.tools.demo.service;
+
+import com.zhaoxin.tools.demo.model.request.ComposeArtifactRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+
+/**
+ * 合成文件打包下载：单个文件失败写入 errors.txt、缓存条目在打包结束后释放
+ */
+class ComposeArtifactServiceTest {
+
+    private static final String PDF_PATH = "/compose/2024/contract.pdf";
+    private static final String STAMPED_PATH = "/compose/2024/contract-stamped.pdf";
+    private static final String MISSING_PATH = "/compose/2024/missing.pdf";
+
+    private final ZhaoxinApiClient apiClient = mock(ZhaoxinApiClient.class);
+    private ComposeFileCache fileCache;
+    private ComposeArtifactService service;
+
+    @TempDir
+    Path cacheDir;
+
+    @BeforeEach
+    void setUp() {
+        doAnswer(invocation -> write(invocation.getArgument(1), "word " + invocation.getArgument(0)))
+                .when(apiClient).downloadComposeFile(any(), any(OutputStream.class));
+        doAnswer(invocation -> write(invocation.getArgument(1), "pdf " + invocation.getArgument(0)))
+                .when(apiClient).downloadFileByPath(any(), any(OutputStream.class));
+        doThrow(new IllegalStateException("404 Not Found"))
+                .when(apiClient).downloadFileByPath(eq(MISSING_PATH), any(OutputStream.class));
+    }
+
+    @AfterEach
+    void shutdown() {
+        if (service != null) {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    void failedArtifactIsListedInErrorsAndOthersAreStillWritten() throws IOException {
+        newService(false);
+
+        Map<String, String> zip = writeZip(request(MISSING_PATH), new ByteArrayOutputStream());
+
+        assertEquals("word f-1", zip.get("合同.docx"));
+        assertEquals("pdf " + PDF_PATH, zip.get("contract.pdf"));
+        assertEquals("pdf " + STAMPED_PATH, zip.get("contract-stamped.pdf"));
+        assertEquals("path=" + MISSING_PATH + "\t404 Not Found\r\n", zip.get("errors.txt"));
+        assertEquals(4, zip.size());
+    }
+
+    @Test
+    void cachedEntriesAreReleasedAfterZipIsWritten() throws IOException {
+        newService(true);
+
+        Map<String, String> zip = writeZip(request(null), new ByteArrayOutputStream());
+
+        assertEquals(3, zip.size());
+        assertReleased();
+    }
+
+    @Test
+    void cachedEntriesAreReleasedWhenClientDisconnects() throws IOException {
+        newService(true);
+        OutputStream disconnected = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+        };
+
+        assertThrows(IOException.class, () -> service.writeZip(service.resolve(request(null)), disconnected));
+        // 打包中止后才完成的下载由下载线程自行释放
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!released()) {
+            assertTrue(System.currentTimeMillis() < deadline, "缓存条目未释放");
+            Thread.onSpinWait();
+        }
+    }
+
+    private void assertReleased() throws IOException {
+        assertTrue(released());
+    }
+
+    private boolean released() throws IOException {
+        return !fileCache.getByFileId("f-1").isPinned()
+                && !fileCache.getByPath(PDF_PATH).isPinned()
+                && !fileCache.getByPath(STAMPED_PATH).isPinned();
+    }
+
+    private void newService(boolean cacheEnabled) {
+        fileCache = new ComposeFileCache(apiClient, cacheEnabled, cacheDir.toString(), 1 << 20, 600_000);
+        fileCache.init();
+        service = new ComposeArtifactService(apiClient, fileCache, 2, 10);
+    }
+
+    private static ComposeArtifactRequest request(String extraPath) {
+        ComposeArtifactRequest request = new ComposeArtifactRequest();
+        request.setFileId("f-1");
+        request.setFileName("合同.docx");
+        request.setPdfPath(PDF_PATH);
+        request.setStampedPdfPath(STAMPED_PATH);
+        if (extraPath != null) {
+            request.setPaths(List.of(extraPath));
+        }
+        return request;
+    }
+
+    private Map<String, String> writeZip(ComposeArtifactRequest request, ByteArrayOutputStream out) throws IOException {
+        service.writeZip(service.resolve(request), out);
+        Map<String, String> entries = new LinkedHashMap<>();
+        try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()), StandardCharsets.UTF_8)) {
+            ZipEntry entry;
+            while ((entry = zis.getNextEntry()) != null) {
+                entries.put(entry.getName(), new String(zis.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+        return entries;
+    }
+
+    private static long write(OutputStream out, String content) throws IOException {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        out.write(bytes);
+        return bytes.length;
+    }
+}
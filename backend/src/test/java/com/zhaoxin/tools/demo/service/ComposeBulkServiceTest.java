@@ -0,0 +1,151 @@
+package com.zhaoxin.tools.demo.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 批量合成：ZIP 内容与 manifest、单行超时中止、超过行数上限
+ */
+class ComposeBulkServiceTest {
+
+    private final ZhaoxinApiClient apiClient = mock(ZhaoxinApiClient.class);
+    private final ComposePayloadValidator payloadValidator = mock(ComposePayloadValidator.class);
+    private final ComposeIdempotencyService idempotencyService = new ComposeIdempotencyService(false, 600, 1000, 100);
+    private ComposeBulkService service;
+
+    @AfterEach
+    void shutdown() {
+        if (service != null) {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void writesContractsAndManifestWithFailedRows() throws IOException {
+        when(payloadValidator.validate(anyMap())).thenAnswer(invocation -> {
+            Map<String, Object> values = (Map<String, Object>) ((Map<String, Object>) invocation.getArgument(0)).get("values");
+            return "".equals(values.get("amount"))
+                    ? List.of(new ComposePayloadValidator.FieldError("amount", "金额", "不能为空"))
+                    : List.of();
+        });
+        when(apiClient.generateContract(anyMap())).thenAnswer(invocation -> {
+            Map<String, Object> values = (Map<String, Object>) ((Map<String, Object>) invocation.getArgument(0)).get("values");
+            return "丙".equals(values.get("name"))
+                    ? Map.of("code", 500, "message", "模板不存在")
+                    : Map.of("code", 200, "data", Map.of("fileId", "file-" + values.get("amount")));
+        });
+        when(apiClient.downloadComposeFile(any())).thenAnswer(invocation ->
+                ("docx " + invocation.getArgument(0)).getBytes(StandardCharsets.UTF_8));
+        service = new ComposeBulkService(apiClient, payloadValidator, idempotencyService, 2, 100, 5000);
+
+        Map<String, byte[]> zip = compose("name,amount\n甲,100\n乙,\n丙,300\n\"丁,戊\",400\n", "name");
+
+        assertArrayEquals("docx file-100".getBytes(StandardCharsets.UTF_8), zip.get("0001_甲.docx"));
+        assertArrayEquals("docx file-400".getBytes(StandardCharsets.UTF_8), zip.get("0004_丁,戊.docx"));
+        assertEquals(3, zip.size());
+        List<String> manifest = manifest(zip);
+        assertTrue(manifest.get(1).startsWith("1,成功,file-100,0001_甲.docx,"));
+        assertTrue(manifest.get(2).startsWith("2,失败,,,"));
+        assertTrue(manifest.get(2).endsWith("参数校验失败: amount 不能为空;"));
+        assertTrue(manifest.get(3).startsWith("3,失败,,,"));
+        assertTrue(manifest.get(3).endsWith(",模板不存在"));
+        assertTrue(manifest.get(4).startsWith("4,成功,file-400,\"0004_丁,戊.docx\","));
+    }
+
+    @Test
+    void rowTimeoutCancelsOutstandingRowsAndSkipsTheRest() throws IOException, InterruptedException {
+        CountDownLatch interrupted = new CountDownLatch(1);
+        when(payloadValidator.validate(anyMap())).thenReturn(List.of());
+        when(apiClient.generateContract(anyMap())).thenAnswer(invocation -> {
+            try {
+                new CountDownLatch(1).await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                throw e;
+            }
+            return Map.of("code", 200, "data", Map.of("fileId", "late"));
+        });
+        service = new ComposeBulkService(apiClient, payloadValidator, idempotencyService, 1, 100, 200);
+
+        long start = System.currentTimeMillis();
+        Map<String, byte[]> zip = compose("name\n甲\n乙\n丙\n", null);
+
+        assertTrue(System.currentTimeMillis() - start < 5000);
+        // 超时的行被取消，占用的合成线程被中断
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        assertEquals(1, zip.size());
+        List<String> manifest = manifest(zip);
+        assertTrue(manifest.get(1).startsWith("1,失败,,,"));
+        assertTrue(manifest.get(1).endsWith(",等待合成结果超过 200ms"));
+        assertEquals("2,未处理,,,0,批次因等待超时中止，未处理", manifest.get(2));
+        assertEquals("3,未处理,,,0,批次因等待超时中止，未处理", manifest.get(3));
+    }
+
+    @Test
+    void rowsBeyondMaxRowsAreRecordedAsSkipped() throws IOException {
+        when(payloadValidator.validate(anyMap())).thenReturn(List.of());
+        when(apiClient.generateContract(anyMap())).thenReturn(Map.of("code", 200, "data", Map.of("fileId", "f")));
+        when(apiClient.downloadComposeFile("f")).thenReturn(new byte[]{1});
+        service = new ComposeBulkService(apiClient, payloadValidator, idempotencyService, 2, 2, 5000);
+
+        ComposeBulkService.BulkRows rows = service.readRows(input(
+                "{\"name\":\"甲\"}\n\n{\"values\":{\"name\":\"乙\"}}\n{\"name\":\"丙\"}\n"), ComposeBulkService.FORMAT_JSONL);
+        assertEquals(3, rows.size());
+        Map<String, byte[]> zip = compose(rows, null);
+
+        assertEquals(3, zip.size());
+        List<String> manifest = manifest(zip);
+        assertTrue(manifest.get(1).startsWith("1,成功,f,contract_0001.docx,"));
+        assertTrue(manifest.get(2).startsWith("2,成功,f,contract_0002.docx,"));
+        assertEquals("3,未处理,,,0,超过行数上限 2，未处理", manifest.get(3));
+    }
+
+    private Map<String, byte[]> compose(String csv, String nameField) throws IOException {
+        ComposeBulkService.BulkRows rows = service.readRows(input(csv), ComposeBulkService.FORMAT_CSV);
+        return compose(rows, nameField);
+    }
+
+    private Map<String, byte[]> compose(ComposeBulkService.BulkRows rows, String nameField) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.compose("TPL", rows, nameField, out);
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()), StandardCharsets.UTF_8)) {
+            ZipEntry entry;
+            while ((entry = zis.getNextEntry()) != null) {
+                entries.put(entry.getName(), zis.readAllBytes());
+            }
+        }
+        return entries;
+    }
+
+    private static List<String> manifest(Map<String, byte[]> zip) {
+        String text = new String(zip.get("manifest.csv"), StandardCharsets.UTF_8);
+        assertTrue(text.startsWith("\uFEFF行号,状态,文件ID,文件名,耗时(ms),错误信息\r\n"));
+        return List.of(text.split("\r\n"));
+    }
+
+    private static ByteArrayInputStream input(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,114 @@
+package com.zhaoxin.tools.demo.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * 合成文件缓存：固定与淘汰标记、容量上限的硬性淘汰
+ */
+class ComposeFileCacheTest {
+
+    private static final long GRACE_MILLIS = 600_000;
+
+    private final ZhaoxinApiClient apiClient = mock(ZhaoxinApiClient.class);
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    private ComposeFileCache cache;
+
+    @TempDir
+    Path cacheDir;
+
+    @BeforeEach
+    void setUp() {
+        // 每个文件 4 字节，上限 10 字节最多容纳两个
+        doAnswer(invocation -> {
+            OutputStream out = invocation.getArgument(1);
+            out.write(((String) invocation.getArgument(0)).substring(0, 4).getBytes(StandardCharsets.UTF_8));
+            return 4L;
+        }).when(apiClient).downloadFileByPath(any(), any(OutputStream.class));
+        cache = new ComposeFileCache(apiClient, true, cacheDir.toString(), 10, GRACE_MILLIS, now::get);
+        cache.init();
+    }
+
+    @Test
+    void pinnedEntryCannotBeRetiredUntilReleased() throws IOException {
+        ComposeFileCache.Entry entry = cache.acquireByPath("aaaa");
+        ComposeFileCache.Entry again = cache.acquireByPath("aaaa");
+
+        cache.release(entry);
+        assertFalse(entry.retire());
+        cache.release(again);
+        assertTrue(entry.retire());
+        assertThrows(IllegalStateException.class, () -> cache.release(again));
+    }
+
+    @Test
+    void retiredEntryCannotBePinned() throws IOException {
+        ComposeFileCache.Entry entry = cache.getByPath("aaaa");
+
+        assertTrue(entry.retire());
+        assertFalse(entry.pin());
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedWithinGraceWhenOverQuota() throws IOException {
+        Path first = get("aaaa").getFile();
+        Path second = get("bbbb").getFile();
+        // 再次访问 aaaa，bbbb 成为最久未访问的条目
+        get("aaaa");
+
+        // 所有条目都在保护期内，超出上限时仍按最近访问时间淘汰
+        get("cccc");
+
+        assertTrue(Files.exists(first));
+        assertFalse(Files.exists(second));
+        assertEquals(2, countFiles());
+        get("bbbb");
+        verify(apiClient, times(2)).downloadFileByPath(eq("bbbb"), any(OutputStream.class));
+    }
+
+    @Test
+    void pinnedEntryIsKeptWhileNewerUnpinnedEntryIsEvicted() throws IOException {
+        ComposeFileCache.Entry pinned = cache.acquireByPath("aaaa");
+        Path unpinned = get("bbbb").getFile();
+
+        get("cccc");
+
+        assertTrue(Files.exists(pinned.getFile()));
+        assertFalse(Files.exists(unpinned));
+
+        // 释放后可以被淘汰
+        cache.release(pinned);
+        assertTrue(pinned.retire());
+    }
+
+    private ComposeFileCache.Entry get(String path) throws IOException {
+        now.incrementAndGet();
+        return cache.getByPath(path);
+    }
+
+    private long countFiles() throws IOException {
+        try (Stream<Path> files = Files.list(cacheDir)) {
+            return files.count();
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.zhaoxin.tools.demo.service;
+
+import com.zhaoxin.tools.demo.model.exception.ApiException;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 合成幂等：并发重复请求共享结果、幂等键复用于不同请求、失败结果不缓存
+ */
+class ComposeIdempotencyServiceTest {
+
+    private static final String KEY = "order-1";
+
+    private final ComposeIdempotencyService service = new ComposeIdempotencyService(true, 600, 5000, 100);
+
+    @Test
+    void concurrentDuplicateWaitsForFirstCallAndSharesItsResult() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        Map<String, Object> response = Map.of("code", 200, "data", Map.of("fileId", "f-1"));
+
+        CompletableFuture<ComposeIdempotencyService.Result> first = CompletableFuture.supplyAsync(() ->
+                service.execute(ComposeIdempotencyService.SCOPE_GENERATE, KEY, request("甲"), () -> {
+                    calls.incrementAndGet();
+                    started.countDown();
+                    await(release);
+                    return response;
+                }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        CompletableFuture<ComposeIdempotencyService.Result> duplicate = new CompletableFuture<>();
+        Thread waiter = new Thread(() -> duplicate.complete(service.execute(ComposeIdempotencyService.SCOPE_GENERATE,
+                KEY, request("甲"), () -> {
+                    calls.incrementAndGet();
+                    return Map.of("code", 200, "data", Map.of("fileId", "f-2"));
+                })));
+        waiter.start();
+        // 第一次调用完成前，重复请求阻塞在共享的 future 上
+        long deadline = System.currentTimeMillis() + 5000;
+        while (waiter.getState() != Thread.State.TIMED_WAITING) {
+            assertTrue(System.currentTimeMillis() < deadline, "重复请求没有等待第一次调用");
+            Thread.onSpinWait();
+        }
+        assertFalse(duplicate.isDone());
+
+        release.countDown();
+        ComposeIdempotencyService.Result original = first.get(5, TimeUnit.SECONDS);
+        ComposeIdempotencyService.Result replayed = duplicate.get(5, TimeUnit.SECONDS);
+        assertFalse(original.isReplayed());
+        assertTrue(replayed.isReplayed());
+        assertSame(response, replayed.getResponse());
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void keyReusedForDifferentPayloadIsRejectedWith409() {
+        service.execute(ComposeIdempotencyService.SCOPE_GENERATE, KEY, request("甲"),
+                () -> Map.of("code", 200, "data", Map.of("fileId", "f-1")));
+
+        ApiException error = assertThrows(ApiException.class, () -> service.execute(
+                ComposeIdempotencyService.SCOPE_GENERATE, KEY, request("乙"),
+                () -> Map.of("code", 200, "data", Map.of("fileId", "f-2"))));
+        assertEquals(409, (int) error.getCode());
+
+        // 同一个键在其他接口上互不影响
+        ComposeIdempotencyService.Result other = service.execute(ComposeIdempotencyService.SCOPE_BULK, KEY,
+                request("乙"), () -> Map.of("code", 200, "data", Map.of("fileId", "f-3")));
+        assertFalse(other.isReplayed());
+    }
+
+    @Test
+    void failedResultsAreNotCached() {
+        AtomicInteger calls = new AtomicInteger();
+
+        ComposeIdempotencyService.Result failed = service.execute(ComposeIdempotencyService.SCOPE_GENERATE, KEY,
+                request("甲"), () -> {
+                    calls.incrementAndGet();
+                    return Map.of("code", 500, "message", "模板不存在");
+                });
+        assertFalse(failed.isReplayed());
+
+        assertThrows(IllegalStateException.class, () -> service.execute(ComposeIdempotencyService.SCOPE_GENERATE,
+                KEY, request("甲"), () -> {
+                    calls.incrementAndGet();
+                    throw new IllegalStateException("上游不可用");
+                }));
+
+        ComposeIdempotencyService.Result retried = service.execute(ComposeIdempotencyService.SCOPE_GENERATE, KEY,
+                request("甲"), () -> {
+                    calls.incrementAndGet();
+                    return Map.of("code", 200, "data", Map.of("fileId", "f-1"));
+                });
+        assertFalse(retried.isReplayed());
+        assertEquals(3, calls.get());
+
+        // 成功结果之后的重复请求直接复用
+        ComposeIdempotencyService.Result replayed = service.execute(ComposeIdempotencyService.SCOPE_GENERATE, KEY,
+                request("甲"), () -> {
+                    calls.incrementAndGet();
+                    return Map.of("code", 200, "data", Map.of("fileId", "f-2"));
+                });
+        assertTrue(replayed.isReplayed());
+        assertEquals(3, calls.get());
+    }
+
+    private static Map<String, Object> request(String party) {
+        return Map.of("templateCode", "TPL", "values", Map.of("party", party, "amount", "100"));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.zhaoxin.tools.demo.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * 合成参数预校验：字段规则、未知模板编号、negative-ttl 与过期版本清理
+ */
+class ComposePayloadValidatorTest {
+
+    private static final long TEMPLATE_TTL_SECONDS = 300;
+    private static final long NEGATIVE_TTL_SECONDS = 30;
+
+    private final ZhaoxinApiClient apiClient = mock(ZhaoxinApiClient.class);
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    /**
+     * 当前已发布模板：templateCode -> version
+     */
+    private final AtomicReference<Map<String, String>> published = new AtomicReference<>();
+    private final ComposePayloadValidator validator = new ComposePayloadValidator(apiClient, true, false,
+            TEMPLATE_TTL_SECONDS, NEGATIVE_TTL_SECONDS, 2, now::get);
+
+    @AfterEach
+    void shutdown() {
+        validator.shutdown();
+    }
+
+    @Test
+    void reportsMissingRequiredFieldAndCodeUsedInsteadOfTag() {
+        publish(Map.of("TPL", "v1"));
+        templateDetail("t-TPL", "[{\"tag\":\"amount\",\"type\":\"number\",\"required\":true,"
+                + "\"meta\":{\"name\":\"金额\",\"code\":\"AMOUNT\"}},"
+                + "{\"tag\":\"party\",\"type\":\"text\"}]");
+
+        List<ComposePayloadValidator.FieldError> errors = validator.validate(request("TPL", Map.of("party", "甲")));
+        assertEquals(List.of(new ComposePayloadValidator.FieldError("amount", "金额", "必填字段缺失")), errors);
+
+        errors = validator.validate(request("TPL", Map.of("AMOUNT", "100")));
+        assertEquals(2, errors.size());
+        assertEquals("应使用字段tag \"amount\" 而不是字段编码", errors.get(0).getMessage());
+
+        assertTrue(validator.validate(request("TPL", Map.of("amount", "1,000.50"))).isEmpty());
+    }
+
+    @Test
+    void unknownTemplateCodePassesAndRefreshesAtMostOncePerNegativeTtl() {
+        publish(Map.of("TPL", "v1"));
+        templateDetail("t-TPL", "[{\"tag\":\"amount\",\"required\":true}]");
+        templateDetail("t-NEW", "[{\"tag\":\"party\",\"required\":true}]");
+
+        // 首次使用同步加载目录，目录中没有的编号交由肇新校验
+        assertTrue(validator.validate(request("NEW", Map.of())).isEmpty());
+        assertTrue(validator.validate(request("NEW", Map.of())).isEmpty());
+        verify(apiClient, times(1)).getComposeTemplates("PUBLISHED");
+
+        // negative-ttl 过后，未知编号触发后台刷新，新发布的模板开始校验
+        publish(Map.of("TPL", "v1", "NEW", "v1"));
+        now.addAndGet(NEGATIVE_TTL_SECONDS * 1000 + 1);
+        assertTrue(validator.validate(request("NEW", Map.of())).isEmpty());
+        await(() -> !validator.validate(request("NEW", Map.of())).isEmpty());
+        verify(apiClient, times(2)).getComposeTemplates("PUBLISHED");
+    }
+
+    @Test
+    void catalogLoadFailureIsNotRetriedWithinNegativeTtl() {
+        doThrow(new IllegalStateException("上游不可用")).when(apiClient).getComposeTemplates(anyString());
+        templateDetail("t-TPL", "[{\"tag\":\"amount\",\"required\":true}]");
+
+        assertTrue(validator.validate(request("TPL", Map.of())).isEmpty());
+        now.addAndGet(NEGATIVE_TTL_SECONDS * 1000 - 1);
+        assertTrue(validator.validate(request("TPL", Map.of())).isEmpty());
+        verify(apiClient, times(1)).getComposeTemplates("PUBLISHED");
+
+        publish(Map.of("TPL", "v1"));
+        now.addAndGet(2);
+        assertEquals(1, validator.validate(request("TPL", Map.of())).size());
+        verify(apiClient, times(2)).getComposeTemplates("PUBLISHED");
+    }
+
+    @Test
+    void catalogRefreshPrunesVersionsNoLongerPublished() {
+        publish(Map.of("TPL", "v1"));
+        templateDetail("t-TPL", "[{\"tag\":\"amount\",\"required\":true}]");
+        assertEquals(1, validator.validate(request("TPL", Map.of())).size());
+        assertEquals(1, validator.validate(request("TPL", Map.of())).size());
+        verify(apiClient, times(1)).getTemplateDetail("t-TPL");
+
+        // 目录过期后先用旧目录，后台刷新到 v2 后重新编译
+        publish(Map.of("TPL", "v2"));
+        templateDetail("t-TPL", "[{\"tag\":\"party\",\"required\":true}]");
+        now.addAndGet(TEMPLATE_TTL_SECONDS * 1000 + 1);
+        await(() -> "party".equals(firstErrorField("TPL")));
+        verify(apiClient, times(2)).getTemplateDetail("t-TPL");
+
+        // v1 的编译结果已随刷新清理，再次发布 v1 时重新编译
+        publish(Map.of("TPL", "v1"));
+        templateDetail("t-TPL", "[{\"tag\":\"amount\",\"required\":true}]");
+        now.addAndGet(TEMPLATE_TTL_SECONDS * 1000 + 1);
+        await(() -> "amount".equals(firstErrorField("TPL")));
+        verify(apiClient, times(3)).getTemplateDetail("t-TPL");
+    }
+
+    private String firstErrorField(String templateCode) {
+        List<ComposePayloadValidator.FieldError> errors = validator.validate(request(templateCode, Map.of()));
+        return errors.isEmpty() ? null : errors.get(0).getField();
+    }
+
+    private void publish(Map<String, String> versions) {
+        published.set(versions);
+        doAnswer(invocation -> {
+            List<Object> templates = new ArrayList<>();
+            published.get().forEach((code, version) -> templates.add(
+                    Map.of("id", "t-" + code, "templateCode", code, "version", version)));
+            return Map.of("code", 200, "data", templates);
+        }).when(apiClient).getComposeTemplates(anyString());
+    }
+
+    private void templateDetail(String templateId, String elementsJson) {
+        doReturn(Map.of("code", 200, "data", Map.of("id", templateId, "elementsJson", elementsJson)))
+                .when(apiClient).getTemplateDetail(templateId);
+    }
+
+    private static Map<String, Object> request(String templateCode, Map<String, Object> values) {
+        return Map.of("templateCode", templateCode, "values", values);
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "等待超时");
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AssertionError(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.zhaoxin.tools.demo.service;
+
+import com.zhaoxin.tools.demo.model.ExtractBatchJob;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 批量抽取：ZIP 后台解压提交、超出上限时取消未开始的提交
+ */
+class ExtractBatchServiceTest {
+
+    private final ZhaoxinApiClient apiClient = mock(ZhaoxinApiClient.class);
+    private final TaskReadModelService readModel = mock(TaskReadModelService.class);
+    private ExtractBatchService service;
+
+    @TempDir
+    Path uploadRoot;
+
+    @AfterEach
+    void shutdown() {
+        if (service != null) {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    void zipIsDispatchedInBackgroundAndSkipsNonPdfEntries() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger sequence = new AtomicInteger();
+        when(apiClient.submitExtractTask(any(File.class), anyString(), anyString())).thenAnswer(invocation -> {
+            release.await(10, TimeUnit.SECONDS);
+            return Map.of("code", 200, "data", Map.of("taskId", "task-" + sequence.incrementAndGet()));
+        });
+        service = newService(2, 100);
+
+        ExtractBatchJob job = service.submitZip(zip("a.pdf", "notes.txt", "__MACOSX/._a.pdf", "dir/b.pdf", "c.PDF"), "tpl");
+        // 上游未返回前请求已结束
+        assertEquals(ExtractBatchJob.STATUS_SUBMITTING, job.getStatus());
+
+        release.countDown();
+        awaitStatus(job);
+        assertEquals(ExtractBatchJob.STATUS_SUBMITTED, job.getStatus());
+        assertEquals(List.of("a.pdf", "dir/b.pdf", "c.PDF"),
+                job.getItems().stream().map(ExtractBatchJob.Item::getFileName).collect(Collectors.toList()));
+        assertEquals(3, job.getSubmittedCount());
+        verify(readModel, times(3)).recordExtractSubmitted(any(), anyString(), anyString());
+    }
+
+    @Test
+    void exceedingMaxEntriesCancelsQueuedSubmissions() throws Exception {
+        CountDownLatch started = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        when(apiClient.submitExtractTask(any(File.class), anyString(), anyString())).thenAnswer(invocation -> {
+            started.countDown();
+            release.await(10, TimeUnit.SECONDS);
+            return Map.of("code", 200, "data", Map.of("taskId", "task-" + invocation.getArgument(1)));
+        });
+        // 并发 2：前两个文件占住提交线程，第三个排队，第四个超过上限；
+        // 两个提交都开始后才放行第四个条目的读取，保证中止时第三个仍在排队
+        long[] lastEntryOffset = new long[1];
+        MockMultipartFile zip = zip(lastEntryOffset, "1.pdf", "2.pdf", "3.pdf", "4.pdf");
+        service = new ExtractBatchService(apiClient, readModel, 2, 3, DataSize.ofMegabytes(1), uploadRoot.toString()) {
+            @Override
+            InputStream openArchive(Path archive) throws IOException {
+                return new GatedInputStream(super.openArchive(archive), lastEntryOffset[0], started);
+            }
+        };
+
+        ExtractBatchJob job = service.submitZip(zip, "tpl");
+        awaitStatus(job);
+        assertEquals(0, started.getCount());
+        release.countDown();
+
+        assertEquals(ExtractBatchJob.STATUS_FAILED, job.getStatus());
+        assertEquals(3, job.getTotal());
+        ExtractBatchJob.Item queued = job.getItems().stream()
+                .filter(item -> item.getFileName().equals("3.pdf")).findFirst().orElseThrow();
+        assertEquals("批次已中止，未提交", queued.getErrorMessage());
+
+        await(() -> job.getSubmittedCount() == 2);
+        verify(apiClient, times(2)).submitExtractTask(any(File.class), anyString(), anyString());
+    }
+
+    private ExtractBatchService newService(int parallelism, int maxEntries) {
+        return new ExtractBatchService(apiClient, readModel, parallelism, maxEntries,
+                DataSize.ofMegabytes(1), uploadRoot.toString());
+    }
+
+    private static MockMultipartFile zip(String... names) throws IOException {
+        return zip(new long[1], names);
+    }
+
+    /**
+     * 生成压缩包，lastEntryOffset[0] 记录最后一个条目的起始位置
+     */
+    private static MockMultipartFile zip(long[] lastEntryOffset, String... names) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Random random = new Random(names.length);
+        try (ZipOutputStream zos = new ZipOutputStream(bytes)) {
+            for (int i = 0; i < names.length; i++) {
+                String name = names[i];
+                if (i == names.length - 1) {
+                    lastEntryOffset[0] = bytes.size();
+                }
+                zos.putNextEntry(new ZipEntry(name));
+                zos.write(("%PDF-1.4 " + name).getBytes(StandardCharsets.US_ASCII));
+                // 不可压缩的填充，使每个条目大于 ZipInputStream 的读缓冲，读取不会提前越过下一个条目
+                byte[] padding = new byte[2048];
+                random.nextBytes(padding);
+                zos.write(padding);
+                zos.closeEntry();
+            }
+        }
+        return new MockMultipartFile("file", "batch.zip", "application/zip", bytes.toByteArray());
+    }
+
+    /**
+     * 读到 gateOffset 之前正常返回，之后的读取等待 gate 归零
+     */
+    private static class GatedInputStream extends FilterInputStream {
+
+        private final long gateOffset;
+        private final CountDownLatch gate;
+        private long position;
+
+        GatedInputStream(InputStream in, long gateOffset, CountDownLatch gate) {
+            super(in);
+            this.gateOffset = gateOffset;
+            this.gate = gate;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) == -1 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int off, int len) throws IOException {
+            if (position >= gateOffset) {
+                try {
+                    if (!gate.await(10, TimeUnit.SECONDS)) {
+                        throw new IOException("等待提交开始超时");
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+            } else {
+                len = (int) Math.min(len, gateOffset - position);
+            }
+            int n = super.read(buffer, off, len);
+            if (n > 0) {
+                position += n;
+            }
+            return n;
+        }
+    }
+
+    private static void awaitStatus(ExtractBatchJob job) throws InterruptedException {
+        await(() -> !ExtractBatchJob.STATUS_SUBMITTING.equals(job.getStatus()));
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "等待超时");
+            Thread.sleep(20);
+        }
+    }
+}
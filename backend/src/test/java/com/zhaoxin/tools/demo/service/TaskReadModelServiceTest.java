@@ -0,0 +1,137 @@
+package com.zhaoxin.tools.demo.service;
+
+import com.zhaoxin.tools.demo.model.TaskFileMapping;
+import com.zhaoxin.tools.demo.model.response.ApiResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 本地任务读模型：与肇新差量同步、持久化与重启加载、本地提交与状态查询的状态变化
+ */
+class TaskReadModelServiceTest {
+
+    private final ZhaoxinApiClient apiClient = mock(ZhaoxinApiClient.class);
+    private final TaskFileMappingService mappingService = mock(TaskFileMappingService.class);
+    private final long anHourAgo = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1);
+
+    @TempDir
+    Path dir;
+
+    private TaskReadModelService service;
+    private TaskReadModelService restarted;
+
+    @AfterEach
+    void shutdown() {
+        if (service != null) {
+            service.shutdown();
+        }
+        if (restarted != null) {
+            restarted.shutdown();
+        }
+    }
+
+    @Test
+    void syncMergesChangedTasksAndRemovesTasksGoneUpstream() throws Exception {
+        service = newService(apiClient);
+        when(mappingService.getMapping("c1")).thenReturn(new TaskFileMapping("c1", "旧版.docx", "新版.docx", anHourAgo));
+        when(mappingService.getMapping("c2")).thenReturn(new TaskFileMapping("c2", "a.docx", "b.docx", anHourAgo - 1));
+        upstream(List.of(compareTask("c1", "RUNNING"), compareTask("c2", "RUNNING")),
+                List.of(Map.of("taskId", "e1", "status", "processing")));
+        service.sync();
+
+        List<Map<String, Object>> compare = service.list(TaskReadModelService.TYPE_COMPARE).get();
+        assertEquals(List.of("c1", "c2"), taskIds(compare));
+        assertEquals("旧版.docx", compare.get(0).get("oldFileName"));
+        assertEquals("RUNNING", compare.get(0).get("status"));
+        assertEquals(List.of("e1"), taskIds(service.list(TaskReadModelService.TYPE_EXTRACT).get()));
+        assertNull(service.getTerminalStatus(TaskReadModelService.TYPE_COMPARE, "c1"));
+
+        // 刚在本地提交、肇新列表中还没有的任务不会被同步删除
+        service.recordCompareSubmitted("c3", "x.docx", "y.docx");
+        upstream(List.of(compareTask("c1", "COMPLETED")), List.of(Map.of("taskId", "e1", "status", "processing")));
+        service.sync();
+
+        compare = service.list(TaskReadModelService.TYPE_COMPARE).get();
+        assertEquals(List.of("c3", "c1"), taskIds(compare));
+        Map<String, Object> c1 = service.getTerminalStatus(TaskReadModelService.TYPE_COMPARE, "c1");
+        assertEquals("COMPLETED", c1.get("status"));
+        assertEquals("新版.docx", c1.get("newFileName"));
+        assertNull(service.snapshot().get("lastSyncError"));
+    }
+
+    @Test
+    void persistedSnapshotIsLoadedAfterRestart() throws Exception {
+        service = newService(apiClient);
+        upstream(List.of(compareTask("c1", "COMPLETED")), List.of(Map.of("taskId", "e1", "status", "processing")));
+        service.sync();
+        assertTrue(Files.exists(dir.resolve("task-read-model.json")));
+
+        // 重启后肇新不可用，列表仍来自磁盘上的读模型
+        ZhaoxinApiClient unavailable = mock(ZhaoxinApiClient.class);
+        when(unavailable.getAllCompareTasks()).thenThrow(new IllegalStateException("Connection refused"));
+        when(unavailable.getExtractTasks()).thenThrow(new IllegalStateException("Connection refused"));
+        restarted = newService(unavailable);
+        restarted.init();
+
+        assertEquals(List.of("c1"), taskIds(restarted.list(TaskReadModelService.TYPE_COMPARE).get()));
+        assertEquals("COMPLETED",
+                restarted.getTerminalStatus(TaskReadModelService.TYPE_COMPARE, "c1").get("status"));
+        assertEquals(List.of("e1"), taskIds(restarted.list(TaskReadModelService.TYPE_EXTRACT).get()));
+    }
+
+    @Test
+    void submittedExtractTaskMovesToTerminalStatusFromStatusQueries() throws Exception {
+        service = newService(apiClient);
+        service.recordExtractSubmitted(Map.of("code", 200, "data", Map.of("taskId", "e9")), "合同.pdf", "tpl-1");
+        // 响应中没有任务ID时不记录
+        service.recordExtractSubmitted(Map.of("code", 500, "message", "文件过大"), "大文件.pdf", "tpl-1");
+
+        List<Map<String, Object>> extract = service.list(TaskReadModelService.TYPE_EXTRACT).get();
+        assertEquals(List.of("e9"), taskIds(extract));
+        assertEquals("合同.pdf", extract.get(0).get("fileName"));
+        assertEquals("tpl-1", extract.get(0).get("templateId"));
+        assertNull(extract.get(0).get("status"));
+
+        service.recordStatus(TaskReadModelService.TYPE_EXTRACT, "e9", Map.of("status", "processing", "progress", 40));
+        assertNull(service.getTerminalStatus(TaskReadModelService.TYPE_EXTRACT, "e9"));
+        assertEquals("processing", service.list(TaskReadModelService.TYPE_EXTRACT).get().get(0).get("status"));
+
+        service.recordStatus(TaskReadModelService.TYPE_EXTRACT, "e9", Map.of("status", "completed", "progress", 100));
+        Map<String, Object> terminal = service.getTerminalStatus(TaskReadModelService.TYPE_EXTRACT, "e9");
+        assertEquals("completed", terminal.get("status"));
+        assertEquals(100, terminal.get("progress"));
+        assertEquals("合同.pdf", terminal.get("fileName"));
+    }
+
+    private TaskReadModelService newService(ZhaoxinApiClient client) {
+        return new TaskReadModelService(client, mappingService, true, 60_000,
+                dir.resolve("task-read-model.json").toString());
+    }
+
+    private void upstream(List<Map<String, Object>> compareTasks, List<Map<String, Object>> extractTasks) {
+        when(apiClient.getAllCompareTasks()).thenReturn(ApiResponse.success(compareTasks));
+        when(apiClient.getExtractTasks()).thenReturn(Map.of("code", 200, "data", Map.of("tasks", extractTasks)));
+    }
+
+    private static Map<String, Object> compareTask(String taskId, String status) {
+        return Map.of("taskId", taskId, "status", status);
+    }
+
+    private static List<Object> taskIds(List<Map<String, Object>> items) {
+        return items.stream().map(item -> item.get("taskId")).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,114 @@
+package com.zhaoxin.tools.demo.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 熔断器：按失败率打开、到期进入半开、半开试探名额与结果
+ */
+class UpstreamCircuitBreakerTest {
+
+    private static final long OPEN_MILLIS = 1000;
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+
+    /**
+     * 窗口 10 次，至少 4 次调用后失败率达到 50% 打开，半开放行 2 个试探请求
+     */
+    private final UpstreamCircuitBreaker breaker =
+            new UpstreamCircuitBreaker("test", 10, 4, 50, OPEN_MILLIS, 2, now::get);
+
+    @Test
+    void opensOnlyAfterMinimumCallsAndThreshold() {
+        call(false);
+        call(false);
+        call(false);
+        // 不足 minimumCalls，即使全部失败也不打开
+        assertEquals(UpstreamCircuitBreaker.State.CLOSED, breaker.getState());
+
+        call(true);
+        // 4 次中 3 次失败（75%）
+        assertEquals(UpstreamCircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+        assertEquals(OPEN_MILLIS, breaker.getRemainingOpenMillis());
+    }
+
+    @Test
+    void staysClosedBelowThreshold() {
+        for (int i = 0; i < 10; i++) {
+            call(i % 3 != 2);
+        }
+        // 10 次中 3 次失败（30%）
+        assertEquals(UpstreamCircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(30, breaker.getFailureRate());
+    }
+
+    @Test
+    void halfOpenAdmitsLimitedProbesAndClosesWhenAllSucceed() {
+        open();
+        now.addAndGet(OPEN_MILLIS);
+        assertEquals(UpstreamCircuitBreaker.State.HALF_OPEN, breaker.getState());
+
+        assertTrue(breaker.tryAcquire());
+        assertTrue(breaker.tryAcquire());
+        // 试探名额已用完
+        assertFalse(breaker.tryAcquire());
+
+        breaker.record(true);
+        // 成功的试探也占用名额，直到全部成功
+        assertFalse(breaker.tryAcquire());
+        assertEquals(UpstreamCircuitBreaker.State.HALF_OPEN, breaker.getState());
+
+        breaker.record(true);
+        assertEquals(UpstreamCircuitBreaker.State.CLOSED, breaker.getState());
+        // 关闭后窗口重新计数
+        assertEquals(0, breaker.getBufferedCalls());
+        assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    void halfOpenFailureReopens() {
+        open();
+        now.addAndGet(OPEN_MILLIS);
+        assertTrue(breaker.tryAcquire());
+        assertTrue(breaker.tryAcquire());
+
+        breaker.record(false);
+        assertEquals(UpstreamCircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+
+        // 打开前已发出的试探，结果不再计入
+        breaker.record(true);
+        assertEquals(UpstreamCircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    void releasedProbeFreesHalfOpenSlot() {
+        open();
+        now.addAndGet(OPEN_MILLIS);
+        assertTrue(breaker.tryAcquire());
+        assertTrue(breaker.tryAcquire());
+        assertFalse(breaker.tryAcquire());
+
+        // 请求未实际发出（如被取消），归还名额
+        breaker.release();
+        assertTrue(breaker.tryAcquire());
+    }
+
+    private void open() {
+        for (int i = 0; i < 4; i++) {
+            call(false);
+        }
+        assertEquals(UpstreamCircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    private void call(boolean success) {
+        assertTrue(breaker.tryAcquire());
+        breaker.record(success);
+    }
+}
@@ -0,0 +1,65 @@
+package com.zhaoxin.tools.demo.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 重试预算：按原始请求存入、按时间补充、余额上限
+ */
+class UpstreamRetryBudgetTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+
+    @Test
+    void depositsFundRetriesInProportionToRequests() {
+        UpstreamRetryBudget budget = new UpstreamRetryBudget(0.5, 0, now::get);
+        assertFalse(budget.tryWithdraw());
+
+        budget.deposit();
+        // 0.5 个令牌不足一次重试
+        assertFalse(budget.tryWithdraw());
+        budget.deposit();
+        assertTrue(budget.tryWithdraw());
+        assertFalse(budget.tryWithdraw());
+
+        assertEquals(1, budget.getWithdrawn());
+        assertEquals(3, budget.getRejected());
+    }
+
+    @Test
+    void refillsMinPerSecondOverTime() {
+        UpstreamRetryBudget budget = new UpstreamRetryBudget(0, 2, now::get);
+        // 初始余额为每秒配额
+        assertTrue(budget.tryWithdraw());
+        assertTrue(budget.tryWithdraw());
+        assertFalse(budget.tryWithdraw());
+
+        now.addAndGet(250);
+        // 0.5 个令牌
+        assertFalse(budget.tryWithdraw());
+        now.addAndGet(250);
+        assertTrue(budget.tryWithdraw());
+        assertFalse(budget.tryWithdraw());
+    }
+
+    @Test
+    void balanceIsCapped() {
+        UpstreamRetryBudget budget = new UpstreamRetryBudget(1, 2, now::get);
+        for (int i = 0; i < 100; i++) {
+            budget.deposit();
+        }
+        now.addAndGet(60_000);
+
+        // 上限为 max(10, 每秒配额 × 10) = 20
+        int withdrawn = 0;
+        while (budget.tryWithdraw()) {
+            withdrawn++;
+        }
+        assertEquals(20, withdrawn);
+    }
+}
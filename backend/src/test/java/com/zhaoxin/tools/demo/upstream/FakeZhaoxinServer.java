@@ -0,0 +1,703 @@
+package com.zhaoxin.tools.demo.upstream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.zhaoxin.tools.demo.service.UpstreamMetrics;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 进程内肇新模拟服务
+ *
+ * 实现 ZhaoxinApiClient 调用的抽取、比对、模板、合成与文件下载接口，无需肇新服务即可在本机运行后端与压测：
+ * 1. 延迟：按接口模板（与 {@link UpstreamMetrics#template(String)} 一致）配置分布，未配置的接口使用默认分布
+ * 2. 错误：按接口模板配置出错概率，出错时返回 errorStatus 与网关 HTML 错误页（与生产 502 一致）
+ * 3. 载荷：页数、抽取字段数、比对差异数、页面图片/导出报告/下载文件大小可配置
+ * 4. 任务：提交后在 taskDuration 内为 processing（进度随时间增长），之后按 taskFailureRate 结束为失败或完成
+ * 响应在延迟到期后由调度线程写出，等待期间不占用线程，可模拟大量并发的慢请求。
+ *
+ * 测试中使用：
+ *   try (FakeZhaoxinServer upstream = FakeZhaoxinServer.builder().defaultLatency(Latency.fixed(20)).start()) { ... }
+ * 单独运行（供本机启动后端或压测使用，参数见 {@link #builder(Properties)}）：
+ *   mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/classpath.txt
+ *   java -cp target/test-classes:target/classes:$(cat target/classpath.txt) -Dfake.port=19000 \
+ *       com.zhaoxin.tools.demo.upstream.FakeZhaoxinServer
+ */
+public class FakeZhaoxinServer implements AutoCloseable {
+
+    public static final String TYPE_EXTRACT = "extract";
+    public static final String TYPE_COMPARE = "compare";
+
+    private static final byte[] PNG_HEADER = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+    private static final String ERROR_PAGE = "<!DOCTYPE html><html><head><title>502 Bad Gateway</title></head>"
+            + "<body><center><h1>502 Bad Gateway</h1></center><hr><center>nginx</center></body></html>";
+
+    private final Builder config;
+    private final HttpServer server;
+    private final ExecutorService handlerExecutor;
+    private final ScheduledExecutorService responder;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Random random;
+    private final Map<String, FakeTask> tasks = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> requestCounts = new ConcurrentHashMap<>();
+    private final AtomicLong errorCount = new AtomicLong();
+
+    private final byte[] pageImage;
+    private final byte[] exportReport;
+    private final byte[] downloadFile;
+
+    private FakeZhaoxinServer(Builder config) throws IOException {
+        this.config = config;
+        this.random = new Random(config.seed);
+        this.pageImage = filler(config.pageImageBytes, PNG_HEADER);
+        this.exportReport = filler(config.exportBytes, new byte[]{'P', 'K', 3, 4});
+        this.downloadFile = filler(config.downloadBytes, "%PDF-1.7\n".getBytes(StandardCharsets.US_ASCII));
+        for (int i = 0; i < config.initialTasks; i++) {
+            long createdAt = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(i + 1L);
+            String type = i % 2 == 0 ? TYPE_EXTRACT : TYPE_COMPARE;
+            FakeTask task = new FakeTask(type + "-seed-" + i, type, createdAt, 0, random.nextDouble() < config.taskFailureRate);
+            task.fileName = "合同-" + i + ".pdf";
+            tasks.put(task.taskId, task);
+        }
+
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", config.port), 4096);
+        this.handlerExecutor = Executors.newFixedThreadPool(config.handlerThreads, daemon("fake-zhaoxin-"));
+        this.responder = Executors.newScheduledThreadPool(2, daemon("fake-zhaoxin-delay-"));
+        server.setExecutor(handlerExecutor);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * 按接口模板统计的请求次数
+     */
+    public long requestCount(String template) {
+        AtomicLong count = requestCounts.get(template);
+        return count != null ? count.get() : 0;
+    }
+
+    public Map<String, Long> requestCounts() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        requestCounts.forEach((template, count) -> result.put(template, count.get()));
+        return result;
+    }
+
+    public long errorCount() {
+        return errorCount.get();
+    }
+
+    /**
+     * 当前任务数（含预置任务）
+     */
+    public int taskCount() {
+        return tasks.size();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        responder.shutdownNow();
+        handlerExecutor.shutdownNow();
+    }
+
+    // ==================== 请求处理 ====================
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        String template = UpstreamMetrics.template(path);
+        requestCounts.computeIfAbsent(template, k -> new AtomicLong()).incrementAndGet();
+
+        byte[] requestBody;
+        try (InputStream in = exchange.getRequestBody()) {
+            requestBody = in.readAllBytes();
+        }
+
+        Response response;
+        double errorRate = config.errorRates.getOrDefault(template, config.defaultErrorRate);
+        if (errorRate > 0 && random.nextDouble() < errorRate) {
+            errorCount.incrementAndGet();
+            response = new Response(config.errorStatus, "text/html;charset=utf-8", ERROR_PAGE.getBytes(StandardCharsets.UTF_8));
+        } else {
+            try {
+                response = route(exchange.getRequestMethod(), path, exchange.getRequestURI().getRawQuery(), requestBody);
+            } catch (RuntimeException e) {
+                response = json(500, error(500, e.toString()));
+            }
+        }
+
+        long delay = config.latencies.getOrDefault(template, config.defaultLatency).sample(random);
+        Response toSend = response;
+        if (delay <= 0) {
+            send(exchange, toSend);
+        } else {
+            responder.schedule(() -> send(exchange, toSend), delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private Response route(String method, String path, String query, byte[] body) {
+        if ("POST".equals(method)) {
+            if (path.equals("/api/rule-extract/extract/upload")) {
+                FakeTask task = submit(TYPE_EXTRACT);
+                task.fileName = multipartFileName(body);
+                task.templateId = multipartField(body, "templateId");
+                Map<String, Object> data = new LinkedHashMap<>();
+                data.put("taskId", task.taskId);
+                data.put("status", "pending");
+                return json(200, success(data));
+            }
+            if (path.startsWith("/api/rule-extract/extract/cancel/")) {
+                FakeTask task = tasks.get(lastSegment(path));
+                if (task == null) {
+                    return json(200, error(404, "任务不存在"));
+                }
+                task.cancelled = true;
+                return json(200, success(null));
+            }
+            if (path.equals("/api/compare-pro/submit-url")) {
+                return json(200, success(submit(TYPE_COMPARE).taskId));
+            }
+            if (path.equals("/api/compare-pro/export-report")) {
+                return new Response(200, "application/octet-stream", exportReport);
+            }
+            if (path.equals("/api/compose/sdt")) {
+                String fileId = "file-" + UUID.randomUUID().toString().substring(0, 8);
+                Map<String, Object> data = new LinkedHashMap<>();
+                data.put("fileId", fileId);
+                data.put("pdfPath", "compose/" + fileId + ".pdf");
+                data.put("stampedPdfPath", "compose/" + fileId + "-stamped.pdf");
+                data.put("ridingStampPdfPath", "compose/" + fileId + "-riding.pdf");
+                return json(200, success(data));
+            }
+        }
+        if ("DELETE".equals(method) && path.startsWith("/api/compare-pro/task/")) {
+            tasks.remove(lastSegment(path));
+            return json(200, success(null));
+        }
+        if (!"GET".equals(method)) {
+            return json(404, error(404, "接口不存在: " + method + " " + path));
+        }
+
+        if (path.startsWith("/api/rule-extract/extract/status/")) {
+            FakeTask task = tasks.get(lastSegment(path));
+            return task != null ? json(200, success(task.status(false))) : json(200, error(404, "任务不存在"));
+        }
+        if (path.startsWith("/api/rule-extract/extract/result/")) {
+            FakeTask task = tasks.get(lastSegment(path));
+            return task != null ? json(200, success(extractResult(task))) : json(200, error(404, "任务不存在"));
+        }
+        if (path.startsWith("/api/rule-extract/extract/page-image/")) {
+            return new Response(200, "image/png", pageImage);
+        }
+        if (path.equals("/api/rule-extract/extract/tasks")) {
+            return json(200, success(list(TYPE_EXTRACT)));
+        }
+        if (path.equals("/api/rule-extract/templates")) {
+            List<Map<String, Object>> templates = new ArrayList<>();
+            for (int i = 1; i <= config.templateCount; i++) {
+                Map<String, Object> template = new LinkedHashMap<>();
+                template.put("id", "extract-template-" + i);
+                template.put("name", "抽取模板" + i);
+                template.put("status", "active");
+                templates.add(template);
+            }
+            return json(200, success(templates));
+        }
+        if (path.startsWith("/api/compare-pro/task/")) {
+            FakeTask task = tasks.get(lastSegment(path));
+            return task != null ? json(200, success(task.status(true))) : json(200, error(404, "任务不存在"));
+        }
+        if (path.startsWith("/api/compare-pro/canvas-result/")) {
+            FakeTask task = tasks.get(lastSegment(path));
+            return task != null ? json(200, success(compareResult(task))) : json(200, error(404, "任务不存在"));
+        }
+        if (path.equals("/api/compare-pro/tasks")) {
+            return json(200, success(list(TYPE_COMPARE)));
+        }
+        if (path.equals("/api/template/design/list")) {
+            List<Map<String, Object>> templates = new ArrayList<>();
+            for (int i = 1; i <= config.templateCount; i++) {
+                Map<String, Object> template = new LinkedHashMap<>();
+                template.put("id", "design-" + i);
+                template.put("templateCode", "template-" + i);
+                template.put("name", "合成模板" + i);
+                template.put("updatedAt", "2025-01-01 00:00:00");
+                templates.add(template);
+            }
+            return json(200, success(templates));
+        }
+        if (path.startsWith("/api/template/design/detail/")) {
+            return json(200, success(templateDetail(lastSegment(path))));
+        }
+        if (path.startsWith("/api/file/download/") || path.equals("/api/file/download-by-path")) {
+            return new Response(200, "application/octet-stream", downloadFile);
+        }
+        return json(404, error(404, "接口不存在: " + path + (query != null ? "?" + query : "")));
+    }
+
+    private FakeTask submit(String type) {
+        FakeTask task = new FakeTask(type + "-" + UUID.randomUUID(), type, System.currentTimeMillis(),
+                config.taskDuration.sample(random), random.nextDouble() < config.taskFailureRate);
+        tasks.put(task.taskId, task);
+        return task;
+    }
+
+    private List<Map<String, Object>> list(String type) {
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (FakeTask task : tasks.values()) {
+            if (task.type.equals(type)) {
+                result.add(task.status(TYPE_COMPARE.equals(type)));
+            }
+        }
+        return result;
+    }
+
+    private Map<String, Object> extractResult(FakeTask task) {
+        List<Map<String, Object>> fields = new ArrayList<>();
+        for (int i = 0; i < config.extractFields; i++) {
+            Map<String, Object> field = new LinkedHashMap<>();
+            field.put("fieldName", "字段" + i);
+            field.put("extractedValue", "值" + i + "-" + task.taskId.hashCode());
+            field.put("pageNumber", i % config.pages + 1);
+            field.put("confidence", 0.9);
+            fields.add(field);
+        }
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (int i = 0; i < config.extractFields; i++) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("品名", "物料" + i);
+            row.put("数量", i + 1);
+            rows.add(row);
+        }
+        Map<String, Object> table = new LinkedHashMap<>();
+        table.put("tableName", "明细");
+        table.put("rows", rows);
+
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("taskId", task.taskId);
+        data.put("fileName", task.fileName);
+        data.put("totalPages", config.pages);
+        data.put("extractResults", fields);
+        data.put("tables", List.of(table));
+        return data;
+    }
+
+    private Map<String, Object> compareResult(FakeTask task) {
+        List<Map<String, Object>> differences = new ArrayList<>();
+        String text = "条款内容".repeat(Math.max(1, config.differenceTextChars / 4));
+        for (int i = 0; i < config.differences; i++) {
+            Map<String, Object> diff = new LinkedHashMap<>();
+            diff.put("index", i);
+            diff.put("type", i % 3 == 0 ? "insert" : i % 3 == 1 ? "delete" : "modify");
+            diff.put("page", i % config.pages + 1);
+            diff.put("oldText", text);
+            diff.put("newText", text + i);
+            diff.put("bbox", List.of(10 * i, 20, 200, 40));
+            differences.add(diff);
+        }
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("taskId", task.taskId);
+        data.put("oldPages", config.pages);
+        data.put("newPages", config.pages);
+        data.put("differences", differences);
+        return data;
+    }
+
+    private Map<String, Object> templateDetail(String templateId) {
+        List<Map<String, Object>> elements = new ArrayList<>();
+        elements.add(element("partyA", "text", "party_a_name", "甲方", true));
+        elements.add(element("partyB", "text", "party_b_name", "乙方", false));
+        elements.add(element("amount", "number", "base_amount", "金额", false));
+        elements.add(element("items", "table", "base_table", "明细", false));
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("id", templateId);
+        data.put("code", "template-" + templateId);
+        data.put("version", "1");
+        try {
+            data.put("elementsJson", objectMapper.writeValueAsString(elements));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return data;
+    }
+
+    private static Map<String, Object> element(String tag, String type, String code, String name, boolean required) {
+        Map<String, Object> meta = new LinkedHashMap<>();
+        meta.put("code", code);
+        meta.put("name", name);
+        meta.put("required", required);
+        Map<String, Object> element = new LinkedHashMap<>();
+        element.put("tag", tag);
+        element.put("type", type);
+        element.put("meta", meta);
+        return element;
+    }
+
+    // ==================== 工具方法 ====================
+
+    private Response json(int status, Object body) {
+        try {
+            return new Response(status, "application/json;charset=utf-8", objectMapper.writeValueAsBytes(body));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Map<String, Object> success(Object data) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("code", 200);
+        body.put("message", "success");
+        body.put("data", data);
+        return body;
+    }
+
+    private static Map<String, Object> error(int code, String message) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("code", code);
+        body.put("message", message);
+        body.put("data", null);
+        return body;
+    }
+
+    private static void send(HttpExchange exchange, Response response) {
+        try {
+            exchange.getResponseHeaders().set("Content-Type", response.contentType);
+            exchange.sendResponseHeaders(response.status, response.body.length == 0 ? -1 : response.body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response.body);
+            }
+        } catch (IOException e) {
+            // 客户端已断开（如超时），忽略
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static String lastSegment(String path) {
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    /**
+     * 从 multipart 请求体中取出文件名（只扫描头部，不解析文件内容）
+     */
+    private static String multipartFileName(byte[] body) {
+        String head = new String(body, 0, Math.min(body.length, 4096), StandardCharsets.UTF_8);
+        int start = head.indexOf("filename=\"");
+        if (start < 0) {
+            return null;
+        }
+        int end = head.indexOf('"', start + 10);
+        return end > start ? head.substring(start + 10, end) : null;
+    }
+
+    private static String multipartField(byte[] body, String name) {
+        // 普通字段在文件之前或之后，只扫描首尾各 4KB
+        String value = multipartField(new String(body, 0, Math.min(body.length, 4096), StandardCharsets.ISO_8859_1), name);
+        if (value == null && body.length > 4096) {
+            int from = Math.max(4096, body.length - 4096);
+            value = multipartField(new String(body, from, body.length - from, StandardCharsets.ISO_8859_1), name);
+        }
+        return value;
+    }
+
+    private static String multipartField(String text, String name) {
+        int start = text.indexOf("name=\"" + name + "\"");
+        if (start < 0) {
+            return null;
+        }
+        int valueStart = text.indexOf("\r\n\r\n", start);
+        int valueEnd = valueStart < 0 ? -1 : text.indexOf("\r\n", valueStart + 4);
+        return valueEnd > valueStart ? text.substring(valueStart + 4, valueEnd) : null;
+    }
+
+    private static byte[] filler(int size, byte[] header) {
+        byte[] bytes = new byte[Math.max(size, header.length)];
+        System.arraycopy(header, 0, bytes, 0, header.length);
+        for (int i = header.length; i < bytes.length; i++) {
+            bytes[i] = (byte) (i * 31);
+        }
+        return bytes;
+    }
+
+    private static ThreadFactory daemon(String prefix) {
+        AtomicLong counter = new AtomicLong();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static class Response {
+        final int status;
+        final String contentType;
+        final byte[] body;
+
+        Response(int status, String contentType, byte[] body) {
+            this.status = status;
+            this.contentType = contentType;
+            this.body = body;
+        }
+    }
+
+    /**
+     * 模拟任务：状态由提交时间与耗时推算
+     */
+    private class FakeTask {
+        final String taskId;
+        final String type;
+        final long createdAt;
+        final long durationMillis;
+        final boolean fails;
+        volatile boolean cancelled;
+        volatile String fileName;
+        volatile String templateId;
+
+        FakeTask(String taskId, String type, long createdAt, long durationMillis, boolean fails) {
+            this.taskId = taskId;
+            this.type = type;
+            this.createdAt = createdAt;
+            this.durationMillis = durationMillis;
+            this.fails = fails;
+        }
+
+        Map<String, Object> status(boolean upperCase) {
+            long elapsed = System.currentTimeMillis() - createdAt;
+            String status;
+            int progress;
+            if (cancelled) {
+                status = "cancelled";
+                progress = 0;
+            } else if (elapsed >= durationMillis) {
+                status = fails ? "failed" : "completed";
+                progress = 100;
+            } else {
+                status = "processing";
+                progress = (int) (elapsed * 100 / Math.max(1, durationMillis));
+            }
+            Map<String, Object> data = new LinkedHashMap<>();
+            data.put("taskId", taskId);
+            data.put("status", upperCase ? status.toUpperCase() : status);
+            data.put("progress", progress);
+            data.put("fileName", fileName);
+            data.put("templateId", templateId);
+            data.put("totalPages", config.pages);
+            data.put("createTime", createdAt);
+            if (fails && progress == 100) {
+                data.put("errorMessage", "模拟任务失败");
+            }
+            return data;
+        }
+    }
+
+    // ==================== 配置 ====================
+
+    public static class Builder {
+        private int port;
+        private int handlerThreads = 16;
+        private long seed = 42;
+        private Latency defaultLatency = Latency.NONE;
+        private final Map<String, Latency> latencies = new HashMap<>();
+        private double defaultErrorRate;
+        private final Map<String, Double> errorRates = new HashMap<>();
+        private int errorStatus = 502;
+        private Latency taskDuration = Latency.fixed(0);
+        private double taskFailureRate;
+        private int initialTasks;
+        private int pages = 10;
+        private int extractFields = 20;
+        private int differences = 50;
+        private int differenceTextChars = 40;
+        private int templateCount = 5;
+        private int pageImageBytes = 200 * 1024;
+        private int exportBytes = 1024 * 1024;
+        private int downloadBytes = 512 * 1024;
+
+        /**
+         * 监听端口，0 表示随机端口
+         */
+        public Builder port(int port) {
+            this.port = port;
+            return this;
+        }
+
+        public Builder handlerThreads(int handlerThreads) {
+            this.handlerThreads = Math.max(1, handlerThreads);
+            return this;
+        }
+
+        public Builder seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        public Builder defaultLatency(Latency latency) {
+            this.defaultLatency = latency;
+            return this;
+        }
+
+        /**
+         * 单个接口的延迟分布
+         *
+         * @param template 接口模板，如 /api/rule-extract/extract/status/{taskId}
+         */
+        public Builder latency(String template, Latency latency) {
+            this.latencies.put(template, latency);
+            return this;
+        }
+
+        public Builder defaultErrorRate(double errorRate) {
+            this.defaultErrorRate = errorRate;
+            return this;
+        }
+
+        public Builder errorRate(String template, double errorRate) {
+            this.errorRates.put(template, errorRate);
+            return this;
+        }
+
+        public Builder errorStatus(int errorStatus) {
+            this.errorStatus = errorStatus;
+            return this;
+        }
+
+        /**
+         * 任务从提交到结束的耗时分布
+         */
+        public Builder taskDuration(Latency taskDuration) {
+            this.taskDuration = taskDuration;
+            return this;
+        }
+
+        public Builder taskFailureRate(double taskFailureRate) {
+            this.taskFailureRate = taskFailureRate;
+            return this;
+        }
+
+        /**
+         * 预置的已完成任务数（抽取与比对各一半），用于模拟任务列表规模
+         */
+        public Builder initialTasks(int initialTasks) {
+            this.initialTasks = initialTasks;
+            return this;
+        }
+
+        public Builder pages(int pages) {
+            this.pages = Math.max(1, pages);
+            return this;
+        }
+
+        public Builder extractFields(int extractFields) {
+            this.extractFields = extractFields;
+            return this;
+        }
+
+        public Builder differences(int differences, int textChars) {
+            this.differences = differences;
+            this.differenceTextChars = textChars;
+            return this;
+        }
+
+        public Builder templateCount(int templateCount) {
+            this.templateCount = templateCount;
+            return this;
+        }
+
+        public Builder pageImageBytes(int pageImageBytes) {
+            this.pageImageBytes = pageImageBytes;
+            return this;
+        }
+
+        public Builder exportBytes(int exportBytes) {
+            this.exportBytes = exportBytes;
+            return this;
+        }
+
+        public Builder downloadBytes(int downloadBytes) {
+            this.downloadBytes = downloadBytes;
+            return this;
+        }
+
+        public FakeZhaoxinServer start() {
+            try {
+                return new FakeZhaoxinServer(this);
+            } catch (IOException e) {
+                throw new IllegalStateException("启动肇新模拟服务失败: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * 按 fake.* 属性创建配置，未指定的属性使用适合本机压测的默认值：
+     *   fake.port（默认 19000）、fake.latency（默认 lognormal:50:800）、fake.error-rate（默认 0）、
+     *   fake.task-duration（默认 uniform:5000:30000）、fake.task-failure-rate、fake.initial-tasks、
+     *   fake.pages、fake.page-image-bytes、fake.export-bytes、fake.download-bytes
+     * 单个接口的延迟与出错率：fake.latency./api/rule-extract/extract/status/{taskId}=fixed:20，
+     *   fake.error-rate./api/compose/sdt=0.1
+     */
+    public static Builder builder(Properties properties) {
+        Builder builder = builder()
+                .port(Integer.parseInt(properties.getProperty("fake.port", "19000")))
+                .handlerThreads(Integer.parseInt(properties.getProperty("fake.handler-threads", "32")))
+                .defaultLatency(Latency.parse(properties.getProperty("fake.latency", "lognormal:50:800")))
+                .defaultErrorRate(Double.parseDouble(properties.getProperty("fake.error-rate", "0")))
+                .taskDuration(Latency.parse(properties.getProperty("fake.task-duration", "uniform:5000:30000")))
+                .taskFailureRate(Double.parseDouble(properties.getProperty("fake.task-failure-rate", "0.02")))
+                .initialTasks(Integer.parseInt(properties.getProperty("fake.initial-tasks", "200")))
+                .pages(Integer.parseInt(properties.getProperty("fake.pages", "10")))
+                .pageImageBytes(Integer.parseInt(properties.getProperty("fake.page-image-bytes", String.valueOf(200 * 1024))))
+                .exportBytes(Integer.parseInt(properties.getProperty("fake.export-bytes", String.valueOf(1024 * 1024))))
+                .downloadBytes(Integer.parseInt(properties.getProperty("fake.download-bytes", String.valueOf(512 * 1024))));
+        properties.stringPropertyNames().forEach(name -> {
+            if (name.startsWith("fake.latency./")) {
+                builder.latency(name.substring("fake.latency.".length()), Latency.parse(properties.getProperty(name)));
+            } else if (name.startsWith("fake.error-rate./")) {
+                builder.errorRate(name.substring("fake.error-rate.".length()),
+                        Double.parseDouble(properties.getProperty(name)));
+            }
+        });
+        return builder;
+    }
+
+    /**
+     * 单独运行，参数以系统属性传入（见 {@link #builder(Properties)}）
+     */
+    public static void main(String[] args) throws InterruptedException {
+        FakeZhaoxinServer server = builder(System.getProperties()).start();
+        System.out.println("肇新模拟服务已启动: " + server.baseUrl()
+                + "（启动后端时指定 --zhaoxin.api.base-url=" + server.baseUrl() + "）");
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+        Thread.currentThread().join();
+    }
+}
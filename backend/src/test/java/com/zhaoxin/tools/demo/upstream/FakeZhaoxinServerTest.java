@@ -0,0 +1,130 @@
+package com.zhaoxin.tools.demo.upstream;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 以肇新模拟服务运行完整的抽取、比对流程
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class FakeZhaoxinServerTest {
+
+    private static final String TEMPLATES_LIST = "/api/template/design/list";
+
+    private static final FakeZhaoxinServer upstream = FakeZhaoxinServer.builder()
+            .defaultLatency(Latency.uniform(5, 20))
+            .taskDuration(Latency.fixed(500))
+            .initialTasks(20)
+            .pageImageBytes(64 * 1024)
+            .errorRate(TEMPLATES_LIST, 1.0)
+            .start();
+
+    @Autowired
+    private TestRestTemplate rest;
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) throws IOException {
+        // 运行时文件全部写入临时目录，不在工作目录留下映射、读模型与缓存
+        Path dataDir = Files.createTempDirectory("fake-zhaoxin-test");
+        registry.add("zhaoxin.api.base-url", upstream::baseUrl);
+        registry.add("zhaoxin.warmup.enabled", () -> false);
+        registry.add("zhaoxin.task-mapping.path", () -> dataDir.resolve("task-mappings.json").toString());
+        registry.add("zhaoxin.task-read-model.path", () -> dataDir.resolve("tasks.json").toString());
+        registry.add("zhaoxin.compare.export.cache-path", () -> dataDir.resolve("compare-reports").toString());
+        registry.add("zhaoxin.compose.file-cache.path", () -> dataDir.resolve("compose-files").toString());
+        registry.add("file.upload.path", () -> dataDir.resolve("uploads").toString());
+    }
+
+    @AfterAll
+    static void stopUpstream() {
+        upstream.close();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void extractJourney() throws Exception {
+        MultiValueMap<String, Object> form = new LinkedMultiValueMap<>();
+        form.add("file", new ByteArrayResource(new byte[4096]) {
+            @Override
+            public String getFilename() {
+                return "purchase-contract.pdf";
+            }
+        });
+        form.add("templateId", "extract-template-1");
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.MULTIPART_FORM_DATA);
+        Map<String, Object> submitted = rest.postForObject("/api/rule-extract/extract/upload",
+                new HttpEntity<>(form, headers), Map.class);
+        String taskId = (String) ((Map<String, Object>) submitted.get("data")).get("taskId");
+        assertNotNull(taskId, String.valueOf(submitted));
+
+        Map<String, Object> status = (Map<String, Object>) rest.getForObject(
+                "/api/rule-extract/extract/status/" + taskId, Map.class).get("data");
+        assertEquals("processing", status.get("status"));
+
+        Thread.sleep(600);
+        status = (Map<String, Object>) rest.getForObject(
+                "/api/rule-extract/extract/status/" + taskId, Map.class).get("data");
+        assertEquals("completed", status.get("status"));
+
+        ResponseEntity<byte[]> image = rest.getForEntity("/api/rule-extract/extract/page-image/" + taskId + "/1",
+                byte[].class);
+        assertEquals(64 * 1024, image.getBody().length);
+
+        Map<String, Object> result = (Map<String, Object>) rest.getForObject(
+                "/api/rule-extract/extract/result/" + taskId, Map.class).get("data");
+        assertEquals(20, ((List<?>) result.get("extractResults")).size());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void compareJourney() throws Exception {
+        Map<String, Object> request = Map.of(
+                "oldFileUrl", "http://files/old.pdf", "newFileUrl", "http://files/new.pdf",
+                "oldFileName", "旧版合同.pdf", "newFileName", "新版合同.pdf");
+        Map<String, Object> submitted = rest.postForObject("/api/compare/submit", request, Map.class);
+        String taskId = (String) submitted.get("data");
+        assertNotNull(taskId, String.valueOf(submitted));
+
+        Thread.sleep(600);
+        Map<String, Object> status = (Map<String, Object>) rest.getForObject(
+                "/api/compare/task/" + taskId, Map.class).get("data");
+        assertEquals("COMPLETED", status.get("status"));
+        assertEquals("旧版合同.pdf", status.get("oldFileName"));
+
+        Map<String, Object> result = (Map<String, Object>) rest.getForObject(
+                "/api/compare/result/" + taskId, Map.class).get("data");
+        assertEquals(50, ((List<?>) result.get("differences")).size());
+    }
+
+    @Test
+    void injectedErrorsReachCaller() {
+        Map<?, ?> response = rest.getForObject("/api/compose/templates", Map.class);
+        assertTrue(upstream.requestCount(TEMPLATES_LIST) > 0);
+        assertTrue(upstream.errorCount() > 0);
+        assertNotEquals(200, response.get("code"), String.valueOf(response));
+    }
+}
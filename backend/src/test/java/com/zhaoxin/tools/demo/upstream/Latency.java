@@ -0,0 +1,87 @@
+package com.zhaoxin.tools.demo.upstream;
+
+import java.util.Random;
+
+/**
+ * 模拟延迟（或任务耗时）分布，单位毫秒
+ *
+ * 文本格式（命令行与系统属性使用）：
+ *   fixed:100            固定 100ms
+ *   uniform:50:300       50~300ms 均匀分布
+ *   lognormal:80:1200    对数正态分布，中位数 80ms、p99 1200ms，用于模拟长尾
+ */
+public abstract class Latency {
+
+    public static final Latency NONE = fixed(0);
+
+    /**
+     * 取一个样本（毫秒，不小于 0）
+     */
+    public abstract long sample(Random random);
+
+    public static Latency fixed(long millis) {
+        return new Latency() {
+            @Override
+            public long sample(Random random) {
+                return millis;
+            }
+
+            @Override
+            public String toString() {
+                return "fixed:" + millis;
+            }
+        };
+    }
+
+    public static Latency uniform(long minMillis, long maxMillis) {
+        return new Latency() {
+            @Override
+            public long sample(Random random) {
+                return maxMillis <= minMillis ? minMillis : minMillis + (long) (random.nextDouble() * (maxMillis - minMillis));
+            }
+
+            @Override
+            public String toString() {
+                return "uniform:" + minMillis + ":" + maxMillis;
+            }
+        };
+    }
+
+    /**
+     * 对数正态分布：由中位数与 p99 反推参数，z(0.99) ≈ 2.326
+     */
+    public static Latency logNormal(long medianMillis, long p99Millis) {
+        double mu = Math.log(Math.max(1, medianMillis));
+        double sigma = Math.max(0, Math.log(Math.max(p99Millis, medianMillis + 1)) - mu) / 2.326;
+        return new Latency() {
+            @Override
+            public long sample(Random random) {
+                return (long) Math.exp(mu + sigma * random.nextGaussian());
+            }
+
+            @Override
+            public String toString() {
+                return "lognormal:" + medianMillis + ":" + p99Millis;
+            }
+        };
+    }
+
+    public static Latency parse(String text) {
+        String[] parts = text.trim().split(":");
+        try {
+            switch (parts[0]) {
+                case "fixed":
+                    return fixed(Long.parseLong(parts[1]));
+                case "uniform":
+                    return uniform(Long.parseLong(parts[1]), Long.parseLong(parts[2]));
+                case "lognormal":
+                    return logNormal(Long.parseLong(parts[1]), Long.parseLong(parts[2]));
+                default:
+                    return fixed(Long.parseLong(parts[0]));
+            }
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("无法解析延迟分布: " + text
+                    + "（支持 fixed:MS、uniform:MIN:MAX、lognormal:MEDIAN:P99）", e);
+        }
+    }
+}
@@ -77,11 +77,25 @@ export default {
 
   /**
    * 获取任务状态
+   * @param {number} wait - 等待状态变化的秒数（后端收到肇新回调时立即返回）
    */
-  getTaskStatus(taskId) {
+  getTaskStatus(taskId, wait = 0) {
     return request({
       url: `/task/${taskId}`,
-      method: 'get'
+      method: 'get',
+      params: wait > 0 ? { wait } : undefined
+    })
+  },
+
+  /**
+   * 批量获取任务状态（文件名已替换为原始文件名）
+   * @param {Array<string>} taskIds - 任务ID列表
+   */
+  getTaskStatuses(taskIds) {
+    return request({
+      url: '/tasks/status',
+      method: 'post',
+      data: { taskIds }
     })
   },
 
@@ -133,6 +147,42 @@ export default {
       responseType: 'blob', // 重要：处理二进制文件
       timeout: 120000 // 2分钟超时
     })
+  },
+
+  /**
+   * 提交报告导出任务（相同参数命中后端缓存时直接返回已完成的任务）
+   * @param {string} taskId - 任务ID
+   * @param {Array<string>} formats - 导出格式 ['doc', 'html']
+   */
+  submitExportJob(taskId, formats = ['doc', 'html']) {
+    return request({
+      url: '/export-jobs',
+      method: 'post',
+      data: {
+        taskId,
+        formats,
+        includeIgnored: false,
+        includeRemarks: true
+      }
+    })
+  },
+
+  /**
+   * 查询报告导出任务进度
+   * @param {string} jobId - 导出任务ID
+   */
+  getExportJob(jobId) {
+    return request({
+      url: `/export-jobs/${jobId}`,
+      method: 'get'
+    })
+  },
+
+  /**
+   * 报告下载地址
+   * @param {string} jobId - 导出任务ID
+   */
+  getExportJobDownloadUrl(jobId) {
+    return `/api/compare/export-jobs/${jobId}/download`
   }
 }
-
@@ -57,11 +57,13 @@ export function uploadAndExtract(formData) {
 
 /**
  * 查询任务状态
+ * @param {number} wait - 等待状态变化的秒数（后端收到肇新回调时立即返回）
  */
-export function getRuleExtractTaskStatus(taskId) {
+export function getRuleExtractTaskStatus(taskId, wait = 0) {
   return request({
     url: `/rule-extract/extract/status/${taskId}`,
-    method: 'get'
+    method: 'get',
+    params: wait > 0 ? { wait } : undefined
   })
 }
 
@@ -1,5 +1,10 @@
 import compareApi from '@/api/compare'
 
+/**
+ * 单次状态查询最多等待的秒数：后端收到肇新回调时立即返回，未启用回调时不等待
+ */
+const STATUS_WAIT_SECONDS = 25
+
 /**
  * 轮询任务状态
  */
@@ -7,7 +12,7 @@ export async function pollTaskStatus(taskId, onProgress, interval = 2000) {
   return new Promise((resolve, reject) => {
     const poll = async () => {
       try {
-        const result = await compareApi.getTaskStatus(taskId)
+        const result = await compareApi.getTaskStatus(taskId, STATUS_WAIT_SECONDS)
         const status = result.data
         
         // 调用进度回调